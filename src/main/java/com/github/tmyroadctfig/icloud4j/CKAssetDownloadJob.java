@@ -0,0 +1,363 @@
+package com.github.tmyroadctfig.icloud4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+
+import com.github.tmyroadctfig.icloud4j.json.CKAsset;
+import com.github.tmyroadctfig.icloud4j.json.CKRecord;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Downloads CloudKit assets concurrently over the pooled HTTP client, writing each one straight to a file or channel.
+ *
+ * Up to the concurrency limit downloads run at a time, and up to the queue capacity more wait for a worker. Beyond
+ * that {@code download} blocks, so records can be fed in as a query streams them without queueing the whole
+ * library:
+ *
+ * <pre>
+ * try (CKAssetDownloadJob job = new CKAssetDownloadJob(iCloud);
+ * 	Stream&lt;CKRecord&gt; records = photosDatabase.queryAll(query)) {
+ * 	records.forEach(record -&gt; job.download(record, "resOriginalRes", dir.resolve(record.getRecordName())));
+ * }
+ * </pre>
+ *
+ * Closing the job waits for the downloads to finish.
+ *
+ * @author patchpump
+ */
+public class CKAssetDownloadJob implements Closeable {
+
+	/**
+	 * The default number of downloads running at a time.
+	 */
+	public static final int DEFAULT_CONCURRENCY = 4;
+
+	/**
+	 * The default number of downloads waiting for a worker.
+	 */
+	public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+	private static final int BUFFER_SIZE = 0x10000;
+
+	/**
+	 * The iCloud service.
+	 */
+	private final ICloudService iCloudService;
+
+	private final ExecutorService executor;
+
+	/**
+	 * Running and queued downloads, bounded by the concurrency plus the queue capacity.
+	 */
+	private final Semaphore slots;
+
+	private final LongAdder submitted = new LongAdder();
+	private final LongAdder completed = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder bytesExpected = new LongAdder();
+	private final LongAdder bytesDownloaded = new LongAdder();
+
+	private final long startNanos = System.nanoTime();
+	private volatile long endNanos;
+	private volatile boolean cancelled;
+
+	/**
+	 * Creates a new download job with the default concurrency and queue capacity.
+	 *
+	 * @param iCloudService the iCloud service.
+	 */
+	public CKAssetDownloadJob(ICloudService iCloudService) {
+		this(iCloudService, DEFAULT_CONCURRENCY, DEFAULT_QUEUE_CAPACITY);
+	}
+
+	/**
+	 * Creates a new download job.
+	 *
+	 * @param iCloudService the iCloud service.
+	 * @param concurrency the number of downloads running at a time.
+	 * @param queueCapacity the number of downloads waiting for a worker before {@code download} blocks.
+	 */
+	public CKAssetDownloadJob(ICloudService iCloudService, int concurrency, int queueCapacity) {
+		if (concurrency < 1)
+			throw new IllegalArgumentException("concurrency must be at least 1");
+		if (queueCapacity < 0)
+			throw new IllegalArgumentException("queueCapacity must not be negative");
+
+		this.iCloudService = iCloudService;
+		this.slots = new Semaphore(concurrency + queueCapacity);
+		this.executor = Executors.newFixedThreadPool(concurrency,
+			new ThreadFactoryBuilder().setNameFormat("icloud4j-asset-download-%d").setDaemon(true).build());
+	}
+
+	/**
+	 * Downloads the asset of a record field to a file.
+	 *
+	 * @param record the record.
+	 * @param field the ASSETID field, e.g. "resOriginalRes".
+	 * @param target the file to write, replaced if it exists.
+	 * @return the future file, failing with an {@link ICloudException} if the record has no such asset.
+	 */
+	public CompletableFuture<Path> download(CKRecord record, String field, Path target) {
+		CKAsset asset = record.getAsset(field);
+		if (asset == null)
+			return missingAsset(record, field);
+		return download(asset, target);
+	}
+
+	/**
+	 * Downloads the photo rendition picked by a selector to a file.
+	 *
+	 * @param record the record.
+	 * @param selector the rendition selector.
+	 * @param target the file to write, replaced if it exists.
+	 * @return the future file, failing with an {@link ICloudException} if the record has no rendition.
+	 */
+	public CompletableFuture<Path> download(CKRecord record, CKRenditionSelector selector, Path target) {
+		CKAsset asset = selector.selectAsset(record);
+		if (asset == null)
+			return missingAsset(record, "rendition");
+		return download(asset, target);
+	}
+
+	private CompletableFuture<Path> missingAsset(CKRecord record, String field) {
+		submitted.increment();
+		failed.increment();
+		CompletableFuture<Path> result = new CompletableFuture<>();
+		result.completeExceptionally(new ICloudException("record " + record.getRecordName() + " has no asset " + field));
+		return result;
+	}
+
+	/**
+	 * Downloads an asset to a file. A partly written file is deleted if the download fails.
+	 *
+	 * @param asset the asset.
+	 * @param target the file to write, replaced if it exists.
+	 * @return the future file.
+	 */
+	public CompletableFuture<Path> download(CKAsset asset, Path target) {
+		String url = asset.getDownloadURL(target.getFileName().toString());
+		return submit(asset, () -> {
+			try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+				transfer(url, channel);
+			} catch (Exception e) {
+				Files.deleteIfExists(target);
+				throw e;
+			}
+			return target;
+		});
+	}
+
+	/**
+	 * Downloads an asset to a channel. The channel is not closed.
+	 *
+	 * @param asset the asset.
+	 * @param channel the channel to write to.
+	 * @return the future number of bytes written.
+	 */
+	public CompletableFuture<Long> download(CKAsset asset, WritableByteChannel channel) {
+		String url = asset.getDownloadURL("asset");
+		return submit(asset, () -> transfer(url, channel));
+	}
+
+	/**
+	 * Queues a download, blocking while the queue is full.
+	 */
+	private <T> CompletableFuture<T> submit(CKAsset asset, Callable<T> download) {
+		try {
+			slots.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw Throwables.propagate(e);
+		}
+
+		submitted.increment();
+		if (asset.getSize() > 0)
+			bytesExpected.add(asset.getSize());
+
+		CompletableFuture<T> result = new CompletableFuture<>();
+		try {
+			executor.execute(() -> {
+				try {
+					if (cancelled)
+						throw new CancellationException("asset download cancelled");
+					T value = download.call();
+					completed.increment();
+					result.complete(value);
+				} catch (Throwable e) {
+					failed.increment();
+					result.completeExceptionally(e);
+				} finally {
+					slots.release();
+				}
+			});
+		} catch (RuntimeException e) {
+			slots.release();
+			failed.increment();
+			throw e;
+		}
+		return result;
+	}
+
+	private long transfer(String url, WritableByteChannel channel) throws IOException {
+		HttpGet request = new HttpGet(url);
+		try (CloseableHttpResponse response = iCloudService.getHttpClient().execute(request)) {
+			int status = response.getStatusLine().getStatusCode();
+			if (status < 200 || status >= 300)
+				throw new ICloudException("asset download failed: " + response.getStatusLine());
+
+			try {
+				long total = 0;
+				ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+				InputStream in = response.getEntity().getContent();
+				ReadableByteChannel source = Channels.newChannel(in);
+				while (source.read(buffer) >= 0) {
+					if (cancelled || Thread.currentThread().isInterrupted())
+						throw new InterruptedIOException("asset download cancelled");
+					buffer.flip();
+					while (buffer.hasRemaining())
+						total += channel.write(buffer);
+					bytesDownloaded.add(buffer.position());
+					buffer.clear();
+				}
+				in.close();
+				return total;
+
+			} catch (IOException | RuntimeException e) {
+				// abort rather than drain the rest of the asset to reuse the connection
+				request.abort();
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of downloads submitted.
+	 *
+	 * @return the number of downloads submitted.
+	 */
+	public long getSubmitted() {
+		return submitted.sum();
+	}
+
+	public long getCompleted() {
+		return completed.sum();
+	}
+
+	public long getFailed() {
+		return failed.sum();
+	}
+
+	/**
+	 * Gets the number of downloads running or waiting.
+	 *
+	 * @return the number of pending downloads.
+	 */
+	public long getPending() {
+		return submitted.sum() - completed.sum() - failed.sum();
+	}
+
+	/**
+	 * Gets the total size of the assets submitted, as reported by the server.
+	 *
+	 * @return the expected number of bytes.
+	 */
+	public long getBytesExpected() {
+		return bytesExpected.sum();
+	}
+
+	/**
+	 * Gets the number of bytes written so far, including those of failed downloads.
+	 *
+	 * @return the number of bytes downloaded.
+	 */
+	public long getBytesDownloaded() {
+		return bytesDownloaded.sum();
+	}
+
+	/**
+	 * Gets the share of the expected bytes downloaded so far.
+	 *
+	 * @return the progress from 0 to 1.
+	 */
+	public double getProgress() {
+		long expected = bytesExpected.sum();
+		return expected == 0 ? 1 : Math.min(1, (double) bytesDownloaded.sum() / expected);
+	}
+
+	/**
+	 * Gets the time since the job was created, up to when it was closed.
+	 *
+	 * @return the elapsed time in milliseconds.
+	 */
+	public long getElapsedMillis() {
+		long end = endNanos;
+		return TimeUnit.NANOSECONDS.toMillis((end != 0 ? end : System.nanoTime()) - startNanos);
+	}
+
+	/**
+	 * Gets the average throughput over the elapsed time.
+	 *
+	 * @return the throughput in bytes per second.
+	 */
+	public double getThroughput() {
+		long elapsed = getElapsedMillis();
+		return elapsed == 0 ? 0 : bytesDownloaded.sum() * 1000d / elapsed;
+	}
+
+	/**
+	 * Cancels the downloads which have not completed. Their futures fail with a {@link CancellationException} or an
+	 * {@link InterruptedIOException}.
+	 */
+	public void cancel() {
+		cancelled = true;
+		executor.shutdownNow().forEach(Runnable::run);
+		endNanos = System.nanoTime();
+	}
+
+	/**
+	 * Waits for the submitted downloads to finish and stops the workers.
+	 */
+	@Override
+	public void close() throws IOException {
+		executor.shutdown();
+		try {
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while waiting for asset downloads");
+		} finally {
+			if (endNanos == 0)
+				endNanos = System.nanoTime();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "CKAssetDownloadJob [submitted=" + getSubmitted() + ", completed=" + getCompleted() + ", failed="
+			+ getFailed() + ", bytesDownloaded=" + getBytesDownloaded() + ", bytesExpected=" + getBytesExpected()
+			+ ", throughput=" + (long) getThroughput() + " B/s]";
+	}
+}
@@ -1,96 +1,692 @@
-package com.github.tmyroadctfig.icloud4j;
-
-import java.util.Map;
-
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.client.utils.URIBuilder;
-import org.apache.http.entity.StringEntity;
-
-import com.github.tmyroadctfig.icloud4j.json.CKResponse;
-import com.github.tmyroadctfig.icloud4j.util.JsonResponseHandler;
-import com.google.common.base.Throwables;
-
-/**
- * CloudKit database service.
- * 
- * https://developer.apple.com/reference/cloudkit/
- * 
- * @author patchpump
- */
-public class CKDatabaseService {
-
-	public static final String ENDPOINT_PHOTOS = "/database/1/com.apple.photos.cloud/production/private/records";
-
-	private static final JsonResponseHandler<CKResponse> RESPONSE_HANDLER = new JsonResponseHandler<CKResponse>(CKResponse.class);
-
-	private static final String CLIENT_VERSION = "17AHotfix3";
-	private static final String CKJS_BUILD_VERSION = "17AProjectDev84";
-	private static final String CKJS_VERSION = "2.0.34";
-
-	/**
-	 * The iCloud service.
-	 */
-	private final ICloudService iCloudService;
-
-	/**
-	 * Service root URL.
-	 */
-	private final String serviceRoot;
-
-	/**
-	 * Service end point.
-	 */
-	private final String endPoint;
-
-	/**
-	 * Creates a new CKDatabase service.
-	 *
-	 * @param iCloudService the iCloud service.
-	 * @param endpoint database endpoint
-	 */
-	public CKDatabaseService(ICloudService iCloudService, String endPoint) {
-		this.iCloudService = iCloudService;
-		@SuppressWarnings("unchecked")
-		Map<String, Object> settings = (Map<String, Object>) iCloudService.getWebServicesMap().get("ckdatabasews");
-		this.serviceRoot = (String) settings.get("url");
-		this.endPoint = serviceRoot + endPoint;
-	}
-
-	/**
-	 * Populates the URI parameters for a request.
-	 *
-	 * @param uriBuilder the URI builder.
-	 */
-	public void populateUriParameters(URIBuilder uriBuilder) {
-		uriBuilder.addParameter("dsid", iCloudService.getSessionId())
-			.addParameter("ckjsBuildVersion", CKJS_BUILD_VERSION)
-			.addParameter("ckjsVersion", CKJS_VERSION)
-			.addParameter("getCurrentSyncToken", "true")
-			.addParameter("clientBuildNumber", CLIENT_VERSION)
-			.addParameter("clientMasteringNumber", CLIENT_VERSION)
-			.addParameter("remapEnums", "true")
-			.addParameter("clientId", iCloudService.getClientId())
-			.addParameter("clientInstanceId", iCloudService.getClientId());
-	}
-
-	/**
-	 * Perform CKDatabase query.
-	 *
-	 * @param query in JSON format
-	 * @return the list of albums.
-	 */
-	public CKResponse query(String query) {
-		try {
-			URIBuilder uriBuilder = new URIBuilder(endPoint + "/query");
-			populateUriParameters(uriBuilder);
-			HttpPost post = new HttpPost(uriBuilder.build());
-			iCloudService.populateRequestHeadersParameters(post);
-			post.addHeader("clientMasteringNumber", CLIENT_VERSION);
-			post.setEntity(new StringEntity(query));
-			return iCloudService.getHttpClient().execute(post, RESPONSE_HANDLER);
-
-		} catch (Exception e) {
-			throw Throwables.propagate(e);
-		}
-	}
-}
+package com.github.tmyroadctfig.icloud4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.entity.StringEntity;
+
+import com.github.tmyroadctfig.icloud4j.json.CKChangesResponse;
+import com.github.tmyroadctfig.icloud4j.json.CKRecord;
+import com.github.tmyroadctfig.icloud4j.json.CKResponse;
+import com.github.tmyroadctfig.icloud4j.json.CKZoneChanges;
+import com.github.tmyroadctfig.icloud4j.json.CKZoneId;
+import com.github.tmyroadctfig.icloud4j.util.ICloudUtils;
+import com.github.tmyroadctfig.icloud4j.util.JsonResponseHandler;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * CloudKit database service.
+ * 
+ * https://developer.apple.com/reference/cloudkit/
+ * 
+ * @author patchpump
+ */
+public class CKDatabaseService {
+
+	public static final String CONTAINER_PHOTOS = "com.apple.photos.cloud";
+
+	public static final String ENDPOINT_PHOTOS = "/database/1/" + CONTAINER_PHOTOS + "/production/private/records";
+
+	private static final JsonResponseHandler<CKResponse> RESPONSE_HANDLER = new JsonResponseHandler<CKResponse>(CKResponse.class);
+
+	/**
+	 * The default number of query result pages fetched ahead of the page being consumed.
+	 */
+	public static final int DEFAULT_PREFETCH_DEPTH = 1;
+
+	/**
+	 * The default number of records buffered per partition of a partitioned query.
+	 */
+	public static final int DEFAULT_PARTITION_BUFFER_SIZE = 1024;
+
+	/**
+	 * The maximum number of records per lookup request.
+	 */
+	public static final int LOOKUP_BATCH_SIZE = 200;
+
+	/**
+	 * The default number of lookup requests in flight at a time.
+	 */
+	public static final int DEFAULT_LOOKUP_CONCURRENCY = 4;
+
+	private static final String CLIENT_VERSION = "17AHotfix3";
+	private static final String CKJS_BUILD_VERSION = "17AProjectDev84";
+	private static final String CKJS_VERSION = "2.0.34";
+
+	/**
+	 * The iCloud service.
+	 */
+	private final ICloudService iCloudService;
+
+	/**
+	 * Service root URL.
+	 */
+	private final String serviceRoot;
+
+	/**
+	 * Service end point.
+	 */
+	private final String endPoint;
+
+	/**
+	 * Database path, the end point without the service root and the records suffix. Used in sync token keys.
+	 */
+	private final String databasePath;
+
+	/**
+	 * Operation URIs, built once with the constant parameters.
+	 */
+	private final URI queryUri;
+	private final URI lookupUri;
+	private final URI databaseChangesUri;
+	private final URI zoneChangesUri;
+
+	/**
+	 * Request headers, built once.
+	 */
+	private final Header[] headers;
+
+	/**
+	 * CloudKit environments.
+	 */
+	public enum Environment {
+		PRODUCTION, DEVELOPMENT
+	}
+
+	/**
+	 * CloudKit database scopes.
+	 */
+	public enum Scope {
+		PRIVATE, SHARED, PUBLIC
+	}
+
+	/**
+	 * Creates a new CKDatabase service.
+	 *
+	 * @param iCloudService the iCloud service.
+	 * @param endpoint database endpoint
+	 */
+	public CKDatabaseService(ICloudService iCloudService, String endPoint) {
+		this.iCloudService = iCloudService;
+		@SuppressWarnings("unchecked")
+		Map<String, Object> settings = (Map<String, Object>) iCloudService.getWebServicesMap().get("ckdatabasews");
+		this.serviceRoot = (String) settings.get("url");
+		this.endPoint = serviceRoot + endPoint;
+		this.databasePath = endPoint.endsWith("/records") ? endPoint.substring(0, endPoint.length() - 8) : endPoint;
+
+		this.queryUri = createUri(this.endPoint + "/query");
+		this.lookupUri = createUri(this.endPoint + "/lookup");
+		this.databaseChangesUri = createUri(serviceRoot + databasePath + "/changes/database");
+		this.zoneChangesUri = createUri(serviceRoot + databasePath + "/changes/zone");
+
+		HttpPost template = new HttpPost();
+		iCloudService.populateRequestHeadersParameters(template);
+		template.addHeader("clientMasteringNumber", CLIENT_VERSION);
+		this.headers = template.getAllHeaders();
+	}
+
+	/**
+	 * Creates a new CKDatabase service for a container database. The request URIs and headers, including the
+	 * session's user agent, are built once here.
+	 *
+	 * @param iCloudService the iCloud service.
+	 * @param container the container, e.g. {@link #CONTAINER_PHOTOS}.
+	 * @param environment the environment.
+	 * @param scope the database scope.
+	 */
+	public CKDatabaseService(ICloudService iCloudService, String container, Environment environment, Scope scope) {
+		this(iCloudService, "/database/1/" + container + "/" + environment.name().toLowerCase() + "/"
+			+ scope.name().toLowerCase() + "/records");
+	}
+
+	/**
+	 * Gets the database end point the records operations are appended to.
+	 *
+	 * @return the end point URL.
+	 */
+	public String getEndPoint() {
+		return endPoint;
+	}
+
+	/**
+	 * Populates the URI parameters for a request.
+	 *
+	 * @param uriBuilder the URI builder.
+	 */
+	public void populateUriParameters(URIBuilder uriBuilder) {
+		uriBuilder.addParameter("dsid", iCloudService.getSessionId())
+			.addParameter("ckjsBuildVersion", CKJS_BUILD_VERSION)
+			.addParameter("ckjsVersion", CKJS_VERSION)
+			.addParameter("getCurrentSyncToken", "true")
+			.addParameter("clientBuildNumber", CLIENT_VERSION)
+			.addParameter("clientMasteringNumber", CLIENT_VERSION)
+			.addParameter("remapEnums", "true")
+			.addParameter("clientId", iCloudService.getClientId())
+			.addParameter("clientInstanceId", iCloudService.getClientId());
+	}
+
+	/**
+	 * Perform CKDatabase query.
+	 *
+	 * @param query in JSON format
+	 * @return the list of albums.
+	 */
+	public CKResponse query(String query) {
+		return query(createQueryRequest(query));
+	}
+
+	/**
+	 * Perform CKDatabase query.
+	 *
+	 * @param query the query.
+	 * @return the response.
+	 */
+	public CKResponse query(CKQuery query) {
+		return query(createQueryRequest(query.toEntity(null)));
+	}
+
+	/**
+	 * Perform CKDatabase query asynchronously.
+	 *
+	 * @param query in JSON format
+	 * @return the future response.
+	 */
+	public CompletableFuture<CKResponse> queryAsync(String query) {
+		return iCloudService.executeAsync(createQueryRequest(query), RESPONSE_HANDLER);
+	}
+
+	/**
+	 * Perform CKDatabase query asynchronously.
+	 *
+	 * @param query the query.
+	 * @return the future response.
+	 */
+	public CompletableFuture<CKResponse> queryAsync(CKQuery query) {
+		return iCloudService.executeAsync(createQueryRequest(query.toEntity(null)), RESPONSE_HANDLER);
+	}
+
+	/**
+	 * Perform CKDatabase query, parsing the records one at a time as the response is read. The iterator holds a
+	 * connection until it is exhausted or closed, so it must be closed.
+	 *
+	 * @param query in JSON format
+	 * @return the record iterator.
+	 */
+	public CKRecordIterator queryIterator(String query) {
+		return queryIterator(createQueryRequest(query));
+	}
+
+	/**
+	 * Perform CKDatabase query, parsing the records one at a time as the response is read. The iterator holds a
+	 * connection until it is exhausted or closed, so it must be closed.
+	 *
+	 * @param query the query.
+	 * @return the record iterator.
+	 */
+	public CKRecordIterator queryIterator(CKQuery query) {
+		return queryIterator(createQueryRequest(query.toEntity(null)));
+	}
+
+	/**
+	 * Perform CKDatabase query, returning a lazy stream of the records parsed as the response is read. The stream
+	 * must be closed, e.g. with try-with-resources.
+	 *
+	 * @param query in JSON format
+	 * @return the record stream.
+	 */
+	public Stream<CKRecord> queryStream(String query) {
+		return queryIterator(query).stream();
+	}
+
+	/**
+	 * Perform CKDatabase query, returning a lazy stream of the records parsed as the response is read. The stream
+	 * must be closed, e.g. with try-with-resources.
+	 *
+	 * @param query the query.
+	 * @return the record stream.
+	 */
+	public Stream<CKRecord> queryStream(CKQuery query) {
+		return queryIterator(query).stream();
+	}
+
+	/**
+	 * Perform CKDatabase query, passing each record to the action as soon as it has been parsed.
+	 *
+	 * @param query in JSON format
+	 * @param action the action to perform on each record.
+	 * @return the continuation marker for the next page, or null if there are no more results.
+	 */
+	public String query(String query, Consumer<? super CKRecord> action) {
+		return query(queryIterator(query), action);
+	}
+
+	/**
+	 * Perform CKDatabase query, passing each record to the action as soon as it has been parsed.
+	 *
+	 * @param query the query.
+	 * @param action the action to perform on each record.
+	 * @return the continuation marker for the next page, or null if there are no more results.
+	 */
+	public String query(CKQuery query, Consumer<? super CKRecord> action) {
+		return query(queryIterator(query), action);
+	}
+
+	/**
+	 * Perform CKDatabase query over all pages of results, following the continuation markers, with the next page
+	 * prefetched while the current one is consumed.
+	 *
+	 * @param query in JSON format
+	 * @return the lazy record stream, which should be closed to cancel prefetching if not consumed to the end.
+	 */
+	public Stream<CKRecord> queryAll(String query) {
+		return queryAll(query, DEFAULT_PREFETCH_DEPTH);
+	}
+
+	/**
+	 * Perform CKDatabase query over all pages of results, following the continuation markers. Up to the given
+	 * number of pages are requested ahead of the page being consumed, each holding up to the query's resultsLimit
+	 * records.
+	 *
+	 * @param query in JSON format
+	 * @param prefetchDepth the number of pages to fetch ahead, zero to fetch each page when it is needed.
+	 * @return the lazy record stream, which should be closed to cancel prefetching if not consumed to the end.
+	 */
+	public Stream<CKRecord> queryAll(String query, int prefetchDepth) {
+		JsonObject queryObject = new JsonParser().parse(query).getAsJsonObject();
+
+		return new CKQueryPager(continuationMarker -> {
+			if (continuationMarker != null)
+				queryObject.addProperty("continuationMarker", continuationMarker);
+			return iCloudService.executeAsync(createQueryRequest(queryObject.toString()), CKResponse.class);
+		}, prefetchDepth).stream();
+	}
+
+	/**
+	 * Perform CKDatabase query over all pages of results, following the continuation markers, with the next page
+	 * prefetched while the current one is consumed.
+	 *
+	 * @param query the query.
+	 * @return the lazy record stream, which should be closed to cancel prefetching if not consumed to the end.
+	 */
+	public Stream<CKRecord> queryAll(CKQuery query) {
+		return queryAll(query, DEFAULT_PREFETCH_DEPTH);
+	}
+
+	/**
+	 * Perform CKDatabase query over all pages of results, following the continuation markers. Up to the given
+	 * number of pages are requested ahead of the page being consumed.
+	 *
+	 * @param query the query.
+	 * @param prefetchDepth the number of pages to fetch ahead, zero to fetch each page when it is needed.
+	 * @return the lazy record stream, which should be closed to cancel prefetching if not consumed to the end.
+	 */
+	public Stream<CKRecord> queryAll(CKQuery query, int prefetchDepth) {
+		return new CKQueryPager(continuationMarker -> iCloudService.executeAsync(
+			createQueryRequest(query.toEntity(continuationMarker)), CKResponse.class), prefetchDepth).stream();
+	}
+
+	/**
+	 * Perform the partitions of a CKDatabase query concurrently, each following its own continuation markers, and
+	 * merge their records. Partitions are usually made with {@link CKQuery#partitionByTime(String, long, long, int)}.
+	 *
+	 * @param partitions the partition queries.
+	 * @param concurrency the number of partitions queried at a time.
+	 * @param ordered true to return the records partition by partition, in the order of the partitions; false to
+	 * return them as they arrive.
+	 * @return the lazy record stream, which should be closed to stop the queries if not consumed to the end.
+	 */
+	public Stream<CKRecord> queryPartitioned(List<CKQuery> partitions, int concurrency, boolean ordered) {
+		List<Supplier<Stream<CKRecord>>> streams = new ArrayList<>(partitions.size());
+		for (CKQuery partition : partitions)
+			streams.add(() -> queryAll(partition));
+		return new CKPartitionMerger(streams, concurrency, DEFAULT_PARTITION_BUFFER_SIZE, ordered).stream();
+	}
+
+	/**
+	 * Fetch records by name. Large inputs are split into batches of {@link #LOOKUP_BATCH_SIZE}, up to
+	 * {@link #DEFAULT_LOOKUP_CONCURRENCY} of which are in flight at a time.
+	 *
+	 * @param recordNames the record names.
+	 * @param zoneName the zone of the records, or null for the default zone.
+	 * @param desiredKeys the fields to return, all fields if none are given.
+	 * @return the records found, by record name in the order of the given names.
+	 */
+	public Map<String, CKRecord> lookup(Collection<String> recordNames, String zoneName, String... desiredKeys) {
+		try {
+			return lookupAsync(recordNames, zoneName, desiredKeys.length == 0 ? null : Arrays.asList(desiredKeys),
+				DEFAULT_LOOKUP_CONCURRENCY).join();
+
+		} catch (CompletionException e) {
+			throw Throwables.propagate(e.getCause());
+		}
+	}
+
+	/**
+	 * Fetch records by name asynchronously. Large inputs are split into batches of {@link #LOOKUP_BATCH_SIZE}, up to
+	 * the given number of which are in flight at a time. Records the server does not have are left out of the
+	 * result; any other record error fails it.
+	 *
+	 * @param recordNames the record names.
+	 * @param zoneName the zone of the records, or null for the default zone.
+	 * @param desiredKeys the fields to return, or null for all fields.
+	 * @param concurrency the maximum number of batches in flight.
+	 * @return the future records found, by record name in the order of the given names.
+	 */
+	public CompletableFuture<Map<String, CKRecord>> lookupAsync(Collection<String> recordNames, String zoneName,
+		Collection<String> desiredKeys, int concurrency) {
+		if (concurrency < 1)
+			throw new IllegalArgumentException("concurrency must be at least 1");
+
+		List<String> names = new ArrayList<>(new LinkedHashSet<>(recordNames));
+		List<List<String>> batches = Lists.partition(names, LOOKUP_BATCH_SIZE);
+		List<String> keys = desiredKeys == null ? null : new ArrayList<>(desiredKeys);
+
+		CKResponse[] responses = new CKResponse[batches.size()];
+		AtomicInteger nextBatch = new AtomicInteger();
+		CompletableFuture<?>[] workers = new CompletableFuture<?>[Math.min(concurrency, batches.size())];
+		for (int i = 0; i < workers.length; i++)
+			workers[i] = lookupBatches(batches, nextBatch, responses, zoneName, keys);
+
+		return CompletableFuture.allOf(workers).thenApply(ignore -> {
+			Map<String, CKRecord> found = new HashMap<>(names.size() * 4 / 3 + 1);
+			for (CKResponse response : responses) {
+				if (response.getServerErrorCode() != null)
+					throw new ICloudException("CloudKit lookup failed: " + response.getServerErrorCode() + " "
+						+ response.getReason());
+				for (CKRecord record : response.getRecords()) {
+					if (record.getServerErrorCode() == null)
+						found.put(record.getRecordName(), record);
+					else if (!"NOT_FOUND".equals(record.getServerErrorCode()))
+						throw new ICloudException("CloudKit lookup of " + record.getRecordName() + " failed: "
+							+ record.getServerErrorCode() + " " + record.getReason());
+				}
+			}
+
+			Map<String, CKRecord> result = new LinkedHashMap<>(found.size() * 4 / 3 + 1);
+			for (String name : names) {
+				CKRecord record = found.get(name);
+				if (record != null)
+					result.put(name, record);
+			}
+			return result;
+		});
+	}
+
+	/**
+	 * Looks up batches one after the other until none are left.
+	 */
+	private CompletableFuture<Void> lookupBatches(List<List<String>> batches, AtomicInteger nextBatch,
+		CKResponse[] responses, String zoneName, List<String> desiredKeys) {
+		int index = nextBatch.getAndIncrement();
+		if (index >= batches.size())
+			return CompletableFuture.completedFuture(null);
+
+		List<String> batch = batches.get(index);
+		HttpPost request = createRequest(lookupUri, new CKRequestEntity(writer -> {
+			writer.beginObject();
+			writer.name("records").beginArray();
+			for (String name : batch)
+				writer.beginObject().name("recordName").value(name).endObject();
+			writer.endArray();
+			if (zoneName != null)
+				writer.name("zoneID").beginObject().name("zoneName").value(zoneName).endObject();
+			if (desiredKeys != null) {
+				writer.name("desiredKeys").beginArray();
+				for (String key : desiredKeys)
+					writer.value(key);
+				writer.endArray();
+			}
+			writer.endObject();
+		}));
+
+		return iCloudService.executeAsync(request, CKResponse.class).thenCompose(response -> {
+			responses[index] = response;
+			return lookupBatches(batches, nextBatch, responses, zoneName, desiredKeys);
+		});
+	}
+
+	/**
+	 * Fetch the zones changed since a sync token.
+	 *
+	 * @param syncToken the database sync token, or null for all zones.
+	 * @return the changed zones, carrying only their zone ID, and the new database sync token.
+	 */
+	public CKChangesResponse fetchDatabaseChanges(String syncToken) {
+		HttpPost request = createRequest(databaseChangesUri, new CKRequestEntity(writer -> {
+			writer.beginObject();
+			if (syncToken != null)
+				writer.name("syncToken").value(syncToken);
+			writer.endObject();
+		}));
+		CKChangesResponse response = ICloudUtils.parseJsonResponse(iCloudService.getHttpClient(), request,
+			CKChangesResponse.class);
+		if (response.getServerErrorCode() != null)
+			throw new ICloudException("CloudKit database changes failed: " + response.getServerErrorCode() + " "
+				+ response.getReason());
+		return response;
+	}
+
+	/**
+	 * Fetch one page of the records changed in a zone since a sync token.
+	 *
+	 * @param zoneName the zone name.
+	 * @param syncToken the zone sync token, or null for all records.
+	 * @param desiredKeys the fields to return, or null for all fields.
+	 * @return the changes, with the sync token to fetch the next page.
+	 */
+	public CKZoneChanges fetchZoneChanges(String zoneName, String syncToken, Collection<String> desiredKeys) {
+		HttpPost request = createRequest(zoneChangesUri, new CKRequestEntity(writer -> {
+			writer.beginObject();
+			writer.name("zones").beginArray().beginObject();
+			writer.name("zoneID").beginObject().name("zoneName").value(zoneName).endObject();
+			if (syncToken != null)
+				writer.name("syncToken").value(syncToken);
+			if (desiredKeys != null) {
+				writer.name("desiredKeys").beginArray();
+				for (String key : desiredKeys)
+					writer.value(key);
+				writer.endArray();
+			}
+			writer.endObject().endArray();
+			writer.endObject();
+		}));
+
+		CKChangesResponse response = ICloudUtils.parseJsonResponse(iCloudService.getHttpClient(), request,
+			CKChangesResponse.class);
+		if (response.getServerErrorCode() != null)
+			throw new ICloudException("CloudKit zone changes failed: " + response.getServerErrorCode() + " "
+				+ response.getReason());
+		if (response.getZones().isEmpty())
+			throw new ICloudException("CloudKit zone changes returned no zone for " + zoneName);
+
+		CKZoneChanges changes = response.getZones().get(0);
+		if (changes.getServerErrorCode() != null)
+			throw new ICloudException("CloudKit zone changes for " + zoneName + " failed: "
+				+ changes.getServerErrorCode() + " " + changes.getReason());
+		return changes;
+	}
+
+	/**
+	 * Fetch all records changed in a zone since the sync token in the store, passing each to the action. The token
+	 * is stored after each page has been passed to the action, so a failed run resumes at the page it failed on.
+	 *
+	 * @param zoneName the zone name.
+	 * @param desiredKeys the fields to return, or null for all fields.
+	 * @param store the sync token store.
+	 * @param action the action to perform on each changed record, including deleted ones.
+	 * @return the new sync token.
+	 */
+	public String fetchZoneChanges(String zoneName, Collection<String> desiredKeys, CKSyncTokenStore store,
+		Consumer<? super CKRecord> action) {
+		String key = getSyncTokenKey(zoneName);
+		String syncToken = store.getToken(key);
+
+		CKZoneChanges changes;
+		do {
+			changes = fetchZoneChanges(zoneName, syncToken, desiredKeys);
+			changes.getRecords().forEach(action);
+
+			if (changes.getSyncToken() == null || changes.getSyncToken().equals(syncToken))
+				break;
+			syncToken = changes.getSyncToken();
+			store.putToken(key, syncToken);
+		} while (changes.isMoreComing());
+
+		return syncToken;
+	}
+
+	/**
+	 * Fetch the records changed in all zones since the sync tokens in the store, passing each to the action. The
+	 * database token is stored once every changed zone has been fetched.
+	 *
+	 * @param desiredKeys the fields to return, or null for all fields.
+	 * @param store the sync token store.
+	 * @param action the action to perform on each changed record, including deleted ones.
+	 * @return the changed zones.
+	 */
+	public List<CKZoneId> fetchChanges(Collection<String> desiredKeys, CKSyncTokenStore store,
+		Consumer<? super CKRecord> action) {
+		String key = getSyncTokenKey(null);
+		String syncToken = store.getToken(key);
+
+		List<CKZoneId> changedZones = new ArrayList<>();
+		CKChangesResponse changes;
+		do {
+			changes = fetchDatabaseChanges(syncToken);
+			for (CKZoneChanges zone : changes.getZones()) {
+				changedZones.add(zone.getZoneID());
+				fetchZoneChanges(zone.getZoneID().getZoneName(), desiredKeys, store, action);
+			}
+
+			if (changes.getSyncToken() == null || changes.getSyncToken().equals(syncToken))
+				break;
+			syncToken = changes.getSyncToken();
+			store.putToken(key, syncToken);
+		} while (changes.isMoreComing());
+
+		return changedZones;
+	}
+
+	/**
+	 * Gets the key of the sync token of a zone, or of the database, for this account and database.
+	 *
+	 * @param zoneName the zone name, or null for the database token.
+	 * @return the key.
+	 */
+	public String getSyncTokenKey(String zoneName) {
+		String key = iCloudService.getSessionId() + databasePath;
+		return zoneName == null ? key : key + "/" + zoneName;
+	}
+
+	private CKResponse query(HttpPost request) {
+		try {
+			return iCloudService.getHttpClient().execute(request, RESPONSE_HANDLER);
+
+		} catch (Exception e) {
+			throw Throwables.propagate(e);
+		}
+	}
+
+	private CKRecordIterator queryIterator(HttpPost request) {
+		CloseableHttpResponse response = null;
+		try {
+			response = iCloudService.getHttpClient().execute(request);
+			return new CKRecordIterator(response);
+
+		} catch (Exception e) {
+			if (response != null)
+				IOUtils.closeQuietly(response);
+			throw Throwables.propagate(e);
+		}
+	}
+
+	private String query(CKRecordIterator iterator, Consumer<? super CKRecord> action) {
+		try (CKRecordIterator records = iterator) {
+			records.forEachRemaining(action);
+			return records.getContinuationMarker();
+
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Creates the query request.
+	 *
+	 * @param query in JSON format
+	 * @return the request.
+	 */
+	private HttpPost createQueryRequest(String query) {
+		try {
+			return createQueryRequest(new StringEntity(query));
+
+		} catch (Exception e) {
+			throw Throwables.propagate(e);
+		}
+	}
+
+	/**
+	 * Creates the query request.
+	 *
+	 * @param entity the query request body.
+	 * @return the request.
+	 */
+	private HttpPost createQueryRequest(HttpEntity entity) {
+		return createRequest(queryUri, entity);
+	}
+
+	/**
+	 * Creates a database request.
+	 *
+	 * @param uri the operation URI.
+	 * @param entity the request body.
+	 * @return the request.
+	 */
+	private HttpPost createRequest(URI uri, HttpEntity entity) {
+		HttpPost post = new HttpPost(uri);
+		post.setHeaders(headers);
+		post.setEntity(entity);
+		return post;
+	}
+
+	/**
+	 * Creates an operation URI with the constant parameters.
+	 *
+	 * @param url the operation URL.
+	 * @return the URI.
+	 */
+	private URI createUri(String url) {
+		try {
+			URIBuilder uriBuilder = new URIBuilder(url);
+			populateUriParameters(uriBuilder);
+			return uriBuilder.build();
+
+		} catch (Exception e) {
+			throw Throwables.propagate(e);
+		}
+	}
+}
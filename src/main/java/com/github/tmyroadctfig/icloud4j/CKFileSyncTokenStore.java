@@ -0,0 +1,102 @@
+package com.github.tmyroadctfig.icloud4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+
+/**
+ * Sync token store keeping the tokens in a properties file. The file is read on first use and rewritten on each change
+ * through a temporary file, which is forced to disk and then moved over it, so a crash leaves either the old or the
+ * new tokens.
+ *
+ * @author patchpump
+ */
+public class CKFileSyncTokenStore implements CKSyncTokenStore {
+
+	private final Path file;
+	private Properties tokens;
+
+	/**
+	 * Creates a new file token store.
+	 *
+	 * @param file the properties file, created on the first token stored.
+	 */
+	public CKFileSyncTokenStore(Path file) {
+		if (file == null)
+			throw new IllegalArgumentException("file must not be null");
+		this.file = file;
+	}
+
+	public Path getFile() {
+		return file;
+	}
+
+	@Override
+	public synchronized String getToken(String key) {
+		return load().getProperty(key);
+	}
+
+	@Override
+	public synchronized void putToken(String key, String token) {
+		if (token == null)
+			throw new IllegalArgumentException("token must not be null");
+		if (!token.equals(load().setProperty(key, token)))
+			save();
+	}
+
+	@Override
+	public synchronized void removeToken(String key) {
+		if (load().remove(key) != null)
+			save();
+	}
+
+	private Properties load() {
+		if (tokens == null) {
+			Properties properties = new Properties();
+			try (InputStream in = Files.newInputStream(file)) {
+				properties.load(in);
+			} catch (NoSuchFileException e) {
+				// no tokens stored yet
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			tokens = properties;
+		}
+		return tokens;
+	}
+
+	private void save() {
+		try {
+			Path directory = file.toAbsolutePath().getParent();
+			Files.createDirectories(directory);
+			Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+			try {
+				try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+					OutputStream out = Channels.newOutputStream(channel)) {
+					tokens.store(out, "CloudKit sync tokens");
+					// the tokens must be on disk before the move makes them the current ones
+					channel.force(true);
+				}
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(temp);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "CKFileSyncTokenStore [file=" + file + "]";
+	}
+}
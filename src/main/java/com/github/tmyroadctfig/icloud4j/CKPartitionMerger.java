@@ -0,0 +1,165 @@
+package com.github.tmyroadctfig.icloud4j;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.github.tmyroadctfig.icloud4j.json.CKRecord;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Runs the partitions of a query concurrently and merges their records into one iterator.
+ *
+ * Each partition is read by a worker into a bounded buffer. Merged in order, every partition has its own buffer and
+ * the buffers are drained one after the other, so later partitions fill their buffers while earlier ones are
+ * consumed. Merged unordered, the partitions share one buffer and records are returned as they arrive.
+ *
+ * @author patchpump
+ */
+class CKPartitionMerger implements Iterator<CKRecord> {
+
+	/**
+	 * Marks the end of a partition in a buffer.
+	 */
+	private static final Object END = new Object();
+
+	/**
+	 * Carries the failure of a partition through a buffer.
+	 */
+	private static class Failure {
+
+		final Throwable cause;
+
+		Failure(Throwable cause) {
+			this.cause = cause;
+		}
+	}
+
+	private final ExecutorService executor;
+	private final List<BlockingQueue<Object>> buffers;
+	private final boolean ordered;
+	private final int partitionCount;
+
+	private int current;
+	private int ended;
+	private Object next;
+
+	/**
+	 * Creates a new merger and starts reading the partitions.
+	 *
+	 * @param partitions opens the record stream of each partition.
+	 * @param concurrency the number of partitions read at a time.
+	 * @param bufferSize the number of records buffered per partition, or in total if unordered.
+	 * @param ordered true to return the records partition by partition.
+	 */
+	CKPartitionMerger(List<Supplier<Stream<CKRecord>>> partitions, int concurrency, int bufferSize, boolean ordered) {
+		if (concurrency < 1)
+			throw new IllegalArgumentException("concurrency must be at least 1");
+		if (bufferSize < 1)
+			throw new IllegalArgumentException("bufferSize must be at least 1");
+
+		this.ordered = ordered;
+		this.partitionCount = partitions.size();
+		this.buffers = new ArrayList<>(partitionCount);
+
+		BlockingQueue<Object> shared = ordered ? null : new ArrayBlockingQueue<>(bufferSize);
+		for (int i = 0; i < partitionCount; i++)
+			buffers.add(ordered ? new ArrayBlockingQueue<>(bufferSize) : shared);
+
+		this.executor = Executors.newFixedThreadPool(Math.max(1, Math.min(concurrency, partitionCount)),
+			new ThreadFactoryBuilder().setNameFormat("icloud4j-partition-%d").setDaemon(true).build());
+		for (int i = 0; i < partitionCount; i++) {
+			Supplier<Stream<CKRecord>> partition = partitions.get(i);
+			BlockingQueue<Object> buffer = buffers.get(i);
+			executor.execute(() -> read(partition, buffer));
+		}
+		executor.shutdown();
+	}
+
+	private void read(Supplier<Stream<CKRecord>> partition, BlockingQueue<Object> buffer) {
+		try {
+			try (Stream<CKRecord> records = partition.get()) {
+				Iterator<CKRecord> iterator = records.iterator();
+				while (iterator.hasNext())
+					buffer.put(iterator.next());
+			} catch (Throwable e) {
+				// an error must reach the consumer too, or it waits for the partition forever
+				buffer.put(new Failure(e));
+				return;
+			}
+			buffer.put(END);
+
+		} catch (InterruptedException e) {
+			// closed
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (next == null) {
+			if (ended == partitionCount)
+				return false;
+
+			Object element;
+			try {
+				element = buffers.get(current).take();
+			} catch (InterruptedException e) {
+				close();
+				Thread.currentThread().interrupt();
+				throw Throwables.propagate(e);
+			}
+
+			if (element == END) {
+				ended++;
+				if (ordered)
+					current++;
+			} else if (element instanceof Failure) {
+				close();
+				throw Throwables.propagate(((Failure) element).cause);
+			} else {
+				next = element;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public CKRecord next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		CKRecord record = (CKRecord) next;
+		next = null;
+		return record;
+	}
+
+	/**
+	 * Stops the workers, closing the partition streams and cancelling their prefetched pages.
+	 */
+	void close() {
+		executor.shutdownNow();
+		ended = partitionCount;
+		next = null;
+	}
+
+	/**
+	 * Returns a lazy stream over the merged records, stopping the workers when it is closed.
+	 *
+	 * @return the stream.
+	 */
+	Stream<CKRecord> stream() {
+		int characteristics = Spliterator.NONNULL | (ordered ? Spliterator.ORDERED : 0);
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, characteristics), false)
+			.onClose(this::close);
+	}
+}
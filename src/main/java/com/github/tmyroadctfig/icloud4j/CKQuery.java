@@ -0,0 +1,408 @@
+package com.github.tmyroadctfig.icloud4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.http.HttpEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * A CloudKit records query, built with typed methods instead of a hand-written JSON string:
+ *
+ * <pre>
+ * CKQuery query = CKQuery.recordType("CPLAssetAndMasterByAssetDateWithoutHiddenOrDeleted")
+ * 	.zone("PrimarySync")
+ * 	.filter("direction", CKQuery.Comparator.EQUALS, "ASCENDING")
+ * 	.desiredKeys("filenameEnc", "resOriginalRes")
+ * 	.resultsLimit(200);
+ * </pre>
+ *
+ * The query is written straight to the request body. Since records carry all their fields unless told otherwise,
+ * a warning is logged the first time a record type is queried without {@link #desiredKeys(String...)}.
+ *
+ * @author patchpump
+ */
+public class CKQuery {
+
+	private static final Logger logger = LoggerFactory.getLogger(CKQuery.class);
+
+	/**
+	 * Record types a missing projection has been warned about.
+	 */
+	private static final Set<String> warnedRecordTypes = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * CloudKit filter comparators.
+	 */
+	public enum Comparator {
+		EQUALS, NOT_EQUALS, LESS_THAN, LESS_THAN_OR_EQUALS, GREATER_THAN, GREATER_THAN_OR_EQUALS, NEAR,
+		CONTAINS_ALL_TOKENS, IN, NOT_IN, CONTAINS_ANY_TOKENS, LIST_CONTAINS, NOT_LIST_CONTAINS, LIST_CONTAINS_ANY,
+		BEGINS_WITH, NOT_BEGINS_WITH, LIST_MEMBER_BEGINS_WITH, NOT_LIST_MEMBER_BEGINS_WITH, LIST_CONTAINS_ALL,
+		NOT_LIST_CONTAINS_ALL
+	}
+
+	private final String recordType;
+	private String zoneName;
+	private String ownerRecordName;
+	private final List<Filter> filters = new ArrayList<>();
+	private final List<Sort> sorts = new ArrayList<>();
+	private int resultsLimit;
+	private List<String> desiredKeys;
+
+	public CKQuery(String recordType) {
+		if (recordType == null)
+			throw new IllegalArgumentException("recordType must not be null");
+		this.recordType = recordType;
+	}
+
+	/**
+	 * Creates a query for records of the given type.
+	 *
+	 * @param recordType the record type, e.g. "CPLAssetAndMasterByAssetDateWithoutHiddenOrDeleted".
+	 * @return the query.
+	 */
+	public static CKQuery recordType(String recordType) {
+		return new CKQuery(recordType);
+	}
+
+	/**
+	 * Sets the zone to query.
+	 *
+	 * @param zoneName the zone name, e.g. "PrimarySync".
+	 * @return this query.
+	 */
+	public CKQuery zone(String zoneName) {
+		this.zoneName = zoneName;
+		return this;
+	}
+
+	/**
+	 * Sets the zone to query in a database shared by another user.
+	 *
+	 * @param zoneName the zone name.
+	 * @param ownerRecordName the record name of the zone owner.
+	 * @return this query.
+	 */
+	public CKQuery zone(String zoneName, String ownerRecordName) {
+		this.zoneName = zoneName;
+		this.ownerRecordName = ownerRecordName;
+		return this;
+	}
+
+	/**
+	 * Adds a filter on a STRING field.
+	 *
+	 * @param fieldName the field name.
+	 * @param comparator the comparator.
+	 * @param value the value.
+	 * @return this query.
+	 */
+	public CKQuery filter(String fieldName, Comparator comparator, String value) {
+		return filter(fieldName, comparator, "STRING", value);
+	}
+
+	/**
+	 * Adds a filter on an INT64 field.
+	 *
+	 * @param fieldName the field name.
+	 * @param comparator the comparator.
+	 * @param value the value.
+	 * @return this query.
+	 */
+	public CKQuery filter(String fieldName, Comparator comparator, long value) {
+		return filter(fieldName, comparator, "INT64", value);
+	}
+
+	/**
+	 * Adds a filter on a DOUBLE field.
+	 *
+	 * @param fieldName the field name.
+	 * @param comparator the comparator.
+	 * @param value the value.
+	 * @return this query.
+	 */
+	public CKQuery filter(String fieldName, Comparator comparator, double value) {
+		return filter(fieldName, comparator, "DOUBLE", value);
+	}
+
+	/**
+	 * Adds a filter on a TIMESTAMP field.
+	 *
+	 * @param fieldName the field name.
+	 * @param comparator the comparator.
+	 * @param timestamp the time in milliseconds since the epoch.
+	 * @return this query.
+	 */
+	public CKQuery filterTimestamp(String fieldName, Comparator comparator, long timestamp) {
+		return filter(fieldName, comparator, "TIMESTAMP", timestamp);
+	}
+
+	/**
+	 * Adds a filter with an explicit field type.
+	 *
+	 * @param fieldName the field name.
+	 * @param comparator the comparator.
+	 * @param type the CloudKit field type, e.g. "STRING_LIST".
+	 * @param value the value: a string, number, boolean, or a collection of those.
+	 * @return this query.
+	 */
+	public CKQuery filter(String fieldName, Comparator comparator, String type, Object value) {
+		filters.add(new Filter(fieldName, comparator, type, value));
+		return this;
+	}
+
+	/**
+	 * Adds a sort order. Sort orders apply in the order they are added.
+	 *
+	 * @param fieldName the field name.
+	 * @param ascending true to sort in ascending order.
+	 * @return this query.
+	 */
+	public CKQuery sortBy(String fieldName, boolean ascending) {
+		sorts.add(new Sort(fieldName, ascending));
+		return this;
+	}
+
+	/**
+	 * Sets the maximum number of records per page.
+	 *
+	 * @param resultsLimit the limit, or zero for the server default.
+	 * @return this query.
+	 */
+	public CKQuery resultsLimit(int resultsLimit) {
+		if (resultsLimit < 0)
+			throw new IllegalArgumentException("resultsLimit must not be negative");
+		this.resultsLimit = resultsLimit;
+		return this;
+	}
+
+	/**
+	 * Sets the fields to return. Records only carry these fields, which makes responses much smaller.
+	 *
+	 * @param desiredKeys the field names.
+	 * @return this query.
+	 */
+	public CKQuery desiredKeys(String... desiredKeys) {
+		return desiredKeys(Arrays.asList(desiredKeys));
+	}
+
+	/**
+	 * Sets the fields to return.
+	 *
+	 * @param desiredKeys the field names.
+	 * @return this query.
+	 */
+	public CKQuery desiredKeys(Collection<String> desiredKeys) {
+		this.desiredKeys = Collections.unmodifiableList(new ArrayList<>(desiredKeys));
+		return this;
+	}
+
+	/**
+	 * Creates a copy of this query, to be refined without changing this one.
+	 *
+	 * @return the copy.
+	 */
+	public CKQuery copy() {
+		CKQuery copy = new CKQuery(recordType);
+		copy.zoneName = zoneName;
+		copy.ownerRecordName = ownerRecordName;
+		copy.filters.addAll(filters);
+		copy.sorts.addAll(sorts);
+		copy.resultsLimit = resultsLimit;
+		copy.desiredKeys = desiredKeys;
+		return copy;
+	}
+
+	/**
+	 * Splits this query into queries over consecutive ranges of a TIMESTAMP field, for
+	 * {@link CKDatabaseService#queryPartitioned(List, int, boolean)}.
+	 *
+	 * @param fieldName the TIMESTAMP field, e.g. "assetDate".
+	 * @param from the start of the range in milliseconds since the epoch, inclusive.
+	 * @param to the end of the range in milliseconds since the epoch, exclusive.
+	 * @param partitions the number of partitions.
+	 * @return the partition queries, in the order of the range.
+	 */
+	public List<CKQuery> partitionByTime(String fieldName, long from, long to, int partitions) {
+		if (partitions < 1)
+			throw new IllegalArgumentException("partitions must be at least 1");
+		if (to <= from)
+			throw new IllegalArgumentException("to must be after from");
+
+		List<CKQuery> result = new ArrayList<>(partitions);
+		long span = to - from;
+		long start = from;
+		for (int i = 1; i <= partitions; i++) {
+			long end = i == partitions ? to : from + (long) ((double) span * i / partitions);
+			if (end > start) {
+				result.add(copy().filterTimestamp(fieldName, Comparator.GREATER_THAN_OR_EQUALS, start)
+					.filterTimestamp(fieldName, Comparator.LESS_THAN, end));
+				start = end;
+			}
+		}
+		return result;
+	}
+
+	public String getRecordType() {
+		return recordType;
+	}
+
+	public String getZoneName() {
+		return zoneName;
+	}
+
+	public int getResultsLimit() {
+		return resultsLimit;
+	}
+
+	/**
+	 * Gets the fields to return.
+	 *
+	 * @return the field names, or null if all fields are returned.
+	 */
+	public List<String> getDesiredKeys() {
+		return desiredKeys;
+	}
+
+	/**
+	 * Writes the query request body.
+	 *
+	 * @param writer the JSON writer.
+	 * @param continuationMarker the continuation marker of the page to fetch, or null for the first page.
+	 * @throws IOException if writing failed.
+	 */
+	public void writeTo(JsonWriter writer, String continuationMarker) throws IOException {
+		if (desiredKeys == null && warnedRecordTypes.add(recordType))
+			logger.warn("query for " + recordType + " has no desiredKeys, records will carry all their fields");
+
+		writer.beginObject();
+
+		writer.name("query").beginObject();
+		writer.name("recordType").value(recordType);
+		if (!filters.isEmpty()) {
+			writer.name("filterBy").beginArray();
+			for (Filter filter : filters)
+				filter.writeTo(writer);
+			writer.endArray();
+		}
+		if (!sorts.isEmpty()) {
+			writer.name("sortBy").beginArray();
+			for (Sort sort : sorts)
+				writer.beginObject().name("fieldName").value(sort.fieldName).name("ascending").value(sort.ascending).endObject();
+			writer.endArray();
+		}
+		writer.endObject();
+
+		if (zoneName != null) {
+			writer.name("zoneID").beginObject().name("zoneName").value(zoneName);
+			if (ownerRecordName != null)
+				writer.name("ownerRecordName").value(ownerRecordName);
+			writer.endObject();
+		}
+
+		if (desiredKeys != null) {
+			writer.name("desiredKeys").beginArray();
+			for (String key : desiredKeys)
+				writer.value(key);
+			writer.endArray();
+		}
+
+		if (resultsLimit > 0)
+			writer.name("resultsLimit").value(resultsLimit);
+
+		if (continuationMarker != null)
+			writer.name("continuationMarker").value(continuationMarker);
+
+		writer.endObject();
+	}
+
+	/**
+	 * Creates a request entity writing this query as it is sent.
+	 *
+	 * @param continuationMarker the continuation marker of the page to fetch, or null for the first page.
+	 * @return the entity.
+	 */
+	public HttpEntity toEntity(String continuationMarker) {
+		return new CKRequestEntity(writer -> writeTo(writer, continuationMarker));
+	}
+
+	@Override
+	public String toString() {
+		return "CKQuery [recordType=" + recordType + ", zoneName=" + zoneName + ", filters=" + filters + ", sorts="
+			+ sorts + ", resultsLimit=" + resultsLimit + ", desiredKeys=" + desiredKeys + "]";
+	}
+
+	private static class Filter {
+
+		final String fieldName;
+		final Comparator comparator;
+		final String type;
+		final Object value;
+
+		Filter(String fieldName, Comparator comparator, String type, Object value) {
+			this.fieldName = fieldName;
+			this.comparator = comparator;
+			this.type = type;
+			this.value = value;
+		}
+
+		void writeTo(JsonWriter writer) throws IOException {
+			writer.beginObject();
+			writer.name("fieldName").value(fieldName);
+			writer.name("comparator").value(comparator.name());
+			writer.name("fieldValue").beginObject();
+			writer.name("type").value(type);
+			writer.name("value");
+			writeValue(writer, value);
+			writer.endObject();
+			writer.endObject();
+		}
+
+		private static void writeValue(JsonWriter writer, Object value) throws IOException {
+			if (value == null) {
+				writer.nullValue();
+			} else if (value instanceof Number) {
+				writer.value((Number) value);
+			} else if (value instanceof Boolean) {
+				writer.value((Boolean) value);
+			} else if (value instanceof Collection) {
+				writer.beginArray();
+				for (Object element : (Collection<?>) value)
+					writeValue(writer, element);
+				writer.endArray();
+			} else {
+				writer.value(value.toString());
+			}
+		}
+
+		@Override
+		public String toString() {
+			return fieldName + " " + comparator + " " + value;
+		}
+	}
+
+	private static class Sort {
+
+		final String fieldName;
+		final boolean ascending;
+
+		Sort(String fieldName, boolean ascending) {
+			this.fieldName = fieldName;
+			this.ascending = ascending;
+		}
+
+		@Override
+		public String toString() {
+			return fieldName + (ascending ? " ASC" : " DESC");
+		}
+	}
+}
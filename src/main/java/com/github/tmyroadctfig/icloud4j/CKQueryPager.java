@@ -0,0 +1,181 @@
+package com.github.tmyroadctfig.icloud4j;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.github.tmyroadctfig.icloud4j.json.CKRecord;
+import com.github.tmyroadctfig.icloud4j.json.CKResponse;
+import com.google.common.base.Throwables;
+
+/**
+ * Iterates over all pages of a CloudKit query, following the continuation markers.
+ *
+ * Up to the prefetch depth pages are requested ahead of the page being consumed, so network time overlaps with the
+ * caller's processing. Since each page needs the marker of the previous one, prefetched pages are fetched one after
+ * the other; memory use is bounded by the page size times the prefetch depth.
+ *
+ * @author patchpump
+ */
+class CKQueryPager implements Iterator<CKRecord> {
+
+	private final Function<String, CompletableFuture<CKResponse>> fetchPage;
+	private final int prefetchDepth;
+
+	private final Deque<CompletableFuture<CKResponse>> pages = new ArrayDeque<>();
+	private boolean started;
+	private boolean fetching;
+	private boolean exhausted;
+	private boolean closed;
+	private String nextMarker;
+
+	private Iterator<CKRecord> current = Collections.emptyIterator();
+
+	/**
+	 * Creates a new pager.
+	 *
+	 * @param fetchPage fetches the page for a continuation marker, null for the first page.
+	 * @param prefetchDepth the number of pages to request ahead of the page being consumed.
+	 */
+	CKQueryPager(Function<String, CompletableFuture<CKResponse>> fetchPage, int prefetchDepth) {
+		if (prefetchDepth < 0)
+			throw new IllegalArgumentException("prefetchDepth must not be negative");
+		this.fetchPage = fetchPage;
+		this.prefetchDepth = prefetchDepth;
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (!current.hasNext()) {
+			CompletableFuture<CKResponse> page = takePage();
+			if (page == null)
+				return false;
+
+			CKResponse response;
+			try {
+				response = page.join();
+			} catch (CompletionException e) {
+				close();
+				throw Throwables.propagate(e.getCause());
+			}
+
+			if (response == null) {
+				close();
+				throw new ICloudException("CloudKit query returned no response");
+			}
+			if (response.getServerErrorCode() != null) {
+				close();
+				throw new ICloudException("CloudKit query failed: " + response.getServerErrorCode() + " "
+					+ response.getReason());
+			}
+			current = response.getRecords().iterator();
+		}
+		return true;
+	}
+
+	@Override
+	public CKRecord next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		return current.next();
+	}
+
+	/**
+	 * Takes the next page, requesting it first if it has not been prefetched.
+	 *
+	 * @return the future page, or null if all pages have been consumed.
+	 */
+	private synchronized CompletableFuture<CKResponse> takePage() {
+		// the last page taken may have completed before its continuation marker was read
+		while (!closed && pages.isEmpty() && fetching) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw Throwables.propagate(e);
+			}
+		}
+
+		if (closed)
+			return null;
+
+		if (pages.isEmpty() && !fetching && (!started || !exhausted))
+			request();
+
+		CompletableFuture<CKResponse> page = pages.poll();
+		prefetch();
+		return page;
+	}
+
+	private synchronized void prefetch() {
+		while (!closed && !fetching && !exhausted && pages.size() < prefetchDepth)
+			request();
+	}
+
+	private synchronized void request() {
+		String marker = nextMarker;
+		started = true;
+		fetching = true;
+
+		CompletableFuture<CKResponse> page;
+		try {
+			page = fetchPage.apply(marker);
+		} catch (RuntimeException e) {
+			page = new CompletableFuture<>();
+			page.completeExceptionally(e);
+		}
+		pages.add(page);
+		page.whenComplete(this::onPage);
+	}
+
+	private synchronized void onPage(CKResponse response, Throwable t) {
+		fetching = false;
+		try {
+			if (t != null || response == null || response.getServerErrorCode() != null) {
+				exhausted = true;
+				return;
+			}
+
+			nextMarker = response.getContinuationMarker();
+			exhausted = nextMarker == null;
+			prefetch();
+
+		} finally {
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Stops prefetching and cancels pages requested but not consumed. Pages fetched with
+	 * {@link ICloudService#executeAsync(org.apache.http.client.methods.HttpUriRequest, Class)} abort their HTTP
+	 * exchange when cancelled.
+	 */
+	synchronized void close() {
+		closed = true;
+		notifyAll();
+		for (CompletableFuture<CKResponse> page : pages)
+			page.cancel(true);
+		pages.clear();
+		current = Collections.emptyIterator();
+	}
+
+	/**
+	 * Returns a lazy stream over the records of all pages, cancelling prefetched pages when it is closed.
+	 *
+	 * @return the stream.
+	 */
+	Stream<CKRecord> stream() {
+		return StreamSupport.stream(
+			Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+			.onClose(this::close);
+	}
+}
@@ -0,0 +1,204 @@
+package com.github.tmyroadctfig.icloud4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+
+import com.github.tmyroadctfig.icloud4j.json.CKRecord;
+import com.github.tmyroadctfig.icloud4j.util.ICloudUtils;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Iterator over the records of a CloudKit response, parsing each record as the response body is read. Only the
+ * current record is held in memory, however many records the response contains.
+ *
+ * The iterator holds a pooled connection until it is exhausted or closed, so it must always be closed. The other
+ * top-level values of the response, such as the continuation marker, are available once the records have been
+ * consumed.
+ *
+ * @author patchpump
+ */
+public class CKRecordIterator implements Iterator<CKRecord>, Closeable {
+
+	private static final TypeAdapter<CKRecord> RECORD_ADAPTER = ICloudUtils.getTypeAdapter(CKRecord.class);
+	private static final TypeAdapter<Object> VALUE_ADAPTER = ICloudUtils.getTypeAdapter(Object.class);
+
+	private final CloseableHttpResponse response;
+	private final JsonReader reader;
+	private final Map<String, Object> values = new HashMap<>();
+	private boolean inRecords;
+	private boolean finished;
+	private CKRecord next;
+
+	/**
+	 * Creates a new iterator over a response. The response is closed when the iterator is.
+	 *
+	 * @param response the response.
+	 * @throws ICloudException if the response has an error status.
+	 */
+	public CKRecordIterator(CloseableHttpResponse response) {
+		this.response = response;
+		try {
+			if (response.getStatusLine().getStatusCode() >= 300)
+				throw ICloudUtils.toICloudException(response);
+
+			HttpEntity entity = response.getEntity();
+			if (entity == null) {
+				reader = null;
+				finished = true;
+				return;
+			}
+
+			reader = new JsonReader(new InputStreamReader(entity.getContent(), StandardCharsets.UTF_8));
+			reader.setLenient(true);
+			reader.beginObject();
+		} catch (IOException | RuntimeException e) {
+			closeQuietly();
+			throw e instanceof IOException ? new UncheckedIOException((IOException) e) : (RuntimeException) e;
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (next != null)
+			return true;
+		if (finished)
+			return false;
+
+		try {
+			next = readNext();
+			return next != null;
+		} catch (IOException e) {
+			closeQuietly();
+			throw new UncheckedIOException(e);
+		} catch (RuntimeException e) {
+			closeQuietly();
+			throw e;
+		}
+	}
+
+	@Override
+	public CKRecord next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+
+		CKRecord result = next;
+		next = null;
+		return result;
+	}
+
+	private CKRecord readNext() throws IOException {
+		while (true) {
+			if (inRecords) {
+				if (reader.hasNext())
+					return RECORD_ADAPTER.read(reader);
+				reader.endArray();
+				inRecords = false;
+			}
+
+			if (!reader.hasNext()) {
+				reader.endObject();
+				finish();
+				return null;
+			}
+
+			String name = reader.nextName();
+			if ("records".equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+				reader.beginArray();
+				inRecords = true;
+			} else {
+				values.put(name, VALUE_ADAPTER.read(reader));
+			}
+		}
+	}
+
+	private void finish() throws IOException {
+		finished = true;
+		close();
+
+		if (values.containsKey("serverErrorCode")) {
+			Map<String, Object> errorMap = new HashMap<>(values);
+			errorMap.values().removeIf(Objects::isNull);
+			throw new ICloudException(response, ICloudUtils.stringifyMap(errorMap));
+		}
+	}
+
+	/**
+	 * Gets the continuation marker of the response, for fetching the next page of a query.
+	 *
+	 * @return the continuation marker, or null if there are no more results or the records have not all been
+	 *         consumed yet.
+	 */
+	public String getContinuationMarker() {
+		Object marker = values.get("continuationMarker");
+		return marker instanceof String ? (String) marker : null;
+	}
+
+	/**
+	 * Gets the top-level values of the response other than the records read so far, e.g. "syncToken".
+	 *
+	 * @return the values.
+	 */
+	public Map<String, Object> getValues() {
+		return values;
+	}
+
+	/**
+	 * Returns a sequential stream over the remaining records, closing this iterator when it is closed.
+	 *
+	 * @return the stream.
+	 */
+	public Stream<CKRecord> stream() {
+		return StreamSupport.stream(
+			Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+			.onClose(this::closeQuietly);
+	}
+
+	@Override
+	public void close() throws IOException {
+		boolean abandoned = !finished;
+		finished = true;
+		next = null;
+
+		if (abandoned) {
+			// a body that has not been read to the end is not drained, the connection is dropped instead
+			response.close();
+			try {
+				if (reader != null)
+					reader.close();
+			} catch (IOException ignore) {
+			}
+			return;
+		}
+
+		try {
+			if (reader != null)
+				reader.close();
+		} finally {
+			response.close();
+		}
+	}
+
+	private void closeQuietly() {
+		try {
+			close();
+		} catch (IOException ignore) {
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package com.github.tmyroadctfig.icloud4j;
+
+import com.github.tmyroadctfig.icloud4j.json.CKAsset;
+import com.github.tmyroadctfig.icloud4j.json.CKRecord;
+
+/**
+ * Photo renditions of a CPLMaster record, from the smallest to the largest.
+ *
+ * @author patchpump
+ */
+public enum CKRendition {
+
+	THUMBNAIL("resJPEGThumb"),
+	MEDIUM("resJPEGMed"),
+	ORIGINAL("resOriginal");
+
+	private final String fieldPrefix;
+
+	private CKRendition(String fieldPrefix) {
+		this.fieldPrefix = fieldPrefix;
+	}
+
+	/**
+	 * Gets the asset field, e.g. "resJPEGThumbRes".
+	 *
+	 * @return the field name.
+	 */
+	public String getAssetField() {
+		return fieldPrefix + "Res";
+	}
+
+	/**
+	 * Gets the width field, e.g. "resJPEGThumbWidth".
+	 *
+	 * @return the field name.
+	 */
+	public String getWidthField() {
+		return fieldPrefix + "Width";
+	}
+
+	/**
+	 * Gets the height field, e.g. "resJPEGThumbHeight".
+	 *
+	 * @return the field name.
+	 */
+	public String getHeightField() {
+		return fieldPrefix + "Height";
+	}
+
+	/**
+	 * Gets the asset of this rendition.
+	 *
+	 * @param record the record.
+	 * @return the asset, or null if the record has no such rendition.
+	 */
+	public CKAsset getAsset(CKRecord record) {
+		return record.getAsset(getAssetField());
+	}
+
+	/**
+	 * Gets the longer edge of this rendition.
+	 *
+	 * @param record the record.
+	 * @return the longer edge in pixels, or -1 if unknown.
+	 */
+	public long getLongEdge(CKRecord record) {
+		return Math.max(record.getLongValue(getWidthField(), -1), record.getLongValue(getHeightField(), -1));
+	}
+}
@@ -0,0 +1,130 @@
+package com.github.tmyroadctfig.icloud4j;
+
+import com.github.tmyroadctfig.icloud4j.json.CKAsset;
+import com.github.tmyroadctfig.icloud4j.json.CKRecord;
+
+/**
+ * Picks the smallest photo rendition of a record that is large enough, so bulk downloads for previews don't pull
+ * originals:
+ *
+ * <pre>
+ * CKRenditionSelector previews = CKRenditionSelector.forPixelSize(512).withByteBudget(200 * 1024);
+ * job.download(record, previews, target);
+ * </pre>
+ *
+ * A rendition is suitable if its longer edge is at least the target pixel size and its asset fits the byte budget.
+ * If no rendition is suitable, the largest one within the budget is picked, and failing that the smallest one. An
+ * original of unknown pixel size counts as large enough, and an asset of unknown byte size fits any budget.
+ * Queries should include the asset, width and height fields of the renditions in their desiredKeys.
+ *
+ * @author patchpump
+ */
+public class CKRenditionSelector {
+
+	private final int minLongEdge;
+	private final long byteBudget;
+
+	private CKRenditionSelector(int minLongEdge, long byteBudget) {
+		this.minLongEdge = minLongEdge;
+		this.byteBudget = byteBudget;
+	}
+
+	/**
+	 * Creates a selector for renditions with a longer edge of at least the given size.
+	 *
+	 * @param minLongEdge the target size in pixels.
+	 * @return the selector.
+	 */
+	public static CKRenditionSelector forPixelSize(int minLongEdge) {
+		if (minLongEdge < 0)
+			throw new IllegalArgumentException("minLongEdge must not be negative");
+		return new CKRenditionSelector(minLongEdge, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Creates a selector for the largest rendition within the given size.
+	 *
+	 * @param byteBudget the maximum asset size in bytes.
+	 * @return the selector.
+	 */
+	public static CKRenditionSelector forByteBudget(long byteBudget) {
+		return new CKRenditionSelector(Integer.MAX_VALUE, 0).withByteBudget(byteBudget);
+	}
+
+	/**
+	 * Creates a selector with the same target pixel size and a byte budget.
+	 *
+	 * @param byteBudget the maximum asset size in bytes.
+	 * @return the selector.
+	 */
+	public CKRenditionSelector withByteBudget(long byteBudget) {
+		if (byteBudget < 0)
+			throw new IllegalArgumentException("byteBudget must not be negative");
+		return new CKRenditionSelector(minLongEdge, byteBudget);
+	}
+
+	/**
+	 * Gets the target size.
+	 *
+	 * @return the minimum longer edge in pixels, or Integer.MAX_VALUE for a selector by byte budget only.
+	 */
+	public int getMinLongEdge() {
+		return minLongEdge;
+	}
+
+	/**
+	 * Gets the byte budget.
+	 *
+	 * @return the maximum asset size in bytes, or Long.MAX_VALUE if unlimited.
+	 */
+	public long getByteBudget() {
+		return byteBudget;
+	}
+
+	/**
+	 * Selects the rendition of a record.
+	 *
+	 * @param record the record.
+	 * @return the rendition, or null if the record has no rendition.
+	 */
+	public CKRendition select(CKRecord record) {
+		CKRendition smallest = null;
+		CKRendition largestInBudget = null;
+
+		for (CKRendition rendition : CKRendition.values()) {
+			CKAsset asset = rendition.getAsset(record);
+			if (asset == null)
+				continue;
+
+			if (smallest == null)
+				smallest = rendition;
+
+			// unknown sizes are assumed to fit the budget
+			if (asset.getSize() > byteBudget)
+				continue;
+			largestInBudget = rendition;
+
+			long longEdge = rendition.getLongEdge(record);
+			if (longEdge >= minLongEdge || (longEdge < 0 && rendition == CKRendition.ORIGINAL))
+				return rendition;
+		}
+
+		return largestInBudget != null ? largestInBudget : smallest;
+	}
+
+	/**
+	 * Selects the rendition asset of a record.
+	 *
+	 * @param record the record.
+	 * @return the asset, or null if the record has no rendition.
+	 */
+	public CKAsset selectAsset(CKRecord record) {
+		CKRendition rendition = select(record);
+		return rendition == null ? null : rendition.getAsset(record);
+	}
+
+	@Override
+	public String toString() {
+		return "CKRenditionSelector [minLongEdge=" + minLongEdge + ", byteBudget=" + byteBudget + "]";
+	}
+}
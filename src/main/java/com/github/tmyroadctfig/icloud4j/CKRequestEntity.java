@@ -0,0 +1,70 @@
+package com.github.tmyroadctfig.icloud4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * CloudKit request body written as JSON straight to the connection. Repeatable, so requests can be retried.
+ *
+ * @author patchpump
+ */
+class CKRequestEntity extends AbstractHttpEntity {
+
+	/**
+	 * Writes the request body.
+	 */
+	interface Body {
+		void writeTo(JsonWriter writer) throws IOException;
+	}
+
+	private final Body body;
+
+	CKRequestEntity(Body body) {
+		this.body = body;
+		setContentType(ContentType.APPLICATION_JSON.toString());
+		setChunked(true);
+	}
+
+	@Override
+	public boolean isRepeatable() {
+		return true;
+	}
+
+	@Override
+	public long getContentLength() {
+		return -1;
+	}
+
+	/**
+	 * Writes the body to memory for callers reading the entity as a stream, like the async client. The synchronous
+	 * client writes it straight to the connection.
+	 */
+	@Override
+	public InputStream getContent() throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		writeTo(buffer);
+		return new ByteArrayInputStream(buffer.toByteArray());
+	}
+
+	@Override
+	public void writeTo(OutputStream outstream) throws IOException {
+		JsonWriter writer = new JsonWriter(new OutputStreamWriter(outstream, StandardCharsets.UTF_8));
+		body.writeTo(writer);
+		writer.flush();
+	}
+
+	@Override
+	public boolean isStreaming() {
+		return false;
+	}
+}
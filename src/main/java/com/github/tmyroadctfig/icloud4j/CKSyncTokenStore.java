@@ -0,0 +1,33 @@
+package com.github.tmyroadctfig.icloud4j;
+
+/**
+ * Stores CloudKit sync tokens between runs, so change fetches continue where the last one stopped.
+ *
+ * @see CKFileSyncTokenStore
+ * @author patchpump
+ */
+public interface CKSyncTokenStore {
+
+	/**
+	 * Gets a sync token.
+	 *
+	 * @param key the token key, naming the account, database and zone.
+	 * @return the token, or null if none is stored.
+	 */
+	String getToken(String key);
+
+	/**
+	 * Stores a sync token.
+	 *
+	 * @param key the token key.
+	 * @param token the token.
+	 */
+	void putToken(String key, String token);
+
+	/**
+	 * Removes a sync token, so the next change fetch starts from the beginning.
+	 *
+	 * @param key the token key.
+	 */
+	void removeToken(String key);
+}
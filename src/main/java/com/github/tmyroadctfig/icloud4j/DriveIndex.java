@@ -0,0 +1,553 @@
+package com.github.tmyroadctfig.icloud4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+
+import com.github.tmyroadctfig.icloud4j.json.DriveNodeDetails;
+import com.google.common.base.Throwables;
+import com.google.common.io.CountingInputStream;
+
+/**
+ * A local index of the iCloud Drive tree, kept in an append-only log file so listings can be answered offline and a
+ * restart only fetches what changed:
+ *
+ * <pre>
+ * try (DriveIndex index = new DriveIndex(Paths.get("drive.idx"))) {
+ * 	index.refresh(driveService);
+ * 	for (DriveIndex.Entry entry : index.list(index.getRootId())) {
+ * 		...
+ * 	}
+ * }
+ * </pre>
+ *
+ * Each folder records the etag it had when its children were last listed. A refresh lists the root, and any folder
+ * a previous refresh did not get to, and then only descends into folders whose etag differs from the one recorded,
+ * listing each level a batch of folders per request.
+ * This relies on a folder's etag changing whenever anything below it changes; {@link #refresh(DriveService, boolean)}
+ * with a full refresh lists every folder regardless.
+ *
+ * Changes are appended to the log and the log is compacted once most of its records are superseded. A record cut
+ * short by a crash is dropped when the index is opened.
+ *
+ * @author patchpump
+ */
+public class DriveIndex implements Closeable {
+
+	private static final int MAGIC = 0x49434449;
+	private static final int VERSION = 1;
+	private static final byte PUT = 1;
+	private static final byte REMOVE = 2;
+
+	/**
+	 * Log records below which the log is never compacted.
+	 */
+	private static final int MIN_COMPACTION_RECORDS = 1024;
+
+	/**
+	 * An indexed node.
+	 */
+	public static final class Entry {
+
+		private final String id;
+		private final String parentId;
+		private final String name;
+		private final String extension;
+		private final String type;
+		private final long size;
+		private final String etag;
+		private final String dateChanged;
+
+		/**
+		 * The etag of the folder when its children were listed, or null if they never were.
+		 */
+		private final String listedEtag;
+
+		Entry(String id, String parentId, String name, String extension, String type, long size, String etag,
+			String dateChanged, String listedEtag) {
+			this.id = id;
+			this.parentId = parentId;
+			this.name = name;
+			this.extension = extension;
+			this.type = type;
+			this.size = size;
+			this.etag = etag;
+			this.dateChanged = dateChanged;
+			this.listedEtag = listedEtag;
+		}
+
+		static Entry of(DriveNodeDetails details, String parentId, String listedEtag) {
+			return new Entry(details.drivewsid, details.parentId != null ? details.parentId : parentId, details.name,
+				details.extension, details.type, details.size, details.etag, details.dateChanged, listedEtag);
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		public String getParentId() {
+			return parentId;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public String getExtension() {
+			return extension;
+		}
+
+		/**
+		 * Gets the type.
+		 *
+		 * @return the type, e.g. "FOLDER" or "FILE".
+		 */
+		public String getType() {
+			return type;
+		}
+
+		public long getSize() {
+			return size;
+		}
+
+		public String getEtag() {
+			return etag;
+		}
+
+		public String getDateChanged() {
+			return dateChanged;
+		}
+
+		/**
+		 * Checks whether this node has children.
+		 *
+		 * @return true for folders and app libraries.
+		 */
+		public boolean isFolder() {
+			return "FOLDER".equals(type) || "APP_LIBRARY".equals(type);
+		}
+
+		/**
+		 * Checks whether the children of this folder were listed at its current etag.
+		 *
+		 * @return true if the indexed children are up to date.
+		 */
+		public boolean isListed() {
+			return etag != null && etag.equals(listedEtag);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Entry))
+				return false;
+			Entry other = (Entry) o;
+			return size == other.size && id.equals(other.id) && Objects.equals(parentId, other.parentId)
+				&& Objects.equals(name, other.name) && Objects.equals(extension, other.extension)
+				&& Objects.equals(type, other.type) && Objects.equals(etag, other.etag)
+				&& Objects.equals(dateChanged, other.dateChanged) && Objects.equals(listedEtag, other.listedEtag);
+		}
+
+		@Override
+		public int hashCode() {
+			return id.hashCode();
+		}
+
+		@Override
+		public String toString() {
+			return "Entry [id=" + id + ", parentId=" + parentId + ", name=" + name + ", extension=" + extension
+				+ ", type=" + type + ", size=" + size + ", etag=" + etag + ", dateChanged=" + dateChanged + "]";
+		}
+	}
+
+	private final Path file;
+	private final Map<String, Entry> entries = new HashMap<>();
+	private final Map<String, Set<String>> children = new HashMap<>();
+
+	private DataOutputStream log;
+	private long logRecords;
+
+	/**
+	 * Opens an index, reading the log file if it exists.
+	 *
+	 * @param file the log file, created if missing.
+	 * @throws IOException if the log cannot be read.
+	 */
+	public DriveIndex(Path file) throws IOException {
+		if (file == null)
+			throw new IllegalArgumentException("file must not be null");
+		this.file = file;
+		load();
+	}
+
+	private void load() throws IOException {
+		long validLength = 0;
+		try (CountingInputStream counting = new CountingInputStream(new BufferedInputStream(Files.newInputStream(file)));
+			DataInputStream in = new DataInputStream(counting)) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION)
+				throw new IOException("not a drive index: " + file);
+			validLength = counting.getCount();
+
+			while (true) {
+				byte op;
+				try {
+					op = in.readByte();
+				} catch (EOFException e) {
+					break;
+				}
+				if (op == PUT)
+					apply(readEntry(in));
+				else if (op == REMOVE)
+					applyRemove(in.readUTF());
+				else
+					throw new IOException("corrupt drive index record at " + validLength + ": " + file);
+				logRecords++;
+				validLength = counting.getCount();
+			}
+		} catch (NoSuchFileException e) {
+			// new index
+		} catch (EOFException e) {
+			// the last record was cut short
+		}
+
+		if (validLength == 0) {
+			rewrite();
+			return;
+		}
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			if (channel.size() > validLength)
+				channel.truncate(validLength);
+		}
+
+		// a cut short removal can leave nodes whose parent is gone
+		List<String> orphans = new ArrayList<>();
+		for (Entry entry : entries.values()) {
+			if (entry.parentId != null && !entries.containsKey(entry.parentId))
+				orphans.add(entry.id);
+		}
+		for (String id : orphans)
+			removeTree(id, false);
+
+		log = open(Files.newOutputStream(file, StandardOpenOption.APPEND));
+	}
+
+	private static DataOutputStream open(OutputStream out) {
+		return new DataOutputStream(new BufferedOutputStream(out));
+	}
+
+	/**
+	 * Gets the ID of the drive root.
+	 *
+	 * @return the root ID.
+	 */
+	public String getRootId() {
+		return DriveService.ROOT_ID;
+	}
+
+	/**
+	 * Gets an indexed node.
+	 *
+	 * @param id the node ID.
+	 * @return the entry, or null if not indexed.
+	 */
+	public synchronized Entry get(String id) {
+		return entries.get(id);
+	}
+
+	/**
+	 * Lists the indexed children of a folder without a request.
+	 *
+	 * @param folderId the folder ID.
+	 * @return the children, empty if the folder is not indexed or was never listed.
+	 */
+	public synchronized List<Entry> list(String folderId) {
+		Set<String> ids = children.get(folderId);
+		if (ids == null)
+			return Collections.emptyList();
+
+		List<Entry> result = new ArrayList<>(ids.size());
+		for (String id : ids)
+			result.add(entries.get(id));
+		return result;
+	}
+
+	/**
+	 * Gets the number of indexed nodes.
+	 *
+	 * @return the number of nodes.
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public Path getFile() {
+		return file;
+	}
+
+	/**
+	 * Brings the index up to date, descending only into folders whose etag changed.
+	 *
+	 * @param driveService the drive service.
+	 * @return the number of folders listed.
+	 */
+	public int refresh(DriveService driveService) {
+		return refresh(driveService, false);
+	}
+
+	/**
+	 * Brings the index up to date. The index is locked while refreshing.
+	 *
+	 * @param driveService the drive service.
+	 * @param full true to list every folder, false to descend only into folders whose etag changed.
+	 * @return the number of folders listed.
+	 */
+	public synchronized int refresh(DriveService driveService, boolean full) {
+		try {
+			int listed = 0;
+			Set<String> visited = new HashSet<>();
+			List<String> frontier = getUnlistedFolders();
+			while (!frontier.isEmpty()) {
+				visited.addAll(frontier);
+				Map<String, DriveNodeDetails> folders;
+				try {
+					folders = driveService.fetchNodeDetailsAsync(frontier).join();
+				} catch (CompletionException e) {
+					throw Throwables.propagate(e.getCause());
+				}
+
+				List<String> next = new ArrayList<>();
+				for (Map.Entry<String, DriveNodeDetails> folder : folders.entrySet()) {
+					if (folder.getValue().items != null) {
+						listed++;
+						for (String id : update(folder.getKey(), folder.getValue(), full)) {
+							if (!visited.contains(id))
+								next.add(id);
+						}
+					}
+				}
+				frontier = next;
+			}
+
+			log.flush();
+			if (logRecords > MIN_COMPACTION_RECORDS && logRecords > 2L * entries.size())
+				compact();
+			return listed;
+
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Gets the folders a refresh starts from: the root, and any folder whose children are out of date. A refresh cut
+	 * short leaves the changed folders below the last listed level out of date, and those may not be reached from
+	 * the root again since their parents are up to date.
+	 */
+	private List<String> getUnlistedFolders() {
+		List<String> folders = new ArrayList<>();
+		folders.add(getRootId());
+		for (Entry entry : entries.values()) {
+			if (entry.isFolder() && !entry.isListed() && !entry.id.equals(getRootId()))
+				folders.add(entry.id);
+		}
+		return folders;
+	}
+
+	/**
+	 * Updates a folder and its children from a fresh listing. The folder is marked listed after its children are
+	 * logged, so a log cut short in between lists it again.
+	 *
+	 * @return the subfolders to descend into.
+	 */
+	private List<String> update(String folderId, DriveNodeDetails folder, boolean full) throws IOException {
+		List<String> descend = new ArrayList<>();
+		Set<String> seen = new HashSet<>();
+		for (DriveNodeDetails item : folder.items) {
+			if (item.drivewsid == null)
+				continue;
+			seen.add(item.drivewsid);
+
+			Entry old = entries.get(item.drivewsid);
+			Entry entry = Entry.of(item, folderId, old != null ? old.listedEtag : null);
+			put(entry);
+			if (entry.isFolder() && (full || !entry.isListed()))
+				descend.add(entry.id);
+		}
+
+		Set<String> indexed = children.get(folderId);
+		if (indexed != null) {
+			for (String id : new ArrayList<>(indexed)) {
+				if (!seen.contains(id))
+					remove(id);
+			}
+		}
+
+		// keep the fields from the parent listing, which is where the other nodes get theirs
+		Entry current = entries.get(folderId);
+		put(current == null ? Entry.of(folder, null, folder.etag) : new Entry(current.id, current.parentId,
+			current.name, current.extension, current.type, current.size, folder.etag, current.dateChanged, folder.etag));
+		return descend;
+	}
+
+	private void put(Entry entry) throws IOException {
+		if (entry.equals(entries.get(entry.id)))
+			return;
+
+		log.writeByte(PUT);
+		writeEntry(log, entry);
+		logRecords++;
+		apply(entry);
+	}
+
+	/**
+	 * Removes a node and everything below it.
+	 */
+	private void remove(String id) throws IOException {
+		removeTree(id, true);
+	}
+
+	private void removeTree(String id, boolean logged) throws IOException {
+		Deque<String> pending = new ArrayDeque<>();
+		pending.push(id);
+		while (!pending.isEmpty()) {
+			String next = pending.pop();
+			Set<String> below = children.get(next);
+			if (below != null)
+				below.forEach(pending::push);
+
+			if (logged) {
+				log.writeByte(REMOVE);
+				log.writeUTF(next);
+				logRecords++;
+			}
+			applyRemove(next);
+		}
+	}
+
+	private void apply(Entry entry) {
+		Entry old = entries.put(entry.id, entry);
+		if (old != null && old.parentId != null && !old.parentId.equals(entry.parentId)) {
+			Set<String> siblings = children.get(old.parentId);
+			if (siblings != null)
+				siblings.remove(entry.id);
+		}
+		if (entry.parentId != null)
+			children.computeIfAbsent(entry.parentId, parentId -> new LinkedHashSet<>()).add(entry.id);
+	}
+
+	private void applyRemove(String id) {
+		Entry old = entries.remove(id);
+		if (old != null && old.parentId != null) {
+			Set<String> siblings = children.get(old.parentId);
+			if (siblings != null)
+				siblings.remove(id);
+		}
+		children.remove(id);
+	}
+
+	/**
+	 * Rewrites the log with one record per indexed node.
+	 *
+	 * @throws IOException if the log cannot be written.
+	 */
+	public synchronized void compact() throws IOException {
+		rewrite();
+	}
+
+	private void rewrite() throws IOException {
+		if (log != null)
+			log.close();
+
+		Path directory = file.toAbsolutePath().getParent();
+		Files.createDirectories(directory);
+		Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+		try {
+			try (DataOutputStream out = open(Files.newOutputStream(temp))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				for (Entry entry : entries.values()) {
+					out.writeByte(PUT);
+					writeEntry(out, entry);
+				}
+			}
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+
+		logRecords = entries.size();
+		log = open(Files.newOutputStream(file, StandardOpenOption.APPEND));
+	}
+
+	private static void writeEntry(DataOutputStream out, Entry entry) throws IOException {
+		out.writeUTF(entry.id);
+		writeString(out, entry.parentId);
+		writeString(out, entry.name);
+		writeString(out, entry.extension);
+		writeString(out, entry.type);
+		out.writeLong(entry.size);
+		writeString(out, entry.etag);
+		writeString(out, entry.dateChanged);
+		writeString(out, entry.listedEtag);
+	}
+
+	private static Entry readEntry(DataInputStream in) throws IOException {
+		String id = in.readUTF();
+		String parentId = readString(in);
+		String name = readString(in);
+		String extension = readString(in);
+		String type = readString(in);
+		long size = in.readLong();
+		String etag = readString(in);
+		String dateChanged = readString(in);
+		String listedEtag = readString(in);
+		return new Entry(id, parentId, name, extension, type, size, etag, dateChanged, listedEtag);
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null)
+			out.writeUTF(value);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	/**
+	 * Flushes and closes the log.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		log.close();
+	}
+
+	@Override
+	public String toString() {
+		return "DriveIndex [file=" + file + ", size=" + size() + "]";
+	}
+}
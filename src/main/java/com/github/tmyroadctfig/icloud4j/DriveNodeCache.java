@@ -0,0 +1,181 @@
+package com.github.tmyroadctfig.icloud4j;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.tmyroadctfig.icloud4j.json.DriveNodeDetails;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * A bounded cache of iCloud Drive folder listings, keyed by drivewsid:
+ *
+ * <pre>
+ * driveService.setNodeCache(new DriveNodeCache(100_000, 5, TimeUnit.MINUTES));
+ * </pre>
+ *
+ * Listings are weighed by their number of items and kept until they expire or are evicted. The listing of a folder
+ * carries the etag of each subfolder, so every listing fetched also revalidates the cached listings of its subfolders:
+ * those with the same etag are kept for another expiry period and those with a changed etag are dropped.
+ *
+ * The cached details are shared between callers and must not be modified.
+ *
+ * @author patchpump
+ */
+public class DriveNodeCache {
+
+	/**
+	 * The default maximum weight, in listed items.
+	 */
+	public static final long DEFAULT_MAXIMUM_WEIGHT = 100_000;
+
+	/**
+	 * The default time a listing is kept without being revalidated.
+	 */
+	public static final long DEFAULT_EXPIRY_SECONDS = 60;
+
+	private final Cache<String, DriveNodeDetails> cache;
+	private final ConcurrentMap<String, DriveNodeDetails> map;
+
+	private final LongAdder revalidations = new LongAdder();
+	private final LongAdder etagInvalidations = new LongAdder();
+
+	/**
+	 * Creates a new cache with the default maximum weight and expiry.
+	 */
+	public DriveNodeCache() {
+		this(DEFAULT_MAXIMUM_WEIGHT, DEFAULT_EXPIRY_SECONDS, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Creates a new cache.
+	 *
+	 * @param maximumWeight the most listed items kept, counting each listing as one plus its number of items.
+	 * @param expiry the time a listing is kept without being revalidated.
+	 * @param unit the unit of the expiry.
+	 */
+	public DriveNodeCache(long maximumWeight, long expiry, TimeUnit unit) {
+		this(maximumWeight, expiry, unit, Ticker.systemTicker());
+	}
+
+	/**
+	 * Creates a new cache reading the time from a ticker, for testing expiry.
+	 */
+	DriveNodeCache(long maximumWeight, long expiry, TimeUnit unit, Ticker ticker) {
+		if (maximumWeight < 1)
+			throw new IllegalArgumentException("maximumWeight must be at least 1");
+		if (expiry < 1)
+			throw new IllegalArgumentException("expiry must be at least 1");
+
+		this.cache = CacheBuilder.newBuilder()
+			.maximumWeight(maximumWeight)
+			.weigher((String id, DriveNodeDetails details) -> 1 + details.items.length)
+			.expireAfterWrite(expiry, unit)
+			.ticker(ticker)
+			.recordStats()
+			.build();
+		this.map = cache.asMap();
+	}
+
+	/**
+	 * Gets a cached listing, counting a hit or a miss.
+	 *
+	 * @param nodeId the node ID.
+	 * @return the listing, or null if not cached.
+	 */
+	DriveNodeDetails get(String nodeId) {
+		return cache.getIfPresent(nodeId);
+	}
+
+	/**
+	 * Caches a fetched listing and revalidates the cached listings of its subfolders. Details without items are not
+	 * listings and are ignored.
+	 *
+	 * @param details the details fetched.
+	 */
+	void put(DriveNodeDetails details) {
+		if (details.drivewsid == null || details.items == null)
+			return;
+
+		cache.put(details.drivewsid, details);
+
+		for (DriveNodeDetails item : details.items) {
+			if (item.drivewsid == null || item.etag == null)
+				continue;
+
+			// read through the map so revalidation does not count as hits or misses
+			DriveNodeDetails cached = map.get(item.drivewsid);
+			if (cached == null)
+				continue;
+
+			if (item.etag.equals(cached.etag)) {
+				// rewriting the same listing restarts its expiry
+				if (map.replace(item.drivewsid, cached, cached))
+					revalidations.increment();
+			} else if (map.remove(item.drivewsid, cached)) {
+				etagInvalidations.increment();
+			}
+		}
+	}
+
+	/**
+	 * Drops the cached listing of a folder. Call after changing the folder's contents.
+	 *
+	 * @param nodeId the folder ID.
+	 */
+	public void invalidate(String nodeId) {
+		cache.invalidate(nodeId);
+	}
+
+	/**
+	 * Drops all cached listings.
+	 */
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+
+	/**
+	 * Gets the number of cached listings.
+	 *
+	 * @return the number of listings.
+	 */
+	public long size() {
+		return cache.size();
+	}
+
+	/**
+	 * Gets the hit, miss and eviction counts.
+	 *
+	 * @return the statistics.
+	 */
+	public CacheStats getStats() {
+		return cache.stats();
+	}
+
+	/**
+	 * Gets the number of cached listings kept because a parent listing showed their etag unchanged.
+	 *
+	 * @return the number of revalidations.
+	 */
+	public long getRevalidations() {
+		return revalidations.sum();
+	}
+
+	/**
+	 * Gets the number of cached listings dropped because a parent listing showed their etag changed.
+	 *
+	 * @return the number of etag invalidations.
+	 */
+	public long getEtagInvalidations() {
+		return etagInvalidations.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "DriveNodeCache [size=" + size() + ", stats=" + getStats() + ", revalidations=" + getRevalidations()
+			+ ", etagInvalidations=" + getEtagInvalidations() + "]";
+	}
+}
@@ -1,132 +1,525 @@
-/*
- *    Copyright 2016 Luke Quinane
- *
- *    Licensed under the Apache License, Version 2.0 (the "License");
- *    you may not use this file except in compliance with the License.
- *    You may obtain a copy of the License at
- *
- *    http://www.apache.org/licenses/LICENSE-2.0
- *
- *    Unless required by applicable law or agreed to in writing, software
- *    distributed under the License is distributed on an "AS IS" BASIS,
- *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- *    See the License for the specific language governing permissions and
- *    limitations under the License.
- */
-
-package com.github.tmyroadctfig.icloud4j;
-
-import com.github.tmyroadctfig.icloud4j.json.DriveNodeDetails;
-import com.github.tmyroadctfig.icloud4j.util.ICloudUtils;
-import com.google.common.base.Throwables;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.StringEntity;
-
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
-/**
- * Access to the iCloud Drive service.
- *
- * @author Luke Quinanne
- */
-public class DriveService {
-	/**
-	 * The iCloud service.
-	 */
-	private final ICloudService iCloudService;
-
-	/**
-	 * The service root URL.
-	 */
-	private final String serviceRoot;
-
-	/**
-	 * The 'docs' service URL.
-	 */
-	private final String docsServiceRoot;
-
-	/**
-	 * Creates a new drive service.
-	 *
-	 * @param iCloudService the iCloud service.
-	 */
-	public DriveService(ICloudService iCloudService) {
-		this.iCloudService = iCloudService;
-		@SuppressWarnings("unchecked")
-		Map<String, Object> driveSettings = (Map<String, Object>) iCloudService.getWebServicesMap().get("drivews");
-		serviceRoot = (String) driveSettings.get("url");
-
-		@SuppressWarnings("unchecked")
-		Map<String, Object> docsSettings = (Map<String, Object>) iCloudService.getWebServicesMap().get("docws");
-		docsServiceRoot = (String) docsSettings.get("url");
-	}
-
-	/**
-	 * Gets the root node.
-	 *
-	 * @return the root node.
-	 */
-	public DriveNode getRoot() {
-		String rootId = "FOLDER::com.apple.CloudDocs::root";
-		return new DriveNode(iCloudService, this, rootId, getNodeDetails(rootId));
-	}
-
-	/**
-	 * Gets the node details.
-	 *
-	 * @param nodeId the node ID.
-	 * @return the node details.
-	 */
-	public DriveNodeDetails getNodeDetails(String nodeId) {
-		try {
-			HttpPost post = new HttpPost(serviceRoot + "/retrieveItemDetailsInFolders");
-			iCloudService.populateRequestHeadersParameters(post);
-			post.addHeader("clientMasteringNumber", iCloudService.getClientBuildNumber());
-			post.setEntity(
-				new StringEntity(String.format("[{\"drivewsid\":\"%s\",\"partialData\":false}]", nodeId), "UTF-8"));
-
-			return ICloudUtils.parseJsonResponse(iCloudService.getHttpClient(), post, DriveNodeDetails[].class)[0];
-		} catch (Exception e) {
-			throw Throwables.propagate(e);
-		}
-	}
-
-	/**
-	 * Gets the list of children for a given parent ID.
-	 *
-	 * @param parentId the ID to look up the children for.
-	 * @return the list of children.
-	 */
-	public List<DriveNode> getChildren(String parentId) {
-		DriveNodeDetails nodeDetails = getNodeDetails(parentId);
-		if (nodeDetails.items == null) {
-			return Collections.emptyList();
-		}
-
-		return Stream.of(nodeDetails.items)
-			.map(childDetails -> new DriveNode(iCloudService, this, childDetails.drivewsid, childDetails))
-			.collect(Collectors.toList());
-	}
-
-	/**
-	 * Gets the service URL.
-	 *
-	 * @return the service URL.
-	 */
-	public String getServiceUrl() {
-		return serviceRoot;
-	}
-
-	/**
-	 * Gets the Docs service root URL.
-	 *
-	 * @return the service URL.
-	 */
-	public String getDocsServiceUrl() {
-		return docsServiceRoot;
-	}
-}
+/*
+ *    Copyright 2016 Luke Quinane
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.tmyroadctfig.icloud4j;
+
+import com.github.tmyroadctfig.icloud4j.json.DriveNodeDetails;
+import com.github.tmyroadctfig.icloud4j.util.ICloudUtils;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Access to the iCloud Drive service.
+ *
+ * @author Luke Quinanne
+ */
+public class DriveService {
+	/**
+	 * The root node ID.
+	 */
+	static final String ROOT_ID = "FOLDER::com.apple.CloudDocs::root";
+
+	/**
+	 * The default number of nodes per details request.
+	 */
+	public static final int DEFAULT_NODE_DETAILS_BATCH_SIZE = 64;
+
+	/**
+	 * The default time node details requests are gathered for when coalescing.
+	 */
+	public static final long DEFAULT_COALESCING_WINDOW_MILLIS = 2;
+
+	/**
+	 * The iCloud service.
+	 */
+	private final ICloudService iCloudService;
+
+	/**
+	 * The service root URL.
+	 */
+	private final String serviceRoot;
+
+	/**
+	 * The 'docs' service URL.
+	 */
+	private final String docsServiceRoot;
+
+	/**
+	 * The number of nodes per details request.
+	 */
+	private volatile int nodeDetailsBatchSize = DEFAULT_NODE_DETAILS_BATCH_SIZE;
+
+	/**
+	 * Coalesces single node details requests, or null if not enabled.
+	 */
+	private volatile RequestCoalescer<String, DriveNodeDetails> nodeDetailsCoalescer;
+
+	/**
+	 * The cache of folder listings, or null if not enabled.
+	 */
+	private volatile DriveNodeCache nodeCache;
+
+	/**
+	 * Creates a new drive service.
+	 *
+	 * @param iCloudService the iCloud service.
+	 */
+	public DriveService(ICloudService iCloudService) {
+		this.iCloudService = iCloudService;
+		@SuppressWarnings("unchecked")
+		Map<String, Object> driveSettings = (Map<String, Object>) iCloudService.getWebServicesMap().get("drivews");
+		serviceRoot = (String) driveSettings.get("url");
+
+		@SuppressWarnings("unchecked")
+		Map<String, Object> docsSettings = (Map<String, Object>) iCloudService.getWebServicesMap().get("docws");
+		docsServiceRoot = (String) docsSettings.get("url");
+	}
+
+	/**
+	 * Gets the root node.
+	 *
+	 * @return the root node.
+	 */
+	public DriveNode getRoot() {
+		return new DriveNode(iCloudService, this, ROOT_ID, getNodeDetails(ROOT_ID));
+	}
+
+	/**
+	 * Gets the root node asynchronously.
+	 *
+	 * @return the future root node.
+	 */
+	public CompletableFuture<DriveNode> getRootAsync() {
+		return getNodeDetailsAsync(ROOT_ID).thenApply(details -> new DriveNode(iCloudService, this, ROOT_ID, details));
+	}
+
+	/**
+	 * Gets the node details.
+	 *
+	 * @param nodeId the node ID.
+	 * @return the node details.
+	 * @throws ICloudException if the node does not exist.
+	 */
+	public DriveNodeDetails getNodeDetails(String nodeId) {
+		DriveNodeCache cache = nodeCache;
+		DriveNodeDetails cached = cache != null ? cache.get(nodeId) : null;
+		if (cached != null)
+			return cached;
+
+		RequestCoalescer<String, DriveNodeDetails> coalescer = nodeDetailsCoalescer;
+		if (coalescer != null) {
+			try {
+				return coalescer.load(nodeId).join();
+			} catch (CompletionException e) {
+				throw Throwables.propagate(e.getCause());
+			}
+		}
+
+		try {
+			HttpPost post = createNodeDetailsRequest(nodeId);
+			return cache(checkFound(nodeId, ICloudUtils.parseJsonResponse(iCloudService.getHttpClient(), post, DriveNodeDetails[].class)));
+		} catch (Exception e) {
+			throw Throwables.propagate(e);
+		}
+	}
+
+	/**
+	 * Gets the node details asynchronously.
+	 *
+	 * @param nodeId the node ID.
+	 * @return the future node details.
+	 */
+	public CompletableFuture<DriveNodeDetails> getNodeDetailsAsync(String nodeId) {
+		DriveNodeCache cache = nodeCache;
+		DriveNodeDetails cached = cache != null ? cache.get(nodeId) : null;
+		if (cached != null)
+			return CompletableFuture.completedFuture(cached);
+
+		RequestCoalescer<String, DriveNodeDetails> coalescer = nodeDetailsCoalescer;
+		if (coalescer != null)
+			return coalescer.load(nodeId);
+
+		return iCloudService.executeAsync(createNodeDetailsRequest(nodeId), DriveNodeDetails[].class)
+			.thenApply(details -> cache(checkFound(nodeId, details)));
+	}
+
+	/**
+	 * Gets the details of many nodes, packing up to the batch size of them into each request.
+	 *
+	 * @param nodeIds the node IDs.
+	 * @return the node details by node ID, in the order of the given IDs, leaving out any the server did not return or
+	 *         did not find.
+	 */
+	public Map<String, DriveNodeDetails> getNodeDetails(Collection<String> nodeIds) {
+		try {
+			Map<String, DriveNodeDetails> result = new LinkedHashMap<>();
+			for (List<String> batch : Lists.partition(getUncached(nodeIds, result), nodeDetailsBatchSize)) {
+				HttpPost post = createNodeDetailsRequest(batch);
+				toNodeDetailsMap(batch, ICloudUtils.parseJsonResponse(iCloudService.getHttpClient(), post, DriveNodeDetails[].class), result);
+			}
+			result.values().removeIf(Objects::isNull);
+			return result;
+		} catch (Exception e) {
+			throw Throwables.propagate(e);
+		}
+	}
+
+	/**
+	 * Gets the details of many nodes asynchronously, sending the batches concurrently.
+	 *
+	 * @param nodeIds the node IDs.
+	 * @return the future node details by node ID, in the order of the given IDs, leaving out any the server did not
+	 *         return or did not find.
+	 */
+	public CompletableFuture<Map<String, DriveNodeDetails>> getNodeDetailsAsync(Collection<String> nodeIds) {
+		Map<String, DriveNodeDetails> result = new LinkedHashMap<>();
+		return fetchNodeDetailsAsync(getUncached(nodeIds, result), result);
+	}
+
+	/**
+	 * Fetches the details of many nodes asynchronously without looking in the cache. The listings fetched are still
+	 * added to it.
+	 *
+	 * @param nodeIds the node IDs.
+	 * @return the future node details by node ID, in the order of the given IDs, leaving out any not found.
+	 */
+	CompletableFuture<Map<String, DriveNodeDetails>> fetchNodeDetailsAsync(Collection<String> nodeIds) {
+		Map<String, DriveNodeDetails> result = new LinkedHashMap<>();
+		List<String> distinct = new ArrayList<>();
+		for (String nodeId : nodeIds) {
+			if (!result.containsKey(nodeId)) {
+				result.put(nodeId, null);
+				distinct.add(nodeId);
+			}
+		}
+		return fetchNodeDetailsAsync(distinct, result);
+	}
+
+	private CompletableFuture<Map<String, DriveNodeDetails>> fetchNodeDetailsAsync(List<String> nodeIds,
+		Map<String, DriveNodeDetails> result) {
+		List<List<String>> batches = Lists.partition(nodeIds, nodeDetailsBatchSize);
+		List<CompletableFuture<DriveNodeDetails[]>> responses = batches.stream()
+			.map(batch -> iCloudService.executeAsync(createNodeDetailsRequest(batch), DriveNodeDetails[].class))
+			.collect(Collectors.toList());
+
+		return CompletableFuture.allOf(responses.toArray(new CompletableFuture<?>[responses.size()])).thenApply(ignore -> {
+			for (int i = 0; i < batches.size(); i++)
+				toNodeDetailsMap(batches.get(i), responses.get(i).join(), result);
+			result.values().removeIf(Objects::isNull);
+			return result;
+		});
+	}
+
+	/**
+	 * Adds the cached listings to the result in the order of the IDs, with a placeholder for each ID not cached.
+	 *
+	 * @param nodeIds the node IDs.
+	 * @param result the map to add to.
+	 * @return the distinct IDs not cached.
+	 */
+	private List<String> getUncached(Collection<String> nodeIds, Map<String, DriveNodeDetails> result) {
+		DriveNodeCache cache = nodeCache;
+		List<String> uncached = new ArrayList<>();
+		for (String nodeId : nodeIds) {
+			if (result.containsKey(nodeId))
+				continue;
+			DriveNodeDetails cached = cache != null ? cache.get(nodeId) : null;
+			result.put(nodeId, cached);
+			if (cached == null)
+				uncached.add(nodeId);
+		}
+		return uncached;
+	}
+
+	/**
+	 * Adds fetched details to the cache, if enabled.
+	 *
+	 * @param details the details.
+	 * @return the details.
+	 */
+	private DriveNodeDetails cache(DriveNodeDetails details) {
+		DriveNodeCache cache = nodeCache;
+		if (cache != null && details != null)
+			cache.put(details);
+		return details;
+	}
+
+	/**
+	 * Gets the details of a single node from a response, failing if the node was not found.
+	 *
+	 * @param nodeId the requested node ID.
+	 * @param details the details returned.
+	 * @return the node details.
+	 */
+	private DriveNodeDetails checkFound(String nodeId, DriveNodeDetails[] details) {
+		if (details == null || details.length == 0)
+			throw new ICloudException("no node details returned for " + nodeId);
+		if (!isFound(details[0]))
+			throw new ICloudException("node " + nodeId + " not found: " + details[0].status);
+		return details[0];
+	}
+
+	/**
+	 * Checks whether returned details are for a node that was found, rather than a status such as "ID_INVALID" for an
+	 * unknown or deleted ID.
+	 *
+	 * @param details the details returned.
+	 * @return true if the node was found.
+	 */
+	private static boolean isFound(DriveNodeDetails details) {
+		return details.status == null || "OK".equals(details.status);
+	}
+
+	/**
+	 * Fills in the placeholders of the requested IDs from a response, matching the details by drivewsid since the
+	 * response order is not guaranteed. Details without a drivewsid cannot be matched, and details of nodes that were
+	 * not found have a status instead of a listing; both are skipped.
+	 *
+	 * @param nodeIds the requested node IDs.
+	 * @param details the details returned.
+	 * @param result the map to add to, with a placeholder for each requested ID.
+	 */
+	private void toNodeDetailsMap(List<String> nodeIds, DriveNodeDetails[] details, Map<String, DriveNodeDetails> result) {
+		if (details == null)
+			throw new ICloudException("no node details returned for " + nodeIds);
+
+		for (DriveNodeDetails item : details) {
+			if (item.drivewsid != null && isFound(item))
+				result.put(item.drivewsid, cache(item));
+		}
+	}
+
+	/**
+	 * Gets the number of nodes per details request.
+	 *
+	 * @return the batch size.
+	 */
+	public int getNodeDetailsBatchSize() {
+		return nodeDetailsBatchSize;
+	}
+
+	/**
+	 * Sets the number of nodes per details request.
+	 *
+	 * @param nodeDetailsBatchSize the batch size.
+	 */
+	public void setNodeDetailsBatchSize(int nodeDetailsBatchSize) {
+		if (nodeDetailsBatchSize < 1)
+			throw new IllegalArgumentException("nodeDetailsBatchSize must be at least 1");
+		this.nodeDetailsBatchSize = nodeDetailsBatchSize;
+	}
+
+	/**
+	 * Sets the cache of folder listings. Listings found in the cache are returned without a request, by all the node
+	 * details and children methods and by walks.
+	 *
+	 * @param nodeCache the cache, or null to disable caching.
+	 */
+	public void setNodeCache(DriveNodeCache nodeCache) {
+		this.nodeCache = nodeCache;
+	}
+
+	/**
+	 * Gets the cache of folder listings.
+	 *
+	 * @return the cache, or null if caching is disabled.
+	 */
+	public DriveNodeCache getNodeCache() {
+		return nodeCache;
+	}
+
+	/**
+	 * Enables or disables coalescing of single node details requests, using the default window.
+	 *
+	 * @param enabled true to coalesce.
+	 * @see #setRequestCoalescing(long, TimeUnit)
+	 */
+	public void setRequestCoalescing(boolean enabled) {
+		if (enabled)
+			setRequestCoalescing(DEFAULT_COALESCING_WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+		else
+			nodeDetailsCoalescer = null;
+	}
+
+	/**
+	 * Enables coalescing of single node details requests, including those made by {@link #getChildren(String)} and
+	 * {@link DriveNode#getChildren()}. Concurrent requests for the same node share one lookup, and distinct nodes
+	 * requested within the window are fetched together, up to the batch size set when coalescing is enabled.
+	 *
+	 * @param window how long to gather requests before sending them.
+	 * @param unit the unit of the window.
+	 */
+	public void setRequestCoalescing(long window, TimeUnit unit) {
+		nodeDetailsCoalescer = new RequestCoalescer<>(ids -> getNodeDetailsAsync(ids), nodeDetailsBatchSize, window,
+			unit);
+	}
+
+	/**
+	 * Checks whether single node details requests are coalesced.
+	 *
+	 * @return true if requests are coalesced.
+	 */
+	public boolean isRequestCoalescing() {
+		return nodeDetailsCoalescer != null;
+	}
+
+	/**
+	 * Creates the request for the node details.
+	 *
+	 * @param nodeId the node ID.
+	 * @return the request.
+	 */
+	private HttpPost createNodeDetailsRequest(String nodeId) {
+		return createNodeDetailsRequest(Collections.singletonList(nodeId));
+	}
+
+	/**
+	 * Creates the request for the details of many nodes.
+	 *
+	 * @param nodeIds the node IDs.
+	 * @return the request.
+	 */
+	private HttpPost createNodeDetailsRequest(List<String> nodeIds) {
+		List<Map<String, Object>> items = nodeIds.stream()
+			.map(nodeId -> ImmutableMap.<String, Object>of("drivewsid", nodeId, "partialData", false))
+			.collect(Collectors.toList());
+
+		HttpPost post = new HttpPost(serviceRoot + "/retrieveItemDetailsInFolders");
+		iCloudService.populateRequestHeadersParameters(post);
+		post.addHeader("clientMasteringNumber", iCloudService.getClientBuildNumber());
+		post.setEntity(new StringEntity(ICloudUtils.toJson(items), ContentType.APPLICATION_JSON));
+		return post;
+	}
+
+	/**
+	 * Gets the list of children for a given parent ID.
+	 *
+	 * @param parentId the ID to look up the children for.
+	 * @return the list of children.
+	 */
+	public List<DriveNode> getChildren(String parentId) {
+		return toChildNodes(getNodeDetails(parentId));
+	}
+
+	/**
+	 * Gets the list of children for a given parent ID asynchronously.
+	 *
+	 * @param parentId the ID to look up the children for.
+	 * @return the future list of children.
+	 */
+	public CompletableFuture<List<DriveNode>> getChildrenAsync(String parentId) {
+		return getNodeDetailsAsync(parentId).thenApply(this::toChildNodes);
+	}
+
+	/**
+	 * Gets the children of a whole frontier of folders, one request per batch of folders rather than per folder.
+	 *
+	 * @param parentIds the IDs to look up the children for.
+	 * @return the lists of children by parent ID, in the order of the given IDs.
+	 */
+	public Map<String, List<DriveNode>> getChildren(Collection<String> parentIds) {
+		return toChildNodes(getNodeDetails(parentIds));
+	}
+
+	/**
+	 * Gets the children of a whole frontier of folders asynchronously.
+	 *
+	 * @param parentIds the IDs to look up the children for.
+	 * @return the future lists of children by parent ID, in the order of the given IDs.
+	 */
+	public CompletableFuture<Map<String, List<DriveNode>>> getChildrenAsync(Collection<String> parentIds) {
+		return getNodeDetailsAsync(parentIds).thenApply(this::toChildNodes);
+	}
+
+	/**
+	 * Walks the whole drive, returning every node below the root.
+	 *
+	 * @return the lazy stream of nodes, which must be closed if not fully consumed.
+	 * @see #walk(DriveWalk)
+	 */
+	public Stream<DriveNode> walk() {
+		return walk(DriveWalk.fromRoot());
+	}
+
+	/**
+	 * Walks a folder tree on a pool of {@link DriveWalk#concurrency(int)} threads. Each request lists a batch of up to
+	 * the node details batch size folders, and the walk stays at most {@link DriveWalk#bufferSize(int)} nodes ahead of
+	 * the consumer. Nodes are returned as they are fetched, in no particular order.
+	 *
+	 * @param walk the walk options.
+	 * @return the lazy stream of nodes, which must be closed if not fully consumed.
+	 */
+	public Stream<DriveNode> walk(DriveWalk walk) {
+		return new DriveWalker(iCloudService, this, walk).stream();
+	}
+
+	private Map<String, List<DriveNode>> toChildNodes(Map<String, DriveNodeDetails> nodeDetails) {
+		Map<String, List<DriveNode>> result = new LinkedHashMap<>();
+		nodeDetails.forEach((id, details) -> result.put(id, toChildNodes(details)));
+		return result;
+	}
+
+	/**
+	 * Creates the child nodes from the details of their parent.
+	 *
+	 * @param nodeDetails the parent node details.
+	 * @return the list of children.
+	 */
+	private List<DriveNode> toChildNodes(DriveNodeDetails nodeDetails) {
+		if (nodeDetails.items == null) {
+			return Collections.emptyList();
+		}
+
+		return Stream.of(nodeDetails.items)
+			.map(childDetails -> new DriveNode(iCloudService, this, childDetails.drivewsid, childDetails))
+			.collect(Collectors.toList());
+	}
+
+	/**
+	 * Gets the service URL.
+	 *
+	 * @return the service URL.
+	 */
+	public String getServiceUrl() {
+		return serviceRoot;
+	}
+
+	/**
+	 * Gets the Docs service root URL.
+	 *
+	 * @return the service URL.
+	 */
+	public String getDocsServiceUrl() {
+		return docsServiceRoot;
+	}
+}
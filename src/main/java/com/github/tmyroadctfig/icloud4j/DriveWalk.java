@@ -0,0 +1,238 @@
+package com.github.tmyroadctfig.icloud4j;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * The options of a walk over an iCloud Drive folder tree:
+ *
+ * <pre>
+ * try (Stream&lt;DriveNode&gt; photos = driveService.walk(DriveWalk.fromRoot()
+ * 	.types("FILE")
+ * 	.extensions("jpg", "heic")
+ * 	.maxDepth(5))) {
+ * 	photos.forEach(node -&gt; ...);
+ * }
+ * </pre>
+ *
+ * Types and extensions only select the nodes returned; the walk descends into every folder within the depth limit
+ * unless {@link #descendInto(Predicate)} or the visitor says otherwise.
+ *
+ * @author patchpump
+ */
+public class DriveWalk {
+
+	/**
+	 * The default number of folder batches fetched at a time.
+	 */
+	public static final int DEFAULT_CONCURRENCY = 4;
+
+	/**
+	 * The default number of nodes fetched ahead of the consumer.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 1024;
+
+	/**
+	 * Callbacks made from the walker threads as the tree is fetched, so they must be thread safe.
+	 */
+	public interface Visitor {
+
+		/**
+		 * Called before a folder's children are fetched.
+		 *
+		 * @param folder the folder.
+		 * @param depth the depth of the folder, 1 for the children of the start folder.
+		 * @return false to skip the folder's subtree.
+		 */
+		default boolean preVisitFolder(DriveNode folder, int depth) {
+			return true;
+		}
+
+		/**
+		 * Called for each node selected by the filters, before it is returned by the stream.
+		 *
+		 * @param node the node.
+		 * @param depth the depth of the node, 1 for the children of the start folder.
+		 */
+		default void visitNode(DriveNode node, int depth) {
+		}
+	}
+
+	private static final Visitor NO_VISITOR = new Visitor() {
+	};
+
+	private final String folderId;
+	private int maxDepth = Integer.MAX_VALUE;
+	private int concurrency = DEFAULT_CONCURRENCY;
+	private int bufferSize = DEFAULT_BUFFER_SIZE;
+	private Set<String> types;
+	private Set<String> extensions;
+	private Predicate<DriveNode> filter;
+	private Predicate<DriveNode> descendInto;
+	private Visitor visitor = NO_VISITOR;
+
+	public DriveWalk(String folderId) {
+		if (folderId == null)
+			throw new IllegalArgumentException("folderId must not be null");
+		this.folderId = folderId;
+	}
+
+	/**
+	 * Creates a walk over the whole drive.
+	 *
+	 * @return the walk.
+	 */
+	public static DriveWalk fromRoot() {
+		return new DriveWalk(DriveService.ROOT_ID);
+	}
+
+	/**
+	 * Creates a walk over the subtree of a folder. The folder itself is not returned.
+	 *
+	 * @param folderId the folder ID.
+	 * @return the walk.
+	 */
+	public static DriveWalk from(String folderId) {
+		return new DriveWalk(folderId);
+	}
+
+	/**
+	 * Limits how deep the walk goes.
+	 *
+	 * @param maxDepth the deepest level returned, 1 for the children of the start folder only.
+	 * @return this walk.
+	 */
+	public DriveWalk maxDepth(int maxDepth) {
+		if (maxDepth < 1)
+			throw new IllegalArgumentException("maxDepth must be at least 1");
+		this.maxDepth = maxDepth;
+		return this;
+	}
+
+	/**
+	 * Sets the number of folder batches fetched at a time.
+	 *
+	 * @param concurrency the number of walker threads.
+	 * @return this walk.
+	 */
+	public DriveWalk concurrency(int concurrency) {
+		if (concurrency < 1)
+			throw new IllegalArgumentException("concurrency must be at least 1");
+		this.concurrency = concurrency;
+		return this;
+	}
+
+	/**
+	 * Sets how many nodes may be fetched ahead of the consumer before the walker threads wait.
+	 *
+	 * @param bufferSize the number of nodes buffered.
+	 * @return this walk.
+	 */
+	public DriveWalk bufferSize(int bufferSize) {
+		if (bufferSize < 1)
+			throw new IllegalArgumentException("bufferSize must be at least 1");
+		this.bufferSize = bufferSize;
+		return this;
+	}
+
+	/**
+	 * Returns only nodes of the given types.
+	 *
+	 * @param types the types, e.g. "FILE", "FOLDER" or "APP_LIBRARY".
+	 * @return this walk.
+	 */
+	public DriveWalk types(String... types) {
+		this.types = Arrays.stream(types).collect(Collectors.toSet());
+		return this;
+	}
+
+	/**
+	 * Returns only nodes with the given extensions, ignoring case.
+	 *
+	 * @param extensions the extensions without the dot, e.g. "jpg".
+	 * @return this walk.
+	 */
+	public DriveWalk extensions(String... extensions) {
+		this.extensions = Arrays.stream(extensions).map(extension -> extension.toLowerCase(Locale.ROOT))
+			.collect(Collectors.toSet());
+		return this;
+	}
+
+	/**
+	 * Returns only nodes accepted by a predicate, in addition to the type and extension filters.
+	 *
+	 * @param filter the predicate.
+	 * @return this walk.
+	 */
+	public DriveWalk filter(Predicate<DriveNode> filter) {
+		this.filter = filter;
+		return this;
+	}
+
+	/**
+	 * Descends only into folders accepted by a predicate.
+	 *
+	 * @param descendInto the predicate.
+	 * @return this walk.
+	 */
+	public DriveWalk descendInto(Predicate<DriveNode> descendInto) {
+		this.descendInto = descendInto;
+		return this;
+	}
+
+	/**
+	 * Sets the visitor called as the tree is fetched.
+	 *
+	 * @param visitor the visitor.
+	 * @return this walk.
+	 */
+	public DriveWalk visitor(Visitor visitor) {
+		this.visitor = visitor != null ? visitor : NO_VISITOR;
+		return this;
+	}
+
+	String getFolderId() {
+		return folderId;
+	}
+
+	int getMaxDepth() {
+		return maxDepth;
+	}
+
+	int getConcurrency() {
+		return concurrency;
+	}
+
+	int getBufferSize() {
+		return bufferSize;
+	}
+
+	Visitor getVisitor() {
+		return visitor;
+	}
+
+	/**
+	 * Checks whether a node is selected by the filters.
+	 */
+	boolean matches(DriveNode node) {
+		if (types != null && !types.contains(node.getType()))
+			return false;
+		if (extensions != null) {
+			String extension = node.getNodeDetails().extension;
+			if (extension == null || !extensions.contains(extension.toLowerCase(Locale.ROOT)))
+				return false;
+		}
+		return filter == null || filter.test(node);
+	}
+
+	/**
+	 * Checks whether the walk should descend into a folder at a depth.
+	 */
+	boolean descends(DriveNode folder, int depth) {
+		return depth < maxDepth && (descendInto == null || descendInto.test(folder))
+			&& visitor.preVisitFolder(folder, depth);
+	}
+}
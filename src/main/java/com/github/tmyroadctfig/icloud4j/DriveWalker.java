@@ -0,0 +1,234 @@
+package com.github.tmyroadctfig.icloud4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.github.tmyroadctfig.icloud4j.json.DriveNodeDetails;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+
+/**
+ * Walks an iCloud Drive folder tree on a work-stealing pool, returning the nodes through a bounded buffer.
+ *
+ * Each task fetches the children of a batch of folders with one details request, then splits their subfolders into
+ * new batches and forks them, so a whole level of the tree is listed a batch of folders per round trip. Tasks do not
+ * wait for each other; the walk ends when the last one completes. Once the buffer is full the walker threads wait
+ * for the consumer.
+ *
+ * @author patchpump
+ */
+class DriveWalker implements Iterator<DriveNode> {
+
+	/**
+	 * Marks the end of the walk in the buffer.
+	 */
+	private static final Object END = new Object();
+
+	/**
+	 * Carries the failure of the walk through the buffer.
+	 */
+	private static class Failure {
+
+		final Throwable cause;
+
+		Failure(Throwable cause) {
+			this.cause = cause;
+		}
+	}
+
+	private final DriveService driveService;
+	private final ICloudService iCloudService;
+	private final DriveWalk walk;
+	private final ForkJoinPool pool;
+	private final BlockingQueue<Object> buffer;
+	private final int batchSize;
+
+	private volatile boolean closed;
+	private boolean ended;
+	private Object next;
+
+	/**
+	 * Creates a new walker and starts fetching the tree.
+	 *
+	 * @param iCloudService the iCloud service.
+	 * @param driveService the drive service.
+	 * @param walk the walk options.
+	 */
+	DriveWalker(ICloudService iCloudService, DriveService driveService, DriveWalk walk) {
+		this.iCloudService = iCloudService;
+		this.driveService = driveService;
+		this.walk = walk;
+		this.batchSize = driveService.getNodeDetailsBatchSize();
+		this.buffer = new ArrayBlockingQueue<>(walk.getBufferSize());
+		this.pool = new ForkJoinPool(walk.getConcurrency(), pool -> {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+			thread.setName("icloud4j-drive-walk-" + thread.getPoolIndex());
+			thread.setDaemon(true);
+			return thread;
+		}, null, false);
+
+		pool.execute(new Expand(null, Collections.singletonList(walk.getFolderId()), 0));
+		pool.shutdown();
+	}
+
+	/**
+	 * Lists the children of a batch of folders and forks the walk of their subfolders.
+	 */
+	private class Expand extends CountedCompleter<Void> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<String> folderIds;
+		private final int depth;
+
+		Expand(Expand parent, List<String> folderIds, int depth) {
+			super(parent);
+			this.folderIds = folderIds;
+			this.depth = depth;
+		}
+
+		@Override
+		public void compute() {
+			try {
+				if (closed)
+					return;
+
+				Map<String, DriveNodeDetails> details = driveService.getNodeDetails(folderIds);
+				int childDepth = depth + 1;
+				List<String> subfolders = new ArrayList<>();
+				for (DriveNodeDetails folder : details.values()) {
+					if (folder.items == null)
+						continue;
+
+					for (DriveNodeDetails childDetails : folder.items) {
+						DriveNode child = new DriveNode(iCloudService, driveService, childDetails.drivewsid, childDetails);
+						if (walk.matches(child)) {
+							walk.getVisitor().visitNode(child, childDepth);
+							put(child);
+						}
+						if (isFolder(childDetails) && walk.descends(child, childDepth))
+							subfolders.add(childDetails.drivewsid);
+					}
+				}
+
+				for (List<String> batch : Lists.partition(subfolders, batchSize)) {
+					addToPendingCount(1);
+					new Expand(this, batch, childDepth).fork();
+				}
+				tryComplete();
+
+			} catch (CancellationException e) {
+				// closed
+			} catch (Throwable e) {
+				fail(e);
+			}
+		}
+
+		@Override
+		public void onCompletion(CountedCompleter<?> caller) {
+			if (getCompleter() == null)
+				put(END);
+		}
+	}
+
+	private static boolean isFolder(DriveNodeDetails details) {
+		return "FOLDER".equals(details.type) || "APP_LIBRARY".equals(details.type);
+	}
+
+	/**
+	 * Adds to the buffer, waiting while it is full.
+	 */
+	private void put(Object element) {
+		try {
+			while (!buffer.offer(element, 100, TimeUnit.MILLISECONDS)) {
+				if (closed)
+					throw new CancellationException("drive walk closed");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException("drive walk interrupted");
+		}
+	}
+
+	private void fail(Throwable cause) {
+		if (closed)
+			return;
+		try {
+			put(new Failure(cause));
+		} catch (CancellationException e) {
+			// closed
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (next == null) {
+			if (ended)
+				return false;
+
+			Object element;
+			try {
+				element = buffer.take();
+			} catch (InterruptedException e) {
+				close();
+				Thread.currentThread().interrupt();
+				throw Throwables.propagate(e);
+			}
+
+			if (element == END) {
+				ended = true;
+			} else if (element instanceof Failure) {
+				close();
+				throw Throwables.propagate(((Failure) element).cause);
+			} else {
+				next = element;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public DriveNode next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		DriveNode node = (DriveNode) next;
+		next = null;
+		return node;
+	}
+
+	/**
+	 * Stops the walk. Walker threads stop once their current request completes.
+	 */
+	void close() {
+		closed = true;
+		pool.shutdownNow();
+		buffer.clear();
+		ended = true;
+		next = null;
+	}
+
+	/**
+	 * Returns a lazy stream over the nodes, stopping the walk when it is closed.
+	 *
+	 * @return the stream.
+	 */
+	Stream<DriveNode> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.NONNULL), false)
+			.onClose(this::close);
+	}
+}
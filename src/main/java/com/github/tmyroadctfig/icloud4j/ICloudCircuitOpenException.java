@@ -0,0 +1,68 @@
+package com.github.tmyroadctfig.icloud4j;
+
+/**
+ * Thrown instead of sending a request when the circuit breaker of its service root is open, i.e. the backend has
+ * recently been failing.
+ *
+ * @author patchpump
+ */
+public class ICloudCircuitOpenException extends ICloudException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The service root.
+	 */
+	private final String serviceRoot;
+
+	/**
+	 * The web service name.
+	 */
+	private final String webService;
+
+	/**
+	 * The time until the circuit starts probing the backend again.
+	 */
+	private final long retryAfter;
+
+	/**
+	 * Creates a new exception.
+	 *
+	 * @param serviceRoot the service root.
+	 * @param webService the web service name.
+	 * @param retryAfter the time in milliseconds until the circuit starts probing the backend again.
+	 */
+	public ICloudCircuitOpenException(String serviceRoot, String webService, long retryAfter) {
+		super("circuit open for " + webService + " (" + serviceRoot + "), retry after " + retryAfter + " ms");
+		this.serviceRoot = serviceRoot;
+		this.webService = webService;
+		this.retryAfter = retryAfter;
+	}
+
+	/**
+	 * Gets the service root, e.g. "https://p12-ckdatabasews.icloud.com:443".
+	 *
+	 * @return the service root.
+	 */
+	public String getServiceRoot() {
+		return serviceRoot;
+	}
+
+	/**
+	 * Gets the web service name, e.g. "ckdatabasews".
+	 *
+	 * @return the web service name.
+	 */
+	public String getWebService() {
+		return webService;
+	}
+
+	/**
+	 * Gets the time until the circuit starts probing the backend again.
+	 *
+	 * @return the time in milliseconds.
+	 */
+	public long getRetryAfter() {
+		return retryAfter;
+	}
+}
@@ -0,0 +1,137 @@
+package com.github.tmyroadctfig.icloud4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Coalesces lookups by key, in the style of a data loader.
+ *
+ * A key requested while a lookup for it is in flight shares that lookup's future. Distinct keys requested within the
+ * batching window are gathered and loaded with one call, sent early once the batch is full. With a batch size of one
+ * keys are loaded as soon as they are requested and only the de-duplication applies.
+ *
+ * @author patchpump
+ */
+class RequestCoalescer<K, V> {
+
+	/**
+	 * Dispatches the batches whose window has passed. Dispatching only sends the requests, so one thread serves all
+	 * coalescers.
+	 */
+	private static final ScheduledExecutorService SCHEDULER;
+
+	static {
+		ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1,
+			new ThreadFactoryBuilder().setNameFormat("icloud4j-coalescer-%d").setDaemon(true).build());
+		scheduler.setRemoveOnCancelPolicy(true);
+		SCHEDULER = scheduler;
+	}
+
+	private final Function<List<K>, CompletableFuture<Map<K, V>>> loader;
+	private final int maxBatchSize;
+	private final long windowNanos;
+
+	/**
+	 * The lookups requested or in flight, by key.
+	 */
+	private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+	private List<K> batch = new ArrayList<>();
+
+	/**
+	 * Creates a new coalescer.
+	 *
+	 * @param loader loads a batch of keys, returning the values by key.
+	 * @param maxBatchSize the most keys loaded by one call.
+	 * @param window how long to gather keys before loading them.
+	 * @param unit the unit of the window.
+	 */
+	RequestCoalescer(Function<List<K>, CompletableFuture<Map<K, V>>> loader, int maxBatchSize, long window,
+		TimeUnit unit) {
+		if (maxBatchSize < 1)
+			throw new IllegalArgumentException("maxBatchSize must be at least 1");
+		if (window < 0)
+			throw new IllegalArgumentException("window must not be negative");
+
+		this.loader = loader;
+		this.maxBatchSize = maxBatchSize;
+		this.windowNanos = unit.toNanos(window);
+	}
+
+	/**
+	 * Loads the value for a key, sharing the lookup of any concurrent request for the same key.
+	 *
+	 * @param key the key.
+	 * @return the future value, failing with an {@link ICloudException} if the batch returned no value for the key.
+	 */
+	CompletableFuture<V> load(K key) {
+		CompletableFuture<V> existing = inFlight.get(key);
+		if (existing != null)
+			return existing;
+
+		List<K> ready = null;
+		CompletableFuture<V> result;
+		synchronized (this) {
+			existing = inFlight.get(key);
+			if (existing != null)
+				return existing;
+
+			result = new CompletableFuture<>();
+			inFlight.put(key, result);
+			batch.add(key);
+
+			if (batch.size() >= maxBatchSize || windowNanos == 0) {
+				ready = batch;
+				batch = new ArrayList<>();
+			} else if (batch.size() == 1) {
+				List<K> scheduled = batch;
+				SCHEDULER.schedule(() -> dispatchIfPending(scheduled), windowNanos, TimeUnit.NANOSECONDS);
+			}
+		}
+
+		if (ready != null)
+			dispatch(ready);
+		return result;
+	}
+
+	private void dispatchIfPending(List<K> scheduled) {
+		synchronized (this) {
+			// sent early because it filled up
+			if (batch != scheduled)
+				return;
+			batch = new ArrayList<>();
+		}
+		dispatch(scheduled);
+	}
+
+	private void dispatch(List<K> keys) {
+		CompletableFuture<Map<K, V>> values;
+		try {
+			values = loader.apply(keys);
+		} catch (RuntimeException e) {
+			values = new CompletableFuture<>();
+			values.completeExceptionally(e);
+		}
+
+		values.whenComplete((map, t) -> {
+			for (K key : keys) {
+				CompletableFuture<V> future = inFlight.remove(key);
+				if (t != null)
+					future.completeExceptionally(t);
+				else if (map == null || !map.containsKey(key))
+					future.completeExceptionally(new ICloudException("no result returned for " + key));
+				else
+					future.complete(map.get(key));
+			}
+		});
+	}
+}
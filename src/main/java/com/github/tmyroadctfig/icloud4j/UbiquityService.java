@@ -1,84 +1,209 @@
-/*
- *    Copyright 2016 Luke Quinane
- *
- *    Licensed under the Apache License, Version 2.0 (the "License");
- *    you may not use this file except in compliance with the License.
- *    You may obtain a copy of the License at
- *
- *    http://www.apache.org/licenses/LICENSE-2.0
- *
- *    Unless required by applicable law or agreed to in writing, software
- *    distributed under the License is distributed on an "AS IS" BASIS,
- *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- *    See the License for the specific language governing permissions and
- *    limitations under the License.
- */
-
-package com.github.tmyroadctfig.icloud4j;
-
-import com.github.tmyroadctfig.icloud4j.json.UbiquityNodeDetails;
-import com.github.tmyroadctfig.icloud4j.util.ICloudUtils;
-import com.google.common.base.Throwables;
-import org.apache.http.client.methods.HttpGet;
-
-import java.util.Map;
-
-/**
- * Access to the 'ubiquity' service.
- *
- * @author Luke Quinane
- */
-public class UbiquityService {
-	/**
-	 * The iCloud service.
-	 */
-	private final ICloudService iCloudService;
-
-	/**
-	 * The service root URL.
-	 */
-	private final String serviceRoot;
-
-	/**
-	 * Creates a new 'ubiquity' service.
-	 *
-	 * @param iCloudService the iCloud service.
-	 */
-	public UbiquityService(ICloudService iCloudService) {
-		this.iCloudService = iCloudService;
-		@SuppressWarnings("unchecked")
-		Map<String, Object> ubiquitySettings = (Map<String, Object>) iCloudService.getWebServicesMap().get("ubiquity");
-		serviceRoot = (String) ubiquitySettings.get("url");
-	}
-
-	/**
-	 * Gets the root node.
-	 *
-	 * @return the root node.
-	 */
-	public UbiquityNode getRoot() {
-		String rootId = "0";
-
-		try {
-			String url = String.format("%s/ws/%s/%s/%s", serviceRoot, iCloudService.getSessionId(), "item", rootId);
-			HttpGet httpGet = new HttpGet(url);
-			iCloudService.populateRequestHeadersParameters(httpGet);
-
-			UbiquityNodeDetails nodeDetails = ICloudUtils.parseJsonResponse(iCloudService.getHttpClient(), httpGet,
-				UbiquityNodeDetails.class);
-
-			return new UbiquityNode(iCloudService, this, rootId, nodeDetails);
-		} catch (Exception e) {
-			throw Throwables.propagate(e);
-		}
-	}
-
-	/**
-	 * Gets the service URL.
-	 *
-	 * @return the service URL.
-	 */
-	public String getServiceUrl() {
-		return serviceRoot;
-	}
+/*
+ *    Copyright 2016 Luke Quinane
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.tmyroadctfig.icloud4j;
+
+import com.github.tmyroadctfig.icloud4j.json.UbiquityGetChildrenResponse;
+import com.github.tmyroadctfig.icloud4j.json.UbiquityNodeDetails;
+import com.github.tmyroadctfig.icloud4j.util.ICloudUtils;
+import com.google.common.base.Throwables;
+import org.apache.http.client.methods.HttpGet;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Access to the 'ubiquity' service.
+ *
+ * @author Luke Quinane
+ */
+public class UbiquityService {
+	/**
+	 * The root node ID.
+	 */
+	private static final String ROOT_ID = "0";
+
+	/**
+	 * The iCloud service.
+	 */
+	private final ICloudService iCloudService;
+
+	/**
+	 * The service root URL.
+	 */
+	private final String serviceRoot;
+
+	/**
+	 * De-duplicates concurrent children requests, or null if not enabled.
+	 */
+	private volatile RequestCoalescer<String, List<UbiquityNode>> childrenCoalescer;
+
+	/**
+	 * Creates a new 'ubiquity' service.
+	 *
+	 * @param iCloudService the iCloud service.
+	 */
+	public UbiquityService(ICloudService iCloudService) {
+		this.iCloudService = iCloudService;
+		@SuppressWarnings("unchecked")
+		Map<String, Object> ubiquitySettings = (Map<String, Object>) iCloudService.getWebServicesMap().get("ubiquity");
+		serviceRoot = (String) ubiquitySettings.get("url");
+	}
+
+	/**
+	 * Gets the root node.
+	 *
+	 * @return the root node.
+	 */
+	public UbiquityNode getRoot() {
+		try {
+			UbiquityNodeDetails nodeDetails = ICloudUtils.parseJsonResponse(iCloudService.getHttpClient(),
+				createRootRequest(), UbiquityNodeDetails.class);
+
+			return new UbiquityNode(iCloudService, this, ROOT_ID, nodeDetails);
+		} catch (Exception e) {
+			throw Throwables.propagate(e);
+		}
+	}
+
+	/**
+	 * Gets the root node asynchronously.
+	 *
+	 * @return the future root node.
+	 */
+	public CompletableFuture<UbiquityNode> getRootAsync() {
+		return iCloudService.executeAsync(createRootRequest(), UbiquityNodeDetails.class)
+			.thenApply(nodeDetails -> new UbiquityNode(iCloudService, this, ROOT_ID, nodeDetails));
+	}
+
+	/**
+	 * Creates the request for the root node.
+	 *
+	 * @return the request.
+	 */
+	private HttpGet createRootRequest() {
+		String url = String.format("%s/ws/%s/%s/%s", serviceRoot, iCloudService.getSessionId(), "item", ROOT_ID);
+		HttpGet httpGet = new HttpGet(url);
+		iCloudService.populateRequestHeadersParameters(httpGet);
+		return httpGet;
+	}
+
+	/**
+	 * Gets the list of children for a given parent ID.
+	 *
+	 * @param parentId the ID to look up the children for.
+	 * @return the list of children.
+	 */
+	public List<UbiquityNode> getChildren(String parentId) {
+		RequestCoalescer<String, List<UbiquityNode>> coalescer = childrenCoalescer;
+		if (coalescer != null) {
+			try {
+				return coalescer.load(parentId).join();
+			} catch (CompletionException e) {
+				throw Throwables.propagate(e.getCause());
+			}
+		}
+
+		try {
+			UbiquityGetChildrenResponse getChildrenResponse = ICloudUtils
+				.parseJsonResponse(iCloudService.getHttpClient(), createChildrenRequest(parentId), UbiquityGetChildrenResponse.class);
+
+			return toChildNodes(getChildrenResponse);
+		} catch (Exception e) {
+			throw Throwables.propagate(e);
+		}
+	}
+
+	/**
+	 * Gets the list of children for a given parent ID asynchronously.
+	 *
+	 * @param parentId the ID to look up the children for.
+	 * @return the future list of children.
+	 */
+	public CompletableFuture<List<UbiquityNode>> getChildrenAsync(String parentId) {
+		RequestCoalescer<String, List<UbiquityNode>> coalescer = childrenCoalescer;
+		if (coalescer != null)
+			return coalescer.load(parentId);
+
+		return fetchChildrenAsync(parentId);
+	}
+
+	private CompletableFuture<List<UbiquityNode>> fetchChildrenAsync(String parentId) {
+		return iCloudService.executeAsync(createChildrenRequest(parentId), UbiquityGetChildrenResponse.class)
+			.thenApply(this::toChildNodes);
+	}
+
+	/**
+	 * Enables or disables de-duplication of children requests. Concurrent requests for the children of the same node
+	 * share one lookup. The service has no batch lookup, so distinct nodes are still fetched one per request.
+	 *
+	 * @param enabled true to de-duplicate.
+	 */
+	public void setRequestCoalescing(boolean enabled) {
+		childrenCoalescer = enabled ? new RequestCoalescer<>(
+			ids -> fetchChildrenAsync(ids.get(0)).thenApply(children -> Collections.singletonMap(ids.get(0), children)),
+			1, 0, TimeUnit.MILLISECONDS) : null;
+	}
+
+	/**
+	 * Checks whether children requests are de-duplicated.
+	 *
+	 * @return true if requests are de-duplicated.
+	 */
+	public boolean isRequestCoalescing() {
+		return childrenCoalescer != null;
+	}
+
+	/**
+	 * Creates the request for the children of a node.
+	 *
+	 * @param parentId the parent ID.
+	 * @return the request.
+	 */
+	private HttpGet createChildrenRequest(String parentId) {
+		String url = String.format("%s/ws/%s/%s/%s", serviceRoot, iCloudService.getSessionId(), "parent", parentId);
+		HttpGet httpGet = new HttpGet(url);
+		iCloudService.populateRequestHeadersParameters(httpGet);
+		return httpGet;
+	}
+
+	/**
+	 * Creates the child nodes from the response.
+	 *
+	 * @param getChildrenResponse the response.
+	 * @return the list of children.
+	 */
+	private List<UbiquityNode> toChildNodes(UbiquityGetChildrenResponse getChildrenResponse) {
+		return Stream.of(getChildrenResponse.item_list)
+			.map(item -> new UbiquityNode(iCloudService, this, item.item_id, item))
+			.collect(Collectors.toList());
+	}
+
+	/**
+	 * Gets the service URL.
+	 *
+	 * @return the service URL.
+	 */
+	public String getServiceUrl() {
+		return serviceRoot;
+	}
 }
\ No newline at end of file
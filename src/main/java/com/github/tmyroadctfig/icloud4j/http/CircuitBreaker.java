@@ -0,0 +1,232 @@
+package com.github.tmyroadctfig.icloud4j.http;
+
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Ticker;
+
+/**
+ * Circuit breaker of a single iCloud service root, see {@link CircuitBreakerPolicy}.
+ *
+ * Callers {@link #tryAcquire()} before each request and report its outcome with exactly one of
+ * {@link #onSuccess()}, {@link #onFailure()} or {@link #onIgnored()}.
+ *
+ * @author patchpump
+ */
+public class CircuitBreaker {
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private final String serviceRoot;
+	private final String webService;
+	private final CircuitBreakerPolicy policy;
+	private final CircuitBreakerListener listener;
+	private final Ticker ticker;
+
+	private final boolean[] outcomes;
+	private int outcomeIndex;
+	private int outcomeCount;
+	private int failureCount;
+
+	private State state = State.CLOSED;
+	private long openedAt;
+	private int probesInFlight;
+	private int probeSuccesses;
+	private long rejected;
+
+	public CircuitBreaker(String serviceRoot, String webService, CircuitBreakerPolicy policy,
+		CircuitBreakerListener listener) {
+		this(serviceRoot, webService, policy, listener, Ticker.systemTicker());
+	}
+
+	/**
+	 * Creates a circuit breaker reading the time from a ticker, for testing the open duration.
+	 */
+	CircuitBreaker(String serviceRoot, String webService, CircuitBreakerPolicy policy, CircuitBreakerListener listener,
+		Ticker ticker) {
+		this.serviceRoot = serviceRoot;
+		this.webService = webService;
+		this.policy = policy;
+		this.listener = listener;
+		this.ticker = ticker;
+		this.outcomes = new boolean[policy.getWindowSize()];
+	}
+
+	/**
+	 * Asks permission to send a request.
+	 *
+	 * @return true if the request may be sent, false if the circuit is open.
+	 */
+	public boolean tryAcquire() {
+		if (!policy.isEnabled())
+			return true;
+
+		boolean halfOpened = false;
+		synchronized (this) {
+			switch (state) {
+			case CLOSED:
+				return true;
+			case OPEN:
+				if (ticker.read() - openedAt < TimeUnit.MILLISECONDS.toNanos(policy.getOpenDuration())) {
+					rejected++;
+					return false;
+				}
+				state = State.HALF_OPEN;
+				probesInFlight = 0;
+				probeSuccesses = 0;
+				halfOpened = true;
+				break;
+			case HALF_OPEN:
+				break;
+			}
+
+			if (probesInFlight + probeSuccesses >= policy.getHalfOpenProbes()) {
+				rejected++;
+				return false;
+			}
+			probesInFlight++;
+		}
+
+		if (halfOpened)
+			notifyListener(State.OPEN, State.HALF_OPEN);
+		return true;
+	}
+
+	/**
+	 * Records a successful request.
+	 */
+	public void onSuccess() {
+		if (!policy.isEnabled())
+			return;
+
+		synchronized (this) {
+			if (state == State.CLOSED) {
+				record(false);
+				return;
+			}
+			if (state != State.HALF_OPEN)
+				return;
+
+			probesInFlight = Math.max(0, probesInFlight - 1);
+			if (++probeSuccesses < policy.getHalfOpenProbes())
+				return;
+
+			state = State.CLOSED;
+			outcomeIndex = 0;
+			outcomeCount = 0;
+			failureCount = 0;
+		}
+		notifyListener(State.HALF_OPEN, State.CLOSED);
+	}
+
+	/**
+	 * Records a request that failed because of the backend.
+	 */
+	public void onFailure() {
+		if (!policy.isEnabled())
+			return;
+
+		State from;
+		synchronized (this) {
+			from = state;
+			if (state == State.CLOSED) {
+				record(true);
+				if (outcomeCount < policy.getMinimumRequests()
+					|| failureCount < policy.getFailureRateThreshold() * outcomeCount)
+					return;
+			} else if (state != State.HALF_OPEN) {
+				return;
+			}
+
+			state = State.OPEN;
+			openedAt = ticker.read();
+			probesInFlight = 0;
+		}
+		notifyListener(from, State.OPEN);
+	}
+
+	/**
+	 * Records a request whose outcome says nothing about the backend, e.g. because it was cancelled.
+	 */
+	public synchronized void onIgnored() {
+		if (state == State.HALF_OPEN)
+			probesInFlight = Math.max(0, probesInFlight - 1);
+	}
+
+	private void record(boolean failure) {
+		if (outcomeCount == outcomes.length) {
+			if (outcomes[outcomeIndex])
+				failureCount--;
+		} else {
+			outcomeCount++;
+		}
+		outcomes[outcomeIndex] = failure;
+		if (failure)
+			failureCount++;
+		outcomeIndex = (outcomeIndex + 1) % outcomes.length;
+	}
+
+	private void notifyListener(State from, State to) {
+		if (listener != null)
+			listener.onStateChange(this, from, to);
+	}
+
+	/**
+	 * Gets the service root, e.g. "https://p12-ckdatabasews.icloud.com:443".
+	 *
+	 * @return the service root.
+	 */
+	public String getServiceRoot() {
+		return serviceRoot;
+	}
+
+	/**
+	 * Gets the name of the web service, e.g. "ckdatabasews".
+	 *
+	 * @return the web service name.
+	 */
+	public String getWebService() {
+		return webService;
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 * Gets the time until an open circuit starts probing the backend.
+	 *
+	 * @return the remaining time in milliseconds, zero if the circuit is not open.
+	 */
+	public synchronized long getRemainingOpenTime() {
+		if (state != State.OPEN)
+			return 0;
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(ticker.read() - openedAt);
+		return Math.max(0, policy.getOpenDuration() - elapsed);
+	}
+
+	/**
+	 * Gets the failure rate over the current window.
+	 *
+	 * @return the failure rate.
+	 */
+	public synchronized double getFailureRate() {
+		return outcomeCount == 0 ? 0 : (double) failureCount / outcomeCount;
+	}
+
+	/**
+	 * Gets the number of requests rejected because the circuit was open.
+	 *
+	 * @return the number of rejected requests.
+	 */
+	public synchronized long getRejected() {
+		return rejected;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "CircuitBreaker [serviceRoot=" + serviceRoot + ", webService=" + webService + ", state=" + state
+			+ ", failureRate=" + getFailureRate() + ", rejected=" + rejected + "]";
+	}
+}
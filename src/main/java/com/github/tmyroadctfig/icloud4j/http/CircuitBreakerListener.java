@@ -0,0 +1,19 @@
+package com.github.tmyroadctfig.icloud4j.http;
+
+/**
+ * Listener for circuit breaker state changes. A transition from {@link CircuitBreaker.State#HALF_OPEN} to
+ * {@link CircuitBreaker.State#CLOSED} means the backend has recovered.
+ *
+ * @author patchpump
+ */
+public interface CircuitBreakerListener {
+
+	/**
+	 * Called after a circuit breaker changed state. Must not block.
+	 *
+	 * @param circuitBreaker the circuit breaker.
+	 * @param from the previous state.
+	 * @param to the new state.
+	 */
+	void onStateChange(CircuitBreaker circuitBreaker, CircuitBreaker.State from, CircuitBreaker.State to);
+}
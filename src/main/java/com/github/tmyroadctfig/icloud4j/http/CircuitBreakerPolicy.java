@@ -0,0 +1,122 @@
+package com.github.tmyroadctfig.icloud4j.http;
+
+/**
+ * Settings of the circuit breakers guarding each iCloud service root.
+ *
+ * A circuit opens when at least {@link #getFailureRateThreshold()} of the last {@link #getWindowSize()} requests
+ * failed, once {@link #getMinimumRequests()} have been seen. While open, requests fail fast. After
+ * {@link #getOpenDuration()} the circuit lets {@link #getHalfOpenProbes()} requests through and closes again when
+ * they all succeed.
+ *
+ * @author patchpump
+ */
+public class CircuitBreakerPolicy {
+
+	public static final int DEFAULT_WINDOW_SIZE = 20;
+	public static final int DEFAULT_MINIMUM_REQUESTS = 10;
+	public static final double DEFAULT_FAILURE_RATE_THRESHOLD = 0.5;
+	public static final long DEFAULT_OPEN_DURATION = 30000;
+	public static final int DEFAULT_HALF_OPEN_PROBES = 2;
+
+	private boolean enabled = true;
+	private int windowSize = DEFAULT_WINDOW_SIZE;
+	private int minimumRequests = DEFAULT_MINIMUM_REQUESTS;
+	private double failureRateThreshold = DEFAULT_FAILURE_RATE_THRESHOLD;
+	private long openDuration = DEFAULT_OPEN_DURATION;
+	private int halfOpenProbes = DEFAULT_HALF_OPEN_PROBES;
+
+	public CircuitBreakerPolicy() {
+	}
+
+	/**
+	 * Creates a policy whose circuits never open.
+	 *
+	 * @return the policy.
+	 */
+	public static CircuitBreakerPolicy disabled() {
+		CircuitBreakerPolicy policy = new CircuitBreakerPolicy();
+		policy.setEnabled(false);
+		return policy;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Gets the number of most recent requests the failure rate is computed over.
+	 *
+	 * @return the window size.
+	 */
+	public int getWindowSize() {
+		return windowSize;
+	}
+
+	public void setWindowSize(int windowSize) {
+		if (windowSize <= 0)
+			throw new IllegalArgumentException("windowSize must be positive");
+		this.windowSize = windowSize;
+	}
+
+	/**
+	 * Gets the number of requests that must be seen before the circuit can open.
+	 *
+	 * @return the minimum number of requests.
+	 */
+	public int getMinimumRequests() {
+		return minimumRequests;
+	}
+
+	public void setMinimumRequests(int minimumRequests) {
+		this.minimumRequests = minimumRequests;
+	}
+
+	public double getFailureRateThreshold() {
+		return failureRateThreshold;
+	}
+
+	public void setFailureRateThreshold(double failureRateThreshold) {
+		if (failureRateThreshold <= 0 || failureRateThreshold > 1)
+			throw new IllegalArgumentException("failureRateThreshold must be in (0, 1]");
+		this.failureRateThreshold = failureRateThreshold;
+	}
+
+	/**
+	 * Gets the time in milliseconds an open circuit fails fast before probing the backend.
+	 *
+	 * @return the open duration.
+	 */
+	public long getOpenDuration() {
+		return openDuration;
+	}
+
+	public void setOpenDuration(long openDuration) {
+		this.openDuration = openDuration;
+	}
+
+	/**
+	 * Gets the number of probe requests let through a half-open circuit, all of which must succeed to close it.
+	 *
+	 * @return the number of probes.
+	 */
+	public int getHalfOpenProbes() {
+		return halfOpenProbes;
+	}
+
+	public void setHalfOpenProbes(int halfOpenProbes) {
+		if (halfOpenProbes <= 0)
+			throw new IllegalArgumentException("halfOpenProbes must be positive");
+		this.halfOpenProbes = halfOpenProbes;
+	}
+
+	@Override
+	public String toString() {
+		return "CircuitBreakerPolicy [enabled=" + enabled + ", windowSize=" + windowSize + ", minimumRequests="
+			+ minimumRequests + ", failureRateThreshold=" + failureRateThreshold + ", openDuration=" + openDuration
+			+ ", halfOpenProbes=" + halfOpenProbes + "]";
+	}
+}
@@ -0,0 +1,97 @@
+package com.github.tmyroadctfig.icloud4j.http;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.pool.ConnPoolControl;
+import org.apache.http.pool.PoolStats;
+
+/**
+ * Point in time snapshot of a connection pool, in total and per iCloud host.
+ *
+ * A steadily non-zero pending count means callers are waiting for connections and the per-route or total limit
+ * of the {@link ICloudHttpConfig} should be raised.
+ *
+ * @author patchpump
+ */
+public class ConnectionPoolStats {
+
+	private final PoolStats totalStats;
+	private final Map<String, PoolStats> routeStats;
+
+	public ConnectionPoolStats(PoolStats totalStats, Map<String, PoolStats> routeStats) {
+		this.totalStats = totalStats;
+		this.routeStats = Collections.unmodifiableMap(new TreeMap<>(routeStats));
+	}
+
+	/**
+	 * Takes a snapshot of the given connection manager.
+	 *
+	 * @param connectionManager the connection manager.
+	 * @return the snapshot.
+	 */
+	public static ConnectionPoolStats of(PoolingHttpClientConnectionManager connectionManager) {
+		return of(connectionManager, connectionManager.getRoutes());
+	}
+
+	/**
+	 * Takes a snapshot of the given non-blocking connection manager.
+	 *
+	 * @param connectionManager the connection manager.
+	 * @return the snapshot.
+	 */
+	public static ConnectionPoolStats of(PoolingNHttpClientConnectionManager connectionManager) {
+		return of(connectionManager, connectionManager.getRoutes());
+	}
+
+	private static ConnectionPoolStats of(ConnPoolControl<HttpRoute> pool, Set<HttpRoute> routes) {
+		Map<String, PoolStats> routeStats = new TreeMap<>();
+		for (HttpRoute route : routes)
+			routeStats.put(route.getTargetHost().toHostString(), pool.getStats(route));
+		return new ConnectionPoolStats(pool.getTotalStats(), routeStats);
+	}
+
+	/**
+	 * Gets the statistics over all routes.
+	 *
+	 * @return the total statistics.
+	 */
+	public PoolStats getTotalStats() {
+		return totalStats;
+	}
+
+	/**
+	 * Gets the statistics per route, keyed by target host and port.
+	 *
+	 * @return the route statistics.
+	 */
+	public Map<String, PoolStats> getRouteStats() {
+		return routeStats;
+	}
+
+	public int getLeased() {
+		return totalStats.getLeased();
+	}
+
+	public int getPending() {
+		return totalStats.getPending();
+	}
+
+	public int getAvailable() {
+		return totalStats.getAvailable();
+	}
+
+	public int getMax() {
+		return totalStats.getMax();
+	}
+
+	@Override
+	public String toString() {
+		return "ConnectionPoolStats [total=" + totalStats + ", routes=" + routeStats + "]";
+	}
+}
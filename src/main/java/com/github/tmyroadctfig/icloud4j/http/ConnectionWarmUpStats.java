@@ -0,0 +1,94 @@
+package com.github.tmyroadctfig.icloud4j.http;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome of a connection warm-up, see {@link ICloudTransport#warmUp(java.util.Collection)}.
+ *
+ * The saved time is the DNS, TCP and TLS setup time spent ahead of the first requests, i.e. the latency those
+ * requests no longer pay as long as they arrive before the warmed connections are evicted as idle.
+ *
+ * @author patchpump
+ */
+public class ConnectionWarmUpStats {
+
+	private final int opened;
+	private final int alreadyOpen;
+	private final int failed;
+	private final long elapsedNanos;
+	private final Map<String, Long> setupNanos;
+
+	public ConnectionWarmUpStats(int opened, int alreadyOpen, int failed, long elapsedNanos,
+		Map<String, Long> setupNanos) {
+		this.opened = opened;
+		this.alreadyOpen = alreadyOpen;
+		this.failed = failed;
+		this.elapsedNanos = elapsedNanos;
+		this.setupNanos = Collections.unmodifiableMap(setupNanos);
+	}
+
+	/**
+	 * Gets the number of connections opened.
+	 *
+	 * @return the number of connections.
+	 */
+	public int getOpened() {
+		return opened;
+	}
+
+	/**
+	 * Gets the number of connections that were already open in the pool.
+	 *
+	 * @return the number of connections.
+	 */
+	public int getAlreadyOpen() {
+		return alreadyOpen;
+	}
+
+	/**
+	 * Gets the number of connections that could not be opened.
+	 *
+	 * @return the number of connections.
+	 */
+	public int getFailed() {
+		return failed;
+	}
+
+	/**
+	 * Gets the wall clock time of the warm-up.
+	 *
+	 * @return the time in milliseconds.
+	 */
+	public long getElapsedTime() {
+		return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+	}
+
+	/**
+	 * Gets the connection setup time spent ahead of the first requests, summed over all opened connections.
+	 *
+	 * @return the time in milliseconds.
+	 */
+	public long getSavedTime() {
+		long saved = 0;
+		for (Long nanos : setupNanos.values())
+			saved += nanos;
+		return TimeUnit.NANOSECONDS.toMillis(saved);
+	}
+
+	/**
+	 * Gets the connection setup time per host, summed over the connections opened to it.
+	 *
+	 * @return the setup time in nanoseconds keyed by host name.
+	 */
+	public Map<String, Long> getSetupNanos() {
+		return setupNanos;
+	}
+
+	@Override
+	public String toString() {
+		return "ConnectionWarmUpStats [opened=" + opened + ", alreadyOpen=" + alreadyOpen + ", failed=" + failed
+			+ ", elapsedTime=" + getElapsedTime() + ", savedTime=" + getSavedTime() + "]";
+	}
+}
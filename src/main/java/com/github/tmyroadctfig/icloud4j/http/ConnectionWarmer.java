@@ -0,0 +1,171 @@
+package com.github.tmyroadctfig.icloud4j.http;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.DefaultSchemePortResolver;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Opens pooled connections to iCloud hosts ahead of the first requests, so those requests do not pay for DNS, TCP
+ * and TLS setup. Hosts are warmed in parallel; connections are opened through the connection manager and released
+ * back into the pool idle, without sending any request.
+ *
+ * @author patchpump
+ */
+class ConnectionWarmer {
+
+	private static final Logger logger = LoggerFactory.getLogger(ConnectionWarmer.class);
+
+	private final PoolingHttpClientConnectionManager connectionManager;
+	private final ICloudHttpConfig config;
+	private final HttpHost proxy;
+
+	ConnectionWarmer(PoolingHttpClientConnectionManager connectionManager, ICloudHttpConfig config, HttpHost proxy) {
+		this.connectionManager = connectionManager;
+		this.config = config;
+		this.proxy = proxy;
+	}
+
+	/**
+	 * Warms connections to the hosts of the given URIs.
+	 *
+	 * @param uris the URIs.
+	 * @param executor the executor the blocking connects run on.
+	 * @return the future warm-up statistics, never completing exceptionally.
+	 */
+	CompletableFuture<ConnectionWarmUpStats> warmUp(Collection<URI> uris, ExecutorService executor) {
+		long start = System.nanoTime();
+
+		Set<HttpRoute> routes = new LinkedHashSet<>();
+		for (URI uri : uris) {
+			HttpRoute route = toRoute(uri);
+			if (route != null)
+				routes.add(route);
+		}
+
+		AtomicInteger opened = new AtomicInteger();
+		AtomicInteger alreadyOpen = new AtomicInteger();
+		AtomicInteger failed = new AtomicInteger();
+		Map<String, Long> setupNanos = new LinkedHashMap<>();
+
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+		for (HttpRoute route : routes) {
+			futures.add(CompletableFuture.runAsync(() -> {
+				long nanos = warmUp(route, opened, alreadyOpen, failed);
+				if (nanos > 0) {
+					synchronized (setupNanos) {
+						setupNanos.put(route.getTargetHost().getHostName(), nanos);
+					}
+				}
+			}, executor));
+		}
+
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()]))
+			.handle((v, t) -> {
+				ConnectionWarmUpStats stats;
+				synchronized (setupNanos) {
+					stats = new ConnectionWarmUpStats(opened.get(), alreadyOpen.get(), failed.get(),
+						System.nanoTime() - start, new LinkedHashMap<>(setupNanos));
+				}
+				logger.debug("connection warm-up: " + stats);
+				return stats;
+			});
+	}
+
+	private HttpRoute toRoute(URI uri) {
+		HttpHost host = URIUtils.extractHost(uri);
+		if (host == null)
+			return null;
+
+		HttpHost target;
+		try {
+			target = new HttpHost(host.getHostName(), DefaultSchemePortResolver.INSTANCE.resolve(host),
+				host.getSchemeName());
+		} catch (Exception e) {
+			return null;
+		}
+
+		boolean secure = "https".equalsIgnoreCase(target.getSchemeName());
+		HttpRoute route = proxy == null ? new HttpRoute(target, null, secure) : new HttpRoute(target, null, proxy,
+			secure);
+
+		// tunnelling through a proxy needs a CONNECT exchange, which only the client itself performs
+		return route.isTunnelled() ? null : route;
+	}
+
+	/**
+	 * Opens the configured number of connections on a route.
+	 *
+	 * @return the setup time of the opened connections in nanoseconds, zero if none was opened.
+	 */
+	private long warmUp(HttpRoute route, AtomicInteger opened, AtomicInteger alreadyOpen, AtomicInteger failed) {
+		List<HttpClientConnection> leased = new ArrayList<>();
+		List<Boolean> reusable = new ArrayList<>();
+		long setupNanos = 0;
+		try {
+			for (int i = 0; i < config.getWarmUpConnectionsPerHost(); i++) {
+				long start = System.nanoTime();
+				HttpClientConnection connection;
+				try {
+					connection = connectionManager.requestConnection(route, null)
+						.get(config.getConnectionRequestTimeout(), TimeUnit.MILLISECONDS);
+				} catch (Exception e) {
+					failed.incrementAndGet();
+					logger.debug("failed to lease connection to " + route.getTargetHost(), e);
+					break;
+				}
+				leased.add(connection);
+
+				if (connection.isOpen()) {
+					alreadyOpen.incrementAndGet();
+					reusable.add(true);
+					continue;
+				}
+
+				try {
+					HttpClientContext context = HttpClientContext.create();
+					connectionManager.connect(connection, route, config.getConnectTimeout(), context);
+					connectionManager.routeComplete(connection, route, context);
+					reusable.add(true);
+					opened.incrementAndGet();
+					setupNanos += System.nanoTime() - start;
+				} catch (Exception e) {
+					reusable.add(false);
+					failed.incrementAndGet();
+					logger.debug("failed to warm connection to " + route.getTargetHost(), e);
+					break;
+				}
+			}
+		} finally {
+			for (int i = 0; i < leased.size(); i++) {
+				HttpClientConnection connection = leased.get(i);
+				if (i >= reusable.size() || !reusable.get(i)) {
+					try {
+						connection.shutdown();
+					} catch (Exception ignore) {
+					}
+				}
+				connectionManager.releaseConnection(connection, null, config.getMaxIdleTime(), TimeUnit.MILLISECONDS);
+			}
+		}
+		return setupNanos;
+	}
+}
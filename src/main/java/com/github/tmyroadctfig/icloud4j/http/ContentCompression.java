@@ -0,0 +1,243 @@
+package com.github.tmyroadctfig.icloud4j.http;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.client.entity.DeflateInputStream;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+
+/**
+ * Negotiates gzip and deflate content codings and decodes responses while they are read, so a compressed body
+ * streams straight into whatever parses it without being inflated into a buffer first.
+ *
+ * Content bytes are counted per endpoint before and after decoding, see {@link TransferStats}. Endpoints are named
+ * after the web service and the request path, with path segments containing digits (ids, versions) replaced by
+ * "*".
+ *
+ * @author patchpump
+ */
+public class ContentCompression implements HttpRequestInterceptor, HttpResponseInterceptor {
+
+	private static final String ACCEPT_ENCODING = "gzip,deflate";
+
+	private final boolean enabled;
+	private final Map<String, TransferStats> transferStats = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param enabled whether compressed responses are asked for. Responses are decoded either way.
+	 */
+	public ContentCompression(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@Override
+	public void process(HttpRequest request, HttpContext context) throws HttpException, IOException {
+		if (enabled && !request.containsHeader(HttpHeaders.ACCEPT_ENCODING))
+			request.addHeader(HttpHeaders.ACCEPT_ENCODING, ACCEPT_ENCODING);
+	}
+
+	@Override
+	public void process(HttpResponse response, HttpContext context) throws HttpException, IOException {
+		decode(response, context);
+	}
+
+	/**
+	 * Replaces the entity of a response with one that decodes and counts its content as it is read. Entities with
+	 * an unknown content coding are left as they are.
+	 *
+	 * @param response the response.
+	 * @param context the context the request was executed with.
+	 */
+	public void decode(HttpResponse response, HttpContext context) {
+		HttpEntity entity = response.getEntity();
+		if (entity == null || entity instanceof CountingEntity)
+			return;
+
+		Header contentEncoding = entity.getContentEncoding();
+		String coding = contentEncoding == null ? "identity" : contentEncoding.getValue().trim().toLowerCase(Locale.ROOT);
+		if (coding.isEmpty())
+			coding = "identity";
+		if (!coding.equals("identity") && !coding.equals("gzip") && !coding.equals("x-gzip") && !coding.equals("deflate"))
+			return;
+
+		TransferStats stats = getTransferStats(context);
+		stats.responses.increment();
+
+		if (coding.equals("identity")) {
+			response.setEntity(new CountingEntity(entity, null, stats));
+			return;
+		}
+
+		stats.compressedResponses.increment();
+		response.setEntity(new CountingEntity(entity, coding, stats));
+		response.removeHeaders(HttpHeaders.CONTENT_LENGTH);
+		response.removeHeaders(HttpHeaders.CONTENT_ENCODING);
+		response.removeHeaders(HttpHeaders.CONTENT_MD5);
+	}
+
+	private TransferStats getTransferStats(HttpContext context) {
+		Object webService = context.getAttribute(SessionHttpClient.WEB_SERVICE_ATTRIBUTE);
+		if (webService == null) {
+			Object target = context.getAttribute(HttpCoreContext.HTTP_TARGET_HOST);
+			webService = target instanceof HttpHost ? ((HttpHost) target).getHostName() : "unknown";
+		}
+
+		Object request = context.getAttribute(HttpCoreContext.HTTP_REQUEST);
+		String path = request instanceof HttpRequest ? toPath(((HttpRequest) request).getRequestLine().getUri()) : "";
+
+		String endpoint = webService + " " + path;
+		return transferStats.computeIfAbsent(endpoint, TransferStats::new);
+	}
+
+	private static String toPath(String uri) {
+		int start = uri.indexOf("://");
+		start = start < 0 ? 0 : uri.indexOf('/', start + 3);
+		if (start < 0)
+			return "/";
+		int end = uri.indexOf('?', start);
+		String path = end < 0 ? uri.substring(start) : uri.substring(start, end);
+
+		StringBuilder result = new StringBuilder(path.length());
+		for (String segment : path.split("/")) {
+			if (segment.isEmpty())
+				continue;
+			result.append('/');
+			if (segment.chars().anyMatch(Character::isDigit))
+				result.append('*');
+			else
+				result.append(segment);
+		}
+		return result.length() == 0 ? "/" : result.toString();
+	}
+
+	/**
+	 * Gets the byte counters of all endpoints seen so far.
+	 *
+	 * @return the counters keyed by endpoint.
+	 */
+	public Map<String, TransferStats> getTransferStats() {
+		return Collections.unmodifiableMap(transferStats);
+	}
+
+	/**
+	 * Entity decoding and counting the content of the wrapped entity as it is read.
+	 */
+	private static class CountingEntity extends HttpEntityWrapper {
+
+		private final String coding;
+		private final TransferStats stats;
+		private InputStream content;
+
+		CountingEntity(HttpEntity wrappedEntity, String coding, TransferStats stats) {
+			super(wrappedEntity);
+			this.coding = coding;
+			this.stats = stats;
+		}
+
+		@Override
+		public InputStream getContent() throws IOException {
+			if (content == null) {
+				InputStream wire = new CountingInputStream(wrappedEntity.getContent(), stats.compressedBytes);
+				if (coding == null) {
+					content = new CountingInputStream(wire, stats.uncompressedBytes);
+				} else {
+					InputStream decoded = coding.equals("deflate") ? new DeflateInputStream(wire) : new GZIPInputStream(wire);
+					content = new CountingInputStream(decoded, stats.uncompressedBytes);
+				}
+			}
+			return content;
+		}
+
+		@Override
+		public long getContentLength() {
+			return coding == null ? wrappedEntity.getContentLength() : -1;
+		}
+
+		@Override
+		public Header getContentEncoding() {
+			return coding == null ? wrappedEntity.getContentEncoding() : null;
+		}
+
+		@Override
+		public boolean isRepeatable() {
+			return false;
+		}
+
+		@Override
+		public void writeTo(OutputStream outstream) throws IOException {
+			try (InputStream in = getContent()) {
+				byte[] buffer = new byte[8192];
+				int n;
+				while ((n = in.read(buffer)) != -1)
+					outstream.write(buffer, 0, n);
+			}
+		}
+	}
+
+	/**
+	 * Input stream adding the number of bytes read to a counter.
+	 */
+	private static class CountingInputStream extends FilterInputStream {
+
+		private final LongAdder counter;
+
+		CountingInputStream(InputStream in, LongAdder counter) {
+			super(in);
+			this.counter = counter;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0)
+				counter.increment();
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n > 0)
+				counter.add(n);
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			if (skipped > 0)
+				counter.add(skipped);
+			return skipped;
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,287 @@
+package com.github.tmyroadctfig.icloud4j.http;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * HTTP transport configuration for an {@link com.github.tmyroadctfig.icloud4j.ICloudService}.
+ *
+ * All durations are in milliseconds. The defaults allow a handful of concurrent requests per iCloud host, which
+ * is enough to list Drive, download files and refresh devices at the same time without queueing behind each other.
+ *
+ * @author patchpump
+ */
+public class ICloudHttpConfig {
+
+	public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 10;
+	public static final int DEFAULT_MAX_CONNECTIONS_TOTAL = 50;
+	public static final long DEFAULT_CONNECTION_TTL = 300000; // five minutes
+	public static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+	public static final int DEFAULT_SOCKET_TIMEOUT = 60000;
+	public static final int DEFAULT_CONNECTION_REQUEST_TIMEOUT = 30000;
+	public static final int DEFAULT_VALIDATE_AFTER_INACTIVITY = 2000;
+	public static final long DEFAULT_MAX_IDLE_TIME = 60000;
+	public static final int DEFAULT_ASYNC_IO_THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+	public static final int DEFAULT_WARM_UP_CONNECTIONS_PER_HOST = 1;
+
+	private int maxConnectionsPerRoute = DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+	private int maxConnectionsTotal = DEFAULT_MAX_CONNECTIONS_TOTAL;
+	private long connectionTimeToLive = DEFAULT_CONNECTION_TTL;
+	private int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+	private int socketTimeout = DEFAULT_SOCKET_TIMEOUT;
+	private int connectionRequestTimeout = DEFAULT_CONNECTION_REQUEST_TIMEOUT;
+	private int validateAfterInactivity = DEFAULT_VALIDATE_AFTER_INACTIVITY;
+	private long maxIdleTime = DEFAULT_MAX_IDLE_TIME;
+	private int asyncIoThreadCount = DEFAULT_ASYNC_IO_THREAD_COUNT;
+	private Executor asyncExecutor = ForkJoinPool.commonPool();
+	private RetryPolicy retryPolicy = new RetryPolicy();
+	private CircuitBreakerPolicy circuitBreakerPolicy = new CircuitBreakerPolicy();
+	private RateLimiter rateLimiter = RateLimiter.getShared();
+	private boolean contentCompression = true;
+	private boolean warmUpAfterLogin;
+	private int warmUpConnectionsPerHost = DEFAULT_WARM_UP_CONNECTIONS_PER_HOST;
+
+	public ICloudHttpConfig() {
+	}
+
+	/**
+	 * Gets the maximum number of pooled connections per route (iCloud host).
+	 *
+	 * @return the limit.
+	 */
+	public int getMaxConnectionsPerRoute() {
+		return maxConnectionsPerRoute;
+	}
+
+	public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+		if (maxConnectionsPerRoute <= 0)
+			throw new IllegalArgumentException("maxConnectionsPerRoute must be positive");
+		this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+	}
+
+	/**
+	 * Gets the maximum number of pooled connections over all routes.
+	 *
+	 * @return the limit.
+	 */
+	public int getMaxConnectionsTotal() {
+		return maxConnectionsTotal;
+	}
+
+	public void setMaxConnectionsTotal(int maxConnectionsTotal) {
+		if (maxConnectionsTotal <= 0)
+			throw new IllegalArgumentException("maxConnectionsTotal must be positive");
+		this.maxConnectionsTotal = maxConnectionsTotal;
+	}
+
+	/**
+	 * Gets the maximum life time of a pooled connection, or a non-positive value for no limit.
+	 *
+	 * @return the time to live.
+	 */
+	public long getConnectionTimeToLive() {
+		return connectionTimeToLive;
+	}
+
+	public void setConnectionTimeToLive(long connectionTimeToLive) {
+		this.connectionTimeToLive = connectionTimeToLive;
+	}
+
+	/**
+	 * Gets the timeout for establishing a connection, zero meaning no timeout.
+	 *
+	 * @return the timeout.
+	 */
+	public int getConnectTimeout() {
+		return connectTimeout;
+	}
+
+	public void setConnectTimeout(int connectTimeout) {
+		this.connectTimeout = connectTimeout;
+	}
+
+	/**
+	 * Gets the socket read timeout, zero meaning no timeout.
+	 *
+	 * @return the timeout.
+	 */
+	public int getSocketTimeout() {
+		return socketTimeout;
+	}
+
+	public void setSocketTimeout(int socketTimeout) {
+		this.socketTimeout = socketTimeout;
+	}
+
+	/**
+	 * Gets the timeout for leasing a connection from the pool, zero meaning no timeout.
+	 *
+	 * @return the timeout.
+	 */
+	public int getConnectionRequestTimeout() {
+		return connectionRequestTimeout;
+	}
+
+	public void setConnectionRequestTimeout(int connectionRequestTimeout) {
+		this.connectionRequestTimeout = connectionRequestTimeout;
+	}
+
+	/**
+	 * Gets the period of inactivity after which a pooled connection is checked for staleness before being re-used,
+	 * or a non-positive value to disable the check.
+	 *
+	 * @return the period.
+	 */
+	public int getValidateAfterInactivity() {
+		return validateAfterInactivity;
+	}
+
+	public void setValidateAfterInactivity(int validateAfterInactivity) {
+		this.validateAfterInactivity = validateAfterInactivity;
+	}
+
+	/**
+	 * Gets the time after which idle pooled connections are evicted by a background thread, or a non-positive value
+	 * to keep idle connections until they expire.
+	 *
+	 * @return the idle time.
+	 */
+	public long getMaxIdleTime() {
+		return maxIdleTime;
+	}
+
+	public void setMaxIdleTime(long maxIdleTime) {
+		this.maxIdleTime = maxIdleTime;
+	}
+
+	/**
+	 * Gets the number of I/O dispatch threads of the non-blocking client used by the asynchronous API.
+	 *
+	 * @return the thread count.
+	 */
+	public int getAsyncIoThreadCount() {
+		return asyncIoThreadCount;
+	}
+
+	public void setAsyncIoThreadCount(int asyncIoThreadCount) {
+		if (asyncIoThreadCount <= 0)
+			throw new IllegalArgumentException("asyncIoThreadCount must be positive");
+		this.asyncIoThreadCount = asyncIoThreadCount;
+	}
+
+	/**
+	 * Gets the executor asynchronous responses are parsed and completed on, keeping JSON parsing off the I/O
+	 * dispatch threads.
+	 *
+	 * @return the executor.
+	 */
+	public Executor getAsyncExecutor() {
+		return asyncExecutor;
+	}
+
+	public void setAsyncExecutor(Executor asyncExecutor) {
+		if (asyncExecutor == null)
+			throw new IllegalArgumentException("asyncExecutor must not be null");
+		this.asyncExecutor = asyncExecutor;
+	}
+
+	/**
+	 * Gets the policy for retrying throttled and failed requests.
+	 *
+	 * @return the retry policy.
+	 */
+	public RetryPolicy getRetryPolicy() {
+		return retryPolicy;
+	}
+
+	public void setRetryPolicy(RetryPolicy retryPolicy) {
+		if (retryPolicy == null)
+			throw new IllegalArgumentException("retryPolicy must not be null");
+		this.retryPolicy = retryPolicy;
+	}
+
+	/**
+	 * Gets the settings of the circuit breakers guarding each service root.
+	 *
+	 * @return the circuit breaker policy.
+	 */
+	public CircuitBreakerPolicy getCircuitBreakerPolicy() {
+		return circuitBreakerPolicy;
+	}
+
+	public void setCircuitBreakerPolicy(CircuitBreakerPolicy circuitBreakerPolicy) {
+		if (circuitBreakerPolicy == null)
+			throw new IllegalArgumentException("circuitBreakerPolicy must not be null");
+		this.circuitBreakerPolicy = circuitBreakerPolicy;
+	}
+
+	/**
+	 * Gets the rate limiter pacing requests, by default the one shared by the whole JVM.
+	 *
+	 * @return the rate limiter.
+	 */
+	public RateLimiter getRateLimiter() {
+		return rateLimiter;
+	}
+
+	public void setRateLimiter(RateLimiter rateLimiter) {
+		if (rateLimiter == null)
+			throw new IllegalArgumentException("rateLimiter must not be null");
+		this.rateLimiter = rateLimiter;
+	}
+
+	/**
+	 * Gets whether gzip or deflate compressed responses are asked for. Compressed responses are decoded while they
+	 * are read.
+	 *
+	 * @return true to ask for compressed responses.
+	 */
+	public boolean isContentCompression() {
+		return contentCompression;
+	}
+
+	public void setContentCompression(boolean contentCompression) {
+		this.contentCompression = contentCompression;
+	}
+
+	/**
+	 * Gets whether connections to the hosts of the web services map are opened in the background after logging in
+	 * or creating a service for a restored session.
+	 *
+	 * @return true to warm up connections.
+	 */
+	public boolean isWarmUpAfterLogin() {
+		return warmUpAfterLogin;
+	}
+
+	public void setWarmUpAfterLogin(boolean warmUpAfterLogin) {
+		this.warmUpAfterLogin = warmUpAfterLogin;
+	}
+
+	/**
+	 * Gets the number of connections a warm-up opens per host.
+	 *
+	 * @return the number of connections.
+	 */
+	public int getWarmUpConnectionsPerHost() {
+		return warmUpConnectionsPerHost;
+	}
+
+	public void setWarmUpConnectionsPerHost(int warmUpConnectionsPerHost) {
+		if (warmUpConnectionsPerHost <= 0)
+			throw new IllegalArgumentException("warmUpConnectionsPerHost must be positive");
+		this.warmUpConnectionsPerHost = warmUpConnectionsPerHost;
+	}
+
+	@Override
+	public String toString() {
+		return "ICloudHttpConfig [maxConnectionsPerRoute=" + maxConnectionsPerRoute + ", maxConnectionsTotal="
+			+ maxConnectionsTotal + ", connectionTimeToLive=" + connectionTimeToLive + ", connectTimeout="
+			+ connectTimeout + ", socketTimeout=" + socketTimeout + ", connectionRequestTimeout="
+			+ connectionRequestTimeout + ", validateAfterInactivity=" + validateAfterInactivity + ", maxIdleTime="
+			+ maxIdleTime + ", asyncIoThreadCount=" + asyncIoThreadCount + ", retryPolicy="
+			+ retryPolicy + ", circuitBreakerPolicy=" + circuitBreakerPolicy
+			+ ", rateLimiter=" + rateLimiter + ", contentCompression=" + contentCompression + ", warmUpAfterLogin=" + warmUpAfterLogin
+			+ ", warmUpConnectionsPerHost=" + warmUpConnectionsPerHost + "]";
+	}
+}
@@ -0,0 +1,526 @@
+package com.github.tmyroadctfig.icloud4j.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.security.GeneralSecurityException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.ssl.SSLContextBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * HTTP transport: the connection pools, TLS setup and HTTP clients used to talk to iCloud.
+ *
+ * A transport holds no account state and may be shared by any number of
+ * {@link com.github.tmyroadctfig.icloud4j.ICloudService} instances, which then re-use the same pooled connections
+ * and TLS sessions to the iCloud hosts. Cookies are kept per session and supplied with each request through a
+ * {@link SessionHttpClient}, so the clients returned here should not be used directly for authenticated requests.
+ *
+ * @author patchpump
+ */
+public class ICloudTransport implements Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(ICloudTransport.class);
+
+	/**
+	 * A flag indicating whether to disable SSL checks.
+	 */
+	private static final boolean DISABLE_SSL_CHECKS = Boolean.parseBoolean(System.getProperty("tmyroadctfig.icloud4j.disableSslChecks", "false"));
+
+	/**
+	 * Proxy host to use.
+	 */
+	private static final String PROXY_HOST = System.getProperty("http.proxyHost");
+
+	/**
+	 * Proxy port to use.
+	 */
+	private static final Integer PROXY_PORT = Integer.getInteger("http.proxyPort");
+
+	/**
+	 * HTTP transport configuration.
+	 */
+	private final ICloudHttpConfig config;
+
+	/**
+	 * HTTP connection pool.
+	 */
+	private final PoolingHttpClientConnectionManager connectionManager;
+
+	/**
+	 * HTTP client.
+	 */
+	private final CloseableHttpClient httpClient;
+
+	/**
+	 * Content coding negotiation and byte counters.
+	 */
+	private final ContentCompression contentCompression;
+
+	/**
+	 * Non-blocking HTTP client for the asynchronous API, created on first use.
+	 */
+	private volatile CloseableHttpAsyncClient asyncHttpClient;
+
+	/**
+	 * Non-blocking HTTP connection pool, created on first use.
+	 */
+	private volatile PoolingNHttpClientConnectionManager asyncConnectionManager;
+
+	/**
+	 * Scheduler for delayed asynchronous work such as retries, created on first use.
+	 */
+	private volatile ScheduledExecutorService scheduler;
+
+	/**
+	 * Executor for connection warm-ups, created on first use.
+	 */
+	private volatile ExecutorService warmUpExecutor;
+
+	/**
+	 * Statistics of the most recent connection warm-up.
+	 */
+	private volatile ConnectionWarmUpStats lastWarmUpStats;
+
+	/**
+	 * Retry budgets per web service.
+	 */
+	private final Map<String, RetryBudget> retryBudgets = new ConcurrentHashMap<>();
+
+	/**
+	 * Circuit breakers per service root.
+	 */
+	private final Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+	/**
+	 * Circuit breaker state change listeners.
+	 */
+	private final List<CircuitBreakerListener> circuitBreakerListeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Creates a new transport with the default configuration.
+	 */
+	public ICloudTransport() {
+		this(new ICloudHttpConfig());
+	}
+
+	/**
+	 * Creates a new transport.
+	 *
+	 * @param config the HTTP transport configuration.
+	 */
+	public ICloudTransport(ICloudHttpConfig config) {
+		this.config = config;
+		this.contentCompression = new ContentCompression(config.isContentCompression());
+		try {
+			connectionManager = createConnectionManager(config);
+
+			HttpClientBuilder clientBuilder = HttpClientBuilder.create()
+				.setConnectionManager(connectionManager)
+				.setDefaultRequestConfig(createRequestConfig(config))
+				.disableAutomaticRetries() // see RetryPolicy
+				.disableContentCompression() // see ContentCompression
+				.addInterceptorLast((HttpRequestInterceptor) contentCompression)
+				.addInterceptorLast((HttpResponseInterceptor) contentCompression)
+				.evictExpiredConnections();
+
+			if (config.getMaxIdleTime() > 0) {
+				clientBuilder.evictIdleConnections(config.getMaxIdleTime(), TimeUnit.MILLISECONDS);
+			}
+
+			if (!Strings.isNullOrEmpty(PROXY_HOST)) {
+				clientBuilder.setProxy(new HttpHost(PROXY_HOST, PROXY_PORT));
+			}
+
+			httpClient = clientBuilder.build();
+
+		} catch (Exception e) {
+			throw Throwables.propagate(e);
+		}
+	}
+
+	/**
+	 * Creates the pooling connection manager. The socket factories are registered here rather than on the client
+	 * builder, since the builder ignores its SSL settings once a connection manager is supplied.
+	 *
+	 * @param config the HTTP transport configuration.
+	 * @return the connection manager.
+	 * @throws GeneralSecurityException if the SSL context could not be created.
+	 */
+	private static PoolingHttpClientConnectionManager createConnectionManager(ICloudHttpConfig config)
+		throws GeneralSecurityException {
+
+		SSLConnectionSocketFactory sslSocketFactory = DISABLE_SSL_CHECKS
+			? new SSLConnectionSocketFactory(createTrustAllSslContext(), NoopHostnameVerifier.INSTANCE)
+			: SSLConnectionSocketFactory.getSocketFactory();
+
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(
+			RegistryBuilder.<ConnectionSocketFactory> create()
+				.register("http", PlainConnectionSocketFactory.getSocketFactory())
+				.register("https", sslSocketFactory)
+				.build(),
+			null, null, null, config.getConnectionTimeToLive(), TimeUnit.MILLISECONDS);
+
+		connectionManager.setMaxTotal(config.getMaxConnectionsTotal());
+		connectionManager.setDefaultMaxPerRoute(config.getMaxConnectionsPerRoute());
+		connectionManager.setValidateAfterInactivity(config.getValidateAfterInactivity());
+		connectionManager.setDefaultSocketConfig(SocketConfig.custom()
+			.setSoTimeout(config.getSocketTimeout())
+			.setTcpNoDelay(true)
+			.build());
+
+		return connectionManager;
+	}
+
+	/**
+	 * Creates the non-blocking pooling connection manager used by the asynchronous API.
+	 *
+	 * @param config the HTTP transport configuration.
+	 * @return the connection manager.
+	 * @throws GeneralSecurityException if the SSL context could not be created.
+	 * @throws IOReactorException if the I/O reactor could not be created.
+	 */
+	private static PoolingNHttpClientConnectionManager createAsyncConnectionManager(ICloudHttpConfig config)
+		throws GeneralSecurityException, IOReactorException {
+
+		DefaultConnectingIOReactor ioReactor = new DefaultConnectingIOReactor(IOReactorConfig.custom()
+			.setIoThreadCount(config.getAsyncIoThreadCount())
+			.setConnectTimeout(config.getConnectTimeout())
+			.setSoTimeout(config.getSocketTimeout())
+			.setTcpNoDelay(true)
+			.build());
+
+		SSLIOSessionStrategy sslStrategy = DISABLE_SSL_CHECKS
+			? new SSLIOSessionStrategy(createTrustAllSslContext(), NoopHostnameVerifier.INSTANCE)
+			: SSLIOSessionStrategy.getDefaultStrategy();
+
+		PoolingNHttpClientConnectionManager connectionManager = new PoolingNHttpClientConnectionManager(ioReactor,
+			null,
+			RegistryBuilder.<SchemeIOSessionStrategy> create()
+				.register("http", NoopIOSessionStrategy.INSTANCE)
+				.register("https", sslStrategy)
+				.build(),
+			null, null, config.getConnectionTimeToLive(), TimeUnit.MILLISECONDS);
+
+		connectionManager.setMaxTotal(config.getMaxConnectionsTotal());
+		connectionManager.setDefaultMaxPerRoute(config.getMaxConnectionsPerRoute());
+
+		return connectionManager;
+	}
+
+	private static SSLContext createTrustAllSslContext() throws GeneralSecurityException {
+		return new SSLContextBuilder().loadTrustMaterial(null, (x509CertChain, authType) -> true).build();
+	}
+
+	private static RequestConfig createRequestConfig(ICloudHttpConfig config) {
+		return RequestConfig.custom()
+			.setConnectTimeout(config.getConnectTimeout())
+			.setSocketTimeout(config.getSocketTimeout())
+			.setConnectionRequestTimeout(config.getConnectionRequestTimeout())
+			.build();
+	}
+
+	/**
+	 * Gets the HTTP transport configuration.
+	 *
+	 * @return the configuration.
+	 */
+	public ICloudHttpConfig getConfig() {
+		return config;
+	}
+
+	/**
+	 * Gets the shared HTTP client.
+	 *
+	 * @return the client.
+	 */
+	public CloseableHttpClient getHttpClient() {
+		return httpClient;
+	}
+
+	/**
+	 * Gets the shared connection manager.
+	 *
+	 * @return the connection manager.
+	 */
+	public PoolingHttpClientConnectionManager getConnectionManager() {
+		return connectionManager;
+	}
+
+	/**
+	 * Gets the shared non-blocking HTTP client used by the asynchronous API. The client and its I/O dispatch threads
+	 * are created and started on first use.
+	 *
+	 * @return the client.
+	 */
+	public CloseableHttpAsyncClient getAsyncHttpClient() {
+		CloseableHttpAsyncClient client = asyncHttpClient;
+		if (client == null) {
+			synchronized (this) {
+				client = asyncHttpClient;
+				if (client == null) {
+					try {
+						PoolingNHttpClientConnectionManager connectionManager = createAsyncConnectionManager(config);
+
+						// only requests of a SessionHttpClient, which decodes their responses, ask for compression
+						HttpAsyncClientBuilder clientBuilder = HttpAsyncClients.custom()
+							.setConnectionManager(connectionManager)
+							.setDefaultRequestConfig(createRequestConfig(config))
+							.addInterceptorLast((HttpRequestInterceptor) (request, context) -> {
+								if (context.getAttribute(SessionHttpClient.WEB_SERVICE_ATTRIBUTE) != null)
+									contentCompression.process(request, context);
+							});
+
+						if (!Strings.isNullOrEmpty(PROXY_HOST)) {
+							clientBuilder.setProxy(new HttpHost(PROXY_HOST, PROXY_PORT));
+						}
+
+						client = clientBuilder.build();
+						client.start();
+						asyncConnectionManager = connectionManager;
+						asyncHttpClient = client;
+					} catch (Exception e) {
+						throw Throwables.propagate(e);
+					}
+				}
+			}
+		}
+		return client;
+	}
+
+	/**
+	 * Gets the content coding negotiation, which also decodes the responses of the non-blocking client.
+	 *
+	 * @return the content compression.
+	 */
+	public ContentCompression getContentCompression() {
+		return contentCompression;
+	}
+
+	/**
+	 * Gets the response byte counters per endpoint, compressed versus uncompressed.
+	 *
+	 * @return the counters keyed by endpoint, e.g. "drivews /retrieveItemDetailsInFolders".
+	 */
+	public Map<String, TransferStats> getTransferStats() {
+		return contentCompression.getTransferStats();
+	}
+
+	/**
+	 * Gets the scheduler for delayed asynchronous work. Scheduled tasks must not block.
+	 *
+	 * @return the scheduler.
+	 */
+	public ScheduledExecutorService getScheduler() {
+		ScheduledExecutorService result = scheduler;
+		if (result == null) {
+			synchronized (this) {
+				result = scheduler;
+				if (result == null) {
+					result = Executors.newSingleThreadScheduledExecutor(
+						new ThreadFactoryBuilder().setNameFormat("icloud4j-scheduler-%d").setDaemon(true).build());
+					scheduler = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Opens pooled connections to the hosts of the given URIs in parallel, so the first requests to them re-use a
+	 * warm connection. Hosts already having an idle connection in the pool are left alone. Only the blocking
+	 * client's pool is warmed, and routes tunnelled through a proxy are skipped.
+	 *
+	 * @param uris the URIs, typically the service roots of the web services map.
+	 * @return the future warm-up statistics, completing once all hosts have been tried.
+	 */
+	public CompletableFuture<ConnectionWarmUpStats> warmUp(Collection<URI> uris) {
+		ExecutorService executor = warmUpExecutor;
+		if (executor == null) {
+			synchronized (this) {
+				executor = warmUpExecutor;
+				if (executor == null) {
+					executor = Executors.newCachedThreadPool(
+						new ThreadFactoryBuilder().setNameFormat("icloud4j-warm-up-%d").setDaemon(true).build());
+					warmUpExecutor = executor;
+				}
+			}
+		}
+
+		HttpHost proxy = Strings.isNullOrEmpty(PROXY_HOST) ? null : new HttpHost(PROXY_HOST, PROXY_PORT);
+		return new ConnectionWarmer(connectionManager, config, proxy).warmUp(uris, executor)
+			.thenApply(stats -> lastWarmUpStats = stats);
+	}
+
+	/**
+	 * Gets the statistics of the most recent connection warm-up.
+	 *
+	 * @return the statistics, or null if no warm-up has completed.
+	 */
+	public ConnectionWarmUpStats getLastWarmUpStats() {
+		return lastWarmUpStats;
+	}
+
+	/**
+	 * Gets the retry budget of a web service, shared by all sessions on this transport.
+	 *
+	 * @param webService the web service name, e.g. "drivews".
+	 * @return the retry budget.
+	 */
+	public RetryBudget getRetryBudget(String webService) {
+		return retryBudgets.computeIfAbsent(webService, name -> new RetryBudget(name,
+			config.getRetryPolicy().getBudgetMaxTokens(), config.getRetryPolicy().getBudgetTokenRatio()));
+	}
+
+	/**
+	 * Gets the retry budgets of all web services used so far.
+	 *
+	 * @return the retry budgets keyed by web service name.
+	 */
+	public Map<String, RetryBudget> getRetryBudgets() {
+		return Collections.unmodifiableMap(retryBudgets);
+	}
+
+	/**
+	 * Gets the circuit breaker of a service root, shared by all sessions on this transport.
+	 *
+	 * @param target the target host of a request.
+	 * @param webService the web service name, e.g. "ckdatabasews".
+	 * @return the circuit breaker.
+	 */
+	public CircuitBreaker getCircuitBreaker(HttpHost target, String webService) {
+		String scheme = target.getSchemeName().toLowerCase(Locale.ROOT);
+		int port = target.getPort() > 0 ? target.getPort() : "https".equals(scheme) ? 443 : 80;
+		String serviceRoot = scheme + "://" + target.getHostName().toLowerCase(Locale.ROOT) + ":" + port;
+
+		return circuitBreakers.computeIfAbsent(serviceRoot, root -> new CircuitBreaker(root, webService,
+			config.getCircuitBreakerPolicy(), this::onCircuitBreakerStateChange));
+	}
+
+	/**
+	 * Gets the circuit breakers of all service roots used so far.
+	 *
+	 * @return the circuit breakers keyed by service root.
+	 */
+	public Map<String, CircuitBreaker> getCircuitBreakers() {
+		return Collections.unmodifiableMap(circuitBreakers);
+	}
+
+	/**
+	 * Adds a listener for circuit breaker state changes.
+	 *
+	 * @param listener the listener.
+	 */
+	public void addCircuitBreakerListener(CircuitBreakerListener listener) {
+		circuitBreakerListeners.add(listener);
+	}
+
+	public void removeCircuitBreakerListener(CircuitBreakerListener listener) {
+		circuitBreakerListeners.remove(listener);
+	}
+
+	private void onCircuitBreakerStateChange(CircuitBreaker circuitBreaker, CircuitBreaker.State from,
+		CircuitBreaker.State to) {
+		if (to == CircuitBreaker.State.OPEN)
+			logger.warn("circuit opened for " + circuitBreaker.getWebService() + " (" + circuitBreaker.getServiceRoot() + ")");
+		else if (to == CircuitBreaker.State.CLOSED)
+			logger.info("circuit closed for " + circuitBreaker.getWebService() + " (" + circuitBreaker.getServiceRoot() + "), backend recovered");
+
+		for (CircuitBreakerListener listener : circuitBreakerListeners) {
+			try {
+				listener.onStateChange(circuitBreaker, from, to);
+			} catch (RuntimeException e) {
+				logger.warn("circuit breaker listener failed", e);
+			}
+		}
+	}
+
+	/**
+	 * Gets a snapshot of the HTTP connection pool statistics, useful for sizing the pool limits.
+	 *
+	 * @return the pool statistics.
+	 */
+	public ConnectionPoolStats getConnectionPoolStats() {
+		return ConnectionPoolStats.of(connectionManager);
+	}
+
+	/**
+	 * Gets a snapshot of the non-blocking HTTP connection pool statistics.
+	 *
+	 * @return the pool statistics, empty if the asynchronous API has not been used yet.
+	 */
+	public ConnectionPoolStats getAsyncConnectionPoolStats() {
+		PoolingNHttpClientConnectionManager connectionManager = asyncConnectionManager;
+		if (connectionManager == null)
+			return new ConnectionPoolStats(new PoolStats(0, 0, 0, config.getMaxConnectionsTotal()),
+				Collections.emptyMap());
+		return ConnectionPoolStats.of(connectionManager);
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			httpClient.close();
+		} finally {
+			ScheduledExecutorService executor = scheduler;
+			if (executor != null)
+				executor.shutdownNow();
+
+			ExecutorService warmUp = warmUpExecutor;
+			if (warmUp != null)
+				warmUp.shutdownNow();
+
+			CloseableHttpAsyncClient client = asyncHttpClient;
+			if (client != null)
+				client.close();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ICloudTransport [config=" + config + ", pool=" + getConnectionPoolStats() + "]";
+	}
+}
@@ -0,0 +1,43 @@
+package com.github.tmyroadctfig.icloud4j.http;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate limiter backend keeping its token buckets in memory.
+ *
+ * @author patchpump
+ */
+public class InMemoryRateLimiterBackend implements RateLimiterBackend {
+
+	private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+	@Override
+	public long reserve(String key, RateLimit limit) {
+		return buckets.computeIfAbsent(key, k -> new Bucket(limit)).reserve(limit);
+	}
+
+	/**
+	 * A token bucket whose balance may go negative, the debt being paid off by waiting callers.
+	 */
+	private static class Bucket {
+
+		private double tokens;
+		private long refilledAt = System.nanoTime();
+
+		Bucket(RateLimit limit) {
+			this.tokens = limit.getBurst();
+		}
+
+		synchronized long reserve(RateLimit limit) {
+			long now = System.nanoTime();
+			double rate = limit.getPermitsPerSecond() / TimeUnit.SECONDS.toNanos(1);
+			tokens = Math.min(limit.getBurst(), tokens + (now - refilledAt) * rate);
+			refilledAt = now;
+
+			tokens -= 1;
+			return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / rate);
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package com.github.tmyroadctfig.icloud4j.http;
+
+/**
+ * A token bucket rate: the sustained number of requests per second and the number of requests that may be sent
+ * in a burst after a quiet period.
+ *
+ * @author patchpump
+ */
+public class RateLimit {
+
+	private final double permitsPerSecond;
+	private final int burst;
+
+	/**
+	 * Creates a new rate limit.
+	 *
+	 * @param permitsPerSecond the sustained rate in requests per second.
+	 * @param burst the bucket size.
+	 */
+	public RateLimit(double permitsPerSecond, int burst) {
+		if (!(permitsPerSecond > 0))
+			throw new IllegalArgumentException("permitsPerSecond must be positive");
+		if (burst <= 0)
+			throw new IllegalArgumentException("burst must be positive");
+		this.permitsPerSecond = permitsPerSecond;
+		this.burst = burst;
+	}
+
+	public double getPermitsPerSecond() {
+		return permitsPerSecond;
+	}
+
+	public int getBurst() {
+		return burst;
+	}
+
+	@Override
+	public String toString() {
+		return "RateLimit [permitsPerSecond=" + permitsPerSecond + ", burst=" + burst + "]";
+	}
+}
@@ -0,0 +1,145 @@
+package com.github.tmyroadctfig.icloud4j.http;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client side token bucket rate limiter, pacing requests per host and per web service (e.g. "drivews", "docws",
+ * "ckdatabasews", "photos", "findme", "ubiquity" or "setup") so bursts such as tree walks stay below the limits at
+ * which iCloud starts throttling.
+ *
+ * A request waits for a permit from both the bucket of its host and the bucket of its web service, where either
+ * may be unlimited. By default every {@link ICloudHttpConfig} uses the {@link #getShared() shared} limiter, so limits
+ * set on it apply to all sessions in the JVM.
+ *
+ * @author patchpump
+ */
+public class RateLimiter {
+
+	private static final RateLimiter SHARED = new RateLimiter();
+
+	private final RateLimiterBackend backend;
+	private final Map<String, RateLimit> hostLimits = new ConcurrentHashMap<>();
+	private final Map<String, RateLimit> serviceLimits = new ConcurrentHashMap<>();
+	private final AtomicLong delayed = new AtomicLong();
+	private final AtomicLong delayNanos = new AtomicLong();
+
+	/**
+	 * Creates a rate limiter keeping its buckets in memory.
+	 */
+	public RateLimiter() {
+		this(new InMemoryRateLimiterBackend());
+	}
+
+	/**
+	 * Creates a rate limiter on top of the given backend.
+	 *
+	 * @param backend the backend.
+	 */
+	public RateLimiter(RateLimiterBackend backend) {
+		if (backend == null)
+			throw new IllegalArgumentException("backend must not be null");
+		this.backend = backend;
+	}
+
+	/**
+	 * Gets the rate limiter shared by all configurations in the JVM which have not been given their own.
+	 *
+	 * @return the shared rate limiter.
+	 */
+	public static RateLimiter getShared() {
+		return SHARED;
+	}
+
+	/**
+	 * Sets the rate of requests to a host.
+	 *
+	 * @param host the host name, e.g. "p12-drivews.icloud.com".
+	 * @param limit the limit, or null for no limit.
+	 */
+	public void setHostLimit(String host, RateLimit limit) {
+		String key = host.toLowerCase(Locale.ROOT);
+		if (limit == null)
+			hostLimits.remove(key);
+		else
+			hostLimits.put(key, limit);
+	}
+
+	/**
+	 * Sets the rate of requests to a web service, over all of its hosts.
+	 *
+	 * @param webService the web service name, e.g. "drivews".
+	 * @param limit the limit, or null for no limit.
+	 */
+	public void setServiceLimit(String webService, RateLimit limit) {
+		if (limit == null)
+			serviceLimits.remove(webService);
+		else
+			serviceLimits.put(webService, limit);
+	}
+
+	public Map<String, RateLimit> getHostLimits() {
+		return Collections.unmodifiableMap(hostLimits);
+	}
+
+	public Map<String, RateLimit> getServiceLimits() {
+		return Collections.unmodifiableMap(serviceLimits);
+	}
+
+	/**
+	 * Reserves a permit for a request.
+	 *
+	 * @param host the target host name.
+	 * @param webService the web service name.
+	 * @return the time in nanoseconds to wait before sending the request.
+	 */
+	public long reserve(String host, String webService) {
+		if (hostLimits.isEmpty() && serviceLimits.isEmpty())
+			return 0;
+
+		long wait = 0;
+		RateLimit hostLimit = hostLimits.get(host.toLowerCase(Locale.ROOT));
+		if (hostLimit != null)
+			wait = backend.reserve("host:" + host.toLowerCase(Locale.ROOT), hostLimit);
+		RateLimit serviceLimit = serviceLimits.get(webService);
+		if (serviceLimit != null)
+			wait = Math.max(wait, backend.reserve("service:" + webService, serviceLimit));
+
+		if (wait > 0) {
+			delayed.incrementAndGet();
+			delayNanos.addAndGet(wait);
+		}
+		return wait;
+	}
+
+	public RateLimiterBackend getBackend() {
+		return backend;
+	}
+
+	/**
+	 * Gets the number of requests that had to wait for a permit.
+	 *
+	 * @return the number of delayed requests.
+	 */
+	public long getDelayed() {
+		return delayed.get();
+	}
+
+	/**
+	 * Gets the total time requests waited for permits.
+	 *
+	 * @return the time in nanoseconds.
+	 */
+	public long getDelayNanos() {
+		return delayNanos.get();
+	}
+
+	@Override
+	public String toString() {
+		return "RateLimiter [hostLimits=" + hostLimits + ", serviceLimits=" + serviceLimits + ", delayed=" + delayed
+			+ "]";
+	}
+}
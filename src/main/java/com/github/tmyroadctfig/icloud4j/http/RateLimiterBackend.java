@@ -0,0 +1,22 @@
+package com.github.tmyroadctfig.icloud4j.http;
+
+/**
+ * Storage of the token buckets behind a {@link RateLimiter}.
+ *
+ * {@link InMemoryRateLimiterBackend} keeps the buckets of a single JVM. An implementation on top of a shared store
+ * lets a fleet of nodes using the same Apple ID share one budget.
+ *
+ * @author patchpump
+ */
+public interface RateLimiterBackend {
+
+	/**
+	 * Reserves one permit from a bucket. The permit is taken even if the bucket is empty, in which case the caller
+	 * must wait for the returned time before sending its request.
+	 *
+	 * @param key the bucket key, e.g. "service:drivews".
+	 * @param limit the rate of the bucket.
+	 * @return the time in nanoseconds to wait before the permit may be used, zero if it may be used right away.
+	 */
+	long reserve(String key, RateLimit limit);
+}
@@ -0,0 +1,81 @@
+package com.github.tmyroadctfig.icloud4j.http;
+
+/**
+ * Retry budget of a single web service.
+ *
+ * The budget starts with a number of tokens. Every retryable failure takes one token and every success returns a
+ * fraction of one; retries are only allowed while more than half of the tokens are left. A backend that keeps
+ * failing therefore quickly stops being retried, while occasional throttling is retried freely.
+ *
+ * @author patchpump
+ */
+public class RetryBudget {
+
+	private final String webService;
+	private final double maxTokens;
+	private final double tokenRatio;
+	private double tokens;
+	private long retries;
+	private long exhausted;
+
+	public RetryBudget(String webService, int maxTokens, double tokenRatio) {
+		this.webService = webService;
+		this.maxTokens = maxTokens;
+		this.tokenRatio = tokenRatio;
+		this.tokens = maxTokens;
+	}
+
+	/**
+	 * Records a retryable failure.
+	 *
+	 * @return true if the budget allows a retry.
+	 */
+	public synchronized boolean onFailure() {
+		tokens = Math.max(0, tokens - 1);
+		if (tokens > maxTokens / 2) {
+			retries++;
+			return true;
+		}
+		exhausted++;
+		return false;
+	}
+
+	/**
+	 * Records a success.
+	 */
+	public synchronized void onSuccess() {
+		tokens = Math.min(maxTokens, tokens + tokenRatio);
+	}
+
+	public String getWebService() {
+		return webService;
+	}
+
+	public synchronized double getTokens() {
+		return tokens;
+	}
+
+	/**
+	 * Gets the number of retries the budget allowed.
+	 *
+	 * @return the number of retries.
+	 */
+	public synchronized long getRetries() {
+		return retries;
+	}
+
+	/**
+	 * Gets the number of retries the budget refused.
+	 *
+	 * @return the number of refused retries.
+	 */
+	public synchronized long getExhausted() {
+		return exhausted;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "RetryBudget [webService=" + webService + ", tokens=" + tokens + ", retries=" + retries
+			+ ", exhausted=" + exhausted + "]";
+	}
+}
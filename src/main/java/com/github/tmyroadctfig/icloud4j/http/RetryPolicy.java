@@ -0,0 +1,309 @@
+package com.github.tmyroadctfig.icloud4j.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.net.ssl.SSLException;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.conn.ConnectTimeoutException;
+
+/**
+ * Decides whether, and after what delay, a failed request is retried.
+ *
+ * Throttling responses (429, 503) are always retried since the server did not process the request, honouring
+ * a 'Retry-After' header. Gateway errors and I/O errors are only retried for idempotent requests, unless the
+ * connection could not be established at all. Without 'Retry-After' the delay grows exponentially, with equal
+ * jitter: half of the backoff is fixed, the other half random.
+ *
+ * Retries are further limited by a {@link RetryBudget} per web service.
+ *
+ * @author patchpump
+ */
+public class RetryPolicy {
+
+	public static final int DEFAULT_MAX_ATTEMPTS = 4;
+	public static final long DEFAULT_INITIAL_BACKOFF = 500;
+	public static final long DEFAULT_MAX_BACKOFF = 30000;
+	public static final double DEFAULT_BACKOFF_MULTIPLIER = 2.0;
+	public static final long DEFAULT_MAX_RETRY_AFTER = 120000;
+	public static final int DEFAULT_BUDGET_MAX_TOKENS = 20;
+	public static final double DEFAULT_BUDGET_TOKEN_RATIO = 0.1;
+
+	/**
+	 * POST end points which only read data and are safe to repeat.
+	 */
+	public static final Set<String> DEFAULT_IDEMPOTENT_POST_PATHS = new HashSet<>(Arrays.asList(
+		"/retrieveItemDetailsInFolders", "/records/query", "/records/lookup", "/changes/zone", "/changes/database",
+		"/refreshClient", "/storageUsageInfo"));
+
+	private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+	private long initialBackoff = DEFAULT_INITIAL_BACKOFF;
+	private long maxBackoff = DEFAULT_MAX_BACKOFF;
+	private double backoffMultiplier = DEFAULT_BACKOFF_MULTIPLIER;
+	private long maxRetryAfter = DEFAULT_MAX_RETRY_AFTER;
+	private int budgetMaxTokens = DEFAULT_BUDGET_MAX_TOKENS;
+	private double budgetTokenRatio = DEFAULT_BUDGET_TOKEN_RATIO;
+	private Set<String> idempotentPostPaths = new HashSet<>(DEFAULT_IDEMPOTENT_POST_PATHS);
+
+	public RetryPolicy() {
+	}
+
+	/**
+	 * Creates a policy which never retries.
+	 *
+	 * @return the policy.
+	 */
+	public static RetryPolicy disabled() {
+		RetryPolicy policy = new RetryPolicy();
+		policy.setMaxAttempts(1);
+		return policy;
+	}
+
+	/**
+	 * Gets the delay before retrying a request that received the given response.
+	 *
+	 * @param request the request.
+	 * @param response the response.
+	 * @param attempt the number of the attempt that received the response, starting at 1.
+	 * @return the delay in milliseconds, or a negative value if the request should not be retried.
+	 */
+	public long getRetryDelay(HttpRequest request, HttpResponse response, int attempt) {
+		int status = response.getStatusLine().getStatusCode();
+		if (attempt >= maxAttempts || !isRetryableStatus(status) || !isRepeatable(request))
+			return -1;
+
+		// a gateway may have forwarded the request before failing
+		if ((status == HttpStatus.SC_BAD_GATEWAY || status == HttpStatus.SC_GATEWAY_TIMEOUT) && !isIdempotent(request))
+			return -1;
+
+		long retryAfter = getRetryAfter(response);
+		if (retryAfter > maxRetryAfter)
+			return -1;
+
+		return Math.max(retryAfter, getBackoff(attempt));
+	}
+
+	/**
+	 * Checks whether a response status indicates throttling or a transient backend failure.
+	 *
+	 * @param status the HTTP status code.
+	 * @return true if retryable.
+	 */
+	public boolean isRetryableStatus(int status) {
+		return status == 429 || status == HttpStatus.SC_SERVICE_UNAVAILABLE || status == HttpStatus.SC_BAD_GATEWAY
+			|| status == HttpStatus.SC_GATEWAY_TIMEOUT;
+	}
+
+	/**
+	 * Gets the delay before retrying a request that failed with the given exception.
+	 *
+	 * @param request the request.
+	 * @param e the exception.
+	 * @param attempt the number of the attempt that failed, starting at 1.
+	 * @return the delay in milliseconds, or a negative value if the request should not be retried.
+	 */
+	public long getRetryDelay(HttpRequest request, Exception e, int attempt) {
+		if (attempt >= maxAttempts || !isRepeatable(request) || !(e instanceof IOException))
+			return -1;
+
+		if (e instanceof UnknownHostException || e instanceof NoRouteToHostException || e instanceof SSLException)
+			return -1;
+
+		// a plain InterruptedIOException means the calling thread was interrupted
+		if (e instanceof InterruptedIOException && !(e instanceof SocketTimeoutException)
+			&& !(e instanceof ConnectTimeoutException))
+			return -1;
+
+		// the request never left when the connection could not be established
+		boolean notSent = e instanceof ConnectException || e instanceof ConnectTimeoutException;
+		if (!notSent && !isIdempotent(request))
+			return -1;
+
+		return getBackoff(attempt);
+	}
+
+	/**
+	 * Gets the backoff before the next attempt: exponential in the attempt number, capped, with equal jitter.
+	 *
+	 * @param attempt the number of the attempt that failed, starting at 1.
+	 * @return the backoff in milliseconds.
+	 */
+	public long getBackoff(int attempt) {
+		double backoff = Math.min(maxBackoff, initialBackoff * Math.pow(backoffMultiplier, attempt - 1));
+		long half = (long) (backoff / 2);
+		return half + (half > 0 ? ThreadLocalRandom.current().nextLong(half + 1) : 0);
+	}
+
+	/**
+	 * Gets the delay requested by a 'Retry-After' header, either in seconds or as an HTTP date.
+	 *
+	 * @param response the response.
+	 * @return the delay in milliseconds, zero if there is no valid header.
+	 */
+	static long getRetryAfter(HttpResponse response) {
+		Header header = response.getFirstHeader("Retry-After");
+		if (header == null || header.getValue() == null)
+			return 0;
+
+		String value = header.getValue().trim();
+		try {
+			return Math.max(0, Long.parseLong(value) * 1000);
+		} catch (NumberFormatException e) {
+			Date date = DateUtils.parseDate(value);
+			return date != null ? Math.max(0, date.getTime() - System.currentTimeMillis()) : 0;
+		}
+	}
+
+	/**
+	 * Checks whether the request may be executed again, i.e. that its entity, if any, can be re-sent.
+	 *
+	 * @param request the request.
+	 * @return true if repeatable.
+	 */
+	static boolean isRepeatable(HttpRequest request) {
+		if (!(request instanceof HttpEntityEnclosingRequest))
+			return true;
+		HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+		return entity == null || entity.isRepeatable();
+	}
+
+	/**
+	 * Checks whether the request is idempotent: by method, or a POST to one of the read-only end points.
+	 *
+	 * @param request the request.
+	 * @return true if idempotent.
+	 */
+	public boolean isIdempotent(HttpRequest request) {
+		String method = request.getRequestLine().getMethod().toUpperCase(Locale.ROOT);
+		switch (method) {
+		case "GET":
+		case "HEAD":
+		case "OPTIONS":
+		case "PUT":
+		case "DELETE":
+			return true;
+		case "POST":
+			String path = request instanceof HttpUriRequest
+				? ((HttpUriRequest) request).getURI().getPath()
+				: request.getRequestLine().getUri().replaceFirst("\\?.*$", "");
+			for (String idempotentPath : idempotentPostPaths) {
+				if (path != null && path.endsWith(idempotentPath))
+					return true;
+			}
+			return false;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Gets the maximum number of attempts per request, including the first.
+	 *
+	 * @return the maximum attempts.
+	 */
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+
+	public void setMaxAttempts(int maxAttempts) {
+		if (maxAttempts <= 0)
+			throw new IllegalArgumentException("maxAttempts must be positive");
+		this.maxAttempts = maxAttempts;
+	}
+
+	public long getInitialBackoff() {
+		return initialBackoff;
+	}
+
+	public void setInitialBackoff(long initialBackoff) {
+		this.initialBackoff = initialBackoff;
+	}
+
+	public long getMaxBackoff() {
+		return maxBackoff;
+	}
+
+	public void setMaxBackoff(long maxBackoff) {
+		this.maxBackoff = maxBackoff;
+	}
+
+	public double getBackoffMultiplier() {
+		return backoffMultiplier;
+	}
+
+	public void setBackoffMultiplier(double backoffMultiplier) {
+		this.backoffMultiplier = backoffMultiplier;
+	}
+
+	/**
+	 * Gets the longest 'Retry-After' delay that is waited for; responses asking for longer are returned as is.
+	 *
+	 * @return the delay.
+	 */
+	public long getMaxRetryAfter() {
+		return maxRetryAfter;
+	}
+
+	public void setMaxRetryAfter(long maxRetryAfter) {
+		this.maxRetryAfter = maxRetryAfter;
+	}
+
+	/**
+	 * Gets the number of tokens of each web service's retry budget.
+	 *
+	 * @return the number of tokens.
+	 */
+	public int getBudgetMaxTokens() {
+		return budgetMaxTokens;
+	}
+
+	public void setBudgetMaxTokens(int budgetMaxTokens) {
+		this.budgetMaxTokens = budgetMaxTokens;
+	}
+
+	/**
+	 * Gets the fraction of a token returned to a retry budget by each successful request.
+	 *
+	 * @return the ratio.
+	 */
+	public double getBudgetTokenRatio() {
+		return budgetTokenRatio;
+	}
+
+	public void setBudgetTokenRatio(double budgetTokenRatio) {
+		this.budgetTokenRatio = budgetTokenRatio;
+	}
+
+	public Set<String> getIdempotentPostPaths() {
+		return idempotentPostPaths;
+	}
+
+	public void setIdempotentPostPaths(Set<String> idempotentPostPaths) {
+		this.idempotentPostPaths = idempotentPostPaths;
+	}
+
+	@Override
+	public String toString() {
+		return "RetryPolicy [maxAttempts=" + maxAttempts + ", initialBackoff=" + initialBackoff + ", maxBackoff="
+			+ maxBackoff + ", backoffMultiplier=" + backoffMultiplier + ", maxRetryAfter=" + maxRetryAfter
+			+ ", budgetMaxTokens=" + budgetMaxTokens + ", budgetTokenRatio=" + budgetTokenRatio + "]";
+	}
+}
@@ -0,0 +1,419 @@
+package com.github.tmyroadctfig.icloud4j.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.CookieStore;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.tmyroadctfig.icloud4j.ICloudCircuitOpenException;
+import com.github.tmyroadctfig.icloud4j.ICloudService;
+import com.github.tmyroadctfig.icloud4j.ICloudSession;
+
+/**
+ * HTTP client for a single iCloud session on top of a possibly shared {@link ICloudTransport}.
+ *
+ * Every request is executed with a {@link HttpClientContext} carrying the session's cookie store, so cookies of
+ * different accounts never mix even though they share connections. Throttled and failed requests are retried
+ * according to the transport's {@link RetryPolicy}, within the {@link RetryBudget} of the web service the request
+ * goes to. Requests to a service root whose {@link CircuitBreaker} is open fail fast with an
+ * {@link ICloudCircuitOpenException}. Every attempt is paced by the configured {@link RateLimiter}. Closing this
+ * client does not close the transport.
+ *
+ * @author patchpump
+ */
+public class SessionHttpClient extends CloseableHttpClient {
+
+	/**
+	 * Context attribute holding the name of the web service a request goes to, e.g. "drivews".
+	 */
+	public static final String WEB_SERVICE_ATTRIBUTE = "icloud4j.web-service";
+
+	private static final Logger logger = LoggerFactory.getLogger(SessionHttpClient.class);
+
+	private final ICloudTransport transport;
+	private final ICloudSession session;
+	private volatile WebServiceHosts webServiceHosts;
+
+	public SessionHttpClient(ICloudTransport transport, ICloudSession session) {
+		this.transport = transport;
+		this.session = session;
+	}
+
+	/**
+	 * Creates a context for a request of this session.
+	 *
+	 * @return the context.
+	 */
+	public HttpClientContext createContext() {
+		HttpClientContext context = HttpClientContext.create();
+		context.setCookieStore(session.getCookieStore());
+		return context;
+	}
+
+	/**
+	 * Adapts the given context to a context for a request of this session, keeping a cookie store set by the
+	 * caller.
+	 *
+	 * @param context the context, may be null.
+	 * @return the context.
+	 */
+	private HttpClientContext adaptContext(HttpContext context) {
+		if (context == null)
+			return createContext();
+
+		HttpClientContext clientContext = HttpClientContext.adapt(context);
+		if (clientContext.getCookieStore() == null)
+			clientContext.setCookieStore(session.getCookieStore());
+		return clientContext;
+	}
+
+	@Override
+	protected CloseableHttpResponse doExecute(HttpHost target, HttpRequest request, HttpContext context)
+		throws IOException, ClientProtocolException {
+
+		HttpClientContext clientContext = adaptContext(context);
+		String webService = resolveWebService(target);
+		clientContext.setAttribute(WEB_SERVICE_ATTRIBUTE, webService);
+
+		RetryPolicy retryPolicy = transport.getConfig().getRetryPolicy();
+		RetryBudget retryBudget = transport.getRetryBudget(webService);
+		CircuitBreaker circuitBreaker = transport.getCircuitBreaker(target, webService);
+
+		for (int attempt = 1;; attempt++) {
+			// a request rejected by an open circuit does not use up a rate limit permit
+			if (!circuitBreaker.tryAcquire())
+				throw circuitOpen(circuitBreaker);
+			try {
+				acquirePermit(target, webService);
+			} catch (InterruptedIOException e) {
+				circuitBreaker.onIgnored();
+				throw e;
+			}
+
+			CloseableHttpResponse response;
+			try {
+				response = transport.getHttpClient().execute(target, request, clientContext);
+			} catch (IOException e) {
+				circuitBreaker.onFailure();
+				long delay = retryPolicy.getRetryDelay(request, e, attempt);
+				if (delay < 0 || !retryBudget.onFailure())
+					throw e;
+
+				logRetry(webService, request, e.toString(), attempt, delay);
+				sleep(delay);
+				continue;
+			} catch (RuntimeException e) {
+				circuitBreaker.onIgnored();
+				throw e;
+			}
+
+			int status = response.getStatusLine().getStatusCode();
+			recordOutcome(circuitBreaker, status);
+			if (!retryPolicy.isRetryableStatus(status)) {
+				retryBudget.onSuccess();
+				return response;
+			}
+
+			long delay = retryPolicy.getRetryDelay(request, response, attempt);
+			if (delay < 0 || !retryBudget.onFailure())
+				return response;
+
+			logRetry(webService, request, response.getStatusLine().toString(), attempt, delay);
+			EntityUtils.consumeQuietly(response.getEntity());
+			response.close();
+			sleep(delay);
+		}
+	}
+
+	private void acquirePermit(HttpHost target, String webService) throws InterruptedIOException {
+		long wait = transport.getConfig().getRateLimiter().reserve(target.getHostName(), webService);
+		if (wait <= 0)
+			return;
+
+		try {
+			TimeUnit.NANOSECONDS.sleep(wait);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while waiting for a rate limit permit");
+		}
+	}
+
+	private static void recordOutcome(CircuitBreaker circuitBreaker, int status) {
+		if (status >= 500)
+			circuitBreaker.onFailure();
+		else
+			circuitBreaker.onSuccess();
+	}
+
+	private static ICloudCircuitOpenException circuitOpen(CircuitBreaker circuitBreaker) {
+		return new ICloudCircuitOpenException(circuitBreaker.getServiceRoot(), circuitBreaker.getWebService(),
+			circuitBreaker.getRemainingOpenTime());
+	}
+
+	private static void sleep(long delay) throws InterruptedIOException {
+		try {
+			Thread.sleep(delay);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while waiting to retry");
+		}
+	}
+
+	private static void logRetry(String webService, HttpRequest request, String cause, int attempt, long delay) {
+		if (logger.isDebugEnabled())
+			logger.debug(webService + ": retrying " + request.getRequestLine().getMethod() + " after " + cause
+				+ " (attempt " + attempt + ") in " + delay + " ms");
+	}
+
+	/**
+	 * Executes a request on the non-blocking client of the transport, retrying like the blocking client does but
+	 * without holding a thread while waiting. The returned future completes on an I/O dispatch thread, so dependent
+	 * stages should not block.
+	 *
+	 * @param request the request.
+	 * @return the future response, with its content fully buffered.
+	 */
+	public CompletableFuture<HttpResponse> executeAsync(HttpUriRequest request) {
+		HttpClientContext context = createContext();
+		HttpHost target = URIUtils.extractHost(request.getURI());
+		String webService = resolveWebService(target);
+		context.setAttribute(WEB_SERVICE_ATTRIBUTE, webService);
+
+		CompletableFuture<HttpResponse> result = new CompletableFuture<>();
+		executeAsync(request, context, target, webService, 1, result);
+		return result;
+	}
+
+	private void executeAsync(HttpUriRequest request, HttpClientContext context, HttpHost target, String webService,
+		int attempt, CompletableFuture<HttpResponse> result) {
+
+		if (result.isDone())
+			return;
+
+		// a request rejected by an open circuit does not use up a rate limit permit
+		CircuitBreaker circuitBreaker = transport.getCircuitBreaker(target, webService);
+		if (!circuitBreaker.tryAcquire()) {
+			result.completeExceptionally(circuitOpen(circuitBreaker));
+			return;
+		}
+
+		long wait;
+		try {
+			wait = transport.getConfig().getRateLimiter().reserve(target.getHostName(), webService);
+		} catch (RuntimeException e) {
+			circuitBreaker.onIgnored();
+			result.completeExceptionally(e);
+			return;
+		}
+		if (wait <= 0) {
+			sendAsync(request, context, target, webService, circuitBreaker, attempt, result);
+			return;
+		}
+
+		try {
+			transport.getScheduler().schedule(
+				() -> sendAsync(request, context, target, webService, circuitBreaker, attempt, result), wait,
+				TimeUnit.NANOSECONDS);
+		} catch (RuntimeException e) {
+			circuitBreaker.onIgnored();
+			result.completeExceptionally(e);
+		}
+	}
+
+	private void sendAsync(HttpUriRequest request, HttpClientContext context, HttpHost target, String webService,
+		CircuitBreaker circuitBreaker, int attempt, CompletableFuture<HttpResponse> result) {
+
+		if (result.isDone()) {
+			circuitBreaker.onIgnored();
+			return;
+		}
+
+		RetryPolicy retryPolicy = transport.getConfig().getRetryPolicy();
+		RetryBudget retryBudget = transport.getRetryBudget(webService);
+
+		Future<HttpResponse> httpFuture;
+		try {
+			httpFuture = transport.getAsyncHttpClient().execute(request, context, new FutureCallback<HttpResponse>() {
+
+				@Override
+				public void completed(HttpResponse response) {
+					transport.getContentCompression().decode(response, context);
+
+					int status = response.getStatusLine().getStatusCode();
+					recordOutcome(circuitBreaker, status);
+					if (!retryPolicy.isRetryableStatus(status)) {
+						retryBudget.onSuccess();
+						result.complete(response);
+						return;
+					}
+
+					long delay = retryPolicy.getRetryDelay(request, response, attempt);
+					if (delay < 0 || !retryBudget.onFailure()) {
+						result.complete(response);
+						return;
+					}
+
+					logRetry(webService, request, response.getStatusLine().toString(), attempt, delay);
+					scheduleRetry(request, context, target, webService, attempt, result, delay);
+				}
+
+				@Override
+				public void failed(Exception e) {
+					if (e instanceof IOException)
+						circuitBreaker.onFailure();
+					else
+						circuitBreaker.onIgnored();
+
+					long delay = retryPolicy.getRetryDelay(request, e, attempt);
+					if (delay < 0 || !retryBudget.onFailure()) {
+						result.completeExceptionally(e);
+						return;
+					}
+
+					logRetry(webService, request, e.toString(), attempt, delay);
+					scheduleRetry(request, context, target, webService, attempt, result, delay);
+				}
+
+				@Override
+				public void cancelled() {
+					circuitBreaker.onIgnored();
+					result.cancel(false);
+				}
+			});
+		} catch (RuntimeException e) {
+			circuitBreaker.onIgnored();
+			result.completeExceptionally(e);
+			return;
+		}
+
+		result.whenComplete((response, t) -> {
+			if (result.isCancelled())
+				httpFuture.cancel(true);
+		});
+	}
+
+	private void scheduleRetry(HttpUriRequest request, HttpClientContext context, HttpHost target, String webService,
+		int attempt, CompletableFuture<HttpResponse> result, long delay) {
+		try {
+			transport.getScheduler().schedule(
+				() -> executeAsync(request, context, target, webService, attempt + 1, result), delay,
+				TimeUnit.MILLISECONDS);
+		} catch (RuntimeException e) {
+			result.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * Resolves the name of the web service a request goes to from the session's web services map, falling back to
+	 * the host name for hosts not in the map.
+	 *
+	 * @param target the target host.
+	 * @return the web service name.
+	 */
+	public String resolveWebService(HttpHost target) {
+		if (target == null)
+			return "unknown";
+
+		Map<String, Object> webServices = session.getWebServicesMap();
+		WebServiceHosts hosts = webServiceHosts;
+		if (hosts == null || hosts.webServices != webServices) {
+			hosts = new WebServiceHosts(webServices);
+			webServiceHosts = hosts;
+		}
+
+		String hostName = target.getHostName().toLowerCase(Locale.ROOT);
+		String webService = hosts.webServicesByHost.get(hostName);
+		return webService != null ? webService : hostName;
+	}
+
+	/**
+	 * Gets the transport.
+	 *
+	 * @return the transport.
+	 */
+	public ICloudTransport getTransport() {
+		return transport;
+	}
+
+	/**
+	 * Gets the session cookie store.
+	 *
+	 * @return the cookie store.
+	 */
+	public CookieStore getCookieStore() {
+		return session.getCookieStore();
+	}
+
+	@Override
+	public void close() throws IOException {
+		// the transport is owned by whoever created it
+	}
+
+	@Override
+	@Deprecated
+	public HttpParams getParams() {
+		return transport.getHttpClient().getParams();
+	}
+
+	@Override
+	@Deprecated
+	public ClientConnectionManager getConnectionManager() {
+		return transport.getHttpClient().getConnectionManager();
+	}
+
+	/**
+	 * Web service names by host, derived from a web services map.
+	 */
+	private static class WebServiceHosts {
+
+		final Map<String, Object> webServices;
+		final Map<String, String> webServicesByHost;
+
+		WebServiceHosts(Map<String, Object> webServices) {
+			this.webServices = webServices;
+
+			Map<String, String> byHost = new HashMap<>();
+			byHost.put(URI.create(ICloudService.setupEndPoint).getHost(), "setup");
+			if (webServices != null) {
+				for (Map.Entry<String, Object> entry : webServices.entrySet()) {
+					if (!(entry.getValue() instanceof Map))
+						continue;
+					Object url = ((Map<?, ?>) entry.getValue()).get("url");
+					if (!(url instanceof String))
+						continue;
+					try {
+						String host = URI.create((String) url).getHost();
+						if (host != null)
+							byHost.putIfAbsent(host.toLowerCase(Locale.ROOT), entry.getKey());
+					} catch (IllegalArgumentException ignore) {
+					}
+				}
+			}
+			this.webServicesByHost = Collections.unmodifiableMap(byHost);
+		}
+	}
+}
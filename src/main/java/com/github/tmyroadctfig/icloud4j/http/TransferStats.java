@@ -0,0 +1,82 @@
+package com.github.tmyroadctfig.icloud4j.http;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Response byte counters of a single endpoint, e.g. "drivews /retrieveItemDetailsInFolders".
+ *
+ * Compressed bytes are the bytes received on the wire, uncompressed bytes the bytes handed to the caller after
+ * decoding; both only count content that has actually been read. For responses sent without a content coding the
+ * two are equal.
+ *
+ * @author patchpump
+ */
+public class TransferStats {
+
+	private final String endpoint;
+	final LongAdder responses = new LongAdder();
+	final LongAdder compressedResponses = new LongAdder();
+	final LongAdder compressedBytes = new LongAdder();
+	final LongAdder uncompressedBytes = new LongAdder();
+
+	public TransferStats(String endpoint) {
+		this.endpoint = endpoint;
+	}
+
+	public String getEndpoint() {
+		return endpoint;
+	}
+
+	/**
+	 * Gets the number of responses with content.
+	 *
+	 * @return the number of responses.
+	 */
+	public long getResponses() {
+		return responses.sum();
+	}
+
+	/**
+	 * Gets the number of responses sent with a gzip or deflate content coding.
+	 *
+	 * @return the number of compressed responses.
+	 */
+	public long getCompressedResponses() {
+		return compressedResponses.sum();
+	}
+
+	/**
+	 * Gets the number of content bytes received on the wire.
+	 *
+	 * @return the number of bytes.
+	 */
+	public long getCompressedBytes() {
+		return compressedBytes.sum();
+	}
+
+	/**
+	 * Gets the number of content bytes after decoding.
+	 *
+	 * @return the number of bytes.
+	 */
+	public long getUncompressedBytes() {
+		return uncompressedBytes.sum();
+	}
+
+	/**
+	 * Gets the fraction of content bytes compression saved on the wire.
+	 *
+	 * @return the savings, between zero and one.
+	 */
+	public double getSavings() {
+		long uncompressed = getUncompressedBytes();
+		return uncompressed == 0 ? 0 : Math.max(0, 1 - (double) getCompressedBytes() / uncompressed);
+	}
+
+	@Override
+	public String toString() {
+		return "TransferStats [endpoint=" + endpoint + ", responses=" + getResponses() + ", compressedResponses="
+			+ getCompressedResponses() + ", compressedBytes=" + getCompressedBytes() + ", uncompressedBytes="
+			+ getUncompressedBytes() + "]";
+	}
+}
@@ -1,64 +1,64 @@
-/*
- *    Copyright 2016 Luke Quinane
- *
- *    Licensed under the Apache License, Version 2.0 (the "License");
- *    you may not use this file except in compliance with the License.
- *    You may obtain a copy of the License at
- *
- *    http://www.apache.org/licenses/LICENSE-2.0
- *
- *    Unless required by applicable law or agreed to in writing, software
- *    distributed under the License is distributed on an "AS IS" BASIS,
- *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- *    See the License for the specific language governing permissions and
- *    limitations under the License.
- */
-
-package com.github.tmyroadctfig.icloud4j.json;
-
-/**
- * Details for an Apple device.
- *
- * @author Luke Quinane
- */
-public class AppleDevice {
-	public String msg;
-	public boolean canWipeAfterLock;
-	public boolean wipeInProgress;
-	public boolean lostModeEnabled;
-	public boolean activationLocked;
-	public double passcodeLength;
-	public int deviceStatus;
-	public String deviceColor;
-	public boolean lowPowerMode;
-	public String rawDeviceModel;
-	public String id;
-	public String remoteLock;
-	public boolean isLocating;
-	public String modelDisplayName;
-	public String lostTimestamp;
-	public double batteryLevel;
-	public String mesg;
-	public boolean locationEnabled;
-	public String lockedTimestamp;
-	public boolean locFoundEnabled;
-	public String snd;
-	public boolean fmlyShare;
-	public String lostDevice;
-	public boolean lostModeCapable;
-	public String wipedTimestamp;
-	public String deviceDisplayName;
-	public String prsId;
-	public boolean locationCapable;
-	public String batteryStatus;
-	public String trackingInfo;
-	public String name;
-	public boolean isMac;
-	public boolean thisDevice;
-	public String deviceClass;
-	public Location location;
-	public String deviceModel;
-	public String maxMsgChar;
-	public boolean darkWake;
-	public String remoteWipe;
-}
+/*
+ *    Copyright 2016 Luke Quinane
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.tmyroadctfig.icloud4j.json;
+
+/**
+ * Details for an Apple device.
+ *
+ * @author Luke Quinane
+ */
+public class AppleDevice {
+	public String msg;
+	public boolean canWipeAfterLock;
+	public boolean wipeInProgress;
+	public boolean lostModeEnabled;
+	public boolean activationLocked;
+	public double passcodeLength;
+	public int deviceStatus;
+	public String deviceColor;
+	public boolean lowPowerMode;
+	public String rawDeviceModel;
+	public String id;
+	public String remoteLock;
+	public boolean isLocating;
+	public String modelDisplayName;
+	public String lostTimestamp;
+	public double batteryLevel;
+	public String mesg;
+	public boolean locationEnabled;
+	public String lockedTimestamp;
+	public boolean locFoundEnabled;
+	public String snd;
+	public boolean fmlyShare;
+	public String lostDevice;
+	public boolean lostModeCapable;
+	public String wipedTimestamp;
+	public String deviceDisplayName;
+	public String prsId;
+	public boolean locationCapable;
+	public String batteryStatus;
+	public String trackingInfo;
+	public String name;
+	public boolean isMac;
+	public boolean thisDevice;
+	public String deviceClass;
+	public Location location;
+	public String deviceModel;
+	public String maxMsgChar;
+	public boolean darkWake;
+	public String remoteWipe;
+}
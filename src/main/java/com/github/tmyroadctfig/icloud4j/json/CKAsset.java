@@ -0,0 +1,85 @@
+package com.github.tmyroadctfig.icloud4j.json;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Map;
+
+import com.google.common.base.Throwables;
+
+/**
+ * CKDatabase asset, the value of an ASSETID field such as "resOriginalRes".
+ * 
+ * @author patchpump
+ */
+public class CKAsset {
+
+	private static final String FILE_NAME_PLACEHOLDER = "${f}";
+
+	private final String downloadURL;
+	private final long size;
+	private final String fileChecksum;
+
+	public CKAsset(String downloadURL, long size, String fileChecksum) {
+		this.downloadURL = downloadURL;
+		this.size = size;
+		this.fileChecksum = fileChecksum;
+	}
+
+	/**
+	 * Creates an asset from an ASSETID field value.
+	 *
+	 * @param value the field value.
+	 * @return the asset, or null if the value has no download URL.
+	 */
+	static CKAsset fromMap(Map<?, ?> value) {
+		Object downloadURL = value.get("downloadURL");
+		if (!(downloadURL instanceof String))
+			return null;
+
+		Object size = value.get("size");
+		Object fileChecksum = value.get("fileChecksum");
+		return new CKAsset((String) downloadURL, size instanceof Number ? ((Number) size).longValue() : -1,
+			fileChecksum instanceof String ? (String) fileChecksum : null);
+	}
+
+	/**
+	 * Gets the download URL as returned by the server, with a "${f}" placeholder for the file name.
+	 *
+	 * @return the download URL template.
+	 */
+	public String getDownloadURL() {
+		return downloadURL;
+	}
+
+	/**
+	 * Gets the download URL for the given file name. The server only uses the name for the content disposition.
+	 *
+	 * @param fileName the file name.
+	 * @return the download URL.
+	 */
+	public String getDownloadURL(String fileName) {
+		try {
+			return downloadURL.replace(FILE_NAME_PLACEHOLDER, URLEncoder.encode(fileName, "UTF-8").replace("+", "%20"));
+		} catch (UnsupportedEncodingException e) {
+			throw Throwables.propagate(e);
+		}
+	}
+
+	/**
+	 * Gets the asset size.
+	 *
+	 * @return the size in bytes, or -1 if unknown.
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	public String getFileChecksum() {
+		return fileChecksum;
+	}
+
+	@Override
+	public String toString() {
+		return "[CKAsset:" + size + ":" + fileChecksum + "]";
+	}
+}
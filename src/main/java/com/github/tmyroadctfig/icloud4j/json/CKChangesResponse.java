@@ -0,0 +1,56 @@
+package com.github.tmyroadctfig.icloud4j.json;
+
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * CKDatabase changes response, for both the database changes and the zone changes requests.
+ * 
+ * @author patchpump
+ */
+public class CKChangesResponse {
+
+	private static final ImmutableList<CKZoneChanges> EMPTY_LIST = ImmutableList.of();
+
+	List<CKZoneChanges> zones;
+	String syncToken;
+	boolean moreComing;
+	String serverErrorCode;
+	String reason;
+
+	/**
+	 * Gets the zones. For database changes these are the changed zones, carrying only their zone ID.
+	 *
+	 * @return the zones.
+	 */
+	public List<CKZoneChanges> getZones() {
+		return zones != null ? zones : EMPTY_LIST;
+	}
+
+	/**
+	 * Gets the database sync token. Zone changes carry their own tokens.
+	 *
+	 * @return the sync token.
+	 */
+	public String getSyncToken() {
+		return syncToken;
+	}
+
+	public boolean isMoreComing() {
+		return moreComing;
+	}
+
+	public String getServerErrorCode() {
+		return serverErrorCode;
+	}
+
+	public String getReason() {
+		return reason;
+	}
+
+	@Override
+	public String toString() {
+		return "[CKChangesResponse:" + zones + "]";
+	}
+}
@@ -0,0 +1,39 @@
+package com.github.tmyroadctfig.icloud4j.json;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * CKDatabase record field types.
+ * 
+ * @author patchpump
+ */
+public enum CKFieldType {
+
+	STRING, INT64, DOUBLE, TIMESTAMP, BYTES, ENCRYPTED_BYTES, REFERENCE, ASSET, ASSETID, LOCATION,
+	STRING_LIST, INT64_LIST, DOUBLE_LIST, TIMESTAMP_LIST, BYTES_LIST, REFERENCE_LIST, ASSET_LIST, ASSETID_LIST,
+	LOCATION_LIST,
+
+	/**
+	 * A type this version does not know, or a missing type.
+	 */
+	UNKNOWN;
+
+	private static final Map<String, CKFieldType> BY_NAME = new HashMap<>();
+
+	static {
+		for (CKFieldType type : values())
+			BY_NAME.put(type.name(), type);
+	}
+
+	/**
+	 * Gets the type of a type name as sent by the server.
+	 *
+	 * @param name the type name, e.g. "INT64".
+	 * @return the type, {@link #UNKNOWN} if the name is null or not known.
+	 */
+	public static CKFieldType of(String name) {
+		CKFieldType type = name == null ? null : BY_NAME.get(name);
+		return type != null ? type : UNKNOWN;
+	}
+}
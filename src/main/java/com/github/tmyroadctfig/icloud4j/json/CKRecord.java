@@ -1,151 +1,369 @@
-package com.github.tmyroadctfig.icloud4j.json;
-
-import java.io.UnsupportedEncodingException;
-import java.util.Map;
-
-import org.apache.commons.codec.binary.Base64;
-import com.github.tmyroadctfig.icloud4j.util.ICloudUtils;
-
-/**
- * CKDatabase record.
- * 
- * @author patchpump
- */
-public class CKRecord {
-
-	private String recordName;
-	private String recordType;
-	private String recordChangeTag;
-	private CKTimestamp created;
-	private CKTimestamp modified;
-	private CKZoneId zoneID;
-
-	private Map<String,CKRecordFieldValue> fields;
-
-	public String getRecordName() {
-		return recordName;
-	}
-
-	public String getRecordType() {
-		return recordType;
-	}
-
-	public CKTimestamp getCreated() {
-		return created;
-	}
-
-	public CKTimestamp getModified() {
-		return modified;
-	}
-
-	public String getRecordChangeTag() {
-		return recordChangeTag;
-	}
-
-	public CKZoneId getZoneID() {
-		return zoneID;
-	}
-
-	public Map<String, CKRecordFieldValue> getFields() {
-		return fields;
-	}
-
-	public String getString(String key) {
-		return getString(key, "");
-	}
-
-	public Long getLong(String key) {
-		return getLong(key, 0L);
-	}
-
-	public String getString(String key, String defaultValue) {
-
-		if(fields == null)
-			return defaultValue;
-
-		CKRecordFieldValue v = fields.get(key);
-		if(v == null || v.value == null)
-			return defaultValue;
-
-		try {
-			if("STRING".equals(v.type))
-				return (String)v.value;
-			if("TIMESTAMP".equals(v.type) || "INT64".equals(v.type))
-				return Long.toString((Long)v.value);
-			else if("ENCRYPTED_BYTES".equals(v.type))
-				return new String(Base64.decodeBase64((String)v.value), "UTF-8");
-		} catch (UnsupportedEncodingException ignore) {
-		}
-
-		return defaultValue;
-	}
-
-	public Long getLong(String key, Long defaultValue) {
-
-		if(fields == null)
-			return defaultValue;
-
-		CKRecordFieldValue v = fields.get(key);
-		if(v == null || v.value == null)
-			return defaultValue;
-
-		if("TIMESTAMP".equals(v.type) || "INT64".equals(v.type))
-			return ((Double)v.value).longValue();
-		else if("STRING".equals(v.type))
-			return Long.parseLong((String)v.value);
-
-		return defaultValue;
-	}
-
-	public Map<String,Object> getMap(String key) {
-
-		if(fields == null)
-			return null;
-
-		CKRecordFieldValue v = fields.get(key);
-		if(v == null || v.value == null || !(v.value instanceof Map))
-			return null;
-
-		return ICloudUtils.stringifyMap(v.value);
-	}
-
-	@SuppressWarnings("unchecked")
-	public String getReference(String key) {
-
-		if(fields == null)
-			return null;
-
-		CKRecordFieldValue v = fields.get(key);
-		if(v == null || v.value == null || ! "REFERENCE".equals(v.type) || !(v.value instanceof Map))
-			return null;
-
-		return (String)((Map<String,Object>)v.value).get("recordName");
-	}
-
-	public byte[] getBytes(String key) {
-		if(fields == null)
-			return new byte[0];
-
-		CKRecordFieldValue v = fields.get(key);
-		if(v == null || v.value == null || !"ENCRYPTED_BYTES".equals(v.type))
-			return new byte[0];
-
-		return Base64.decodeBase64((String)v.value);
-	}
-
-	@Override
-	public String toString() {
-		return "[CKDatabaseRecord:" + recordName + ":" + recordType + ":" + modified + ":" + fields + "]";
-	}
-
-	public static class CKRecordFieldValue {
-
-		public String type;
-		public Object value;
-
-		@Override
-		public String toString() {
-			return "[CKRecordFieldValue:" + type + ":" + value + "]";
-		}
-	}
-}
+package com.github.tmyroadctfig.icloud4j.json;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.apache.commons.codec.binary.Base64;
+import com.github.tmyroadctfig.icloud4j.util.ICloudUtils;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * CKDatabase record.
+ * 
+ * @author patchpump
+ */
+public class CKRecord {
+
+	private static final byte[] EMPTY_BYTES = new byte[0];
+
+	String recordName;
+	String recordType;
+	String recordChangeTag;
+	CKTimestamp created;
+	CKTimestamp modified;
+	CKZoneId zoneID;
+
+	Map<String,CKRecordFieldValue> fields;
+
+	boolean deleted;
+
+	String serverErrorCode;
+	String reason;
+
+	public String getRecordName() {
+		return recordName;
+	}
+
+	public String getRecordType() {
+		return recordType;
+	}
+
+	public CKTimestamp getCreated() {
+		return created;
+	}
+
+	public CKTimestamp getModified() {
+		return modified;
+	}
+
+	public String getRecordChangeTag() {
+		return recordChangeTag;
+	}
+
+	public CKZoneId getZoneID() {
+		return zoneID;
+	}
+
+	public Map<String, CKRecordFieldValue> getFields() {
+		return fields;
+	}
+
+	/**
+	 * Gets whether the record has been deleted. Only set on records from a changes request.
+	 *
+	 * @return true if the record has been deleted.
+	 */
+	public boolean isDeleted() {
+		return deleted;
+	}
+
+	/**
+	 * Gets the error code of a record the server could not return, e.g. "NOT_FOUND" from a lookup.
+	 *
+	 * @return the error code, or null if the record was returned.
+	 */
+	public String getServerErrorCode() {
+		return serverErrorCode;
+	}
+
+	public String getReason() {
+		return reason;
+	}
+
+	public String getString(String key) {
+		return getString(key, "");
+	}
+
+	/**
+	 * Gets a TIMESTAMP or INT64 field, or a STRING field holding a number, boxed. Use
+	 * {@link #getLongValue(String, long)} when reading many records.
+	 *
+	 * @param key the field name.
+	 * @return the value, or 0 if the field is missing or of another type.
+	 */
+	public Long getLong(String key) {
+		return getLong(key, 0L);
+	}
+
+	public String getString(String key, String defaultValue) {
+
+		CKRecordFieldValue v = getField(key);
+		if(v == null)
+			return defaultValue;
+
+		switch(v.getFieldType()) {
+		case STRING:
+			return v.value instanceof String ? (String)v.value : defaultValue;
+		case TIMESTAMP:
+		case INT64:
+			return Long.toString(v.longValue);
+		case ENCRYPTED_BYTES:
+			return new String(v.getBytes(), StandardCharsets.UTF_8);
+		default:
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Gets a TIMESTAMP or INT64 field, or a STRING field holding a number, boxed. Use
+	 * {@link #getLongValue(String, long)} when reading many records.
+	 *
+	 * @param key the field name.
+	 * @param defaultValue the value if the field is missing or of another type.
+	 * @return the value.
+	 */
+	public Long getLong(String key, Long defaultValue) {
+
+		CKRecordFieldValue v = getField(key);
+		if(v == null)
+			return defaultValue;
+
+		switch(v.getFieldType()) {
+		case TIMESTAMP:
+		case INT64:
+			return v.longValue;
+		case STRING:
+			return v.value instanceof String ? Long.parseLong((String)v.value) : defaultValue;
+		default:
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Gets a TIMESTAMP or INT64 field, or a STRING field holding a number, without boxing.
+	 *
+	 * @param key the field name.
+	 * @param defaultValue the value if the field is missing or of another type.
+	 * @return the value.
+	 */
+	public long getLongValue(String key, long defaultValue) {
+
+		CKRecordFieldValue v = getField(key);
+		if(v == null)
+			return defaultValue;
+
+		switch(v.getFieldType()) {
+		case TIMESTAMP:
+		case INT64:
+			return v.longValue;
+		case STRING:
+			return v.value instanceof String ? Long.parseLong((String)v.value) : defaultValue;
+		default:
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Gets a DOUBLE, TIMESTAMP or INT64 field without boxing.
+	 *
+	 * @param key the field name.
+	 * @param defaultValue the value if the field is missing or of another type.
+	 * @return the value.
+	 */
+	public double getDoubleValue(String key, double defaultValue) {
+
+		CKRecordFieldValue v = getField(key);
+		if(v == null)
+			return defaultValue;
+
+		switch(v.getFieldType()) {
+		case DOUBLE:
+			return v.doubleValue;
+		case TIMESTAMP:
+		case INT64:
+			return v.longValue;
+		default:
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Gets a map field, with its values converted to strings. The map is converted once and shared by later calls.
+	 *
+	 * @param key the field name.
+	 * @return the immutable map, or null if the field is missing or not a map.
+	 */
+	public Map<String,Object> getMap(String key) {
+
+		CKRecordFieldValue v = getField(key);
+		if(v == null)
+			return null;
+
+		return v.getMap();
+	}
+
+	public String getReference(String key) {
+
+		CKRecordFieldValue v = getField(key);
+		if(v == null || v.getFieldType() != CKFieldType.REFERENCE || !(v.value instanceof Map))
+			return null;
+
+		return (String)((Map<?,?>)v.value).get("recordName");
+	}
+
+	/**
+	 * Gets the asset of an ASSETID field, e.g. "resOriginalRes".
+	 *
+	 * @param key the field name.
+	 * @return the asset, or null if the field is missing, not an asset or has no download URL.
+	 */
+	public CKAsset getAsset(String key) {
+
+		CKRecordFieldValue v = getField(key);
+		if(v == null || v.getFieldType() != CKFieldType.ASSETID)
+			return null;
+
+		return v.getAsset();
+	}
+
+	/**
+	 * Gets a BYTES or ENCRYPTED_BYTES field. The field is decoded once; each call returns a copy.
+	 *
+	 * @param key the field name.
+	 * @return a copy of the bytes, or an empty array if the field is missing or of another type.
+	 */
+	public byte[] getBytes(String key) {
+
+		CKRecordFieldValue v = getField(key);
+		if(v == null)
+			return EMPTY_BYTES;
+
+		byte[] b = v.getBytes();
+		return b.length == 0 ? EMPTY_BYTES : b.clone();
+	}
+
+	/**
+	 * Gets a field with a value.
+	 *
+	 * @param key the field name.
+	 * @return the field, or null if it is missing or null.
+	 */
+	private CKRecordFieldValue getField(String key) {
+
+		if(fields == null)
+			return null;
+
+		CKRecordFieldValue v = fields.get(key);
+		if(v == null || v.value == null)
+			return null;
+
+		return v;
+	}
+
+	@Override
+	public String toString() {
+		return "[CKDatabaseRecord:" + recordName + ":" + recordType + ":" + modified + ":" + fields + "]";
+	}
+
+	/**
+	 * A record field as sent by the server. The typed value is decoded once, when the field is parsed or first read;
+	 * bytes, maps and assets are decoded on first use and cached.
+	 */
+	public static class CKRecordFieldValue {
+
+		public String type;
+		public Object value;
+
+		private transient volatile CKFieldType fieldType;
+		transient long longValue;
+		transient double doubleValue;
+
+		private transient volatile byte[] bytes;
+		private transient volatile Map<String,Object> map;
+		private transient volatile CKAsset asset;
+
+		public CKFieldType getFieldType() {
+			CKFieldType t = fieldType;
+			return t != null ? t : decode();
+		}
+
+		/**
+		 * Decodes the typed value. Numbers read by the Gson object adapter are doubles, so longs beyond 2^53 lose
+		 * precision unless set exactly with {@link #decode(long)}.
+		 */
+		CKFieldType decode() {
+			if(value instanceof Number) {
+				Number n = (Number)value;
+				return decode(n.longValue());
+			}
+			if(value instanceof String) {
+				CKFieldType t = CKFieldType.of(type);
+				if(t == CKFieldType.INT64 || t == CKFieldType.TIMESTAMP) {
+					try {
+						return decode(Long.parseLong((String)value));
+					} catch (NumberFormatException ignore) {
+					}
+				}
+			}
+			return decode(0);
+		}
+
+		CKFieldType decode(long exactLong) {
+			longValue = exactLong;
+			doubleValue = value instanceof Number ? ((Number)value).doubleValue() : exactLong;
+			CKFieldType t = CKFieldType.of(type);
+			fieldType = t;
+			return t;
+		}
+
+		byte[] getBytes() {
+			byte[] b = bytes;
+			if(b == null) {
+				CKFieldType t = getFieldType();
+				b = (t == CKFieldType.ENCRYPTED_BYTES || t == CKFieldType.BYTES) && value instanceof String
+					? Base64.decodeBase64((String)value) : EMPTY_BYTES;
+				bytes = b;
+			}
+			return b;
+		}
+
+		Map<String,Object> getMap() {
+			Map<String,Object> m = map;
+			if(m == null && value instanceof Map) {
+				m = toImmutableMap((Map<?,?>)value);
+				map = m;
+			}
+			return m;
+		}
+
+		/**
+		 * Converts a map like {@link ICloudUtils#stringifyMap(Object)} does, but deeply immutable and leaving out null
+		 * values.
+		 */
+		private static ImmutableMap<String,Object> toImmutableMap(Map<?,?> value) {
+			ImmutableMap.Builder<String,Object> builder = ImmutableMap.builder();
+			for(Map.Entry<?,?> entry : value.entrySet()) {
+				Object v = entry.getValue();
+				if(v instanceof Map)
+					builder.put(String.valueOf(entry.getKey()), toImmutableMap((Map<?,?>)v));
+				else if(v != null)
+					builder.put(String.valueOf(entry.getKey()), v.toString());
+			}
+			return builder.build();
+		}
+
+		CKAsset getAsset() {
+			CKAsset a = asset;
+			if(a == null && value instanceof Map) {
+				a = CKAsset.fromMap((Map<?,?>)value);
+				asset = a;
+			}
+			return a;
+		}
+
+		@Override
+		public String toString() {
+			return "[CKRecordFieldValue:" + type + ":" + value + "]";
+		}
+	}
+}
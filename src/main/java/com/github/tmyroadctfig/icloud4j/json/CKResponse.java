@@ -1,26 +1,56 @@
-package com.github.tmyroadctfig.icloud4j.json;
-
-import java.util.List;
-
-import com.google.common.collect.ImmutableList;
-
-/**
- * CKDatabase response.
- * 
- * @author patchpump
- */
-public class CKResponse {
-
-	private static final ImmutableList<CKRecord> EMPTY_LIST = ImmutableList.of();
-
-	private List<CKRecord> records;
-
-	public List<CKRecord> getRecords() {
-		return records != null ? records : EMPTY_LIST;
-	}
-
-	@Override
-	public String toString() {
-		return "[CKResponse:" + records + "]";
-	}
-}
+package com.github.tmyroadctfig.icloud4j.json;
+
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * CKDatabase response.
+ * 
+ * @author patchpump
+ */
+public class CKResponse {
+
+	private static final ImmutableList<CKRecord> EMPTY_LIST = ImmutableList.of();
+
+	List<CKRecord> records;
+	String continuationMarker;
+	String syncToken;
+	String serverErrorCode;
+	String reason;
+
+	public List<CKRecord> getRecords() {
+		return records != null ? records : EMPTY_LIST;
+	}
+
+	/**
+	 * Gets the marker to pass with the same query to fetch the next page.
+	 *
+	 * @return the continuation marker, or null if there are no more results.
+	 */
+	public String getContinuationMarker() {
+		return continuationMarker;
+	}
+
+	public String getSyncToken() {
+		return syncToken;
+	}
+
+	/**
+	 * Gets the error code of a failed request, e.g. "BAD_REQUEST".
+	 *
+	 * @return the error code, or null if the request succeeded.
+	 */
+	public String getServerErrorCode() {
+		return serverErrorCode;
+	}
+
+	public String getReason() {
+		return reason;
+	}
+
+	@Override
+	public String toString() {
+		return "[CKResponse:" + records + "]";
+	}
+}
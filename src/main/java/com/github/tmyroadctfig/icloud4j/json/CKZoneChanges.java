@@ -0,0 +1,66 @@
+package com.github.tmyroadctfig.icloud4j.json;
+
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * CKDatabase zone changes: the records changed in a zone since a sync token.
+ * 
+ * @author patchpump
+ */
+public class CKZoneChanges {
+
+	private static final ImmutableList<CKRecord> EMPTY_LIST = ImmutableList.of();
+
+	CKZoneId zoneID;
+	List<CKRecord> records;
+	String syncToken;
+	boolean moreComing;
+	String serverErrorCode;
+	String reason;
+
+	public CKZoneId getZoneID() {
+		return zoneID;
+	}
+
+	/**
+	 * Gets the changed records. Deleted records only carry their name and {@link CKRecord#isDeleted()}.
+	 *
+	 * @return the changed records.
+	 */
+	public List<CKRecord> getRecords() {
+		return records != null ? records : EMPTY_LIST;
+	}
+
+	/**
+	 * Gets the token to pass to fetch the changes made after these.
+	 *
+	 * @return the sync token.
+	 */
+	public String getSyncToken() {
+		return syncToken;
+	}
+
+	/**
+	 * Gets whether more changes are waiting, to be fetched with {@link #getSyncToken()}.
+	 *
+	 * @return true if more changes are waiting.
+	 */
+	public boolean isMoreComing() {
+		return moreComing;
+	}
+
+	public String getServerErrorCode() {
+		return serverErrorCode;
+	}
+
+	public String getReason() {
+		return reason;
+	}
+
+	@Override
+	public String toString() {
+		return "[CKZoneChanges:" + zoneID + ":" + getRecords().size() + ":" + moreComing + "]";
+	}
+}
@@ -0,0 +1,869 @@
+package com.github.tmyroadctfig.icloud4j.json;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Hand-written Gson type adapters for the large responses: Drive listings, CloudKit queries and changes, device
+ * refreshes, ubiquity children and photo albums.
+ *
+ * Reading matches the reflective adapters field by field, including their leniency about quoted numbers and
+ * booleans, but avoids reflection and boxing and skips unknown fields without binding them. Writing is delegated to
+ * the reflective adapters.
+ *
+ * @author patchpump
+ */
+public class JsonTypeAdapters implements TypeAdapterFactory {
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+		Class<? super T> rawType = type.getRawType();
+
+		ReaderAdapter<?> adapter;
+		if (rawType == DriveNodeDetails.class)
+			adapter = new DriveNodeDetailsAdapter();
+		else if (rawType == CKResponse.class)
+			adapter = new CKResponseAdapter(gson);
+		else if (rawType == CKRecord.class)
+			adapter = new CKRecordAdapter(gson);
+		else if (rawType == CKTimestamp.class)
+			adapter = new CKTimestampAdapter();
+		else if (rawType == CKZoneId.class)
+			adapter = new CKZoneIdAdapter();
+		else if (rawType == CKChangesResponse.class)
+			adapter = new CKChangesResponseAdapter(gson);
+		else if (rawType == CKZoneChanges.class)
+			adapter = new CKZoneChangesAdapter(gson);
+		else if (rawType == FindMyIPhoneResponse.class)
+			adapter = new FindMyIPhoneResponseAdapter(gson);
+		else if (rawType == AppleDevice.class)
+			adapter = new AppleDeviceAdapter(gson);
+		else if (rawType == Location.class)
+			adapter = new LocationAdapter();
+		else if (rawType == UbiquityGetChildrenResponse.class)
+			adapter = new UbiquityGetChildrenResponseAdapter(gson);
+		else if (rawType == UbiquityNodeDetails.class)
+			adapter = new UbiquityNodeDetailsAdapter();
+		else if (rawType == PhotosAlbumsResponse.class)
+			adapter = new PhotosAlbumsResponseAdapter(gson);
+		else if (rawType == PhotosFolder.class)
+			adapter = new PhotosFolderAdapter();
+		else
+			return null;
+
+		((ReaderAdapter<T>) adapter).writeDelegate = gson.getDelegateAdapter(this, type);
+		return (TypeAdapter<T>) adapter;
+	}
+
+	/**
+	 * Base class of the adapters, reading objects field by field and writing through the reflective adapter.
+	 */
+	private abstract static class ReaderAdapter<T> extends TypeAdapter<T> {
+
+		TypeAdapter<T> writeDelegate;
+
+		@Override
+		public T read(JsonReader in) throws IOException {
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				return null;
+			}
+
+			T result = newInstance();
+			in.beginObject();
+			while (in.hasNext()) {
+				if (!readField(in, in.nextName(), result))
+					in.skipValue();
+			}
+			in.endObject();
+			return result;
+		}
+
+		@Override
+		public void write(JsonWriter out, T value) throws IOException {
+			writeDelegate.write(out, value);
+		}
+
+		abstract T newInstance();
+
+		/**
+		 * Reads the value of a field.
+		 *
+		 * @return false if the field is unknown and its value has not been read.
+		 */
+		abstract boolean readField(JsonReader in, String name, T result) throws IOException;
+	}
+
+	static String nextString(JsonReader in) throws IOException {
+		JsonToken token = in.peek();
+		if (token == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		if (token == JsonToken.BOOLEAN)
+			return Boolean.toString(in.nextBoolean());
+		return in.nextString();
+	}
+
+	static boolean nextBoolean(JsonReader in, boolean defaultValue) throws IOException {
+		JsonToken token = in.peek();
+		if (token == JsonToken.NULL) {
+			in.nextNull();
+			return defaultValue;
+		}
+		if (token == JsonToken.STRING)
+			return Boolean.parseBoolean(in.nextString());
+		return in.nextBoolean();
+	}
+
+	static int nextInt(JsonReader in, int defaultValue) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return defaultValue;
+		}
+		try {
+			return in.nextInt();
+		} catch (NumberFormatException e) {
+			throw new JsonSyntaxException(e);
+		}
+	}
+
+	static long nextLong(JsonReader in, long defaultValue) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return defaultValue;
+		}
+		try {
+			return in.nextLong();
+		} catch (NumberFormatException e) {
+			throw new JsonSyntaxException(e);
+		}
+	}
+
+	static double nextDouble(JsonReader in, double defaultValue) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return defaultValue;
+		}
+		return in.nextDouble();
+	}
+
+	static <E> List<E> nextList(JsonReader in, TypeAdapter<E> elementAdapter) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+
+		List<E> result = new ArrayList<>();
+		in.beginArray();
+		while (in.hasNext())
+			result.add(elementAdapter.read(in));
+		in.endArray();
+		return result;
+	}
+
+	static String[] nextStringArray(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+
+		List<String> result = new ArrayList<>();
+		in.beginArray();
+		while (in.hasNext())
+			result.add(nextString(in));
+		in.endArray();
+		return result.toArray(new String[result.size()]);
+	}
+
+	private static class DriveNodeDetailsAdapter extends ReaderAdapter<DriveNodeDetails> {
+
+		@Override
+		DriveNodeDetails newInstance() {
+			return new DriveNodeDetails();
+		}
+
+		@Override
+		boolean readField(JsonReader in, String name, DriveNodeDetails result) throws IOException {
+			switch (name) {
+			case "drivewsid":
+				result.drivewsid = nextString(in);
+				return true;
+			case "docwsid":
+				result.docwsid = nextString(in);
+				return true;
+			case "parentId":
+				result.parentId = nextString(in);
+				return true;
+			case "zone":
+				result.zone = nextString(in);
+				return true;
+			case "name":
+				result.name = nextString(in);
+				return true;
+			case "etag":
+				result.etag = nextString(in);
+				return true;
+			case "type":
+				result.type = nextString(in);
+				return true;
+			case "items":
+				List<DriveNodeDetails> items = nextList(in, this);
+				result.items = items == null ? null : items.toArray(new DriveNodeDetails[items.size()]);
+				return true;
+			case "numberOfItems":
+				result.numberOfItems = nextInt(in, result.numberOfItems);
+				return true;
+			case "dateModified":
+				result.dateModified = nextString(in);
+				return true;
+			case "dateChanged":
+				result.dateChanged = nextString(in);
+				return true;
+			case "size":
+				result.size = nextLong(in, result.size);
+				return true;
+			case "extension":
+				result.extension = nextString(in);
+				return true;
+			case "status":
+				result.status = nextString(in);
+				return true;
+			default:
+				return false;
+			}
+		}
+	}
+
+	private static class CKResponseAdapter extends ReaderAdapter<CKResponse> {
+
+		private final TypeAdapter<CKRecord> recordAdapter;
+
+		CKResponseAdapter(Gson gson) {
+			this.recordAdapter = gson.getAdapter(CKRecord.class);
+		}
+
+		@Override
+		CKResponse newInstance() {
+			return new CKResponse();
+		}
+
+		@Override
+		boolean readField(JsonReader in, String name, CKResponse result) throws IOException {
+			switch (name) {
+			case "records":
+				result.records = nextList(in, recordAdapter);
+				return true;
+			case "continuationMarker":
+				result.continuationMarker = nextString(in);
+				return true;
+			case "syncToken":
+				result.syncToken = nextString(in);
+				return true;
+			case "serverErrorCode":
+				result.serverErrorCode = nextString(in);
+				return true;
+			case "reason":
+				result.reason = nextString(in);
+				return true;
+			default:
+				return false;
+			}
+		}
+	}
+
+	private static class CKRecordAdapter extends ReaderAdapter<CKRecord> {
+
+		private final TypeAdapter<CKTimestamp> timestampAdapter;
+		private final TypeAdapter<CKZoneId> zoneIdAdapter;
+		private final TypeAdapter<Object> valueAdapter;
+
+		CKRecordAdapter(Gson gson) {
+			this.timestampAdapter = gson.getAdapter(CKTimestamp.class);
+			this.zoneIdAdapter = gson.getAdapter(CKZoneId.class);
+			this.valueAdapter = gson.getAdapter(Object.class);
+		}
+
+		@Override
+		CKRecord newInstance() {
+			return new CKRecord();
+		}
+
+		@Override
+		boolean readField(JsonReader in, String name, CKRecord result) throws IOException {
+			switch (name) {
+			case "recordName":
+				result.recordName = nextString(in);
+				return true;
+			case "recordType":
+				result.recordType = nextString(in);
+				return true;
+			case "recordChangeTag":
+				result.recordChangeTag = nextString(in);
+				return true;
+			case "created":
+				result.created = timestampAdapter.read(in);
+				return true;
+			case "modified":
+				result.modified = timestampAdapter.read(in);
+				return true;
+			case "zoneID":
+				result.zoneID = zoneIdAdapter.read(in);
+				return true;
+			case "fields":
+				result.fields = readFields(in);
+				return true;
+			case "deleted":
+				result.deleted = nextBoolean(in, result.deleted);
+				return true;
+			case "serverErrorCode":
+				result.serverErrorCode = nextString(in);
+				return true;
+			case "reason":
+				result.reason = nextString(in);
+				return true;
+			default:
+				return false;
+			}
+		}
+
+		private static void decode(CKRecord.CKRecordFieldValue value, String number) {
+			if (number == null) {
+				value.decode();
+				return;
+			}
+			try {
+				value.decode(Long.parseLong(number));
+			} catch (NumberFormatException e) {
+				value.decode();
+			}
+		}
+
+		private Map<String, CKRecord.CKRecordFieldValue> readFields(JsonReader in) throws IOException {
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				return null;
+			}
+
+			Map<String, CKRecord.CKRecordFieldValue> fields = new LinkedHashMap<>();
+			in.beginObject();
+			while (in.hasNext()) {
+				String key = in.nextName();
+				if (in.peek() == JsonToken.NULL) {
+					in.nextNull();
+					fields.put(key, null);
+					continue;
+				}
+
+				CKRecord.CKRecordFieldValue value = new CKRecord.CKRecordFieldValue();
+				String number = null;
+				in.beginObject();
+				while (in.hasNext()) {
+					switch (in.nextName()) {
+					case "type":
+						value.type = nextString(in);
+						break;
+					case "value":
+						if (in.peek() == JsonToken.NUMBER) {
+							// kept as text to decode INT64 and TIMESTAMP values exactly
+							number = in.nextString();
+							value.value = Double.valueOf(number);
+						} else {
+							value.value = valueAdapter.read(in);
+						}
+						break;
+					default:
+						in.skipValue();
+					}
+				}
+				in.endObject();
+				decode(value, number);
+				fields.put(key, value);
+			}
+			in.endObject();
+			return fields;
+		}
+	}
+
+	private static class CKTimestampAdapter extends ReaderAdapter<CKTimestamp> {
+
+		@Override
+		CKTimestamp newInstance() {
+			return new CKTimestamp();
+		}
+
+		@Override
+		boolean readField(JsonReader in, String name, CKTimestamp result) throws IOException {
+			switch (name) {
+			case "timestamp":
+				result.timestamp = nextLong(in, result.timestamp);
+				return true;
+			case "userRecordName":
+				result.userRecordName = nextString(in);
+				return true;
+			case "deviceID":
+				result.deviceID = nextString(in);
+				return true;
+			default:
+				return false;
+			}
+		}
+	}
+
+	private static class CKZoneIdAdapter extends ReaderAdapter<CKZoneId> {
+
+		@Override
+		CKZoneId newInstance() {
+			return new CKZoneId();
+		}
+
+		@Override
+		boolean readField(JsonReader in, String name, CKZoneId result) throws IOException {
+			switch (name) {
+			case "zoneName":
+				result.zoneName = nextString(in);
+				return true;
+			case "ownerRecordName":
+				result.ownerRecordName = nextString(in);
+				return true;
+			default:
+				return false;
+			}
+		}
+	}
+
+	private static class CKChangesResponseAdapter extends ReaderAdapter<CKChangesResponse> {
+
+		private final TypeAdapter<CKZoneChanges> zoneAdapter;
+
+		CKChangesResponseAdapter(Gson gson) {
+			this.zoneAdapter = gson.getAdapter(CKZoneChanges.class);
+		}
+
+		@Override
+		CKChangesResponse newInstance() {
+			return new CKChangesResponse();
+		}
+
+		@Override
+		boolean readField(JsonReader in, String name, CKChangesResponse result) throws IOException {
+			switch (name) {
+			case "zones":
+				result.zones = nextList(in, zoneAdapter);
+				return true;
+			case "syncToken":
+				result.syncToken = nextString(in);
+				return true;
+			case "moreComing":
+				result.moreComing = nextBoolean(in, result.moreComing);
+				return true;
+			case "serverErrorCode":
+				result.serverErrorCode = nextString(in);
+				return true;
+			case "reason":
+				result.reason = nextString(in);
+				return true;
+			default:
+				return false;
+			}
+		}
+	}
+
+	private static class CKZoneChangesAdapter extends ReaderAdapter<CKZoneChanges> {
+
+		private final TypeAdapter<CKZoneId> zoneIdAdapter;
+		private final TypeAdapter<CKRecord> recordAdapter;
+
+		CKZoneChangesAdapter(Gson gson) {
+			this.zoneIdAdapter = gson.getAdapter(CKZoneId.class);
+			this.recordAdapter = gson.getAdapter(CKRecord.class);
+		}
+
+		@Override
+		CKZoneChanges newInstance() {
+			return new CKZoneChanges();
+		}
+
+		@Override
+		boolean readField(JsonReader in, String name, CKZoneChanges result) throws IOException {
+			switch (name) {
+			case "zoneID":
+				result.zoneID = zoneIdAdapter.read(in);
+				return true;
+			case "records":
+				result.records = nextList(in, recordAdapter);
+				return true;
+			case "syncToken":
+				result.syncToken = nextString(in);
+				return true;
+			case "moreComing":
+				result.moreComing = nextBoolean(in, result.moreComing);
+				return true;
+			case "serverErrorCode":
+				result.serverErrorCode = nextString(in);
+				return true;
+			case "reason":
+				result.reason = nextString(in);
+				return true;
+			default:
+				return false;
+			}
+		}
+	}
+
+	private static class FindMyIPhoneResponseAdapter extends ReaderAdapter<FindMyIPhoneResponse> {
+
+		private final TypeAdapter<AppleDevice> deviceAdapter;
+
+		FindMyIPhoneResponseAdapter(Gson gson) {
+			this.deviceAdapter = gson.getAdapter(AppleDevice.class);
+		}
+
+		@Override
+		FindMyIPhoneResponse newInstance() {
+			return new FindMyIPhoneResponse();
+		}
+
+		@Override
+		boolean readField(JsonReader in, String name, FindMyIPhoneResponse result) throws IOException {
+			switch (name) {
+			case "content":
+				List<AppleDevice> content = nextList(in, deviceAdapter);
+				result.content = content == null ? null : content.toArray(new AppleDevice[content.size()]);
+				return true;
+			default:
+				return false;
+			}
+		}
+	}
+
+	private static class AppleDeviceAdapter extends ReaderAdapter<AppleDevice> {
+
+		private final TypeAdapter<Location> locationAdapter;
+
+		AppleDeviceAdapter(Gson gson) {
+			this.locationAdapter = gson.getAdapter(Location.class);
+		}
+
+		@Override
+		AppleDevice newInstance() {
+			return new AppleDevice();
+		}
+
+		@Override
+		boolean readField(JsonReader in, String name, AppleDevice result) throws IOException {
+			switch (name) {
+			case "msg":
+				result.msg = nextString(in);
+				return true;
+			case "canWipeAfterLock":
+				result.canWipeAfterLock = nextBoolean(in, result.canWipeAfterLock);
+				return true;
+			case "wipeInProgress":
+				result.wipeInProgress = nextBoolean(in, result.wipeInProgress);
+				return true;
+			case "lostModeEnabled":
+				result.lostModeEnabled = nextBoolean(in, result.lostModeEnabled);
+				return true;
+			case "activationLocked":
+				result.activationLocked = nextBoolean(in, result.activationLocked);
+				return true;
+			case "passcodeLength":
+				result.passcodeLength = nextDouble(in, result.passcodeLength);
+				return true;
+			case "deviceStatus":
+				result.deviceStatus = nextInt(in, result.deviceStatus);
+				return true;
+			case "deviceColor":
+				result.deviceColor = nextString(in);
+				return true;
+			case "lowPowerMode":
+				result.lowPowerMode = nextBoolean(in, result.lowPowerMode);
+				return true;
+			case "rawDeviceModel":
+				result.rawDeviceModel = nextString(in);
+				return true;
+			case "id":
+				result.id = nextString(in);
+				return true;
+			case "remoteLock":
+				result.remoteLock = nextString(in);
+				return true;
+			case "isLocating":
+				result.isLocating = nextBoolean(in, result.isLocating);
+				return true;
+			case "modelDisplayName":
+				result.modelDisplayName = nextString(in);
+				return true;
+			case "lostTimestamp":
+				result.lostTimestamp = nextString(in);
+				return true;
+			case "batteryLevel":
+				result.batteryLevel = nextDouble(in, result.batteryLevel);
+				return true;
+			case "mesg":
+				result.mesg = nextString(in);
+				return true;
+			case "locationEnabled":
+				result.locationEnabled = nextBoolean(in, result.locationEnabled);
+				return true;
+			case "lockedTimestamp":
+				result.lockedTimestamp = nextString(in);
+				return true;
+			case "locFoundEnabled":
+				result.locFoundEnabled = nextBoolean(in, result.locFoundEnabled);
+				return true;
+			case "snd":
+				result.snd = nextString(in);
+				return true;
+			case "fmlyShare":
+				result.fmlyShare = nextBoolean(in, result.fmlyShare);
+				return true;
+			case "lostDevice":
+				result.lostDevice = nextString(in);
+				return true;
+			case "lostModeCapable":
+				result.lostModeCapable = nextBoolean(in, result.lostModeCapable);
+				return true;
+			case "wipedTimestamp":
+				result.wipedTimestamp = nextString(in);
+				return true;
+			case "deviceDisplayName":
+				result.deviceDisplayName = nextString(in);
+				return true;
+			case "prsId":
+				result.prsId = nextString(in);
+				return true;
+			case "locationCapable":
+				result.locationCapable = nextBoolean(in, result.locationCapable);
+				return true;
+			case "batteryStatus":
+				result.batteryStatus = nextString(in);
+				return true;
+			case "trackingInfo":
+				result.trackingInfo = nextString(in);
+				return true;
+			case "name":
+				result.name = nextString(in);
+				return true;
+			case "isMac":
+				result.isMac = nextBoolean(in, result.isMac);
+				return true;
+			case "thisDevice":
+				result.thisDevice = nextBoolean(in, result.thisDevice);
+				return true;
+			case "deviceClass":
+				result.deviceClass = nextString(in);
+				return true;
+			case "location":
+				result.location = locationAdapter.read(in);
+				return true;
+			case "deviceModel":
+				result.deviceModel = nextString(in);
+				return true;
+			case "maxMsgChar":
+				result.maxMsgChar = nextString(in);
+				return true;
+			case "darkWake":
+				result.darkWake = nextBoolean(in, result.darkWake);
+				return true;
+			case "remoteWipe":
+				result.remoteWipe = nextString(in);
+				return true;
+			default:
+				return false;
+			}
+		}
+	}
+
+	private static class LocationAdapter extends ReaderAdapter<Location> {
+
+		@Override
+		Location newInstance() {
+			return new Location();
+		}
+
+		@Override
+		boolean readField(JsonReader in, String name, Location result) throws IOException {
+			switch (name) {
+			case "timeStamp":
+				result.timeStamp = nextString(in);
+				return true;
+			case "isOld":
+				result.isOld = nextBoolean(in, result.isOld);
+				return true;
+			case "isInaccurate":
+				result.isInaccurate = nextBoolean(in, result.isInaccurate);
+				return true;
+			case "locationFinished":
+				result.locationFinished = nextBoolean(in, result.locationFinished);
+				return true;
+			case "positionType":
+				result.positionType = nextString(in);
+				return true;
+			case "latitude":
+				result.latitude = nextDouble(in, result.latitude);
+				return true;
+			case "horizontalAccuracy":
+				result.horizontalAccuracy = nextDouble(in, result.horizontalAccuracy);
+				return true;
+			case "locationType":
+				result.locationType = nextString(in);
+				return true;
+			case "longitude":
+				result.longitude = nextDouble(in, result.longitude);
+				return true;
+			default:
+				return false;
+			}
+		}
+	}
+
+	private static class UbiquityGetChildrenResponseAdapter extends ReaderAdapter<UbiquityGetChildrenResponse> {
+
+		private final TypeAdapter<UbiquityNodeDetails> nodeAdapter;
+
+		UbiquityGetChildrenResponseAdapter(Gson gson) {
+			this.nodeAdapter = gson.getAdapter(UbiquityNodeDetails.class);
+		}
+
+		@Override
+		UbiquityGetChildrenResponse newInstance() {
+			return new UbiquityGetChildrenResponse();
+		}
+
+		@Override
+		boolean readField(JsonReader in, String name, UbiquityGetChildrenResponse result) throws IOException {
+			switch (name) {
+			case "item_list":
+				List<UbiquityNodeDetails> items = nextList(in, nodeAdapter);
+				result.item_list = items == null ? null : items.toArray(new UbiquityNodeDetails[items.size()]);
+				return true;
+			default:
+				return false;
+			}
+		}
+	}
+
+	private static class UbiquityNodeDetailsAdapter extends ReaderAdapter<UbiquityNodeDetails> {
+
+		@Override
+		UbiquityNodeDetails newInstance() {
+			return new UbiquityNodeDetails();
+		}
+
+		@Override
+		boolean readField(JsonReader in, String name, UbiquityNodeDetails result) throws IOException {
+			switch (name) {
+			case "peer_id":
+				result.peer_id = nextLong(in, result.peer_id);
+				return true;
+			case "in_cloud":
+				result.in_cloud = nextBoolean(in, result.in_cloud);
+				return true;
+			case "item_id":
+				result.item_id = nextString(in);
+				return true;
+			case "name":
+				result.name = nextString(in);
+				return true;
+			case "parent_item_id":
+				result.parent_item_id = nextString(in);
+				return true;
+			case "type":
+				result.type = nextString(in);
+				return true;
+			case "modified":
+				result.modified = nextString(in);
+				return true;
+			case "size":
+				result.size = nextLong(in, result.size);
+				return true;
+			case "change_id":
+				result.change_id = nextString(in);
+				return true;
+			default:
+				return false;
+			}
+		}
+	}
+
+	private static class PhotosAlbumsResponseAdapter extends ReaderAdapter<PhotosAlbumsResponse> {
+
+		private final TypeAdapter<PhotosFolder> folderAdapter;
+
+		PhotosAlbumsResponseAdapter(Gson gson) {
+			this.folderAdapter = gson.getAdapter(PhotosFolder.class);
+		}
+
+		@Override
+		PhotosAlbumsResponse newInstance() {
+			return new PhotosAlbumsResponse();
+		}
+
+		@Override
+		boolean readField(JsonReader in, String name, PhotosAlbumsResponse result) throws IOException {
+			switch (name) {
+			case "folders":
+				List<PhotosFolder> folders = nextList(in, folderAdapter);
+				result.folders = folders == null ? null : folders.toArray(new PhotosFolder[folders.size()]);
+				return true;
+			default:
+				return false;
+			}
+		}
+	}
+
+	private static class PhotosFolderAdapter extends ReaderAdapter<PhotosFolder> {
+
+		@Override
+		PhotosFolder newInstance() {
+			return new PhotosFolder();
+		}
+
+		@Override
+		boolean readField(JsonReader in, String name, PhotosFolder result) throws IOException {
+			switch (name) {
+			case "keyAssetClientId":
+				result.keyAssetClientId = nextString(in);
+				return true;
+			case "contentsType":
+				result.contentsType = nextString(in);
+				return true;
+			case "dateRange":
+				result.dateRange = nextString(in);
+				return true;
+			case "childAssetsBinaryFeed":
+				result.childAssetsBinaryFeed = nextString(in);
+				return true;
+			case "childFolderIds":
+				result.childFolderIds = nextStringArray(in);
+				return true;
+			case "type":
+				result.type = nextString(in);
+				return true;
+			case "serverId":
+				result.serverId = nextString(in);
+				return true;
+			case "isServerGenerated":
+				result.isServerGenerated = nextBoolean(in, result.isServerGenerated);
+				return true;
+			default:
+				return false;
+			}
+		}
+	}
+}
@@ -1,34 +1,34 @@
-/*
- *    Copyright 2016 Luke Quinane
- *
- *    Licensed under the Apache License, Version 2.0 (the "License");
- *    you may not use this file except in compliance with the License.
- *    You may obtain a copy of the License at
- *
- *    http://www.apache.org/licenses/LICENSE-2.0
- *
- *    Unless required by applicable law or agreed to in writing, software
- *    distributed under the License is distributed on an "AS IS" BASIS,
- *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- *    See the License for the specific language governing permissions and
- *    limitations under the License.
- */
-
-package com.github.tmyroadctfig.icloud4j.json;
-
-/**
- * A device location.
- *
- * @author Luke Quinane
- */
-public class Location {
-	public String timeStamp;
-	public boolean isOld;
-	public boolean isInaccurate;
-	public boolean locationFinished;
-	public String positionType;
-	public double latitude;
-	public double horizontalAccuracy;
-	public String locationType;
-	public double longitude;
+/*
+ *    Copyright 2016 Luke Quinane
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.tmyroadctfig.icloud4j.json;
+
+/**
+ * A device location.
+ *
+ * @author Luke Quinane
+ */
+public class Location {
+	public String timeStamp;
+	public boolean isOld;
+	public boolean isInaccurate;
+	public boolean locationFinished;
+	public String positionType;
+	public double latitude;
+	public double horizontalAccuracy;
+	public String locationType;
+	public double longitude;
 }
\ No newline at end of file
@@ -1,31 +1,31 @@
-/*
- *    Copyright 2016 Luke Quinane
- *
- *    Licensed under the Apache License, Version 2.0 (the "License");
- *    you may not use this file except in compliance with the License.
- *    You may obtain a copy of the License at
- *
- *    http://www.apache.org/licenses/LICENSE-2.0
- *
- *    Unless required by applicable law or agreed to in writing, software
- *    distributed under the License is distributed on an "AS IS" BASIS,
- *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- *    See the License for the specific language governing permissions and
- *    limitations under the License.
- */
-
-package com.github.tmyroadctfig.icloud4j.json;
-
-/**
- * A trusted device response sent back as part of the two-factor authentication process.
- *
- * @author Luke Quinane
- */
-public class TrustedDeviceResponse extends TrustedDevice {
-	/**
-	 * The two-factor verification code.
-	 */
-	public String verificationCode;
-
-	public boolean trustBrowser;
-}
+/*
+ *    Copyright 2016 Luke Quinane
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.tmyroadctfig.icloud4j.json;
+
+/**
+ * A trusted device response sent back as part of the two-factor authentication process.
+ *
+ * @author Luke Quinane
+ */
+public class TrustedDeviceResponse extends TrustedDevice {
+	/**
+	 * The two-factor verification code.
+	 */
+	public String verificationCode;
+
+	public boolean trustBrowser;
+}
@@ -0,0 +1,90 @@
+package com.github.tmyroadctfig.icloud4j.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Input stream keeping a copy of the first bytes read through it, for error diagnostics on streamed responses.
+ *
+ * @author patchpump
+ */
+class CapturingInputStream extends FilterInputStream {
+
+	private final byte[] captured;
+	private int capturedLength;
+
+	/**
+	 * Creates a new stream.
+	 *
+	 * @param in the underlying stream.
+	 * @param limit the maximum number of bytes to keep.
+	 */
+	CapturingInputStream(InputStream in, int limit) {
+		super(in);
+		this.captured = new byte[limit];
+	}
+
+	@Override
+	public int read() throws IOException {
+		int b = super.read();
+		if (b >= 0 && capturedLength < captured.length)
+			captured[capturedLength++] = (byte) b;
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int n = super.read(b, off, len);
+		if (n > 0 && capturedLength < captured.length) {
+			int copy = Math.min(n, captured.length - capturedLength);
+			System.arraycopy(b, off, captured, capturedLength, copy);
+			capturedLength += copy;
+		}
+		return n;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		byte[] buffer = new byte[(int) Math.min(n, 8192)];
+		int read = read(buffer, 0, buffer.length);
+		return Math.max(read, 0);
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	/**
+	 * Reads on until the capture is full or the stream ends, e.g. after a parser gave up early.
+	 *
+	 * @throws IOException if reading failed.
+	 */
+	void fill() throws IOException {
+		byte[] buffer = new byte[1024];
+		while (capturedLength < captured.length && read(buffer, 0, buffer.length) != -1) {
+			// read into the capture
+		}
+	}
+
+	/**
+	 * Gets the captured bytes.
+	 *
+	 * @return a copy of the captured bytes.
+	 */
+	byte[] getCaptured() {
+		return Arrays.copyOf(captured, capturedLength);
+	}
+
+	/**
+	 * Gets the captured bytes decoded as UTF-8.
+	 *
+	 * @return the captured text.
+	 */
+	String getCapturedText() {
+		return new String(captured, 0, capturedLength, StandardCharsets.UTF_8);
+	}
+}
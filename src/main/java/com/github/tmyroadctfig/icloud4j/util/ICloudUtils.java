@@ -1,150 +1,243 @@
-/*
- *    Copyright 2016 Luke Quinane
- *
- *    Licensed under the Apache License, Version 2.0 (the "License");
- *    you may not use this file except in compliance with the License.
- *    You may obtain a copy of the License at
- *
- *    http://www.apache.org/licenses/LICENSE-2.0
- *
- *    Unless required by applicable law or agreed to in writing, software
- *    distributed under the License is distributed on an "AS IS" BASIS,
- *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- *    See the License for the specific language governing permissions and
- *    limitations under the License.
- */
-
-package com.github.tmyroadctfig.icloud4j.util;
-
-import com.github.tmyroadctfig.icloud4j.ICloudException;
-import com.github.tmyroadctfig.icloud4j.json.SerializableClientCookie;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.InstanceCreator;
-import com.google.gson.JsonSyntaxException;
-
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.cookie.Cookie;
-import org.apache.http.impl.client.CloseableHttpClient;
-
-import java.io.IOException;
-import java.io.Reader;
-import java.io.UncheckedIOException;
-import java.lang.reflect.Type;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Map.Entry;
-
-/**
- * iCloud utilities.
- *
- * @author Luke Quinanne
- */
-public class ICloudUtils {
-
-	static final Gson gson = new GsonBuilder().registerTypeAdapter(Cookie.class, new CookieInstanceCreator()).create();
-
-	/**
-	 * Parses a JSON response from the request.
-	 *
-	 * @param httpClient the HTTP client.
-	 * @param post the request.
-	 * @param responseClass the type of JSON object to parse the values into.
-	 * @param <T> the type to parse into.
-	 * @return the object.
-	 * @throws ICloudException if there was an error returned from the request.
-	 */
-	public static <T> T parseJsonResponse(CloseableHttpClient httpClient, HttpPost post, Class<T> responseClass) {
-		String rawResponseContent = "<no content>";
-		try (CloseableHttpResponse response = httpClient.execute(post)) {
-			rawResponseContent = new StringResponseHandler().handleResponse(response);
-
-			try {
-				return fromJson(rawResponseContent, responseClass);
-			} catch (JsonSyntaxException e1) {
-				Map<String, Object> errorMap = fromJson(rawResponseContent, Map.class);
-				System.err.println(rawResponseContent);
-				throw new ICloudException(response, errorMap);
-			}
-		} catch (IOException e) {
-			System.err.println(rawResponseContent);
-			throw new UncheckedIOException(e);
-		}
-	}
-
-	/**
-	 * Parses a JSON response from the request.
-	 *
-	 * @param httpClient the HTTP client.
-	 * @param httpGet the request.
-	 * @param responseClass the type of JSON object to parse the values into.
-	 * @param <T> the type to parse into.
-	 * @return the object.
-	 * @throws ICloudException if there was an error returned from the request.
-	 */
-	public static <T> T parseJsonResponse(CloseableHttpClient httpClient, HttpGet httpGet, Class<T> responseClass) {
-		try (CloseableHttpResponse response = httpClient.execute(httpGet)) {
-			String rawResponseContent = new StringResponseHandler().handleResponse(response);
-
-			try {
-				return fromJson(rawResponseContent, responseClass);
-			} catch (JsonSyntaxException e1) {
-				Map<String, Object> errorMap = fromJson(rawResponseContent, Map.class);
-				throw new ICloudException(response, errorMap);
-			}
-		} catch (IOException e) {
-			throw new UncheckedIOException(e);
-		}
-	}
-
-	public static String toJson(Object o) {
-		return gson.toJson(o);
-	}
-
-	public static void toJson(Object o, Appendable writer) {
-		gson.toJson(o, writer);
-	}
-
-	public static <T> T fromJson(Reader s, Class<?> type) {
-		return gson.<T> fromJson(s, type);
-	}
-
-	public static <T> T fromJson(String s, Class<?> type) {
-		return gson.<T> fromJson(s, type);
-	}
-
-	public static <T> T fromJson(String s, Type type) {
-		return gson.<T> fromJson(s, type);
-	}
-
-	public static Map<String,Object> stringifyMap(Object map) {
-
-		if(map == null || !(map instanceof Map))
-			return null;
-
-		@SuppressWarnings("unchecked")
-		Map<String,Object> m = (Map<String,Object>)map;
-		Map<String,Object> t = new HashMap<String,Object>();
-		for(Entry<String, Object> entry : m.entrySet()) {
-			String key = entry.getKey();
-			Object value = entry.getValue();
-			if(value instanceof String)
-				t.put(key, (String)value);
-			else if(value instanceof Map)
-				t.put(key, stringifyMap(value));
-			else 
-				t.put(key, value.toString());
-		}
-		return t;
-	}
-
-	private static class CookieInstanceCreator implements InstanceCreator<Cookie> {
-
-		@Override
-		public Cookie createInstance(Type type) {
-			return new SerializableClientCookie();	
-		}
-	}
-}
+/*
+ *    Copyright 2016 Luke Quinane
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.tmyroadctfig.icloud4j.util;
+
+import com.github.tmyroadctfig.icloud4j.ICloudException;
+import com.github.tmyroadctfig.icloud4j.json.JsonTypeAdapters;
+import com.github.tmyroadctfig.icloud4j.json.SerializableClientCookie;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.InstanceCreator;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.cookie.Cookie;
+import org.apache.http.impl.client.CloseableHttpClient;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+
+/**
+ * iCloud utilities.
+ *
+ * @author Luke Quinanne
+ */
+public class ICloudUtils {
+
+	/**
+	 * The number of bytes at the start of a JSON response kept for error diagnostics.
+	 */
+	public static final int ERROR_CAPTURE_LIMIT = Integer.getInteger("tmyroadctfig.icloud4j.errorCaptureLimit", 16 * 1024);
+
+	/**
+	 * A flag indicating whether to parse responses with {@link JsonTypeAdapters} instead of reflectively. Off by
+	 * default, since the benchmark shows no gain for Drive listings and a loss for CloudKit responses.
+	 */
+	private static final boolean TYPE_ADAPTERS = Boolean.parseBoolean(System.getProperty("tmyroadctfig.icloud4j.typeAdapters", "false"));
+
+	static final Gson gson = createGson(TYPE_ADAPTERS);
+
+	/**
+	 * Parses a JSON response from the request.
+	 *
+	 * @param httpClient the HTTP client.
+	 * @param post the request.
+	 * @param responseClass the type of JSON object to parse the values into.
+	 * @param <T> the type to parse into.
+	 * @return the object.
+	 * @throws ICloudException if there was an error returned from the request.
+	 */
+	public static <T> T parseJsonResponse(CloseableHttpClient httpClient, HttpPost post, Class<T> responseClass) {
+		try (CloseableHttpResponse response = httpClient.execute(post)) {
+			return parseJsonResponse(response, responseClass);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Parses a JSON response from the request.
+	 *
+	 * @param httpClient the HTTP client.
+	 * @param httpGet the request.
+	 * @param responseClass the type of JSON object to parse the values into.
+	 * @param <T> the type to parse into.
+	 * @return the object.
+	 * @throws ICloudException if there was an error returned from the request.
+	 */
+	public static <T> T parseJsonResponse(CloseableHttpClient httpClient, HttpGet httpGet, Class<T> responseClass) {
+		try (CloseableHttpResponse response = httpClient.execute(httpGet)) {
+			return parseJsonResponse(response, responseClass);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Parses a JSON response, streaming from the response content rather than reading it into a string first. Only
+	 * the first {@link #ERROR_CAPTURE_LIMIT} bytes are kept, to build the error map of the {@link ICloudException}
+	 * thrown when the content is not of the expected type.
+	 *
+	 * @param response the response.
+	 * @param responseClass the type of JSON object to parse the values into.
+	 * @param <T> the type to parse into.
+	 * @return the object, or null if the response has no content.
+	 * @throws IOException if the response content could not be read.
+	 * @throws ICloudException if there was an error returned from the request.
+	 */
+	public static <T> T parseJsonResponse(HttpResponse response, Class<T> responseClass) throws IOException {
+		HttpEntity entity = response.getEntity();
+		if (entity == null)
+			return null;
+
+		CapturingInputStream content = new CapturingInputStream(entity.getContent(), ERROR_CAPTURE_LIMIT);
+		try (Reader reader = new InputStreamReader(content, StandardCharsets.UTF_8)) {
+			try {
+				return gson.fromJson(new JsonReader(reader), responseClass);
+			} catch (JsonSyntaxException e) {
+				content.fill();
+				throw new ICloudException(response, toErrorMap(content, e));
+			}
+		}
+	}
+
+	/**
+	 * Builds the exception for an error status, parsing the response content into its error map.
+	 *
+	 * @param response the response.
+	 * @return the exception.
+	 * @throws IOException if the response content could not be read.
+	 * @throws ICloudException if the response content is not a JSON object.
+	 */
+	@SuppressWarnings("unchecked")
+	public static ICloudException toICloudException(HttpResponse response) throws IOException {
+		Map<String, Object> errorMap = parseJsonResponse(response, Map.class);
+		if (errorMap == null)
+			return new ICloudException(response, ImmutableMap.of("error", String.valueOf(response.getStatusLine())));
+
+		errorMap.values().removeIf(Objects::isNull);
+		return new ICloudException(response, stringifyMap(errorMap));
+	}
+
+	/**
+	 * Builds the error map of a response that could not be parsed from its captured content.
+	 *
+	 * @param content the response content.
+	 * @param cause the parse error.
+	 * @return the error map.
+	 */
+	private static Map<String, Object> toErrorMap(CapturingInputStream content, JsonSyntaxException cause) {
+		String capturedText = content.getCapturedText();
+		try {
+			Map<String, Object> errorMap = fromJson(capturedText, Map.class);
+			if (errorMap != null)
+				return errorMap;
+		} catch (JsonParseException e) {
+			// not JSON, or cut off by the capture limit
+		}
+		return ImmutableMap.of("error", String.valueOf(cause.getMessage()), "content", capturedText);
+	}
+
+	/**
+	 * Creates the Gson instance used to read and write iCloud JSON.
+	 *
+	 * @param typeAdapters whether to register the hand-written {@link JsonTypeAdapters} for the large responses.
+	 * @return the Gson instance.
+	 */
+	public static Gson createGson(boolean typeAdapters) {
+		GsonBuilder builder = new GsonBuilder().registerTypeAdapter(Cookie.class, new CookieInstanceCreator());
+		if (typeAdapters)
+			builder.registerTypeAdapterFactory(new JsonTypeAdapters());
+		return builder.create();
+	}
+
+	/**
+	 * Gets the type adapter for a class, for reading JSON incrementally.
+	 *
+	 * @param type the class.
+	 * @param <T> the type of the class.
+	 * @return the type adapter.
+	 */
+	public static <T> TypeAdapter<T> getTypeAdapter(Class<T> type) {
+		return gson.getAdapter(type);
+	}
+
+	public static String toJson(Object o) {
+		return gson.toJson(o);
+	}
+
+	public static void toJson(Object o, Appendable writer) {
+		gson.toJson(o, writer);
+	}
+
+	public static <T> T fromJson(Reader s, Class<?> type) {
+		return gson.<T> fromJson(s, type);
+	}
+
+	public static <T> T fromJson(String s, Class<?> type) {
+		return gson.<T> fromJson(s, type);
+	}
+
+	public static <T> T fromJson(String s, Type type) {
+		return gson.<T> fromJson(s, type);
+	}
+
+	public static Map<String,Object> stringifyMap(Object map) {
+
+		if(map == null || !(map instanceof Map))
+			return null;
+
+		@SuppressWarnings("unchecked")
+		Map<String,Object> m = (Map<String,Object>)map;
+		Map<String,Object> t = new HashMap<String,Object>();
+		for(Entry<String, Object> entry : m.entrySet()) {
+			String key = entry.getKey();
+			Object value = entry.getValue();
+			if(value instanceof String)
+				t.put(key, (String)value);
+			else if(value instanceof Map)
+				t.put(key, stringifyMap(value));
+			else 
+				t.put(key, value.toString());
+		}
+		return t;
+	}
+
+	private static class CookieInstanceCreator implements InstanceCreator<Cookie> {
+
+		@Override
+		public Cookie createInstance(Type type) {
+			return new SerializableClientCookie();	
+		}
+	}
+}
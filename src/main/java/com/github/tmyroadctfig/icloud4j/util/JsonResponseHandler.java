@@ -1,58 +1,58 @@
-/*
- *    Copyright 2016 Luke Quinane
- *
- *    Licensed under the Apache License, Version 2.0 (the "License");
- *    you may not use this file except in compliance with the License.
- *    You may obtain a copy of the License at
- *
- *    http://www.apache.org/licenses/LICENSE-2.0
- *
- *    Unless required by applicable law or agreed to in writing, software
- *    distributed under the License is distributed on an "AS IS" BASIS,
- *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- *    See the License for the specific language governing permissions and
- *    limitations under the License.
- */
-
-package com.github.tmyroadctfig.icloud4j.util;
-
-import org.apache.http.HttpEntity;
-import org.apache.http.HttpResponse;
-import org.apache.http.StatusLine;
-import org.apache.http.client.ResponseHandler;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.Reader;
-
-/**
- * A response handler that converts a JSON response to an object.
- *
- * @author patchpump
- */
-public class JsonResponseHandler<E> implements ResponseHandler<E> {
-
-	private static final Logger logger = LoggerFactory.getLogger(JsonResponseHandler.class);
-
-	private Class<E> type;
-
-	public JsonResponseHandler(Class<E> type) {
-		this.type = type;
-	}
-	
-	@Override
-	public E handleResponse(HttpResponse response) throws IOException {
-		StatusLine statusLine = response.getStatusLine();
-		if (logger.isDebugEnabled())
-			logger.debug("code: " + statusLine.getStatusCode() + "; reason: " + statusLine.getReasonPhrase());
-
-		HttpEntity respEntity = response.getEntity();
-		if (respEntity == null)
-			return null;
-
-		Reader reader = new InputStreamReader(respEntity.getContent(), "UTF-8");
-		return ICloudUtils.gson.fromJson(reader, type);
-	}
+/*
+ *    Copyright 2016 Luke Quinane
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.github.tmyroadctfig.icloud4j.util;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.StatusLine;
+import org.apache.http.client.ResponseHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+/**
+ * A response handler that converts a JSON response to an object.
+ *
+ * @author patchpump
+ */
+public class JsonResponseHandler<E> implements ResponseHandler<E> {
+
+	private static final Logger logger = LoggerFactory.getLogger(JsonResponseHandler.class);
+
+	private Class<E> type;
+
+	public JsonResponseHandler(Class<E> type) {
+		this.type = type;
+	}
+	
+	@Override
+	public E handleResponse(HttpResponse response) throws IOException {
+		StatusLine statusLine = response.getStatusLine();
+		if (logger.isDebugEnabled())
+			logger.debug("code: " + statusLine.getStatusCode() + "; reason: " + statusLine.getReasonPhrase());
+
+		HttpEntity respEntity = response.getEntity();
+		if (respEntity == null)
+			return null;
+
+		Reader reader = new InputStreamReader(respEntity.getContent(), "UTF-8");
+		return ICloudUtils.gson.fromJson(reader, type);
+	}
 }
\ No newline at end of file
@@ -0,0 +1,205 @@
+package com.github.tmyroadctfig.icloud4j;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.tmyroadctfig.icloud4j.json.CKAsset;
+import com.github.tmyroadctfig.icloud4j.json.CKRecord;
+import com.github.tmyroadctfig.icloud4j.util.ICloudUtils;
+import com.google.common.collect.ImmutableMap;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * @author patchpump
+ */
+public class CKAssetDownloadJobTest {
+
+	private static final int ASSET_SIZE = 100_000;
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private final byte[] content = new byte[ASSET_SIZE];
+	private final AtomicInteger running = new AtomicInteger();
+	private final AtomicInteger maxRunning = new AtomicInteger();
+	private volatile CountDownLatch release = new CountDownLatch(0);
+
+	private final ExecutorService serverExecutor = Executors.newCachedThreadPool();
+	private HttpServer server;
+	private FakeCloudKitServer cloudKitServer;
+	private ICloudService iCloudService;
+
+	@Before
+	public void setUp() throws IOException {
+		for (int i = 0; i < content.length; i++)
+			content[i] = (byte) i;
+
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		// serves the asset after the release latch opens, tracking how many requests run at a time
+		server.createContext("/asset/", exchange -> {
+			int now = running.incrementAndGet();
+			maxRunning.accumulateAndGet(now, Math::max);
+			try {
+				release.await(10, TimeUnit.SECONDS);
+				exchange.sendResponseHeaders(200, content.length);
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(content);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				running.decrementAndGet();
+				exchange.close();
+			}
+		});
+		// promises the whole asset but closes the connection half way through
+		server.createContext("/truncated/", exchange -> {
+			exchange.sendResponseHeaders(200, content.length);
+			OutputStream out = exchange.getResponseBody();
+			out.write(content, 0, content.length / 2);
+			out.flush();
+			// closing fails with insufficient bytes written, and the server drops the connection
+			out.close();
+		});
+		server.createContext("/missing/", exchange -> {
+			exchange.sendResponseHeaders(404, -1);
+			exchange.close();
+		});
+		server.setExecutor(serverExecutor);
+		server.start();
+
+		cloudKitServer = new FakeCloudKitServer();
+		iCloudService = cloudKitServer.createICloudService();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		iCloudService.close();
+		cloudKitServer.close();
+		server.stop(0);
+		serverExecutor.shutdownNow();
+	}
+
+	private CKAsset asset(String path, long size) {
+		return new CKAsset("http://127.0.0.1:" + server.getAddress().getPort() + path + "${f}", size, null);
+	}
+
+	private Path target(String name) {
+		return temporaryFolder.getRoot().toPath().resolve(name);
+	}
+
+	@Test
+	public void boundsRunningAndQueuedDownloads() throws Exception {
+		release = new CountDownLatch(1);
+		List<CompletableFuture<Path>> futures = new ArrayList<>();
+
+		try (CKAssetDownloadJob downloads = new CKAssetDownloadJob(iCloudService, 2, 1)) {
+			Thread submitter = new Thread(() -> {
+				for (int i = 0; i < 5; i++)
+					futures.add(downloads.download(asset("/asset/", ASSET_SIZE), target("a" + i)));
+			});
+			submitter.start();
+
+			// two downloads run, one waits in the queue and the submitter blocks on the fourth
+			while (running.get() < 2)
+				Thread.sleep(5);
+			submitter.join(200);
+			assertTrue(submitter.isAlive());
+			assertEquals(3, downloads.getSubmitted());
+			assertEquals(3, downloads.getPending());
+
+			release.countDown();
+			submitter.join(10_000);
+			assertFalse(submitter.isAlive());
+		}
+
+		assertEquals(5, futures.size());
+		for (int i = 0; i < futures.size(); i++) {
+			assertEquals(target("a" + i), futures.get(i).join());
+			assertArrayEquals(content, Files.readAllBytes(target("a" + i)));
+		}
+		assertEquals(2, maxRunning.get());
+	}
+
+	@Test
+	public void countsBytesAndOutcomes() throws Exception {
+		CKRecord noAsset = ICloudUtils.fromJson(ICloudUtils.toJson(ImmutableMap.of("recordName", "m",
+			"recordType", "CPLMaster", "fields", ImmutableMap.of())), CKRecord.class);
+
+		CKAssetDownloadJob downloads = new CKAssetDownloadJob(iCloudService, 2, 4);
+
+		List<CompletableFuture<Path>> futures = new ArrayList<>();
+		for (int i = 0; i < 3; i++)
+			futures.add(downloads.download(asset("/asset/", ASSET_SIZE), target("a" + i)));
+		// an asset of unknown size counts towards the bytes downloaded but not the bytes expected
+		futures.add(downloads.download(asset("/asset/", 0), target("unknown")));
+		CompletableFuture<Path> missing = downloads.download(noAsset, "resOriginalRes", target("none"));
+		downloads.close();
+
+		futures.forEach(CompletableFuture::join);
+		assertFailure(missing, ICloudException.class);
+
+		assertEquals(5, downloads.getSubmitted());
+		assertEquals(4, downloads.getCompleted());
+		assertEquals(1, downloads.getFailed());
+		assertEquals(0, downloads.getPending());
+		assertEquals(3 * ASSET_SIZE, downloads.getBytesExpected());
+		assertEquals(4 * ASSET_SIZE, downloads.getBytesDownloaded());
+		assertEquals(1.0, downloads.getProgress(), 0.0);
+		assertTrue(downloads.getThroughput() > 0);
+		assertFalse(Files.exists(target("none")));
+	}
+
+	private static void assertFailure(CompletableFuture<?> future, Class<? extends Exception> type) {
+		try {
+			future.join();
+			fail("expected the download to fail");
+		} catch (CompletionException e) {
+			assertTrue(String.valueOf(e.getCause()), type.isInstance(e.getCause()));
+		}
+	}
+
+	@Test
+	public void deletesPartialFileOnFailure() throws Exception {
+		CompletableFuture<Path> truncated;
+		CompletableFuture<Path> notFound;
+		try (CKAssetDownloadJob downloads = new CKAssetDownloadJob(iCloudService, 2, 0)) {
+			// an earlier file at the target is replaced, so it is gone too
+			Files.write(target("truncated"), new byte[] { 1, 2, 3 });
+			truncated = downloads.download(asset("/truncated/", ASSET_SIZE), target("truncated"));
+			notFound = downloads.download(asset("/missing/", ASSET_SIZE), target("notFound"));
+
+			assertFailure(truncated, IOException.class);
+			assertFailure(notFound, ICloudException.class);
+			assertEquals(2, downloads.getFailed());
+			assertEquals(0, downloads.getCompleted());
+		}
+
+		assertFalse(Files.exists(target("truncated")));
+		assertFalse(Files.exists(target("notFound")));
+	}
+}
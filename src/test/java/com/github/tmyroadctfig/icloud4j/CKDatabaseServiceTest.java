@@ -0,0 +1,268 @@
+package com.github.tmyroadctfig.icloud4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.tmyroadctfig.icloud4j.json.CKRecord;
+import com.github.tmyroadctfig.icloud4j.json.CKResponse;
+import com.github.tmyroadctfig.icloud4j.json.CKZoneId;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * @author patchpump
+ */
+@SuppressWarnings("unchecked")
+public class CKDatabaseServiceTest {
+
+	private static final int PAGES = 3;
+	private static final int PAGE_SIZE = 4;
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private FakeCloudKitServer server;
+	private ICloudService iCloudService;
+	private CKDatabaseService database;
+
+	@Before
+	public void setUp() throws IOException {
+		server = new FakeCloudKitServer();
+		iCloudService = server.createICloudService();
+		database = new CKDatabaseService(iCloudService, CKDatabaseService.ENDPOINT_PHOTOS);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		iCloudService.close();
+		server.close();
+	}
+
+	private static Map<String, Object> record(String recordName) {
+		return ImmutableMap.of("recordName", recordName, "recordType", "CPLAsset");
+	}
+
+	/**
+	 * Answers queries with pages of records, following "p1", "p2"... continuation markers.
+	 */
+	private void handleQueryPages() {
+		server.handle("records/query", body -> {
+			String marker = (String) body.get("continuationMarker");
+			int page = marker == null ? 0 : Integer.parseInt(marker.substring(1));
+			List<Object> records = new ArrayList<>();
+			for (int i = 0; i < PAGE_SIZE; i++)
+				records.add(record("r" + (page * PAGE_SIZE + i)));
+
+			Map<String, Object> response = new LinkedHashMap<>();
+			response.put("records", records);
+			if (page < PAGES - 1)
+				response.put("continuationMarker", "p" + (page + 1));
+			return response;
+		});
+	}
+
+	private static CKQuery assetQuery() {
+		return CKQuery.recordType("CPLAsset").zone("PrimarySync").desiredKeys("masterRef").resultsLimit(PAGE_SIZE);
+	}
+
+	@Test
+	public void queriesAsynchronouslyWithCKQuery() {
+		handleQueryPages();
+
+		CKResponse response = database.queryAsync(assetQuery()).join();
+		assertEquals(Arrays.asList("r0", "r1", "r2", "r3"),
+			response.getRecords().stream().map(CKRecord::getRecordName).collect(Collectors.toList()));
+		assertEquals("p1", response.getContinuationMarker());
+
+		Map<String, Object> request = server.getRequests("records/query").get(0);
+		assertEquals(ImmutableMap.of("recordType", "CPLAsset"), request.get("query"));
+		assertEquals(Arrays.asList("masterRef"), request.get("desiredKeys"));
+	}
+
+	@Test
+	public void queriesAllPagesWithCKQuery() {
+		handleQueryPages();
+
+		List<String> names;
+		try (Stream<CKRecord> records = database.queryAll(assetQuery(), 2)) {
+			names = records.map(CKRecord::getRecordName).collect(Collectors.toList());
+		}
+		assertEquals(PAGES * PAGE_SIZE, names.size());
+		for (int i = 0; i < names.size(); i++)
+			assertEquals("r" + i, names.get(i));
+
+		List<Object> markers = server.getRequests("records/query").stream()
+			.map(request -> request.get("continuationMarker")).collect(Collectors.toList());
+		assertEquals(Arrays.asList(null, "p1", "p2"), markers);
+	}
+
+	/**
+	 * Answers zone changes in pages of two records per zone, with sync tokens "zone:1", "zone:2"... and more coming
+	 * until the given number of pages.
+	 */
+	private void handleZoneChanges(int pages) {
+		server.handle("changes/zone", body -> {
+			Map<String, Object> zone = (Map<String, Object>) ((List<Object>) body.get("zones")).get(0);
+			String zoneName = (String) ((Map<String, Object>) zone.get("zoneID")).get("zoneName");
+			String syncToken = (String) zone.get("syncToken");
+			int page = syncToken == null ? 0 : Integer.parseInt(syncToken.substring(zoneName.length() + 1));
+
+			List<Object> records = new ArrayList<>();
+			for (int i = 0; page < pages && i < 2; i++)
+				records.add(record(zoneName + "-r" + (page * 2 + i)));
+
+			Map<String, Object> changes = new LinkedHashMap<>();
+			changes.put("zoneID", ImmutableMap.of("zoneName", zoneName));
+			changes.put("records", records);
+			changes.put("syncToken", zoneName + ":" + Math.min(page + 1, pages));
+			changes.put("moreComing", page + 1 < pages);
+			return ImmutableMap.of("zones", Arrays.asList(changes));
+		});
+	}
+
+	private static List<Object> requestedZoneTokens(List<Map<String, Object>> requests) {
+		return requests.stream()
+			.map(request -> ((Map<String, Object>) ((List<Object>) request.get("zones")).get(0)).get("syncToken"))
+			.collect(Collectors.toList());
+	}
+
+	private Path getTokenFile() {
+		return temporaryFolder.getRoot().toPath().resolve("sync.properties");
+	}
+
+	@Test
+	public void fetchZoneChangesFollowsMoreComing() {
+		handleZoneChanges(3);
+		CKSyncTokenStore store = new CKFileSyncTokenStore(getTokenFile());
+
+		List<String> names = new ArrayList<>();
+		String syncToken = database.fetchZoneChanges("PrimarySync", null, store,
+			record -> names.add(record.getRecordName()));
+		assertEquals(Arrays.asList("PrimarySync-r0", "PrimarySync-r1", "PrimarySync-r2", "PrimarySync-r3",
+			"PrimarySync-r4", "PrimarySync-r5"), names);
+		assertEquals("PrimarySync:3", syncToken);
+		assertEquals(Arrays.asList(null, "PrimarySync:1", "PrimarySync:2"),
+			requestedZoneTokens(server.getRequests("changes/zone")));
+
+		// the next fetch continues from the stored token and finds nothing new
+		CKSyncTokenStore reopened = new CKFileSyncTokenStore(getTokenFile());
+		assertEquals("PrimarySync:3", reopened.getToken(database.getSyncTokenKey("PrimarySync")));
+		names.clear();
+		database.fetchZoneChanges("PrimarySync", null, reopened, record -> names.add(record.getRecordName()));
+		assertEquals(0, names.size());
+		assertEquals("PrimarySync:3", requestedZoneTokens(server.getRequests("changes/zone")).get(3));
+	}
+
+	@Test
+	public void fetchChangesFollowsMoreComing() {
+		handleZoneChanges(2);
+		server.handle("changes/database", body -> {
+			String syncToken = (String) body.get("syncToken");
+			Map<String, Object> response = new LinkedHashMap<>();
+			response.put("zones", Arrays.asList(ImmutableMap.of("zoneID",
+				ImmutableMap.of("zoneName", syncToken == null ? "PrimarySync" : "SharedSync"))));
+			response.put("syncToken", syncToken == null ? "d1" : "d2");
+			response.put("moreComing", syncToken == null);
+			return response;
+		});
+		CKSyncTokenStore store = new CKFileSyncTokenStore(getTokenFile());
+
+		List<String> names = new ArrayList<>();
+		List<CKZoneId> zones = database.fetchChanges(null, store, record -> names.add(record.getRecordName()));
+		assertEquals(Arrays.asList("PrimarySync", "SharedSync"),
+			zones.stream().map(CKZoneId::getZoneName).collect(Collectors.toList()));
+		assertEquals(Arrays.asList("PrimarySync-r0", "PrimarySync-r1", "PrimarySync-r2", "PrimarySync-r3",
+			"SharedSync-r0", "SharedSync-r1", "SharedSync-r2", "SharedSync-r3"), names);
+
+		assertEquals("d2", store.getToken(database.getSyncTokenKey(null)));
+		assertEquals("PrimarySync:2", store.getToken(database.getSyncTokenKey("PrimarySync")));
+		assertEquals("SharedSync:2", store.getToken(database.getSyncTokenKey("SharedSync")));
+		assertEquals(Arrays.asList(null, "d1"), server.getRequests("changes/database").stream()
+			.map(request -> request.get("syncToken")).collect(Collectors.toList()));
+	}
+
+	/**
+	 * Answers lookups with the requested records in reverse order, reporting names starting with "missing" as not
+	 * found and failing any batch that asks for the given name.
+	 */
+	private void handleLookups(String failingName) {
+		server.handle("records/lookup", body -> {
+			List<Object> records = new ArrayList<>();
+			for (Object item : (List<Object>) body.get("records")) {
+				String name = (String) ((Map<String, Object>) item).get("recordName");
+				if (name.equals(failingName))
+					return ImmutableMap.of("serverErrorCode", "THROTTLED", "reason", "slow down");
+				records.add(0, name.startsWith("missing")
+					? ImmutableMap.of("recordName", name, "serverErrorCode", "NOT_FOUND", "reason", "gone")
+					: record(name));
+			}
+			return ImmutableMap.of("records", records);
+		});
+	}
+
+	private static List<String> lookupNames() {
+		List<String> names = new ArrayList<>();
+		for (int i = 0; i < CKDatabaseService.LOOKUP_BATCH_SIZE * 2 + 50; i++)
+			names.add(i % 100 == 7 ? "missing" + i : "r" + i);
+		// a duplicate is looked up once
+		names.add("r3");
+		return names;
+	}
+
+	@Test
+	public void lookupMergesBatchesInOrder() {
+		handleLookups(null);
+		List<String> names = lookupNames();
+
+		Map<String, CKRecord> records = database.lookup(names, "PrimarySync", "masterRef");
+		List<String> expected = names.subList(0, names.size() - 1).stream()
+			.filter(name -> !name.startsWith("missing")).collect(Collectors.toList());
+		assertEquals(expected, new ArrayList<>(records.keySet()));
+		records.forEach((name, record) -> assertEquals(name, record.getRecordName()));
+
+		List<Map<String, Object>> requests = server.getRequests("records/lookup");
+		assertEquals(3, requests.size());
+		int requested = 0;
+		for (Map<String, Object> request : requests) {
+			assertEquals(ImmutableMap.of("zoneName", "PrimarySync"), request.get("zoneID"));
+			assertEquals(Arrays.asList("masterRef"), request.get("desiredKeys"));
+			requested += ((List<Object>) request.get("records")).size();
+		}
+		assertEquals(names.size() - 1, requested);
+	}
+
+	@Test
+	public void lookupFailsWhenOneBatchFails() {
+		handleLookups("r" + (CKDatabaseService.LOOKUP_BATCH_SIZE + 10));
+		try {
+			database.lookup(lookupNames(), "PrimarySync");
+			fail("expected an ICloudException");
+		} catch (ICloudException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("THROTTLED"));
+		}
+
+		try {
+			database.lookupAsync(lookupNames(), "PrimarySync", null, 1).join();
+			fail("expected an ICloudException");
+		} catch (CompletionException e) {
+			assertTrue(e.getCause() instanceof ICloudException);
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package com.github.tmyroadctfig.icloud4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author patchpump
+ */
+public class CKFileSyncTokenStoreTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private static long countFiles(Path directory) throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.collect(Collectors.counting());
+		}
+	}
+
+	@Test
+	public void tokensSurviveReopening() throws IOException {
+		Path file = temporaryFolder.getRoot().toPath().resolve("state").resolve("sync.properties");
+		CKFileSyncTokenStore store = new CKFileSyncTokenStore(file);
+		assertNull(store.getToken("1/zone"));
+		assertFalse(Files.exists(file));
+
+		store.putToken("1/zone", "token=1:a");
+		store.putToken("1/database", "d1");
+		store.putToken("1/zone", "token=2:b");
+
+		CKFileSyncTokenStore reopened = new CKFileSyncTokenStore(file);
+		assertEquals("token=2:b", reopened.getToken("1/zone"));
+		assertEquals("d1", reopened.getToken("1/database"));
+
+		reopened.removeToken("1/database");
+		CKFileSyncTokenStore again = new CKFileSyncTokenStore(file);
+		assertNull(again.getToken("1/database"));
+		assertEquals("token=2:b", again.getToken("1/zone"));
+
+		// no temporary files are left behind
+		assertEquals(1, countFiles(file.getParent()));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsNullToken() {
+		new CKFileSyncTokenStore(temporaryFolder.getRoot().toPath().resolve("sync.properties")).putToken("key", null);
+	}
+}
@@ -0,0 +1,72 @@
+package com.github.tmyroadctfig.icloud4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import com.github.tmyroadctfig.icloud4j.json.CKRecord;
+import com.github.tmyroadctfig.icloud4j.util.ICloudUtils;
+
+/**
+ * @author patchpump
+ */
+public class CKPartitionMergerTest {
+
+	private static Supplier<Stream<CKRecord>> partition(String... names) {
+		return () -> Arrays.stream(names)
+			.map(name -> ICloudUtils.fromJson("{\"recordName\":\"" + name + "\"}", CKRecord.class));
+	}
+
+	private static List<String> names(Stream<CKRecord> records) {
+		try (Stream<CKRecord> stream = records) {
+			return stream.map(CKRecord::getRecordName).collect(Collectors.toList());
+		}
+	}
+
+	@Test
+	public void mergesPartitionsInOrder() {
+		List<Supplier<Stream<CKRecord>>> partitions = Arrays.asList(partition("a", "b"), partition(), partition("c"));
+		assertEquals(Arrays.asList("a", "b", "c"), names(new CKPartitionMerger(partitions, 3, 1, true).stream()));
+	}
+
+	@Test
+	public void mergesPartitionsUnordered() {
+		List<Supplier<Stream<CKRecord>>> partitions = Arrays.asList(partition("a", "b"), partition("c"));
+		List<String> names = names(new CKPartitionMerger(partitions, 2, 1, false).stream());
+		names.sort(null);
+		assertEquals(Arrays.asList("a", "b", "c"), names);
+	}
+
+	@Test(timeout = 10_000)
+	public void propagatesRuntimeException() {
+		Supplier<Stream<CKRecord>> failing = () -> {
+			throw new ICloudException("partition failed");
+		};
+		try {
+			names(new CKPartitionMerger(Arrays.asList(partition("a"), failing), 2, 1, true).stream());
+			fail("expected ICloudException");
+		} catch (ICloudException e) {
+			assertEquals("partition failed", e.getMessage());
+		}
+	}
+
+	@Test(timeout = 10_000)
+	public void propagatesError() {
+		Supplier<Stream<CKRecord>> failing = () -> partition("a").get().peek(record -> {
+			throw new OutOfMemoryError("partition failed");
+		});
+		try {
+			names(new CKPartitionMerger(Arrays.asList(failing), 1, 1, false).stream());
+			fail("expected OutOfMemoryError");
+		} catch (OutOfMemoryError e) {
+			assertEquals("partition failed", e.getMessage());
+		}
+	}
+}
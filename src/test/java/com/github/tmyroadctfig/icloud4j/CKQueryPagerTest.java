@@ -0,0 +1,156 @@
+package com.github.tmyroadctfig.icloud4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.github.tmyroadctfig.icloud4j.json.CKRecord;
+import com.github.tmyroadctfig.icloud4j.json.CKResponse;
+import com.github.tmyroadctfig.icloud4j.util.ICloudUtils;
+
+/**
+ * @author patchpump
+ */
+public class CKQueryPagerTest {
+
+	private static final int PAGES = 5;
+	private static final int PAGE_SIZE = 3;
+
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+	private final List<String> requestedMarkers = new CopyOnWriteArrayList<>();
+
+	@After
+	public void tearDown() {
+		scheduler.shutdownNow();
+	}
+
+	/**
+	 * A page whose completion callbacks run a while after the page completes, so a consumer can finish the page
+	 * before the pager has read its continuation marker.
+	 */
+	private static class DelayedCallbackFuture extends CompletableFuture<CKResponse> {
+
+		@Override
+		public CompletableFuture<CKResponse> whenComplete(BiConsumer<? super CKResponse, ? super Throwable> action) {
+			return super.whenComplete((response, t) -> {
+				sleep(50);
+				action.accept(response, t);
+			});
+		}
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static CKResponse page(int page) {
+		StringBuilder json = new StringBuilder("{\"records\":[");
+		for (int i = 0; i < PAGE_SIZE; i++)
+			json.append(i > 0 ? "," : "").append("{\"recordName\":\"r").append(page * PAGE_SIZE + i).append("\"}");
+		json.append("]");
+		if (page < PAGES - 1)
+			json.append(",\"continuationMarker\":\"m").append(page + 1).append("\"");
+		return ICloudUtils.fromJson(json.append("}").toString(), CKResponse.class);
+	}
+
+	private static int pageNumber(String marker) {
+		return marker == null ? 0 : Integer.parseInt(marker.substring(1));
+	}
+
+	private Function<String, CompletableFuture<CKResponse>> completedPages() {
+		return marker -> {
+			requestedMarkers.add(String.valueOf(marker));
+			return CompletableFuture.completedFuture(page(pageNumber(marker)));
+		};
+	}
+
+	private static List<String> expectedRecordNames() {
+		List<String> names = new ArrayList<>();
+		for (int i = 0; i < PAGES * PAGE_SIZE; i++)
+			names.add("r" + i);
+		return names;
+	}
+
+	private static List<String> recordNames(Stream<CKRecord> records) {
+		try (Stream<CKRecord> stream = records) {
+			return stream.map(CKRecord::getRecordName).collect(Collectors.toList());
+		}
+	}
+
+	@Test
+	public void followsMarkersWhenCallbacksLagBehindThePage() {
+		for (int prefetchDepth = 0; prefetchDepth <= 2; prefetchDepth++) {
+			requestedMarkers.clear();
+			CKQueryPager pager = new CKQueryPager(marker -> {
+				requestedMarkers.add(String.valueOf(marker));
+				DelayedCallbackFuture page = new DelayedCallbackFuture();
+				scheduler.schedule(() -> page.complete(page(pageNumber(marker))), 5, TimeUnit.MILLISECONDS);
+				return page;
+			}, prefetchDepth);
+
+			assertEquals("prefetch " + prefetchDepth, expectedRecordNames(), recordNames(pager.stream()));
+			assertEquals(Arrays.asList("null", "m1", "m2", "m3", "m4"), requestedMarkers);
+		}
+	}
+
+	@Test
+	public void prefetchesUpToTheDepth() {
+		for (int prefetchDepth = 0; prefetchDepth <= 2; prefetchDepth++) {
+			requestedMarkers.clear();
+			CKQueryPager pager = new CKQueryPager(completedPages(), prefetchDepth);
+			assertEquals(0, requestedMarkers.size());
+
+			assertEquals("r0", pager.next().getRecordName());
+			assertEquals("prefetch " + prefetchDepth, 1 + prefetchDepth, requestedMarkers.size());
+
+			List<String> names = new ArrayList<>(Arrays.asList("r0"));
+			pager.forEachRemaining(record -> names.add(record.getRecordName()));
+			assertEquals(expectedRecordNames(), names);
+			assertEquals(PAGES, requestedMarkers.size());
+		}
+	}
+
+	@Test
+	public void closeCancelsRunningPrefetch() {
+		List<CompletableFuture<CKResponse>> pending = new CopyOnWriteArrayList<>();
+		CKQueryPager pager = new CKQueryPager(marker -> {
+			requestedMarkers.add(String.valueOf(marker));
+			if (marker == null)
+				return CompletableFuture.completedFuture(page(0));
+			CompletableFuture<CKResponse> page = new CompletableFuture<>();
+			pending.add(page);
+			return page;
+		}, 2);
+
+		Stream<CKRecord> stream = pager.stream();
+		Iterator<CKRecord> records = stream.iterator();
+		assertEquals("r0", records.next().getRecordName());
+		assertEquals(1, pending.size());
+
+		stream.close();
+		assertTrue(pending.get(0).isCancelled());
+		assertFalse(pager.hasNext());
+		assertEquals(Arrays.asList("null", "m1"), requestedMarkers);
+	}
+}
@@ -0,0 +1,90 @@
+package com.github.tmyroadctfig.icloud4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Test;
+
+/**
+ * @author patchpump
+ */
+public class CKRecordIteratorTest {
+
+	private final AtomicBoolean closed = new AtomicBoolean();
+
+	private class Response extends BasicHttpResponse implements CloseableHttpResponse {
+
+		Response(int status, String content) {
+			super(HttpVersion.HTTP_1_1, status, null);
+			if (content != null)
+				setEntity(new StringEntity(content, ContentType.APPLICATION_JSON));
+		}
+
+		@Override
+		public void close() {
+			closed.set(true);
+		}
+	}
+
+	@Test
+	public void readsRecordsAndTrailingValues() throws IOException {
+		String content = "{\"records\":[{\"recordName\":\"a\",\"recordType\":\"CPLAsset\"},{\"recordName\":\"b\"}],"
+			+ "\"continuationMarker\":\"next\"}";
+		try (CKRecordIterator records = new CKRecordIterator(new Response(200, content))) {
+			assertNull(records.getContinuationMarker());
+			assertEquals("a", records.next().getRecordName());
+			assertEquals("b", records.next().getRecordName());
+			assertFalse(records.hasNext());
+			assertEquals("next", records.getContinuationMarker());
+		}
+		assertTrue(closed.get());
+	}
+
+	@Test
+	public void errorStatusThrowsWithErrorMap() {
+		String content = "{\"serverErrorCode\":\"ACCESS_DENIED\",\"reason\":\"private db access disabled\"}";
+		try {
+			new CKRecordIterator(new Response(401, content));
+			fail("expected ICloudException");
+		} catch (ICloudException e) {
+			assertEquals(401, e.getStatusLine().getStatusCode());
+			assertEquals("ACCESS_DENIED", e.getErrorMap().get("serverErrorCode"));
+			assertEquals("private db access disabled", e.getErrorMap().get("reason"));
+		}
+		assertTrue(closed.get());
+	}
+
+	@Test
+	public void errorStatusWithoutContentThrows() {
+		try {
+			new CKRecordIterator(new Response(503, null));
+			fail("expected ICloudException");
+		} catch (ICloudException e) {
+			assertEquals(503, e.getStatusLine().getStatusCode());
+		}
+		assertTrue(closed.get());
+	}
+
+	@Test
+	public void errorStatusWithHtmlContentThrows() {
+		try {
+			new CKRecordIterator(new Response(502, "<html>Bad Gateway</html>"));
+			fail("expected ICloudException");
+		} catch (ICloudException e) {
+			assertEquals(502, e.getStatusLine().getStatusCode());
+			assertEquals("<html>Bad Gateway</html>", e.getErrorMap().get("content"));
+		}
+		assertTrue(closed.get());
+	}
+}
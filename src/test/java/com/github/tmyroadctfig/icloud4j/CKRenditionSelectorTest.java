@@ -0,0 +1,118 @@
+package com.github.tmyroadctfig.icloud4j;
+
+import static com.github.tmyroadctfig.icloud4j.CKRendition.MEDIUM;
+import static com.github.tmyroadctfig.icloud4j.CKRendition.ORIGINAL;
+import static com.github.tmyroadctfig.icloud4j.CKRendition.THUMBNAIL;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.github.tmyroadctfig.icloud4j.json.CKRecord;
+import com.github.tmyroadctfig.icloud4j.util.ICloudUtils;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * @author patchpump
+ */
+public class CKRenditionSelectorTest {
+
+	private static final long UNKNOWN = -1;
+	private static final long NONE = -2;
+
+	/**
+	 * Builds a master record from the long edge and byte size of each rendition, from the smallest to the largest.
+	 * A rendition with a byte size of NONE is left out; an unknown edge or byte size leaves out that field.
+	 */
+	private static CKRecord master(long thumbEdge, long thumbBytes, long medEdge, long medBytes, long origEdge,
+		long origBytes) {
+		Map<String, Object> fields = new LinkedHashMap<>();
+		addRendition(fields, THUMBNAIL, thumbEdge, thumbBytes);
+		addRendition(fields, MEDIUM, medEdge, medBytes);
+		addRendition(fields, ORIGINAL, origEdge, origBytes);
+		return ICloudUtils.fromJson(ICloudUtils.toJson(ImmutableMap.of("recordName", "m", "recordType", "CPLMaster",
+			"fields", fields)), CKRecord.class);
+	}
+
+	private static void addRendition(Map<String, Object> fields, CKRendition rendition, long longEdge, long bytes) {
+		if (bytes == NONE)
+			return;
+
+		Map<String, Object> asset = new LinkedHashMap<>();
+		asset.put("downloadURL", "https://cvws.icloud-content.com/" + rendition + "/${f}");
+		if (bytes != UNKNOWN)
+			asset.put("size", bytes);
+		fields.put(rendition.getAssetField(), ImmutableMap.of("type", "ASSETID", "value", asset));
+		if (longEdge != UNKNOWN) {
+			// landscape, so the width is the long edge
+			fields.put(rendition.getWidthField(), ImmutableMap.of("type", "INT64", "value", longEdge));
+			fields.put(rendition.getHeightField(), ImmutableMap.of("type", "INT64", "value", longEdge * 3 / 4));
+		}
+	}
+
+	private static final CKRecord FULL = master(240, 20_000, 1024, 150_000, 4032, 3_000_000);
+
+	private static final CKRecord NO_THUMBNAIL = master(0, NONE, 1024, 150_000, 4032, 3_000_000);
+
+	private static final CKRecord ORIGINAL_EDGE_UNKNOWN = master(240, 20_000, 1024, 150_000, UNKNOWN, 3_000_000);
+
+	private static final CKRecord MEDIUM_EDGE_UNKNOWN = master(240, 20_000, UNKNOWN, 150_000, 4032, 3_000_000);
+
+	private static final CKRecord MEDIUM_BYTES_UNKNOWN = master(240, 20_000, 1024, UNKNOWN, 4032, 3_000_000);
+
+	private static final CKRecord NO_RENDITIONS = master(0, NONE, 0, NONE, 0, NONE);
+
+	private static final Object[][] TABLE = {
+		// record, selector, expected
+		// the smallest rendition large enough
+		{ FULL, CKRenditionSelector.forPixelSize(0), THUMBNAIL },
+		{ FULL, CKRenditionSelector.forPixelSize(200), THUMBNAIL },
+		{ FULL, CKRenditionSelector.forPixelSize(240), THUMBNAIL },
+		{ FULL, CKRenditionSelector.forPixelSize(512), MEDIUM },
+		{ FULL, CKRenditionSelector.forPixelSize(2000), ORIGINAL },
+		{ FULL, CKRenditionSelector.forPixelSize(512).withByteBudget(150_000), MEDIUM },
+		{ NO_THUMBNAIL, CKRenditionSelector.forPixelSize(200), MEDIUM },
+		// else the largest within the budget
+		{ FULL, CKRenditionSelector.forPixelSize(8000), ORIGINAL },
+		{ FULL, CKRenditionSelector.forPixelSize(2000).withByteBudget(200_000), MEDIUM },
+		{ FULL, CKRenditionSelector.forPixelSize(512).withByteBudget(100_000), THUMBNAIL },
+		{ FULL, CKRenditionSelector.forByteBudget(200_000), MEDIUM },
+		{ FULL, CKRenditionSelector.forByteBudget(5_000_000), ORIGINAL },
+		// else the smallest available
+		{ FULL, CKRenditionSelector.forPixelSize(200).withByteBudget(10_000), THUMBNAIL },
+		{ FULL, CKRenditionSelector.forByteBudget(0), THUMBNAIL },
+		{ NO_THUMBNAIL, CKRenditionSelector.forPixelSize(200).withByteBudget(10_000), MEDIUM },
+		// an original of unknown pixel size counts as large enough, other renditions do not
+		{ ORIGINAL_EDGE_UNKNOWN, CKRenditionSelector.forPixelSize(2000), ORIGINAL },
+		{ ORIGINAL_EDGE_UNKNOWN, CKRenditionSelector.forPixelSize(2000).withByteBudget(200_000), MEDIUM },
+		{ MEDIUM_EDGE_UNKNOWN, CKRenditionSelector.forPixelSize(512), ORIGINAL },
+		// an asset of unknown byte size fits any budget
+		{ MEDIUM_BYTES_UNKNOWN, CKRenditionSelector.forPixelSize(512).withByteBudget(100_000), MEDIUM },
+	};
+
+	@Test
+	public void selectsByTable() {
+		for (int i = 0; i < TABLE.length; i++) {
+			CKRecord record = (CKRecord) TABLE[i][0];
+			CKRenditionSelector selector = (CKRenditionSelector) TABLE[i][1];
+			CKRendition expected = (CKRendition) TABLE[i][2];
+			assertEquals("row " + i + ": " + selector, expected, selector.select(record));
+			assertEquals("row " + i + ": " + selector, expected.getAsset(record).getDownloadURL(),
+				selector.selectAsset(record).getDownloadURL());
+		}
+	}
+
+	@Test
+	public void recordWithoutRenditions() {
+		assertNull(CKRenditionSelector.forPixelSize(512).select(NO_RENDITIONS));
+		assertNull(CKRenditionSelector.forPixelSize(512).selectAsset(NO_RENDITIONS));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsNegativeBudget() {
+		CKRenditionSelector.forPixelSize(512).withByteBudget(-1);
+	}
+}
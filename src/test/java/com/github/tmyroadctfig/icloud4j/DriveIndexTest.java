@@ -0,0 +1,197 @@
+package com.github.tmyroadctfig.icloud4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author patchpump
+ */
+public class DriveIndexTest {
+
+	private static final int FANOUT = 3;
+	private static final int DEPTH = 3;
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private FakeDriveServer server;
+	private ICloudService iCloudService;
+	private DriveService driveService;
+	private Path file;
+	private int folders;
+
+	@Before
+	public void setUp() throws IOException {
+		server = new FakeDriveServer();
+		folders = server.addTree(DriveService.ROOT_ID, FANOUT, DEPTH);
+		iCloudService = server.createICloudService();
+		driveService = new DriveService(iCloudService);
+		file = temporaryFolder.getRoot().toPath().resolve("drive.idx");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		iCloudService.close();
+		server.close();
+	}
+
+	private void assertMatchesServer(DriveIndex index) {
+		Map<String, String> etags = server.getEtags();
+		assertEquals(etags.size(), index.size());
+		etags.forEach((id, etag) -> {
+			DriveIndex.Entry entry = index.get(id);
+			assertNotNull(id, entry);
+			assertEquals(id, etag, entry.getEtag());
+			if (entry.isFolder())
+				assertTrue(id, entry.isListed());
+		});
+	}
+
+	/**
+	 * Gets a folder on the path down the first subfolder of each level.
+	 */
+	private String getFolder(int depth) {
+		String folderId = DriveService.ROOT_ID;
+		for (int i = 0; i < depth; i++)
+			folderId = server.getChildIds(folderId).get(1);
+		return folderId;
+	}
+
+	@Test
+	public void refreshesOnlyChangedFolders() throws IOException {
+		try (DriveIndex index = new DriveIndex(file)) {
+			assertEquals(folders + 1, index.refresh(driveService));
+			assertMatchesServer(index);
+			assertEquals(1, index.refresh(driveService));
+
+			server.changed(server.getChildIds(getFolder(DEPTH)).get(0));
+			assertEquals(DEPTH + 1, index.refresh(driveService));
+			assertMatchesServer(index);
+
+			String removed = getFolder(1);
+			server.remove(removed);
+			assertEquals(1, index.refresh(driveService));
+			assertMatchesServer(index);
+			assertEquals(FANOUT - 1, index.list(index.getRootId()).stream().filter(DriveIndex.Entry::isFolder).count());
+		}
+
+		try (DriveIndex index = new DriveIndex(file)) {
+			assertMatchesServer(index);
+			assertEquals(1, index.refresh(driveService));
+		}
+	}
+
+	@Test
+	public void resumesInterruptedRefresh() throws IOException {
+		try (DriveIndex index = new DriveIndex(file)) {
+			index.refresh(driveService);
+		}
+
+		// a change three levels down, with the refresh failing on the second level
+		String fileId = server.getChildIds(getFolder(DEPTH)).get(0);
+		server.changed(fileId);
+		server.setFailing(getFolder(2), true);
+		try (DriveIndex index = new DriveIndex(file)) {
+			index.refresh(driveService);
+			fail("expected ICloudException");
+		} catch (ICloudException e) {
+			// expected
+		}
+
+		server.setFailing(getFolder(2), false);
+		try (DriveIndex index = new DriveIndex(file)) {
+			// the root and the first level are up to date, the rest is listed from where the refresh stopped
+			assertEquals(1 + DEPTH - 1, index.refresh(driveService));
+			assertMatchesServer(index);
+		}
+	}
+
+	@Test
+	public void dropsTruncatedRecord() throws IOException {
+		try (DriveIndex index = new DriveIndex(file)) {
+			index.refresh(driveService);
+		}
+
+		long length = Files.size(file);
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.truncate(length - 3);
+		}
+
+		try (DriveIndex index = new DriveIndex(file)) {
+			assertTrue(Files.size(file) < length - 3);
+			// the last record marked the last folder listed
+			assertEquals(server.getNodeCount(), index.size());
+			assertEquals(2, index.refresh(driveService));
+			assertMatchesServer(index);
+		}
+	}
+
+	@Test
+	public void removesOrphansOfTruncatedRemoval() throws IOException {
+		String removed = getFolder(1);
+		long length;
+		try (DriveIndex index = new DriveIndex(file)) {
+			index.refresh(driveService);
+			length = Files.size(file);
+
+			server.remove(removed);
+			index.refresh(driveService);
+		}
+
+		// keep the removal of the folder but not of anything below it
+		int removeRecord = 1 + 2 + removed.getBytes(StandardCharsets.UTF_8).length;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.truncate(length + removeRecord + 5);
+		}
+
+		try (DriveIndex index = new DriveIndex(file)) {
+			assertEquals(server.getNodeCount(), index.size());
+			List<DriveIndex.Entry> children = index.list(index.getRootId());
+			assertEquals(FANOUT, children.size());
+			assertEquals(1, index.refresh(driveService));
+			assertMatchesServer(index);
+		}
+	}
+
+	@Test
+	public void compactsLog() throws IOException {
+		try (DriveIndex index = new DriveIndex(file)) {
+			index.refresh(driveService);
+			for (int i = 0; i < 3; i++) {
+				server.changed(server.getChildIds(getFolder(DEPTH)).get(0));
+				index.refresh(driveService);
+			}
+			long length = Files.size(file);
+			index.compact();
+			assertTrue(Files.size(file) < length);
+			assertMatchesServer(index);
+		}
+
+		try (DriveIndex index = new DriveIndex(file)) {
+			assertMatchesServer(index);
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsOtherFiles() throws IOException {
+		Files.write(file, "not an index".getBytes(StandardCharsets.UTF_8));
+		new DriveIndex(file).close();
+	}
+}
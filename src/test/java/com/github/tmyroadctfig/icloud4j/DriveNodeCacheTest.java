@@ -0,0 +1,181 @@
+package com.github.tmyroadctfig.icloud4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.tmyroadctfig.icloud4j.json.DriveNodeDetails;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheStats;
+
+/**
+ * @author patchpump
+ */
+public class DriveNodeCacheTest {
+
+	private static final long EXPIRY_SECONDS = 60;
+
+	private static class FakeTicker extends Ticker {
+
+		private final AtomicLong nanos = new AtomicLong();
+
+		@Override
+		public long read() {
+			return nanos.get();
+		}
+
+		void advance(long seconds) {
+			nanos.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+		}
+	}
+
+	private final FakeTicker ticker = new FakeTicker();
+	private FakeDriveServer server;
+	private ICloudService iCloudService;
+	private DriveService driveService;
+	private DriveNodeCache cache;
+	private List<String> folderIds;
+
+	@Before
+	public void setUp() throws IOException {
+		server = new FakeDriveServer();
+		folderIds = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			String folderId = server.addFolder(DriveService.ROOT_ID, "d" + i);
+			server.addFile(folderId, "file", "txt", 10);
+			folderIds.add(folderId);
+		}
+
+		iCloudService = server.createICloudService();
+		driveService = new DriveService(iCloudService);
+		cache = new DriveNodeCache(DriveNodeCache.DEFAULT_MAXIMUM_WEIGHT, EXPIRY_SECONDS, TimeUnit.SECONDS, ticker);
+		driveService.setNodeCache(cache);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		iCloudService.close();
+		server.close();
+	}
+
+	@Test
+	public void hitDoesNotSendRequest() {
+		DriveNodeDetails first = driveService.getNodeDetails(folderIds.get(0));
+		assertEquals(1, server.getRequests());
+
+		assertTrue(first == driveService.getNodeDetails(folderIds.get(0)));
+		assertEquals(1, driveService.getChildren(folderIds.get(0)).size());
+		assertEquals(1, server.getRequests());
+		assertEquals(1, cache.getStats().missCount());
+		assertEquals(2, cache.getStats().hitCount());
+	}
+
+	@Test
+	public void listingExpires() {
+		driveService.getNodeDetails(folderIds.get(0));
+		ticker.advance(EXPIRY_SECONDS - 1);
+		driveService.getNodeDetails(folderIds.get(0));
+		assertEquals(1, server.getRequests());
+
+		ticker.advance(1);
+		driveService.getNodeDetails(folderIds.get(0));
+		assertEquals(2, server.getRequests());
+	}
+
+	@Test
+	public void unchangedEtagKeepsListing() {
+		driveService.getNodeDetails(folderIds.get(0));
+		ticker.advance(EXPIRY_SECONDS / 2);
+
+		CacheStats before = cache.getStats();
+		driveService.getNodeDetails(DriveService.ROOT_ID);
+		assertEquals(1, cache.getRevalidations());
+		assertEquals(0, cache.getEtagInvalidations());
+		// the root lookup is the only miss, revalidating the subfolder is neither a hit nor a miss
+		assertEquals(1, cache.getStats().minus(before).missCount());
+		assertEquals(0, cache.getStats().minus(before).hitCount());
+
+		// revalidation restarted the expiry
+		ticker.advance(EXPIRY_SECONDS - 1);
+		driveService.getNodeDetails(folderIds.get(0));
+		assertEquals(2, server.getRequests());
+	}
+
+	@Test
+	public void changedEtagDropsListing() {
+		driveService.getNodeDetails(folderIds.get(0));
+		driveService.getNodeDetails(folderIds.get(1));
+		server.addFile(folderIds.get(0), "added", "txt", 20);
+
+		CacheStats before = cache.getStats();
+		driveService.getNodeDetails(DriveService.ROOT_ID);
+		assertEquals(1, cache.getEtagInvalidations());
+		assertEquals(1, cache.getRevalidations());
+		assertEquals(1, cache.getStats().minus(before).missCount());
+		assertEquals(0, cache.getStats().minus(before).hitCount());
+		assertEquals(2, cache.size());
+
+		assertEquals(2, driveService.getChildren(folderIds.get(0)).size());
+		assertEquals(4, server.getRequests());
+	}
+
+	@Test
+	public void evictsByWeight() {
+		// each listing of one file weighs 2, and the weight is shared out between the cache segments
+		cache = new DriveNodeCache(8, EXPIRY_SECONDS, TimeUnit.SECONDS, ticker);
+		driveService.setNodeCache(cache);
+		for (int i = 0; i < 20; i++)
+			server.addFile(server.addFolder(DriveService.ROOT_ID, "e" + i), "file", "txt", 10);
+
+		for (String folderId : server.getChildIds(DriveService.ROOT_ID))
+			driveService.getNodeDetails(folderId);
+		assertTrue(cache.size() <= 4);
+		assertTrue(cache.getStats().evictionCount() >= 20);
+	}
+
+	@Test
+	public void invalidateDropsListing() {
+		driveService.getNodeDetails(folderIds.get(0));
+		driveService.getNodeDetails(folderIds.get(1));
+
+		cache.invalidate(folderIds.get(0));
+		assertNull(cache.get(folderIds.get(0)));
+		assertNotNull(cache.get(folderIds.get(1)));
+		driveService.getNodeDetails(folderIds.get(0));
+		assertEquals(3, server.getRequests());
+
+		cache.invalidateAll();
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void bulkLookupFetchesOnlyUncachedIds() {
+		driveService.getNodeDetails(folderIds.get(0));
+		driveService.getNodeDetails(folderIds.get(2));
+		int requestedIds = server.getRequestedIds();
+
+		List<String> ids = Arrays.asList(folderIds.get(0), folderIds.get(1), folderIds.get(2), folderIds.get(3),
+			folderIds.get(1));
+		Map<String, DriveNodeDetails> details = driveService.getNodeDetails(ids);
+		assertEquals(folderIds, new ArrayList<>(details.keySet()));
+		details.forEach((id, folder) -> assertEquals(id, folder.drivewsid));
+		assertEquals(requestedIds + 2, server.getRequestedIds());
+
+		Map<String, DriveNodeDetails> cached = driveService.getNodeDetailsAsync(ids).join();
+		assertEquals(folderIds, new ArrayList<>(cached.keySet()));
+		assertEquals(requestedIds + 2, server.getRequestedIds());
+	}
+}
@@ -0,0 +1,128 @@
+package com.github.tmyroadctfig.icloud4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.tmyroadctfig.icloud4j.json.DriveNodeDetails;
+
+/**
+ * @author patchpump
+ */
+public class DriveServiceTest {
+
+	private static final String MISSING_ID = "FOLDER::com.apple.CloudDocs::missing";
+
+	private FakeDriveServer server;
+	private ICloudService iCloudService;
+	private DriveService driveService;
+	private List<String> folderIds;
+
+	@Before
+	public void setUp() throws IOException {
+		server = new FakeDriveServer();
+		folderIds = new ArrayList<>();
+		for (int i = 0; i < 5; i++)
+			folderIds.add(server.addFolder(DriveService.ROOT_ID, "d" + i));
+
+		iCloudService = server.createICloudService();
+		driveService = new DriveService(iCloudService);
+		driveService.setNodeDetailsBatchSize(2);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		iCloudService.close();
+		server.close();
+	}
+
+	private static void assertDetails(List<String> ids, Map<String, DriveNodeDetails> details) {
+		assertEquals(ids, new ArrayList<>(details.keySet()));
+		details.forEach((id, folder) -> assertEquals(id, folder.drivewsid));
+	}
+
+	@Test
+	public void returnsDetailsInRequestedOrder() {
+		server.setReversed(true);
+		List<String> ids = Arrays.asList(folderIds.get(3), folderIds.get(0), folderIds.get(4), folderIds.get(1),
+			folderIds.get(0));
+		List<String> distinct = ids.subList(0, 4);
+
+		assertDetails(distinct, driveService.getNodeDetails(ids));
+		assertDetails(distinct, driveService.getNodeDetailsAsync(ids).join());
+		assertEquals(4, server.getRequests());
+		assertEquals(8, server.getRequestedIds());
+	}
+
+	@Test
+	public void skipsDetailsWithoutId() {
+		server.setReversed(true);
+		server.setAnonymous(folderIds.get(0));
+
+		Map<String, DriveNodeDetails> details = driveService.getNodeDetails(folderIds);
+		assertFalse(details.containsKey(folderIds.get(0)));
+		assertDetails(folderIds.subList(1, 5), details);
+	}
+
+	@Test
+	public void skipsUnknownIds() {
+		List<String> ids = Arrays.asList(folderIds.get(0), MISSING_ID, folderIds.get(1));
+		Map<String, DriveNodeDetails> details = driveService.getNodeDetails(ids);
+		assertFalse(details.containsKey(MISSING_ID));
+		assertDetails(Arrays.asList(folderIds.get(0), folderIds.get(1)), details);
+		assertFalse(driveService.getChildren(ids).containsKey(MISSING_ID));
+		assertFalse(driveService.getNodeDetailsAsync(ids).join().containsKey(MISSING_ID));
+	}
+
+	@Test(expected = ICloudException.class)
+	public void failsSingleLookupOfUnknownId() {
+		driveService.getNodeDetails(MISSING_ID);
+	}
+
+	@Test
+	public void failsCoalescedLookupOfUnknownId() {
+		driveService.setRequestCoalescing(true);
+		try {
+			driveService.getChildren(MISSING_ID);
+			fail("expected an ICloudException");
+		} catch (ICloudException e) {
+			// expected
+		}
+
+		try {
+			driveService.getNodeDetailsAsync(MISSING_ID).join();
+			fail("expected an ICloudException");
+		} catch (CompletionException e) {
+			assertTrue(e.getCause() instanceof ICloudException);
+		}
+	}
+
+	@Test
+	public void coalescesSingleLookups() {
+		driveService.setNodeDetailsBatchSize(64);
+		driveService.setRequestCoalescing(50, TimeUnit.MILLISECONDS);
+
+		List<CompletableFuture<DriveNodeDetails>> futures = new ArrayList<>();
+		for (int i = 0; i < 50; i++)
+			futures.add(driveService.getNodeDetailsAsync(folderIds.get(i % folderIds.size())));
+		for (int i = 0; i < futures.size(); i++)
+			assertEquals(folderIds.get(i % folderIds.size()), futures.get(i).join().drivewsid);
+
+		assertEquals(1, server.getRequests());
+		assertEquals(5, server.getRequestedIds());
+	}
+}
@@ -0,0 +1,81 @@
+package com.github.tmyroadctfig.icloud4j;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares walking a folder tree with {@link DriveService#walk()} and listing it folder by folder, against a local
+ * drive server answering each request after a simulated round trip:
+ *
+ * <pre>
+ * mvn -P benchmark test -DskipTests -Dbenchmark.args=DriveWalkBenchmark
+ * </pre>
+ *
+ * @author patchpump
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+@State(Scope.Benchmark)
+public class DriveWalkBenchmark {
+
+	@Param({ "20" })
+	public long latencyMillis;
+
+	private FakeDriveServer server;
+	private ICloudService iCloudService;
+	private DriveService driveService;
+
+	@Setup
+	public void setUp() throws IOException {
+		server = new FakeDriveServer();
+		server.addTree(DriveService.ROOT_ID, 3, 3);
+		server.setLatencyMillis(latencyMillis);
+		iCloudService = server.createICloudService();
+		driveService = new DriveService(iCloudService);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		iCloudService.close();
+		server.close();
+	}
+
+	private int listSequentially(String folderId) {
+		int count = 0;
+		for (DriveNode child : driveService.getChildren(folderId)) {
+			count++;
+			if ("FOLDER".equals(child.getType()))
+				count += listSequentially(child.getId());
+		}
+		return count;
+	}
+
+	@Benchmark
+	public int sequentialListing() {
+		return listSequentially(DriveService.ROOT_ID);
+	}
+
+	@Benchmark
+	public long walk() {
+		try (Stream<DriveNode> nodes = driveService.walk()) {
+			return nodes.count();
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package com.github.tmyroadctfig.icloud4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author patchpump
+ */
+public class DriveWalkerTest {
+
+	private static final int FANOUT = 3;
+	private static final int DEPTH = 3;
+
+	private FakeDriveServer server;
+	private ICloudService iCloudService;
+	private DriveService driveService;
+	private int folders;
+
+	@Before
+	public void setUp() throws IOException {
+		server = new FakeDriveServer();
+		folders = server.addTree(DriveService.ROOT_ID, FANOUT, DEPTH);
+		iCloudService = server.createICloudService();
+		driveService = new DriveService(iCloudService);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		iCloudService.close();
+		server.close();
+	}
+
+	private static Set<String> ids(Stream<DriveNode> nodes) {
+		try (Stream<DriveNode> stream = nodes) {
+			return stream.map(DriveNode::getId).collect(Collectors.toSet());
+		}
+	}
+
+	private Set<String> walkSequentially(String folderId, Set<String> result) {
+		for (DriveNode child : driveService.getChildren(folderId)) {
+			result.add(child.getId());
+			if ("FOLDER".equals(child.getType()))
+				walkSequentially(child.getId(), result);
+		}
+		return result;
+	}
+
+	@Test
+	public void walksWholeTree() {
+		Set<String> walked = ids(driveService.walk());
+		assertEquals(server.getNodeCount() - 1, walked.size());
+		assertEquals(walkSequentially(DriveService.ROOT_ID, new HashSet<>()), walked);
+	}
+
+	@Test
+	public void listsEachLevelInBatches() {
+		ids(driveService.walk(DriveWalk.fromRoot().concurrency(1)));
+		// one request per level, as every level fits in a batch
+		assertEquals(DEPTH + 1, server.getRequests());
+		assertEquals(folders + 1, server.getRequestedIds());
+	}
+
+	@Test
+	public void appliesFiltersAndDepth() {
+		Set<String> files = ids(driveService.walk(DriveWalk.fromRoot().types("FILE").extensions("TXT").maxDepth(2)));
+		// the root's file and those of its subfolders
+		assertEquals(1 + FANOUT, files.size());
+		assertTrue(files.stream().allMatch(id -> id.startsWith("FILE::")));
+
+		// skipping one of the two levels of subfolders below a top level folder
+		String folder = server.getChildIds(DriveService.ROOT_ID).get(1);
+		String skipped = server.getChildIds(folder).get(2);
+		Set<String> subtree = ids(driveService.walk(DriveWalk.from(folder)
+			.descendInto(subfolder -> !subfolder.getId().equals(skipped))));
+		assertTrue(subtree.contains(skipped));
+		assertEquals(1 + FANOUT + (FANOUT - 1) * (1 + FANOUT) + (FANOUT - 1) * FANOUT, subtree.size());
+	}
+
+	@Test(timeout = 10_000)
+	public void propagatesFailure() {
+		server.setFailing(server.getChildIds(DriveService.ROOT_ID).get(2), true);
+		try {
+			ids(driveService.walk());
+			fail("expected ICloudException");
+		} catch (ICloudException e) {
+			// expected
+		}
+	}
+
+	@Test(timeout = 10_000)
+	public void closingStopsWalk() {
+		server.setLatencyMillis(20);
+		try (Stream<DriveNode> nodes = driveService.walk(DriveWalk.fromRoot().bufferSize(1))) {
+			assertEquals(2, nodes.limit(2).count());
+		}
+		int requests = server.getRequests();
+		assertTrue("requests " + requests, requests < DEPTH + 1);
+	}
+
+	/**
+	 * The sequential walk pays a round trip per folder, where the parallel walk lists a level per round trip. The
+	 * time this saves is measured by {@link DriveWalkBenchmark}.
+	 */
+	@Test
+	public void sendsFewerRequestsThanSequentialListing() {
+		Set<String> sequential = walkSequentially(DriveService.ROOT_ID, new HashSet<>());
+		assertEquals(folders + 1, server.getRequests());
+
+		Set<String> parallel = ids(driveService.walk());
+		assertEquals(sequential, parallel);
+		assertEquals(folders + 1 + DEPTH + 1, server.getRequests());
+	}
+}
@@ -0,0 +1,111 @@
+package com.github.tmyroadctfig.icloud4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+import com.github.tmyroadctfig.icloud4j.http.ICloudHttpConfig;
+import com.github.tmyroadctfig.icloud4j.util.ICloudUtils;
+import com.google.common.collect.ImmutableMap;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A ckdatabasews server answering each operation, e.g. "records/query" or "changes/zone", with a scripted handler,
+ * for testing the CloudKit database code.
+ *
+ * @author patchpump
+ */
+class FakeCloudKitServer implements Closeable {
+
+	private final HttpServer server;
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	private final Map<String, Function<Map<String, Object>, Object>> handlers = new ConcurrentHashMap<>();
+	private final Map<String, List<Map<String, Object>>> requests = new ConcurrentHashMap<>();
+
+	FakeCloudKitServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/database/1/", this::handle);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	String getUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	/**
+	 * Creates an iCloud service whose ckdatabasews requests go to this server.
+	 */
+	ICloudService createICloudService() {
+		ICloudHttpConfig config = new ICloudHttpConfig();
+		config.setWarmUpAfterLogin(false);
+		ICloudSession session = new ICloudSession("test");
+		session.setLoginInfo(ImmutableMap.of(
+			"dsInfo", ImmutableMap.of("dsid", "1"),
+			"webservices", ImmutableMap.of("ckdatabasews", ImmutableMap.of("url", getUrl()))), false);
+		return new ICloudService(session, config);
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Sets the handler of an operation, returning the response body for a request body, or null to answer with a
+	 * server error.
+	 *
+	 * @param operation the last two path segments, e.g. "records/lookup".
+	 * @param handler the handler.
+	 */
+	void handle(String operation, Function<Map<String, Object>, Object> handler) {
+		handlers.put(operation, handler);
+	}
+
+	/**
+	 * Gets the request bodies received for an operation, in arrival order.
+	 */
+	List<Map<String, Object>> getRequests(String operation) {
+		return new ArrayList<>(requests.getOrDefault(operation, new ArrayList<>()));
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		String[] path = exchange.getRequestURI().getPath().split("/");
+		String operation = path[path.length - 2] + "/" + path[path.length - 1];
+
+		Map<String, Object> body;
+		try (Reader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+			body = ICloudUtils.fromJson(reader, Map.class);
+		}
+		requests.computeIfAbsent(operation, key -> new CopyOnWriteArrayList<>()).add(body);
+
+		Function<Map<String, Object>, Object> handler = handlers.get(operation);
+		Object response = handler == null ? null : handler.apply(body);
+		if (response == null) {
+			exchange.sendResponseHeaders(handler == null ? 404 : 500, -1);
+			exchange.close();
+			return;
+		}
+
+		byte[] content = ICloudUtils.toJson(response).getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(200, content.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(content);
+		}
+	}
+}
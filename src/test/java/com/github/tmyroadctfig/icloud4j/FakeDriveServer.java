@@ -0,0 +1,289 @@
+package com.github.tmyroadctfig.icloud4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.tmyroadctfig.icloud4j.http.ICloudHttpConfig;
+import com.github.tmyroadctfig.icloud4j.util.ICloudUtils;
+import com.google.common.collect.ImmutableMap;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An in-memory drivews server answering retrieveItemDetailsInFolders, for testing the Drive listing code.
+ *
+ * Changing or removing a node changes the etag of every folder above it, as iCloud does.
+ *
+ * @author patchpump
+ */
+class FakeDriveServer implements Closeable {
+
+	private static final String ZONE = "com.apple.CloudDocs";
+
+	private static class Node {
+
+		final String id;
+		final String parentId;
+		final String name;
+		final String extension;
+		final String type;
+		final long size;
+		int version = 1;
+
+		Node(String id, String parentId, String name, String extension, String type, long size) {
+			this.id = id;
+			this.parentId = parentId;
+			this.name = name;
+			this.extension = extension;
+			this.type = type;
+			this.size = size;
+		}
+
+		Map<String, Object> toMap() {
+			Map<String, Object> map = new LinkedHashMap<>();
+			map.put("drivewsid", id);
+			map.put("docwsid", id);
+			map.put("zone", ZONE);
+			if (parentId != null)
+				map.put("parentId", parentId);
+			map.put("name", name);
+			if (extension != null)
+				map.put("extension", extension);
+			map.put("type", type);
+			map.put("size", size);
+			map.put("etag", "e" + version);
+			return map;
+		}
+	}
+
+	private final HttpServer server;
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	private final Map<String, Node> nodes = new HashMap<>();
+	private final Map<String, List<String>> children = new HashMap<>();
+
+	private final Set<String> failing = ConcurrentHashMap.newKeySet();
+	private final Set<String> anonymous = ConcurrentHashMap.newKeySet();
+	private volatile long latencyMillis;
+	private volatile boolean reversed;
+
+	private final AtomicInteger requests = new AtomicInteger();
+	private final AtomicInteger requestedIds = new AtomicInteger();
+
+	FakeDriveServer() throws IOException {
+		addNode(new Node(DriveService.ROOT_ID, null, "root", null, "FOLDER", 0));
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/retrieveItemDetailsInFolders", this::retrieveItemDetailsInFolders);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	String getUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	/**
+	 * Creates an iCloud service whose drivews and docws requests go to this server.
+	 */
+	ICloudService createICloudService() {
+		ICloudHttpConfig config = new ICloudHttpConfig();
+		config.setWarmUpAfterLogin(false);
+		ICloudSession session = new ICloudSession("test");
+		session.setLoginInfo(ImmutableMap.of(
+			"dsInfo", ImmutableMap.of("dsid", "1"),
+			"webservices", ImmutableMap.of(
+				"drivews", ImmutableMap.of("url", getUrl()),
+				"docws", ImmutableMap.of("url", getUrl()))), false);
+		return new ICloudService(session, config);
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	private void addNode(Node node) {
+		nodes.put(node.id, node);
+		if (node.parentId != null)
+			children.get(node.parentId).add(node.id);
+		if ("FOLDER".equals(node.type))
+			children.put(node.id, new ArrayList<>());
+	}
+
+	synchronized String addFolder(String parentId, String name) {
+		String id = "FOLDER::" + ZONE + "::" + path(parentId, name);
+		addNode(new Node(id, parentId, name, null, "FOLDER", 0));
+		changed(parentId);
+		return id;
+	}
+
+	synchronized String addFile(String parentId, String name, String extension, long size) {
+		String id = "FILE::" + ZONE + "::" + path(parentId, name + "." + extension);
+		addNode(new Node(id, parentId, name, extension, "FILE", size));
+		changed(parentId);
+		return id;
+	}
+
+	/**
+	 * Adds a tree of folders, each holding one file and the given number of subfolders down to a depth.
+	 *
+	 * @return the number of folders added.
+	 */
+	synchronized int addTree(String parentId, int fanout, int depth) {
+		addFile(parentId, "file", "txt", 10);
+		if (depth == 0)
+			return 0;
+
+		int folders = 0;
+		for (int i = 0; i < fanout; i++)
+			folders += 1 + addTree(addFolder(parentId, "d" + i), fanout, depth - 1);
+		return folders;
+	}
+
+	private String path(String parentId, String name) {
+		return DriveService.ROOT_ID.equals(parentId) ? "root/" + name : parentId.split("::")[2] + "/" + name;
+	}
+
+	/**
+	 * Changes the etag of a node and of every folder above it.
+	 */
+	synchronized void changed(String id) {
+		for (Node node = nodes.get(id); node != null; node = nodes.get(node.parentId))
+			node.version++;
+	}
+
+	synchronized void remove(String id) {
+		Node node = nodes.get(id);
+		children.get(node.parentId).remove(id);
+		List<String> pending = new ArrayList<>(Collections.singletonList(id));
+		while (!pending.isEmpty()) {
+			String next = pending.remove(pending.size() - 1);
+			nodes.remove(next);
+			List<String> below = children.remove(next);
+			if (below != null)
+				pending.addAll(below);
+		}
+		changed(node.parentId);
+	}
+
+	synchronized List<String> getChildIds(String folderId) {
+		return new ArrayList<>(children.get(folderId));
+	}
+
+	/**
+	 * Gets the current etag of every node, by ID.
+	 */
+	synchronized Map<String, String> getEtags() {
+		Map<String, String> etags = new HashMap<>();
+		nodes.forEach((id, node) -> etags.put(id, "e" + node.version));
+		return etags;
+	}
+
+	synchronized int getNodeCount() {
+		return nodes.size();
+	}
+
+	/**
+	 * Answers requests that include the node with a server error.
+	 */
+	void setFailing(String id, boolean fail) {
+		if (fail)
+			failing.add(id);
+		else
+			failing.remove(id);
+	}
+
+	/**
+	 * Leaves the drivewsid out of the details returned for the node.
+	 */
+	void setAnonymous(String id) {
+		anonymous.add(id);
+	}
+
+	void setLatencyMillis(long latencyMillis) {
+		this.latencyMillis = latencyMillis;
+	}
+
+	/**
+	 * Returns the details of a batch in reverse order.
+	 */
+	void setReversed(boolean reversed) {
+		this.reversed = reversed;
+	}
+
+	int getRequests() {
+		return requests.get();
+	}
+
+	int getRequestedIds() {
+		return requestedIds.get();
+	}
+
+	private void retrieveItemDetailsInFolders(HttpExchange exchange) throws IOException {
+		List<Map<String, Object>> body;
+		try (Reader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+			body = ICloudUtils.fromJson(reader, List.class);
+		}
+		requests.incrementAndGet();
+		requestedIds.addAndGet(body.size());
+
+		try {
+			if (latencyMillis > 0)
+				Thread.sleep(latencyMillis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		List<Map<String, Object>> response = new ArrayList<>();
+		for (Map<String, Object> item : body) {
+			String id = (String) item.get("drivewsid");
+			if (failing.contains(id)) {
+				exchange.sendResponseHeaders(500, -1);
+				exchange.close();
+				return;
+			}
+			response.add(getDetails(id));
+		}
+		if (reversed)
+			Collections.reverse(response);
+
+		byte[] content = ICloudUtils.toJson(response).getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(200, content.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(content);
+		}
+	}
+
+	private synchronized Map<String, Object> getDetails(String id) {
+		Node node = nodes.get(id);
+		if (node == null)
+			return ImmutableMap.of("drivewsid", id, "status", "ID_INVALID");
+
+		Map<String, Object> details = node.toMap();
+		List<Object> items = new ArrayList<>();
+		for (String childId : children.get(id))
+			items.add(nodes.get(childId).toMap());
+		details.put("items", items);
+		details.put("numberOfItems", items.size());
+		if (anonymous.contains(id))
+			details.remove("drivewsid");
+		return details;
+	}
+}
@@ -0,0 +1,175 @@
+package com.github.tmyroadctfig.icloud4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+/**
+ * @author patchpump
+ */
+public class RequestCoalescerTest {
+
+	/**
+	 * Records the batches requested and completes them on demand.
+	 */
+	private static class FakeLoader implements Function<List<String>, CompletableFuture<Map<String, String>>> {
+
+		final List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+		final List<CompletableFuture<Map<String, String>>> results = Collections.synchronizedList(new ArrayList<>());
+
+		@Override
+		public CompletableFuture<Map<String, String>> apply(List<String> keys) {
+			CompletableFuture<Map<String, String>> result = new CompletableFuture<>();
+			batches.add(new ArrayList<>(keys));
+			results.add(result);
+			return result;
+		}
+
+		void complete(int batch) {
+			results.get(batch).complete(batches.get(batch).stream()
+				.collect(Collectors.toMap(Function.identity(), key -> "value of " + key)));
+		}
+	}
+
+	@Test
+	public void sharesInFlightLookups() {
+		FakeLoader loader = new FakeLoader();
+		RequestCoalescer<String, String> coalescer = new RequestCoalescer<>(loader, 1, 0, TimeUnit.MILLISECONDS);
+
+		CompletableFuture<String> first = coalescer.load("a");
+		CompletableFuture<String> second = coalescer.load("a");
+		assertSame(first, second);
+		assertEquals(1, loader.batches.size());
+
+		loader.complete(0);
+		assertEquals("value of a", second.join());
+
+		// completed lookups are not kept
+		coalescer.load("a");
+		assertEquals(2, loader.batches.size());
+	}
+
+	@Test
+	public void dispatchesFullBatchEarly() {
+		FakeLoader loader = new FakeLoader();
+		RequestCoalescer<String, String> coalescer = new RequestCoalescer<>(loader, 3, 1, TimeUnit.HOURS);
+
+		List<CompletableFuture<String>> futures = new ArrayList<>();
+		for (String key : Arrays.asList("a", "b", "a", "c", "d"))
+			futures.add(coalescer.load(key));
+
+		assertEquals(Collections.singletonList(Arrays.asList("a", "b", "c")), loader.batches);
+		loader.complete(0);
+		assertEquals("value of a", futures.get(0).join());
+		assertEquals("value of a", futures.get(2).join());
+		assertEquals("value of c", futures.get(3).join());
+		assertFalse(futures.get(4).isDone());
+	}
+
+	@Test(timeout = 10_000)
+	public void dispatchesPartialBatchAfterWindow() {
+		FakeLoader loader = new FakeLoader();
+		RequestCoalescer<String, String> coalescer = new RequestCoalescer<>(loader, 100, 20, TimeUnit.MILLISECONDS);
+
+		CompletableFuture<String> a = coalescer.load("a");
+		CompletableFuture<String> b = coalescer.load("b");
+		while (loader.batches.isEmpty())
+			Thread.yield();
+
+		assertEquals(Collections.singletonList(Arrays.asList("a", "b")), loader.batches);
+		loader.complete(0);
+		assertEquals("value of a", a.join());
+		assertEquals("value of b", b.join());
+	}
+
+	@Test
+	public void failsEveryWaiterOfFailedBatch() {
+		FakeLoader loader = new FakeLoader();
+		RequestCoalescer<String, String> coalescer = new RequestCoalescer<>(loader, 2, 1, TimeUnit.HOURS);
+
+		CompletableFuture<String> a = coalescer.load("a");
+		CompletableFuture<String> sharedA = coalescer.load("a");
+		CompletableFuture<String> b = coalescer.load("b");
+
+		ICloudException failure = new ICloudException("batch failed");
+		loader.results.get(0).completeExceptionally(failure);
+		for (CompletableFuture<String> future : Arrays.asList(a, sharedA, b)) {
+			try {
+				future.join();
+				fail("expected failure");
+			} catch (CompletionException e) {
+				assertSame(failure, e.getCause());
+			}
+		}
+	}
+
+	@Test
+	public void failsEveryWaiterWhenLoaderThrows() {
+		RequestCoalescer<String, String> coalescer = new RequestCoalescer<>(keys -> {
+			throw new IllegalStateException("cannot load " + keys);
+		}, 2, 1, TimeUnit.HOURS);
+
+		CompletableFuture<String> a = coalescer.load("a");
+		CompletableFuture<String> b = coalescer.load("b");
+		assertTrue(a.isCompletedExceptionally());
+		assertTrue(b.isCompletedExceptionally());
+	}
+
+	@Test
+	public void failsKeysMissingFromResult() {
+		FakeLoader loader = new FakeLoader();
+		RequestCoalescer<String, String> coalescer = new RequestCoalescer<>(loader, 2, 1, TimeUnit.HOURS);
+
+		CompletableFuture<String> a = coalescer.load("a");
+		CompletableFuture<String> b = coalescer.load("b");
+		loader.results.get(0).complete(Collections.singletonMap("a", "value of a"));
+
+		assertEquals("value of a", a.join());
+		try {
+			b.join();
+			fail("expected failure");
+		} catch (CompletionException e) {
+			assertEquals(ICloudException.class, e.getCause().getClass());
+		}
+	}
+
+	@Test(timeout = 10_000)
+	public void coalescesConcurrentLookups() throws InterruptedException {
+		FakeLoader loader = new FakeLoader();
+		RequestCoalescer<String, String> coalescer = new RequestCoalescer<>(loader, 10, 1, TimeUnit.HOURS);
+
+		List<CompletableFuture<String>> futures = Collections.synchronizedList(new ArrayList<>());
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 8; t++) {
+			Thread thread = new Thread(() -> {
+				for (int i = 0; i < 10; i++)
+					futures.add(coalescer.load("k" + i));
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+
+		assertEquals(1, loader.batches.size());
+		assertEquals(10, loader.batches.get(0).size());
+		loader.complete(0);
+		for (CompletableFuture<String> future : futures)
+			assertTrue(future.join().startsWith("value of k"));
+	}
+}
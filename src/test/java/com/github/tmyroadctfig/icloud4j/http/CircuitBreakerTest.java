@@ -0,0 +1,174 @@
+package com.github.tmyroadctfig.icloud4j.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.tmyroadctfig.icloud4j.http.CircuitBreaker.State;
+import com.google.common.base.Ticker;
+
+/**
+ * @author patchpump
+ */
+public class CircuitBreakerTest {
+
+	private static final long OPEN_DURATION = 1000;
+
+	private static class FakeTicker extends Ticker {
+
+		private final AtomicLong nanos = new AtomicLong();
+
+		@Override
+		public long read() {
+			return nanos.get();
+		}
+
+		void advance(long millis) {
+			nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+		}
+	}
+
+	private final FakeTicker ticker = new FakeTicker();
+	private final List<String> transitions = new ArrayList<>();
+	private CircuitBreakerPolicy policy;
+	private CircuitBreaker circuitBreaker;
+
+	@Before
+	public void setUp() {
+		policy = new CircuitBreakerPolicy();
+		policy.setWindowSize(10);
+		policy.setMinimumRequests(4);
+		policy.setFailureRateThreshold(0.5);
+		policy.setOpenDuration(OPEN_DURATION);
+		policy.setHalfOpenProbes(2);
+		circuitBreaker = new CircuitBreaker("https://p12-drivews.icloud.com:443", "drivews", policy,
+			(breaker, from, to) -> transitions.add(from + "->" + to), ticker);
+	}
+
+	private void request(boolean failure) {
+		assertTrue(circuitBreaker.tryAcquire());
+		if (failure)
+			circuitBreaker.onFailure();
+		else
+			circuitBreaker.onSuccess();
+	}
+
+	private void open() {
+		for (int i = 0; i < 4; i++)
+			request(true);
+		assertEquals(State.OPEN, circuitBreaker.getState());
+	}
+
+	@Test
+	public void staysClosedBelowMinimumRequests() {
+		for (int i = 0; i < 3; i++)
+			request(true);
+		assertEquals(State.CLOSED, circuitBreaker.getState());
+		assertEquals(1.0, circuitBreaker.getFailureRate(), 0.0);
+	}
+
+	@Test
+	public void opensAtFailureRateThreshold() {
+		request(false);
+		request(true);
+		request(false);
+		// 2 of 4 requests failed
+		request(true);
+		assertEquals(State.OPEN, circuitBreaker.getState());
+		assertEquals(Arrays.asList("CLOSED->OPEN"), transitions);
+	}
+
+	@Test
+	public void staysClosedBelowFailureRateThreshold() {
+		for (int i = 0; i < 20; i++)
+			request(i % 3 == 2);
+		assertEquals(State.CLOSED, circuitBreaker.getState());
+		// the window holds the last 10 requests, 3 of which failed
+		assertEquals(0.3, circuitBreaker.getFailureRate(), 0.001);
+	}
+
+	@Test
+	public void rejectsUntilOpenDurationElapsed() {
+		open();
+		assertFalse(circuitBreaker.tryAcquire());
+		assertEquals(OPEN_DURATION, circuitBreaker.getRemainingOpenTime());
+
+		ticker.advance(OPEN_DURATION - 1);
+		assertFalse(circuitBreaker.tryAcquire());
+		assertEquals(1, circuitBreaker.getRemainingOpenTime());
+		assertEquals(2, circuitBreaker.getRejected());
+
+		ticker.advance(1);
+		assertTrue(circuitBreaker.tryAcquire());
+		assertEquals(State.HALF_OPEN, circuitBreaker.getState());
+		assertEquals(0, circuitBreaker.getRemainingOpenTime());
+	}
+
+	@Test
+	public void halfOpenLetsProbesThrough() {
+		open();
+		ticker.advance(OPEN_DURATION);
+
+		assertTrue(circuitBreaker.tryAcquire());
+		assertTrue(circuitBreaker.tryAcquire());
+		// both probes are in flight
+		assertFalse(circuitBreaker.tryAcquire());
+
+		// an ignored probe frees its slot
+		circuitBreaker.onIgnored();
+		assertTrue(circuitBreaker.tryAcquire());
+		assertEquals(State.HALF_OPEN, circuitBreaker.getState());
+	}
+
+	@Test
+	public void successfulProbesCloseAndReset() {
+		open();
+		ticker.advance(OPEN_DURATION);
+
+		request(false);
+		assertEquals(State.HALF_OPEN, circuitBreaker.getState());
+		request(false);
+		assertEquals(State.CLOSED, circuitBreaker.getState());
+		assertEquals(Arrays.asList("CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->CLOSED"), transitions);
+
+		// the window starts over, so earlier failures no longer count
+		assertEquals(0.0, circuitBreaker.getFailureRate(), 0.0);
+		for (int i = 0; i < 3; i++)
+			request(true);
+		assertEquals(State.CLOSED, circuitBreaker.getState());
+	}
+
+	@Test
+	public void failedProbeReopens() {
+		open();
+		ticker.advance(OPEN_DURATION);
+
+		request(false);
+		request(true);
+		assertEquals(State.OPEN, circuitBreaker.getState());
+		assertEquals(Arrays.asList("CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->OPEN"), transitions);
+
+		// the open duration starts again
+		assertFalse(circuitBreaker.tryAcquire());
+		ticker.advance(OPEN_DURATION);
+		assertTrue(circuitBreaker.tryAcquire());
+	}
+
+	@Test
+	public void disabledNeverOpens() {
+		policy.setEnabled(false);
+		for (int i = 0; i < 20; i++)
+			request(true);
+		assertEquals(State.CLOSED, circuitBreaker.getState());
+		assertEquals(0, transitions.size());
+	}
+}
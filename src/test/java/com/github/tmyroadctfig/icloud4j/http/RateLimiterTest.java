@@ -0,0 +1,78 @@
+package com.github.tmyroadctfig.icloud4j.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * @author patchpump
+ */
+public class RateLimiterTest {
+
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	private static void assertWait(long expected, long actual) {
+		// the bucket refills a little between reservations
+		assertTrue("wait " + actual, actual <= expected && actual > expected - SECOND / 10);
+	}
+
+	@Test
+	public void noLimitsNeverWaits() {
+		RateLimiter rateLimiter = new RateLimiter();
+		for (int i = 0; i < 100; i++)
+			assertEquals(0, rateLimiter.reserve("p12-drivews.icloud.com", "drivews"));
+		assertEquals(0, rateLimiter.getDelayed());
+	}
+
+	@Test
+	public void burstThenWaits() {
+		RateLimiter rateLimiter = new RateLimiter();
+		rateLimiter.setHostLimit("p12-drivews.icloud.com", new RateLimit(1, 3));
+
+		for (int i = 0; i < 3; i++)
+			assertEquals(0, rateLimiter.reserve("p12-drivews.icloud.com", "drivews"));
+		assertWait(SECOND, rateLimiter.reserve("p12-drivews.icloud.com", "drivews"));
+		assertWait(2 * SECOND, rateLimiter.reserve("P12-DRIVEWS.icloud.com", "drivews"));
+
+		assertEquals(2, rateLimiter.getDelayed());
+		assertTrue(rateLimiter.getDelayNanos() > 2 * SECOND);
+	}
+
+	@Test
+	public void hostsHaveSeparateBuckets() {
+		RateLimiter rateLimiter = new RateLimiter();
+		rateLimiter.setHostLimit("p12-drivews.icloud.com", new RateLimit(1, 1));
+		rateLimiter.setHostLimit("p13-drivews.icloud.com", new RateLimit(1, 1));
+
+		assertEquals(0, rateLimiter.reserve("p12-drivews.icloud.com", "drivews"));
+		assertEquals(0, rateLimiter.reserve("p13-drivews.icloud.com", "drivews"));
+		assertEquals(0, rateLimiter.reserve("p14-drivews.icloud.com", "drivews"));
+		assertWait(SECOND, rateLimiter.reserve("p12-drivews.icloud.com", "drivews"));
+	}
+
+	@Test
+	public void serviceLimitIsSharedByItsHosts() {
+		RateLimiter rateLimiter = new RateLimiter();
+		rateLimiter.setServiceLimit("drivews", new RateLimit(1, 2));
+		rateLimiter.setHostLimit("p12-drivews.icloud.com", new RateLimit(1, 10));
+
+		assertEquals(0, rateLimiter.reserve("p12-drivews.icloud.com", "drivews"));
+		assertEquals(0, rateLimiter.reserve("p13-drivews.icloud.com", "drivews"));
+		assertWait(SECOND, rateLimiter.reserve("p12-drivews.icloud.com", "drivews"));
+		assertEquals(0, rateLimiter.reserve("p12-ckdatabasews.icloud.com", "ckdatabasews"));
+	}
+
+	@Test
+	public void removingLimitStopsWaiting() {
+		RateLimiter rateLimiter = new RateLimiter();
+		rateLimiter.setServiceLimit("drivews", new RateLimit(1, 1));
+		assertEquals(0, rateLimiter.reserve("p12-drivews.icloud.com", "drivews"));
+		assertTrue(rateLimiter.reserve("p12-drivews.icloud.com", "drivews") > 0);
+
+		rateLimiter.setServiceLimit("drivews", null);
+		assertEquals(0, rateLimiter.reserve("p12-drivews.icloud.com", "drivews"));
+	}
+}
@@ -0,0 +1,88 @@
+package com.github.tmyroadctfig.icloud4j.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author patchpump
+ */
+public class RetryPolicyTest {
+
+	private RetryPolicy policy;
+
+	@Before
+	public void setUp() {
+		policy = new RetryPolicy();
+		policy.setInitialBackoff(100);
+		policy.setMaxBackoff(1000);
+	}
+
+	private static HttpResponse response(int status) {
+		return new BasicHttpResponse(HttpVersion.HTTP_1_1, status, null);
+	}
+
+	private static HttpPost post(String path) throws IOException {
+		HttpPost post = new HttpPost("https://p12-drivews.icloud.com" + path);
+		post.setEntity(new StringEntity("{}"));
+		return post;
+	}
+
+	@Test
+	public void retriesThrottledGetWithBackoff() {
+		long delay = policy.getRetryDelay(new HttpGet("https://example.com/"), response(503), 1);
+		assertTrue(delay >= 50 && delay <= 100);
+
+		delay = policy.getRetryDelay(new HttpGet("https://example.com/"), response(429), 3);
+		assertTrue(delay >= 200 && delay <= 400);
+	}
+
+	@Test
+	public void doesNotRetryLastAttempt() {
+		assertEquals(-1, policy.getRetryDelay(new HttpGet("https://example.com/"), response(503),
+			policy.getMaxAttempts()));
+	}
+
+	@Test
+	public void doesNotRetryOtherStatuses() {
+		assertEquals(-1, policy.getRetryDelay(new HttpGet("https://example.com/"), response(500), 1));
+		assertEquals(-1, policy.getRetryDelay(new HttpGet("https://example.com/"), response(404), 1));
+	}
+
+	@Test
+	public void honoursRetryAfter() {
+		HttpResponse response = response(503);
+		response.addHeader("Retry-After", "5");
+		assertEquals(5000, policy.getRetryDelay(new HttpGet("https://example.com/"), response, 1));
+
+		response.setHeader("Retry-After", "3600");
+		assertEquals(-1, policy.getRetryDelay(new HttpGet("https://example.com/"), response, 1));
+	}
+
+	@Test
+	public void doesNotRetryNonIdempotentPostAfterGatewayError() throws IOException {
+		assertEquals(-1, policy.getRetryDelay(post("/updateItems"), response(502), 1));
+		assertTrue(policy.getRetryDelay(post("/retrieveItemDetailsInFolders"), response(502), 1) >= 0);
+	}
+
+	@Test
+	public void retriesConnectFailuresOnly() throws IOException {
+		assertTrue(policy.getRetryDelay(post("/updateItems"), new ConnectException(), 1) >= 0);
+		assertEquals(-1, policy.getRetryDelay(post("/updateItems"), new SocketTimeoutException(), 1));
+		assertTrue(policy.getRetryDelay(new HttpGet("https://example.com/"), new SocketTimeoutException(), 1) >= 0);
+		assertEquals(-1, policy.getRetryDelay(new HttpGet("https://example.com/"), new UnknownHostException(), 1));
+	}
+}
@@ -0,0 +1,150 @@
+package com.github.tmyroadctfig.icloud4j.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.StringEntity;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.tmyroadctfig.icloud4j.ICloudCircuitOpenException;
+import com.github.tmyroadctfig.icloud4j.ICloudSession;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * @author patchpump
+ */
+public class SessionHttpClientTest {
+
+	private static final String WEB_SERVICE = "127.0.0.1";
+
+	private HttpServer server;
+	private volatile int status = 200;
+	private final AtomicInteger requests = new AtomicInteger();
+	private final AtomicInteger reservations = new AtomicInteger();
+
+	private ICloudHttpConfig config;
+	private ICloudTransport transport;
+	private SessionHttpClient client;
+
+	@Before
+	public void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", exchange -> {
+			requests.incrementAndGet();
+			exchange.getRequestBody().close();
+			exchange.sendResponseHeaders(status, -1);
+			exchange.close();
+		});
+		server.start();
+
+		RetryPolicy retryPolicy = new RetryPolicy();
+		retryPolicy.setInitialBackoff(1);
+		retryPolicy.setMaxBackoff(2);
+
+		RateLimiter rateLimiter = new RateLimiter((key, limit) -> {
+			reservations.incrementAndGet();
+			return 0;
+		});
+		rateLimiter.setServiceLimit(WEB_SERVICE, new RateLimit(1000, 1000));
+
+		config = new ICloudHttpConfig();
+		config.setRetryPolicy(retryPolicy);
+		config.setRateLimiter(rateLimiter);
+	}
+
+	private void start() {
+		transport = new ICloudTransport(config);
+		client = new SessionHttpClient(transport, new ICloudSession("test"));
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		if (transport != null)
+			transport.close();
+		server.stop(0);
+	}
+
+	private String url(String path) {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+	}
+
+	private int execute(HttpPost request) throws IOException {
+		try (CloseableHttpResponse response = client.execute(request)) {
+			return response.getStatusLine().getStatusCode();
+		}
+	}
+
+	@Test
+	public void nonRetryableFailureDoesNotSpendBudget() throws IOException {
+		start();
+		status = 502;
+		HttpPost post = new HttpPost(url("/updateItems"));
+		post.setEntity(new StringEntity("{}"));
+
+		assertEquals(502, execute(post));
+		assertEquals(1, requests.get());
+
+		RetryBudget budget = transport.getRetryBudget(WEB_SERVICE);
+		assertEquals(0, budget.getRetries());
+		assertEquals(0, budget.getExhausted());
+		assertEquals(RetryPolicy.DEFAULT_BUDGET_MAX_TOKENS, budget.getTokens(), 0);
+	}
+
+	@Test
+	public void lastAttemptDoesNotSpendBudget() throws IOException {
+		start();
+		status = 503;
+		HttpPost post = new HttpPost(url("/retrieveItemDetailsInFolders"));
+		post.setEntity(new StringEntity("{}"));
+
+		assertEquals(503, execute(post));
+		int attempts = RetryPolicy.DEFAULT_MAX_ATTEMPTS;
+		assertEquals(attempts, requests.get());
+
+		RetryBudget budget = transport.getRetryBudget(WEB_SERVICE);
+		assertEquals(attempts - 1, budget.getRetries());
+		assertEquals(0, budget.getExhausted());
+		assertEquals(RetryPolicy.DEFAULT_BUDGET_MAX_TOKENS - (attempts - 1), budget.getTokens(), 0);
+	}
+
+	@Test
+	public void openCircuitDoesNotUseRateLimitPermits() throws IOException {
+		CircuitBreakerPolicy circuitBreakerPolicy = new CircuitBreakerPolicy();
+		circuitBreakerPolicy.setWindowSize(1);
+		circuitBreakerPolicy.setMinimumRequests(1);
+		config.setCircuitBreakerPolicy(circuitBreakerPolicy);
+		config.setRetryPolicy(RetryPolicy.disabled());
+		start();
+
+		status = 500;
+		client.execute(new HttpGet(url("/"))).close();
+		assertEquals(1, reservations.get());
+
+		for (int i = 0; i < 3; i++) {
+			try {
+				client.execute(new HttpGet(url("/"))).close();
+				fail("circuit should be open");
+			} catch (ICloudCircuitOpenException e) {
+				// expected
+			}
+			try {
+				client.executeAsync(new HttpGet(url("/"))).join();
+				fail("circuit should be open");
+			} catch (CompletionException e) {
+				assertEquals(ICloudCircuitOpenException.class, e.getCause().getClass());
+			}
+		}
+		assertEquals(1, requests.get());
+		assertEquals(1, reservations.get());
+	}
+}
@@ -0,0 +1,79 @@
+package com.github.tmyroadctfig.icloud4j.json;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.github.tmyroadctfig.icloud4j.util.ICloudUtils;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * @author patchpump
+ */
+public class CKRecordTest {
+
+	private static CKRecord record(String fields) {
+		return ICloudUtils.fromJson("{\"recordName\":\"a\",\"fields\":{" + fields + "}}", CKRecord.class);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void getMapReturnsSharedImmutableMap() {
+		CKRecord record = record("\"m\":{\"type\":\"STRING\",\"value\":{\"a\":\"x\",\"i\":3,\"z\":null,\"n\":{\"b\":\"y\"}}}");
+
+		Map<String, Object> first = record.getMap("m");
+		assertEquals(ImmutableMap.of("a", "x", "i", "3.0", "n", ImmutableMap.of("b", "y")), first);
+		assertSame(first, record.getMap("m"));
+		assertNull(record.getMap("missing"));
+
+		try {
+			first.put("a", "changed");
+			fail("expected an UnsupportedOperationException");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		try {
+			((Map<String, Object>) first.get("n")).put("b", "changed");
+			fail("expected an UnsupportedOperationException");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void getBytesReturnsCopies() {
+		CKRecord record = record("\"b\":{\"type\":\"ENCRYPTED_BYTES\",\"value\":\"aGVsbG8=\"}");
+
+		byte[] first = record.getBytes("b");
+		assertArrayEquals("hello".getBytes(StandardCharsets.UTF_8), first);
+		first[0] = 'j';
+		assertArrayEquals("hello".getBytes(StandardCharsets.UTF_8), record.getBytes("b"));
+		assertEquals("hello", record.getString("b"));
+		assertEquals(0, record.getBytes("missing").length);
+	}
+
+	@Test
+	public void longGettersAgree() {
+		CKRecord record = record("\"i\":{\"type\":\"INT64\",\"value\":42},"
+			+ "\"t\":{\"type\":\"TIMESTAMP\",\"value\":1476000000000},"
+			+ "\"s\":{\"type\":\"STRING\",\"value\":\"7\"},"
+			+ "\"d\":{\"type\":\"DOUBLE\",\"value\":1.5}");
+
+		assertEquals(Long.valueOf(42), record.getLong("i"));
+		assertEquals(42, record.getLongValue("i", -1));
+		assertEquals(Long.valueOf(1476000000000L), record.getLong("t"));
+		assertEquals(1476000000000L, record.getLongValue("t", -1));
+		assertEquals(Long.valueOf(7), record.getLong("s", null));
+		assertEquals(7, record.getLongValue("s", -1));
+		assertNull(record.getLong("d", null));
+		assertEquals(-1, record.getLongValue("d", -1));
+		assertEquals(1.5, record.getDoubleValue("d", 0), 0);
+	}
+}
@@ -0,0 +1,239 @@
+package com.github.tmyroadctfig.icloud4j.json;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.tmyroadctfig.icloud4j.util.ICloudUtils;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Builds responses shaped like those of the photos, drive, Find My iPhone and ubiquity services, for parsing tests and benchmarks.
+ *
+ * @author patchpump
+ */
+class JsonPayloads {
+
+	private static final long BASE_TIME = 1476000000000L;
+
+	private static Map<String, Object> field(String type, Object value) {
+		return ImmutableMap.of("type", type, "value", value);
+	}
+
+	private static Map<String, Object> timestamp(long time) {
+		return ImmutableMap.of("timestamp", time, "userRecordName", "_abc123", "deviceID", "2");
+	}
+
+	private static Map<String, Object> asset(int i) {
+		Map<String, Object> fields = new LinkedHashMap<>();
+		fields.put("filenameEnc", field("ENCRYPTED_BYTES", Base64.getEncoder()
+			.encodeToString(("IMG_" + i + ".HEIC").getBytes(StandardCharsets.UTF_8))));
+		fields.put("itemType", field("STRING", "public.heic"));
+		fields.put("resOriginalWidth", field("INT64", 4032));
+		fields.put("resOriginalHeight", field("INT64", 3024));
+		fields.put("resOriginalFileSize", field("INT64", 2_000_000L + i));
+		fields.put("assetDate", field("TIMESTAMP", BASE_TIME + i * 1000L));
+		fields.put("duration", field("DOUBLE", i * 0.25));
+		fields.put("resOriginalRes", field("ASSETID", ImmutableMap.of(
+			"fileChecksum", "AVt" + i,
+			"size", 2_000_000L + i,
+			"wrappingKey", "kw" + i,
+			"referenceChecksum", "AWc" + i,
+			"downloadURL", "https://cvws.icloud-content.com/B/AVt" + i + "/${f}?o=AjM")));
+		fields.put("masterRef", field("REFERENCE", ImmutableMap.of(
+			"recordName", "master-" + i,
+			"action", "DELETE_SELF",
+			"zoneID", ImmutableMap.of("zoneName", "PrimarySync", "ownerRecordName", "_abc123"))));
+
+		Map<String, Object> record = new LinkedHashMap<>();
+		record.put("recordName", "asset-" + i);
+		record.put("recordType", "CPLAsset");
+		record.put("fields", fields);
+		record.put("pluginFields", ImmutableMap.of());
+		record.put("recordChangeTag", "k" + i);
+		record.put("created", timestamp(BASE_TIME + i));
+		record.put("modified", timestamp(BASE_TIME + 2 * i));
+		record.put("deleted", false);
+		record.put("zoneID", ImmutableMap.of("zoneName", "PrimarySync", "ownerRecordName", "_abc123"));
+		return record;
+	}
+
+	private static List<Object> assets(int count) {
+		List<Object> records = new ArrayList<>();
+		for (int i = 0; i < count; i++)
+			records.add(asset(i));
+		return records;
+	}
+
+	/**
+	 * A page of a photos records query.
+	 */
+	static String recordsQuery(int records) {
+		return ICloudUtils.toJson(ImmutableMap.of("records", assets(records), "continuationMarker", "AQAAAAAAAAn//",
+			"syncToken", "AQAAAAAAAA"));
+	}
+
+	/**
+	 * A change feed response with the records spread over zones.
+	 */
+	static String zoneChanges(int zones, int records) {
+		List<Object> zoneChanges = new ArrayList<>();
+		for (int z = 0; z < zones; z++) {
+			zoneChanges.add(ImmutableMap.of(
+				"zoneID", ImmutableMap.of("zoneName", "Zone" + z, "ownerRecordName", "_abc123"),
+				"records", assets(records / zones),
+				"syncToken", "token" + z,
+				"moreComing", z % 2 == 0));
+		}
+		return ICloudUtils.toJson(ImmutableMap.of("zones", zoneChanges, "moreComing", false));
+	}
+
+	/**
+	 * A drive listing of one folder.
+	 */
+	static String driveListing(int items) {
+		String folderId = "FOLDER::com.apple.CloudDocs::8DA00FC2-2FA3-4CC4-8039-12C6D2E6ACDC";
+		List<Object> children = new ArrayList<>();
+		for (int i = 0; i < items; i++) {
+			Map<String, Object> item = new LinkedHashMap<>();
+			boolean folder = i % 5 == 0;
+			String id = (folder ? "FOLDER" : "FILE") + "::com.apple.CloudDocs::item-" + i;
+			item.put("dateCreated", "2016-10-09T08:00:00Z");
+			item.put("drivewsid", id);
+			item.put("docwsid", "item-" + i);
+			item.put("zone", "com.apple.CloudDocs");
+			item.put("name", "item " + i);
+			item.put("parentId", folderId);
+			item.put("etag", "2x" + i);
+			item.put("type", folder ? "FOLDER" : "FILE");
+			if (folder) {
+				item.put("assetQuota", 1024L * i);
+				item.put("fileCount", i);
+				item.put("shareCount", 0);
+				item.put("shareAliasCount", 0);
+				item.put("directChildrenCount", 3);
+			} else {
+				item.put("dateModified", "2016-10-09T09:00:00Z");
+				item.put("dateChanged", "2016-10-10T09:00:00Z");
+				item.put("size", 10_000L * i);
+				item.put("extension", "pdf");
+			}
+			children.add(item);
+		}
+
+		Map<String, Object> details = new LinkedHashMap<>();
+		details.put("dateCreated", "2016-10-01T08:00:00Z");
+		details.put("drivewsid", folderId);
+		details.put("docwsid", "8DA00FC2-2FA3-4CC4-8039-12C6D2E6ACDC");
+		details.put("zone", "com.apple.CloudDocs");
+		details.put("name", "Documents");
+		details.put("parentId", "FOLDER::com.apple.CloudDocs::root");
+		details.put("etag", "3f");
+		details.put("type", "FOLDER");
+		details.put("assetQuota", 123456789L);
+		details.put("items", children);
+		details.put("numberOfItems", items);
+		return ICloudUtils.toJson(new Object[] { details });
+	}
+
+	/**
+	 * A Find My iPhone refresh of some devices, with a quoted number and an unknown nested object in each.
+	 */
+	static String deviceRefresh(int devices) {
+		List<Object> content = new ArrayList<>();
+		for (int i = 0; i < devices; i++) {
+			Map<String, Object> location = new LinkedHashMap<>();
+			location.put("timeStamp", String.valueOf(BASE_TIME + i));
+			location.put("isOld", i % 2 == 0);
+			location.put("isInaccurate", false);
+			location.put("locationFinished", true);
+			location.put("positionType", "Wifi");
+			location.put("latitude", -33.8688 + i / 100.0);
+			location.put("horizontalAccuracy", 65.0);
+			location.put("locationType", null);
+			location.put("longitude", 151.2093 - i / 100.0);
+
+			Map<String, Object> device = new LinkedHashMap<>();
+			device.put("msg", null);
+			device.put("canWipeAfterLock", true);
+			device.put("wipeInProgress", false);
+			device.put("lostModeEnabled", i == 1);
+			device.put("activationLocked", true);
+			device.put("passcodeLength", 6);
+			device.put("deviceStatus", "203");
+			device.put("deviceColor", "e1e4e3-d7d9d8");
+			device.put("features", ImmutableMap.of("BTR", false, "LLC", true));
+			device.put("lowPowerMode", false);
+			device.put("rawDeviceModel", "iPhone8,1");
+			device.put("id", "device-" + i);
+			device.put("isLocating", true);
+			device.put("modelDisplayName", "iPhone");
+			device.put("batteryLevel", 0.75 - i / 100.0);
+			device.put("locationEnabled", true);
+			device.put("fmlyShare", false);
+			device.put("lostModeCapable", true);
+			device.put("deviceDisplayName", "iPhone 6s");
+			device.put("prsId", "prs-" + i);
+			device.put("locationCapable", true);
+			device.put("batteryStatus", "NotCharging");
+			device.put("name", "Phone " + i);
+			device.put("isMac", "false");
+			device.put("thisDevice", false);
+			device.put("deviceClass", "iPhone");
+			device.put("location", i == devices - 1 ? null : location);
+			device.put("deviceModel", "iphone6s-e1e4e3-d7d9d8");
+			device.put("maxMsgChar", "160");
+			device.put("darkWake", false);
+			content.add(device);
+		}
+		return ICloudUtils.toJson(ImmutableMap.of("statusCode", "200", "content", content,
+			"userInfo", ImmutableMap.of("firstName", "Test")));
+	}
+
+	/**
+	 * A ubiquity children listing, with a quoted size and an unknown field in each item.
+	 */
+	static String ubiquityChildren(int items) {
+		List<Object> itemList = new ArrayList<>();
+		for (int i = 0; i < items; i++) {
+			Map<String, Object> item = new LinkedHashMap<>();
+			item.put("peer_id", 1000L + i);
+			item.put("in_cloud", i % 3 != 0);
+			item.put("item_id", "item-" + i);
+			item.put("name", "item " + i);
+			item.put("parent_item_id", "parent");
+			item.put("type", i % 4 == 0 ? "folder" : "file");
+			item.put("modified", "2016-10-09T09:00:00Z");
+			item.put("size", i % 2 == 0 ? String.valueOf(1024L * i) : 1024L * i);
+			item.put("change_id", "c" + i);
+			item.put("permissions", Arrays.asList("read", "write"));
+			itemList.add(item);
+		}
+		return ICloudUtils.toJson(ImmutableMap.of("item_list", itemList, "total", items));
+	}
+
+	/**
+	 * A photo albums listing, with an unknown field in each folder.
+	 */
+	static String photosAlbums(int folders) {
+		List<Object> list = new ArrayList<>();
+		for (int i = 0; i < folders; i++) {
+			Map<String, Object> folder = new LinkedHashMap<>();
+			folder.put("keyAssetClientId", "asset-" + i);
+			folder.put("contentsType", "asset");
+			folder.put("dateRange", "2016-01-01/2016-10-09");
+			folder.put("childAssetsBinaryFeed", "AAEC" + i);
+			folder.put("childFolderIds", i % 2 == 0 ? Arrays.asList("f" + (i + 1), "f" + (i + 2)) : null);
+			folder.put("type", i == 0 ? "smart" : "album");
+			folder.put("serverId", "f" + i);
+			folder.put("isServerGenerated", i == 0 ? "true" : false);
+			folder.put("title", "Album " + i);
+			list.add(folder);
+		}
+		return ICloudUtils.toJson(ImmutableMap.of("folders", list, "prevFolderStateId", "s1"));
+	}
+}
@@ -0,0 +1,77 @@
+package com.github.tmyroadctfig.icloud4j.json;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.tmyroadctfig.icloud4j.util.ICloudUtils;
+import com.google.gson.Gson;
+
+/**
+ * Compares parsing the large responses with the hand-written {@link JsonTypeAdapters} and reflectively, reading from
+ * bytes as the response handlers do:
+ *
+ * <pre>
+ * mvn -P benchmark test -DskipTests
+ * mvn -P benchmark test -DskipTests -Dbenchmark.args="JsonTypeAdaptersBenchmark.parseRecordsQuery -prof gc"
+ * </pre>
+ *
+ * @author patchpump
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonTypeAdaptersBenchmark {
+
+	@Param({ "true", "false" })
+	public boolean typeAdapters;
+
+	private Gson gson;
+	private byte[] recordsQuery;
+	private byte[] zoneChanges;
+	private byte[] driveListing;
+
+	@Setup
+	public void setUp() {
+		gson = ICloudUtils.createGson(typeAdapters);
+		// a full page of a photos query, and a large folder
+		recordsQuery = JsonPayloads.recordsQuery(200).getBytes(StandardCharsets.UTF_8);
+		zoneChanges = JsonPayloads.zoneChanges(4, 200).getBytes(StandardCharsets.UTF_8);
+		driveListing = JsonPayloads.driveListing(500).getBytes(StandardCharsets.UTF_8);
+	}
+
+	private <T> T parse(byte[] json, Class<T> type) {
+		return gson.fromJson(new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8), type);
+	}
+
+	@Benchmark
+	public CKResponse parseRecordsQuery() {
+		return parse(recordsQuery, CKResponse.class);
+	}
+
+	@Benchmark
+	public CKChangesResponse parseZoneChanges() {
+		return parse(zoneChanges, CKChangesResponse.class);
+	}
+
+	@Benchmark
+	public DriveNodeDetails[] parseDriveListing() {
+		return parse(driveListing, DriveNodeDetails[].class);
+	}
+}
@@ -0,0 +1,115 @@
+package com.github.tmyroadctfig.icloud4j.json;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.github.tmyroadctfig.icloud4j.util.ICloudUtils;
+import com.google.gson.Gson;
+
+/**
+ * Checks that the hand-written adapters read the same objects as the reflective ones.
+ *
+ * @author patchpump
+ */
+public class JsonTypeAdaptersTest {
+
+	private final Gson adapters = ICloudUtils.createGson(true);
+	private final Gson reflective = ICloudUtils.createGson(false);
+
+	/**
+	 * Parses with both and compares the objects through their reflective serialization.
+	 */
+	private <T> T assertSameParse(String json, Class<T> type) {
+		T fromAdapters = adapters.fromJson(json, type);
+		T fromReflection = reflective.fromJson(json, type);
+		assertNotNull(fromAdapters);
+		assertEquals(reflective.toJson(fromReflection), reflective.toJson(fromAdapters));
+
+		// and back again through the adapters
+		T roundTrip = adapters.fromJson(adapters.toJson(fromAdapters), type);
+		assertEquals(reflective.toJson(fromReflection), reflective.toJson(roundTrip));
+		return fromAdapters;
+	}
+
+	private static void assertSameFields(CKRecord expected, CKRecord actual) {
+		assertEquals(expected.getFields().keySet(), actual.getFields().keySet());
+		for (String key : expected.getFields().keySet()) {
+			assertEquals(key, expected.getString(key, null), actual.getString(key, null));
+			assertEquals(key, expected.getFields().get(key).getFieldType(), actual.getFields().get(key).getFieldType());
+			if (actual.getFields().get(key).getFieldType() != CKFieldType.STRING)
+				assertEquals(key, expected.getLongValue(key, -1), actual.getLongValue(key, -1));
+			assertEquals(key, expected.getDoubleValue(key, -1), actual.getDoubleValue(key, -1), 0);
+			assertEquals(key, expected.getReference(key), actual.getReference(key));
+			assertArrayEquals(key, expected.getBytes(key), actual.getBytes(key));
+		}
+		assertEquals(expected.getAsset("resOriginalRes").getDownloadURL(),
+			actual.getAsset("resOriginalRes").getDownloadURL());
+		assertEquals(expected.getAsset("resOriginalRes").getSize(), actual.getAsset("resOriginalRes").getSize());
+	}
+
+	@Test
+	public void readsRecordsQuery() {
+		String json = JsonPayloads.recordsQuery(50);
+		CKResponse response = assertSameParse(json, CKResponse.class);
+		assertEquals(50, response.getRecords().size());
+		assertEquals("AQAAAAAAAAn//", response.getContinuationMarker());
+
+		List<CKRecord> expected = reflective.fromJson(json, CKResponse.class).getRecords();
+		for (int i = 0; i < expected.size(); i++)
+			assertSameFields(expected.get(i), response.getRecords().get(i));
+	}
+
+	@Test
+	public void readsZoneChanges() {
+		CKChangesResponse response = assertSameParse(JsonPayloads.zoneChanges(4, 40), CKChangesResponse.class);
+		assertEquals(4, response.getZones().size());
+	}
+
+	@Test
+	public void readsDriveListing() {
+		DriveNodeDetails[] details = assertSameParse(JsonPayloads.driveListing(100), DriveNodeDetails[].class);
+		assertEquals(100, details[0].items.length);
+		assertEquals(10_000L * 99, details[0].items[99].size);
+	}
+
+	@Test
+	public void readsDeviceRefresh() {
+		FindMyIPhoneResponse response = assertSameParse(JsonPayloads.deviceRefresh(5), FindMyIPhoneResponse.class);
+		assertEquals(5, response.content.length);
+		assertEquals(203, response.content[0].deviceStatus);
+		assertEquals(-33.8688, response.content[0].location.latitude, 0);
+		assertNull(response.content[4].location);
+	}
+
+	@Test
+	public void readsUbiquityChildren() {
+		UbiquityGetChildrenResponse response = assertSameParse(JsonPayloads.ubiquityChildren(20),
+			UbiquityGetChildrenResponse.class);
+		assertEquals(20, response.item_list.length);
+		assertEquals(1024L * 18, response.item_list[18].size);
+		assertEquals(1024L * 19, response.item_list[19].size);
+	}
+
+	@Test
+	public void readsPhotosAlbums() {
+		PhotosAlbumsResponse response = assertSameParse(JsonPayloads.photosAlbums(6), PhotosAlbumsResponse.class);
+		assertEquals(6, response.folders.length);
+		assertArrayEquals(new String[] { "f1", "f2" }, response.folders[0].childFolderIds);
+		assertNull(response.folders[1].childFolderIds);
+		assertTrue(response.folders[0].isServerGenerated);
+	}
+
+	@Test
+	public void readsLongsBeyondDoublePrecisionExactly() {
+		String json = "{\"records\":[{\"recordName\":\"a\",\"fields\":{\"n\":{\"type\":\"INT64\",\"value\":9007199254740993}}}]}";
+		assertEquals(9007199254740993L, adapters.fromJson(json, CKResponse.class).getRecords().get(0)
+			.getLongValue("n", 0));
+	}
+}